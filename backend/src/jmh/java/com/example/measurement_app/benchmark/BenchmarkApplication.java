@@ -0,0 +1,52 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementRepository;
+
+/**
+ * Minimal Spring context for benchmarks: JPA and the repositories, no web layer.
+ *
+ * <p>Runs against an in-memory H2 database by default. Pass
+ * {@code -Dbenchmark.datasource.url=jdbc:postgresql://...} (plus {@code .username} and
+ * {@code .password}) to measure against PostgreSQL instead. The schema is dropped and
+ * recreated, so never point it at a database that holds real data.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan(basePackageClasses = { Measurement.class, IdentityMeasurement.class })
+@EnableJpaRepositories(basePackageClasses = { MeasurementRepository.class, IdentityMeasurementRepository.class })
+public class BenchmarkApplication {
+
+    public static ConfigurableApplicationContext start(String... extraArgs) {
+        List<String> args = datasourceArgs();
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+
+    // Datasource, schema and logging arguments shared by every benchmark context
+    static List<String> datasourceArgs() {
+        String url = System.getProperty("benchmark.datasource.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        return new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("benchmark.datasource.username", "sa"),
+                "--spring.datasource.password=" + System.getProperty("benchmark.datasource.password", ""),
+                "--spring.datasource.driver-class-name=" + (url.startsWith("jdbc:h2:") ? "org.h2.Driver" : "org.postgresql.Driver"),
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.sql.init.mode=never",
+                "--logging.level.root=WARN"));
+    }
+}
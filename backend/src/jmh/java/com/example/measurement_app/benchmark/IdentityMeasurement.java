@@ -0,0 +1,56 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Copy of the measurement mapping as it was with IDENTITY ids, kept as the baseline
+ * for {@link MeasurementInsertBenchmark}.
+ */
+@Entity
+@Table(name = "identity_measurements")
+public class IdentityMeasurement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "patient_id", nullable = false)
+    private Long patientId;
+
+    @Column(name = "result", nullable = false)
+    private Double result;
+
+    @Column(name = "uuid", unique = true, nullable = false, updatable = false)
+    private UUID uuid = UUID.randomUUID();
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+
+    public Double getResult() {
+        return result;
+    }
+
+    public void setResult(Double result) {
+        this.result = result;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.measurement_app.benchmark;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface IdentityMeasurementRepository extends JpaRepository<IdentityMeasurement, Long> {
+}
@@ -0,0 +1,159 @@
+package com.example.measurement_app.benchmark;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+import com.example.measurement_app.repository.MeasurementRepository;
+import com.example.measurement_app.service.MeasurementEventBroadcaster;
+import com.example.measurement_app.service.MeasurementPartitionService;
+import com.example.measurement_app.service.MeasurementService;
+import com.example.measurement_app.service.PatientSummaryService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validator;
+
+/**
+ * Keeps measurements and patient summaries in hash maps, so {@link #service} builds a
+ * {@link MeasurementService} whose numbers are the cost of the service itself. Only the
+ * repository methods that save, find, update and delete a single measurement are
+ * implemented. The service is created without Spring, so it has no transaction or
+ * caching advice.
+ */
+final class InMemoryMeasurementStore {
+
+    private final Map<Long, Measurement> byId = new ConcurrentHashMap<>();
+    private final Map<UUID, Measurement> byUuid = new ConcurrentHashMap<>();
+    private final Map<Long, double[]> summaries = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    MeasurementService service(Validator validator) {
+        // No subscribers, so publishing events costs the check for them. Partitions are
+        // created through H2, where there is nothing to create.
+        JdbcRepository jdbcRepository = new JdbcRepository();
+        return new MeasurementService(repository(), jdbcRepository, new SummaryService(),
+                new MeasurementPartitionService(jdbcRepository, 3), validator, new ConcurrentMapCacheManager(),
+                new MeasurementEventBroadcaster(new ObjectMapper(), new SimpleMeterRegistry(), 1, Duration.ofMinutes(1)),
+                Optional.empty(), Optional.empty());
+    }
+
+    void clear() {
+        byId.clear();
+        byUuid.clear();
+        summaries.clear();
+    }
+
+    private MeasurementRepository repository() {
+        return (MeasurementRepository) Proxy.newProxyInstance(MeasurementRepository.class.getClassLoader(),
+                new Class<?>[] { MeasurementRepository.class }, (proxy, method, args) -> invoke(method, args));
+    }
+
+    private Object invoke(Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "save" -> save((Measurement) args[0]);
+            case "findById" -> Optional.ofNullable(byId.get((Long) args[0]));
+            case "findByUuid" -> Optional.ofNullable(byUuid.get((UUID) args[0]));
+            case "count" -> (long) byId.size();
+            case "hashCode" -> System.identityHashCode(this);
+            case "equals" -> false;
+            case "toString" -> "InMemoryMeasurementRepository";
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private Measurement save(Measurement measurement) {
+        if (measurement.getId() == null) {
+            measurement.setId(ids.incrementAndGet());
+        }
+        byId.put(measurement.getId(), measurement);
+        byUuid.put(measurement.getUuid(), measurement);
+        return measurement;
+    }
+
+    private static Measurement copy(Measurement measurement) {
+        Measurement copy = new Measurement();
+        copy.setId(measurement.getId());
+        copy.setPatientId(measurement.getPatientId());
+        copy.setResult(measurement.getResult());
+        copy.setUuid(measurement.getUuid());
+        copy.setMeasuredAt(measurement.getMeasuredAt());
+        return copy;
+    }
+
+    private final class JdbcRepository extends MeasurementJdbcRepository {
+
+        JdbcRepository() {
+            // The data source is only asked for its dialect; a private in-memory H2 answers that
+            super(dataSource(), 1000, 500);
+        }
+
+        @Override
+        public Optional<Measurement> deleteByUuid(UUID uuid) {
+            Measurement deleted = byUuid.remove(uuid);
+            if (deleted == null) {
+                return Optional.empty();
+            }
+            byId.remove(deleted.getId());
+            return Optional.of(deleted);
+        }
+
+        @Override
+        public Optional<Measurement> updateByUuid(UUID uuid, Long patientId, Double result) {
+            Measurement current = byUuid.get(uuid);
+            if (current == null) {
+                return Optional.empty();
+            }
+            Measurement previous = copy(current);
+            current.setPatientId(patientId);
+            current.setResult(result);
+            return Optional.of(previous);
+        }
+
+        private static JdbcDataSource dataSource() {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:");
+            return dataSource;
+        }
+    }
+
+    // count, sum, sum of squares; enough to show the cost of the bookkeeping
+    private final class SummaryService extends PatientSummaryService {
+
+        SummaryService() {
+            super(null, null, null, 1, 1);
+        }
+
+        @Override
+        public void recordAdded(Long patientId, Double result) {
+            summaries.compute(patientId, (id, summary) -> {
+                double[] updated = summary != null ? summary : new double[3];
+                updated[0]++;
+                updated[1] += result;
+                updated[2] += result * result;
+                return updated;
+            });
+        }
+
+        @Override
+        public void recordRemoved(Long patientId, Double result) {
+            summaries.computeIfPresent(patientId, (id, summary) -> {
+                summary[0]--;
+                summary[1] -= result;
+                summary[2] -= result * result;
+                return summary[0] > 0 ? summary : null;
+            });
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.List;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import com.example.measurement_app.MeasurementApplication;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementRepository;
+
+/**
+ * The whole application, web layer included, on a random port for {@link RequestLoadTest}.
+ * Scans the same packages as {@link MeasurementApplication} apart from the benchmarks and
+ * does not read {@code /app/.env}; the database is chosen as for {@link BenchmarkApplication}.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan(basePackageClasses = MeasurementApplication.class, excludeFilters = {
+    @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.example\\.measurement_app\\.benchmark\\..*"),
+    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = MeasurementApplication.class)
+})
+@EntityScan(basePackageClasses = Measurement.class)
+@EnableJpaRepositories(basePackageClasses = MeasurementRepository.class)
+public class LoadTestApplication {
+
+    public static ConfigurableApplicationContext start(String... extraArgs) {
+        List<String> args = BenchmarkApplication.datasourceArgs();
+        args.add("--server.port=0");
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(LoadTestApplication.class).run(args.toArray(String[]::new));
+    }
+}
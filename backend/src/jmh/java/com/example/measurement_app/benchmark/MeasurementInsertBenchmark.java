@@ -0,0 +1,85 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementRepository;
+
+/**
+ * Insert throughput of {@code saveAll} in rows per second, before (IDENTITY ids, one
+ * INSERT round trip per row) and after (pooled sequence ids with JDBC batching).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementInsertBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private ConfigurableApplicationContext context;
+    private MeasurementRepository measurementRepository;
+    private IdentityMeasurementRepository identityMeasurementRepository;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkApplication.start();
+        measurementRepository = context.getBean(MeasurementRepository.class);
+        identityMeasurementRepository = context.getBean(IdentityMeasurementRepository.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTables() {
+        measurementRepository.deleteAllInBatch();
+        identityMeasurementRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<IdentityMeasurement> saveAllWithIdentityIds() {
+        List<IdentityMeasurement> batch = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            IdentityMeasurement measurement = new IdentityMeasurement();
+            measurement.setPatientId(1L + i % 100);
+            measurement.setResult(50.0 + i % 50);
+            batch.add(measurement);
+        }
+        return identityMeasurementRepository.saveAll(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Measurement> saveAllWithPooledSequenceIds() {
+        List<Measurement> batch = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Measurement measurement = new Measurement();
+            measurement.setPatientId(1L + i % 100);
+            measurement.setResult(50.0 + i % 50);
+            batch.add(measurement);
+        }
+        return measurementRepository.saveAll(batch);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.measurement_app.model.Measurement;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Jackson cost of one {@code Measurement} and of a {@code List<Measurement>} of
+ * {@code size} elements, in both directions, with the mapper defaults Spring Boot uses.
+ * Reading ignores the uuid like a request body does, since it is read-only in JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementJsonBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private ObjectWriter measurementWriter;
+    private ObjectReader measurementReader;
+    private Measurement measurement;
+    private String measurementJson;
+
+    @State(Scope.Benchmark)
+    public static class Measurements {
+
+        @Param({ "1000", "100000" })
+        private int size;
+
+        private ObjectWriter writer;
+        private ObjectReader reader;
+        private List<Measurement> measurements;
+        private String json;
+
+        @Setup(Level.Trial)
+        public void prepare() throws JsonProcessingException {
+            TypeReference<List<Measurement>> listType = new TypeReference<>() { };
+            writer = OBJECT_MAPPER.writerFor(listType);
+            reader = OBJECT_MAPPER.readerFor(listType);
+            measurements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                measurements.add(newMeasurement(i));
+            }
+            json = writer.writeValueAsString(measurements);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void prepare() throws JsonProcessingException {
+        measurementWriter = OBJECT_MAPPER.writerFor(Measurement.class);
+        measurementReader = OBJECT_MAPPER.readerFor(Measurement.class);
+        measurement = newMeasurement(0);
+        measurementJson = measurementWriter.writeValueAsString(measurement);
+    }
+
+    @Benchmark
+    public String serializeMeasurement() throws JsonProcessingException {
+        return measurementWriter.writeValueAsString(measurement);
+    }
+
+    @Benchmark
+    public Measurement deserializeMeasurement() throws JsonProcessingException {
+        return measurementReader.readValue(measurementJson);
+    }
+
+    @Benchmark
+    public byte[] serializeList(Measurements list) throws JsonProcessingException {
+        return list.writer.writeValueAsBytes(list.measurements);
+    }
+
+    @Benchmark
+    public List<Measurement> deserializeList(Measurements list) throws JsonProcessingException {
+        return list.reader.readValue(list.json);
+    }
+
+    private static Measurement newMeasurement(int i) {
+        Measurement measurement = new Measurement();
+        measurement.setId(1L + i);
+        measurement.setPatientId(1L + i % 1000);
+        measurement.setResult(50.0 + (i % 5000) / 100.0);
+        return measurement;
+    }
+}
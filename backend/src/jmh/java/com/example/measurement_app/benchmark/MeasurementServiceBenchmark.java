@@ -0,0 +1,143 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementRepository;
+import com.example.measurement_app.repository.PatientMeasurementSummaryRepository;
+import com.example.measurement_app.service.MeasurementService;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+
+/**
+ * Latency of the single-measurement operations of {@link MeasurementService}.
+ *
+ * <p>{@code store=h2} runs the Spring-managed service with its transactions and caches
+ * against the benchmark database, embedded H2 unless {@code -Dbenchmark.datasource.url}
+ * says otherwise. The UUID cache is warmed after seeding, so {@code findByUuid} measures
+ * cache hits there and {@code findById} the database read. {@code
+ * store=in-memory} runs a plain instance on {@link InMemoryMeasurementStore}, so the gap
+ * between the two is what the database and the Spring advice add.
+ *
+ * <p>Each iteration starts from {@value #SEED} fresh measurements, which the reads and
+ * updates cycle through. A delete needs something to delete, so {@code saveAndDelete}
+ * measures both; subtract {@code save} to get the delete.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementServiceBenchmark {
+
+    private static final int SEED = 1000;
+
+    @Param({ "h2", "in-memory" })
+    private String store;
+
+    private ConfigurableApplicationContext context;
+    private ValidatorFactory validatorFactory;
+    private InMemoryMeasurementStore inMemoryStore;
+    private MeasurementService measurementService;
+
+    private final List<Measurement> seeded = new ArrayList<>(SEED);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void start() {
+        if ("h2".equals(store)) {
+            context = LoadTestApplication.start("--spring.main.web-application-type=none");
+            measurementService = context.getBean(MeasurementService.class);
+        } else {
+            validatorFactory = Validation.buildDefaultValidatorFactory();
+            inMemoryStore = new InMemoryMeasurementStore();
+            measurementService = inMemoryStore.service(validatorFactory.getValidator());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void seed() {
+        if (context != null) {
+            context.getBean(MeasurementRepository.class).deleteAllInBatch();
+            context.getBean(PatientMeasurementSummaryRepository.class).deleteAllInBatch();
+        } else {
+            inMemoryStore.clear();
+        }
+        seeded.clear();
+        for (int i = 0; i < SEED; i++) {
+            seeded.add(measurementService.saveMeasurement(newMeasurement(i)));
+        }
+        seeded.forEach(measurement -> measurementService.getMeasurementByUuid(measurement.getUuid()));
+        next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        } else {
+            validatorFactory.close();
+        }
+    }
+
+    @Benchmark
+    public Measurement save() {
+        return measurementService.saveMeasurement(newMeasurement(next++));
+    }
+
+    @Benchmark
+    public Optional<Measurement> findById() {
+        return measurementService.getMeasurementById(nextSeeded().getId());
+    }
+
+    @Benchmark
+    public Optional<Measurement> findByUuid() {
+        return measurementService.getMeasurementByUuid(nextSeeded().getUuid());
+    }
+
+    @Benchmark
+    public Measurement updateByUuid() {
+        Measurement target = nextSeeded();
+        Measurement update = new Measurement();
+        update.setPatientId(target.getPatientId());
+        update.setResult(50.0 + next % 50);
+        return measurementService.updateMeasurementByUuid(target.getUuid(), update);
+    }
+
+    @Benchmark
+    public void saveAndDelete() {
+        Measurement saved = measurementService.saveMeasurement(newMeasurement(next++));
+        measurementService.deleteMeasurementByUuid(saved.getUuid());
+    }
+
+    private Measurement nextSeeded() {
+        next = (next + 1) % SEED;
+        return seeded.get(next);
+    }
+
+    private static Measurement newMeasurement(int i) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(1L + i % 100);
+        measurement.setResult(50.0 + i % 50);
+        return measurement;
+    }
+}
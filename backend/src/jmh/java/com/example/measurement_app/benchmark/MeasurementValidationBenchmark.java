@@ -0,0 +1,87 @@
+package com.example.measurement_app.benchmark;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.measurement_app.dto.MeasurementUpdate;
+import com.example.measurement_app.model.Measurement;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+
+/**
+ * Bean validation cost per object of the {@code @NotNull}, {@code @Positive},
+ * {@code @DecimalMin} and {@code @DecimalMax} constraints. Invalid objects break every
+ * constraint they can, so their numbers include building the violation messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    private Measurement validMeasurement;
+    private Measurement invalidMeasurement;
+    private MeasurementUpdate validUpdate;
+    private MeasurementUpdate invalidUpdate;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        validMeasurement = new Measurement();
+        validMeasurement.setPatientId(42L);
+        validMeasurement.setResult(75.5);
+        invalidMeasurement = new Measurement();
+        invalidMeasurement.setPatientId(-1L);
+        invalidMeasurement.setResult(120.0);
+        validUpdate = new MeasurementUpdate(UUID.randomUUID(), 42L, 75.5);
+        invalidUpdate = new MeasurementUpdate(UUID.randomUUID(), -1L, 10.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Measurement>> validateValidMeasurement() {
+        return validator.validate(validMeasurement);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Measurement>> validateInvalidMeasurement() {
+        return validator.validate(invalidMeasurement);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MeasurementUpdate>> validateValidUpdate() {
+        return validator.validate(validUpdate);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MeasurementUpdate>> validateInvalidUpdate() {
+        return validator.validate(invalidUpdate);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.measurement_app.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.measurement_app.model.Measurement;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encode and decode time of the wire formats {@code MeasurementController} negotiates, for
+ * one {@code Measurement} and for a list of 1000, with the mapper settings the application
+ * uses for each. The encoded size of both is printed once per trial, as
+ * {@code bytes per measurement}, since JMH only reports time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementWireFormatBenchmark {
+
+    private static final int LIST_SIZE = 1000;
+
+    @Param({ "json", "cbor", "smile" })
+    private String format;
+
+    private ObjectWriter measurementWriter;
+    private ObjectReader measurementReader;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+    private Measurement measurement;
+    private List<Measurement> measurements;
+    private byte[] encodedMeasurement;
+    private byte[] encodedList;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json()
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory())
+                    .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+            case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory())
+                    .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+            default -> throw new IllegalArgumentException(format);
+        };
+        TypeReference<List<Measurement>> listType = new TypeReference<>() { };
+        measurementWriter = mapper.writerFor(Measurement.class);
+        measurementReader = mapper.readerFor(Measurement.class);
+        listWriter = mapper.writerFor(listType);
+        listReader = mapper.readerFor(listType);
+        measurement = newMeasurement(0);
+        measurements = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            measurements.add(newMeasurement(i));
+        }
+        encodedMeasurement = measurementWriter.writeValueAsBytes(measurement);
+        encodedList = listWriter.writeValueAsBytes(measurements);
+        System.out.printf("%n%s bytes per measurement: %d alone, %.1f in a list of %d%n", format,
+                encodedMeasurement.length, (double) encodedList.length / LIST_SIZE, LIST_SIZE);
+    }
+
+    @Benchmark
+    public byte[] encodeMeasurement() throws IOException {
+        return measurementWriter.writeValueAsBytes(measurement);
+    }
+
+    @Benchmark
+    public Measurement decodeMeasurement() throws IOException {
+        return measurementReader.readValue(encodedMeasurement);
+    }
+
+    @Benchmark
+    public byte[] encodeList() throws IOException {
+        return listWriter.writeValueAsBytes(measurements);
+    }
+
+    @Benchmark
+    public List<Measurement> decodeList() throws IOException {
+        return listReader.readValue(encodedList);
+    }
+
+    private static Measurement newMeasurement(int i) {
+        Measurement measurement = new Measurement();
+        measurement.setId(1L + i);
+        measurement.setPatientId(1L + i % 1000);
+        measurement.setResult(50.0 + (i % 5000) / 100.0);
+        return measurement;
+    }
+}
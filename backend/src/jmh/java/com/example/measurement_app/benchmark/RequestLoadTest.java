@@ -0,0 +1,190 @@
+package com.example.measurement_app.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * HTTP load test comparing request execution on Tomcat's platform worker pool with the
+ * {@code virtual-threads} profile. Not a JMH benchmark: JMH cannot drive a thousand
+ * concurrent clients against a server.
+ *
+ * <p>For each mode the application is started on a random port and seeded with
+ * measurements. Then {@code loadtest.clients} clients (default 1000), each on its own
+ * connection, loop over a read-heavy mix for {@code loadtest.warmup-seconds} (default
+ * 10) plus {@code loadtest.duration-seconds} (default 30). The mix is 90% patient pages
+ * and 10% inserts. Throughput and latency percentiles of the measured part are printed.
+ *
+ * <p>Clients and server share the JVM, so compare the modes with each other rather than
+ * with production numbers. On H2 a query never waits on the network, which is what
+ * virtual threads hide. Point {@code -Dbenchmark.datasource.url} at PostgreSQL for a
+ * meaningful comparison.
+ */
+public final class RequestLoadTest {
+
+    private static final int SEED_PATIENTS = 1000;
+    private static final int SEED_PER_PATIENT = 20;
+
+    private RequestLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("loadtest.clients", 1000);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmup-seconds", 10));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.duration-seconds", 30));
+        String[] modes = System.getProperty("loadtest.modes", "platform,virtual").split(",");
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            results.add(run(mode.trim(), clients, warmup, duration));
+        }
+
+        System.out.printf("%n%-10s %8s %10s %8s %10s %10s %10s%n",
+                "mode", "clients", "requests", "errors", "req/s", "p50 ms", "p99 ms");
+        for (Result result : results) {
+            System.out.printf("%-10s %8d %10d %8d %10.0f %10.1f %10.1f%n", result.mode(), clients,
+                    result.requests(), result.errors(), result.throughput(), result.p50Millis(), result.p99Millis());
+        }
+    }
+
+    private static Result run(String mode, int clients, Duration warmup, Duration duration) throws Exception {
+        String[] profileArgs = switch (mode) {
+            case "platform" -> new String[0];
+            case "virtual" -> new String[] { "--spring.profiles.active=virtual-threads" };
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected platform or virtual");
+        };
+        try (ConfigurableApplicationContext context = LoadTestApplication.start(profileArgs);
+                ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI base = URI.create("http://localhost:" + port);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            seed(client, base);
+
+            long measureFrom = System.nanoTime() + warmup.toNanos();
+            long measureTo = measureFrom + duration.toNanos();
+            List<Future<Recorder>> futures = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                futures.add(clientThreads.submit(() -> runClient(client, base, measureFrom, measureTo)));
+            }
+            Recorder total = new Recorder();
+            for (Future<Recorder> future : futures) {
+                total.addAll(future.get());
+            }
+            return total.toResult(mode, duration);
+        }
+    }
+
+    private static void seed(HttpClient client, URI base) throws IOException, InterruptedException {
+        for (long patientId = 1; patientId <= SEED_PATIENTS; patientId++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < SEED_PER_PATIENT; i++) {
+                body.append(i == 0 ? "" : ",").append(measurementJson(patientId));
+            }
+            HttpResponse<Void> response = client.send(post(base.resolve("/measurements/batch"), body.append(']').toString()),
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with status " + response.statusCode());
+            }
+        }
+    }
+
+    private static Recorder runClient(HttpClient client, URI base, long measureFrom, long measureTo) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Recorder recorder = new Recorder();
+        long started;
+        while ((started = System.nanoTime()) < measureTo) {
+            long patientId = random.nextLong(1, SEED_PATIENTS + 1);
+            HttpRequest request = random.nextInt(10) == 0
+                    ? post(base.resolve("/measurements"), measurementJson(patientId))
+                    : HttpRequest.newBuilder(base.resolve("/patients/" + patientId + "/measurements?limit=20")).GET().build();
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (IOException ex) {
+                ok = false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (started >= measureFrom) {
+                recorder.record(System.nanoTime() - started, ok);
+            }
+        }
+        return recorder;
+    }
+
+    private static HttpRequest post(URI uri, String json) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static String measurementJson(long patientId) {
+        return "{\"patientId\":" + patientId + ",\"result\":" + ThreadLocalRandom.current().nextInt(50, 101) + "}";
+    }
+
+    private record Result(String mode, long requests, long errors, double throughput, double p50Millis,
+            double p99Millis) {
+    }
+
+    // Latencies of successful requests in nanoseconds, in a growing primitive array
+    private static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void record(long latencyNanos, boolean ok) {
+            if (!ok) {
+                errors++;
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        void addAll(Recorder other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+
+        Result toResult(String mode, Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new Result(mode, count, errors, count / (double) duration.toSeconds(),
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99));
+        }
+
+        private static double percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.measurement_app.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.example.measurement_app.MeasurementApplication;
+
+/**
+ * Cold-start benchmark of {@link MeasurementApplication}: the time from launching a process
+ * until {@code GET /measurements/uuid/{uuid}} is first answered. The UUID is random, so the
+ * answer is a 404 after a lookup through the controller, the service and the database.
+ * Not a JMH benchmark: every sample is a new process.
+ *
+ * <p>Each mode in {@code startup.modes} (default {@code default,prod,prod+cds}) is started
+ * {@code startup.runs} times (default 5). A mode is a Spring profile, {@code default} for
+ * none, optionally followed by {@code +cds}, which first makes a class data sharing archive
+ * with a training run as the Dockerfile does, and {@code +aot}, which runs the AOT-generated
+ * bean definitions. Those only exist after building with {@code -Paot}, for the profiles in
+ * {@code aot.profiles}. Instead of either, {@code +native} starts the executable built with
+ * {@code -Pnative}, {@code startup.native-executable}, which has no H2 driver and so needs
+ * PostgreSQL. The median, fastest and slowest start and the resident memory at the first
+ * answer are printed and written as JSON to {@code startup.result}, next to which the
+ * archives and the output of the last run of each mode are kept.
+ *
+ * <p>The application runs from the benchmark's own classpath without the compiled tests
+ * and benchmarks, with its classes packed into a jar, against an in-memory H2 database
+ * created by {@code schema-h2.sql}, or the database given with
+ * {@code -Dbenchmark.datasource.url}.
+ */
+public final class StartupBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+
+    private final Path directory;
+    private final String classpath;
+    private final Duration timeout;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    private StartupBenchmark(Path directory, Duration timeout) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.classpath = applicationClasspath(directory);
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = System.getProperty("startup.modes", "default,prod,prod+cds").split(",");
+        int runs = Integer.getInteger("startup.runs", 5);
+        Duration timeout = Duration.ofSeconds(Integer.getInteger("startup.timeout-seconds", 120));
+        Path result = Path.of(System.getProperty("startup.result", "target/startup-result.json")).toAbsolutePath();
+
+        StartupBenchmark benchmark = new StartupBenchmark(result.getParent(), timeout);
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            results.add(benchmark.run(mode.trim(), runs));
+        }
+
+        System.out.printf("%n%-16s %6s %10s %10s %10s %8s%n",
+                "mode", "runs", "median ms", "min ms", "max ms", "RSS MB");
+        for (Result r : results) {
+            System.out.printf("%-16s %6d %10.0f %10.0f %10.0f %8.0f%n", r.mode(), r.runs(),
+                    r.medianMillis(), r.minMillis(), r.maxMillis(), r.rssMegabytes());
+        }
+        Files.writeString(result, results.stream().map(Result::toJson)
+                .collect(Collectors.joining(",\n  ", "[\n  ", "\n]\n")));
+    }
+
+    private Result run(String mode, int runs) throws Exception {
+        List<String> flags = List.of(mode.split("\\+"));
+        String profile = flags.get(0);
+        for (String flag : flags.subList(1, flags.size())) {
+            if (!List.of("aot", "cds", "native").contains(flag)) {
+                throw new IllegalArgumentException("Unknown option " + flag + " in " + mode
+                        + ", expected aot, cds or native");
+            }
+        }
+        List<String> launcher;
+        if (flags.contains("native")) {
+            if (flags.size() > 2) {
+                throw new IllegalArgumentException(mode + ": a native executable takes neither aot nor cds");
+            }
+            launcher = List.of(nativeExecutable().toString());
+        } else {
+            List<String> jvmArgs = new ArrayList<>();
+            if (flags.contains("aot")) {
+                jvmArgs.add("-Dspring.aot.enabled=true");
+            }
+            if (flags.contains("cds")) {
+                jvmArgs.add("-XX:SharedArchiveFile=" + train(mode, profile, jvmArgs));
+            }
+            launcher = jvm(jvmArgs);
+        }
+
+        double[] startMillis = new double[runs];
+        double rssMegabytes = Double.NaN;
+        for (int run = 0; run < runs; run++) {
+            int port = freePort();
+            URI uri = URI.create("http://localhost:" + port + "/measurements/uuid/" + UUID.randomUUID());
+            long launched = System.nanoTime();
+            Process process = launch(launcher, profile, port, log(mode, ""));
+            try {
+                awaitFirstAnswer(uri, process, launched + timeout.toNanos(), mode);
+                startMillis[run] = (System.nanoTime() - launched) / 1_000_000.0;
+                rssMegabytes = residentMegabytes(process);
+            } finally {
+                stop(process);
+            }
+        }
+        Arrays.sort(startMillis);
+        return new Result(mode, startMillis, rssMegabytes);
+    }
+
+    // Starts the context, closes it again and writes the classes it loaded to an archive
+    private Path train(String mode, String profile, List<String> jvmArgs) throws Exception {
+        Path archive = directory.resolve(fileName(mode) + ".jsa");
+        List<String> trainingArgs = new ArrayList<>(jvmArgs);
+        trainingArgs.add("-XX:ArchiveClassesAtExit=" + archive);
+        trainingArgs.add("-Dspring.context.exit=onRefresh");
+        Process process = launch(jvm(trainingArgs), profile, freePort(), log(mode, "-training"));
+        if (!process.waitFor(10, TimeUnit.MINUTES) || process.exitValue() != 0 || !Files.exists(archive)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("The training run of " + mode + " failed, see " + log(mode, "-training"));
+        }
+        return archive;
+    }
+
+    private List<String> jvm(List<String> jvmArgs) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-Xlog:cds=off");
+        command.add("-Dspring.devtools.restart.enabled=false");
+        command.add("-classpath");
+        command.add(classpath);
+        command.add(MeasurementApplication.class.getName());
+        return command;
+    }
+
+    private static Path nativeExecutable() {
+        Path executable = Path.of(System.getProperty("startup.native-executable", "target/measurement-app"));
+        if (!Files.isExecutable(executable)) {
+            throw new IllegalStateException("No native executable at " + executable.toAbsolutePath()
+                    + ", build it with -Pnative");
+        }
+        if (System.getProperty("benchmark.datasource.url", "jdbc:h2:").startsWith("jdbc:h2:")) {
+            throw new IllegalStateException("The native executable has no H2 driver, "
+                    + "set -Dbenchmark.datasource.url=jdbc:postgresql://...");
+        }
+        return executable;
+    }
+
+    private Process launch(List<String> launcher, String profile, int port, Path log) throws IOException {
+        List<String> command = new ArrayList<>(launcher);
+        command.add("--server.port=" + port);
+        if (!"default".equals(profile)) {
+            command.add("--spring.profiles.active=" + profile);
+        }
+        command.addAll(datasourceArgs());
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+    }
+
+    private void awaitFirstAnswer(URI uri, Process process, long deadline, String mode) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        while (true) {
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status == 200 || status == 404) {
+                    return;
+                }
+                throw new IllegalStateException(mode + " answered with status " + status + ", see " + log(mode, ""));
+            } catch (IOException ex) {
+                // Not listening yet
+            }
+            if (!process.isAlive()) {
+                throw new IllegalStateException(mode + " exited with " + process.exitValue() + " before answering, see "
+                        + log(mode, ""));
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(mode + " did not answer within " + timeout);
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    private Path log(String mode, String suffix) {
+        return directory.resolve(fileName(mode) + suffix + ".log");
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    // Without the compiled tests and benchmarks, whose Spring configurations the application
+    // would scan. The application classes are packed into a jar, as class data sharing
+    // refuses directories on the classpath and the image runs from jars anyway.
+    private static String applicationClasspath(Path directory) throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path path = Path.of(entry);
+            if (!Files.isDirectory(path)) {
+                entries.add(entry);
+            } else if (!path.endsWith("test-classes")) {
+                entries.add(pack(path, directory.resolve(path.getFileName() + ".jar")).toString());
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static Path pack(Path classes, Path jar) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+                Stream<Path> files = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                out.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static List<String> datasourceArgs() {
+        String url = System.getProperty("benchmark.datasource.url", "jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1");
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + System.getProperty("benchmark.datasource.username", "sa"),
+                "--spring.datasource.password=" + System.getProperty("benchmark.datasource.password", ""),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        if (url.startsWith("jdbc:h2:")) {
+            args.addAll(List.of(
+                    "--spring.datasource.driver-class-name=org.h2.Driver",
+                    "--spring.sql.init.platform=h2",
+                    // The prod profile names PostgreSQL to Hibernate
+                    "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                    "--spring.jpa.properties.jakarta.persistence.database-product-name=H2",
+                    "--spring.jpa.properties.jakarta.persistence.database-major-version=2",
+                    "--spring.jpa.properties.jakarta.persistence.database-minor-version=3"));
+        }
+        return args;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // Linux only; NaN elsewhere
+    private static double residentMegabytes(Process process) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(process.pid()), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            // Not available
+        }
+        return Double.NaN;
+    }
+
+    private static String fileName(String mode) {
+        return "startup-" + mode.replace('+', '-');
+    }
+
+    // Start times sorted ascending
+    private record Result(String mode, double[] startMillis, double rssMegabytes) {
+
+        int runs() {
+            return startMillis.length;
+        }
+
+        double minMillis() {
+            return startMillis[0];
+        }
+
+        double maxMillis() {
+            return startMillis[startMillis.length - 1];
+        }
+
+        double medianMillis() {
+            int middle = startMillis.length / 2;
+            return startMillis.length % 2 == 1
+                    ? startMillis[middle]
+                    : (startMillis[middle - 1] + startMillis[middle]) / 2;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"mode\": \"%s\", \"runs\": %d, \"medianMillis\": %.1f, "
+                    + "\"minMillis\": %.1f, \"maxMillis\": %.1f, \"rssMegabytes\": %s}",
+                    mode, runs(), medianMillis(), minMillis(), maxMillis(),
+                    Double.isNaN(rssMegabytes) ? "null" : String.format(Locale.ROOT, "%.1f", rssMegabytes));
+        }
+    }
+}
@@ -2,20 +2,34 @@ package com.example.measurement_app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import com.example.measurement_app.config.MeasurementRuntimeHints;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
 
 @SpringBootApplication
+@ImportRuntimeHints(MeasurementRuntimeHints.class)
 public class MeasurementApplication {
 
     public static void main(String[] args) {
-        Dotenv dotenv = Dotenv.configure().directory("/app").filename(".env").load();
+        // Missing during the AOT processing and the CDS training run of the image build,
+        // which take the datasource from the environment instead
+        Dotenv dotenv = Dotenv.configure().directory("/app").filename(".env").ignoreIfMissing().load();
 
-        System.setProperty("SPRING_DATASOURCE_URL", dotenv.get("SPRING_DATASOURCE_URL"));
-        System.setProperty("SPRING_DATASOURCE_USERNAME", dotenv.get("SPRING_DATASOURCE_USERNAME"));
-        System.setProperty("SPRING_DATASOURCE_PASSWORD", dotenv.get("SPRING_DATASOURCE_PASSWORD"));
+        setIfPresent(dotenv, "SPRING_DATASOURCE_URL");
+        setIfPresent(dotenv, "SPRING_DATASOURCE_USERNAME");
+        setIfPresent(dotenv, "SPRING_DATASOURCE_PASSWORD");
+        // Only needed by the reactive profile
+        setIfPresent(dotenv, "SPRING_R2DBC_URL");
 
         SpringApplication.run(MeasurementApplication.class, args);
     }
-}
\ No newline at end of file
+
+    private static void setIfPresent(Dotenv dotenv, String key) {
+        if (dotenv.get(key) != null) {
+            System.setProperty(key, dotenv.get(key));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.measurement_app.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Enables the Caffeine caches configured under {@code spring.cache.*}.
+ *
+ * <p>The caching advice is ordered outside the transaction advice so that evictions on
+ * update and delete happen after the commit, not before it. Otherwise a concurrent read
+ * could put the old row back into the cache.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    public static final String MEASUREMENTS_BY_UUID = "measurementsByUuid";
+}
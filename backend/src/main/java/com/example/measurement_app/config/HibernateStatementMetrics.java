@@ -0,0 +1,79 @@
+package com.example.measurement_app.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Records how many SQL statements Hibernate prepared for each request as the
+ * {@code hibernate.statements.per.request} summary, tagged like
+ * {@code http.server.requests}. Statements run through {@code JdbcTemplate} bypass
+ * Hibernate and are not counted.
+ *
+ * <p>Counting is an increment on a holder bound to the request thread, so it is cheap
+ * enough to stay on. The holder lives in a request attribute, which keeps the count
+ * intact when an async request finishes on another thread.
+ */
+public class HibernateStatementMetrics implements StatementInspector, AsyncHandlerInterceptor {
+
+    private static final String COUNT_ATTRIBUTE = HibernateStatementMetrics.class.getName() + ".count";
+
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    private final Meter.MeterProvider<DistributionSummary> statementsPerRequest;
+
+    public HibernateStatementMetrics(MeterRegistry meterRegistry) {
+        this.statementsPerRequest = DistributionSummary.builder("hibernate.statements.per.request")
+                .description("SQL statements prepared by Hibernate while handling a request")
+                .baseUnit("statements")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1000.0)
+                .withRegistry(meterRegistry);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = CURRENT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        int[] count = (int[]) request.getAttribute(COUNT_ATTRIBUTE);
+        if (count == null) {
+            count = new int[1];
+            request.setAttribute(COUNT_ATTRIBUTE, count);
+        }
+        CURRENT.set(count);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        CURRENT.remove();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        CURRENT.remove();
+        int[] count = (int[]) request.getAttribute(COUNT_ATTRIBUTE);
+        if (count == null) {
+            return;
+        }
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        statementsPerRequest.withTags(
+                "method", request.getMethod(),
+                "uri", uri != null ? uri.toString() : "UNKNOWN")
+                .record(count[0]);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.measurement_app.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.measurement_app.controller.MeasurementController;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Beans created at startup even with {@code spring.main.lazy-initialization=true}, which the
+ * prod profile sets. Everything else, such as imports, exports and event streams, is created
+ * on first use. The measurement endpoints and the entity manager factory behind them stay
+ * eager so that the first request after startup does not pay for booting Hibernate.
+ */
+@Configuration(proxyBeanMethods = false)
+public class LazyInitializationConfig {
+
+    // Static: the filter is needed while bean definitions are processed, before this class exists
+    @Bean
+    static LazyInitializationExcludeFilter eagerMeasurementEndpoints() {
+        return LazyInitializationExcludeFilter.forBeanTypes(MeasurementController.class, EntityManagerFactory.class);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.measurement_app.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementUpdate;
+import com.example.measurement_app.model.Measurement;
+
+/**
+ * Reflection and resources the native image needs beyond what Spring AOT finds by itself. AOT covers the
+ * beans, the JPA entities and the JSON bodies in controller method signatures. The
+ * libraries' metadata comes from the GraalVM reachability metadata repository, which the
+ * {@code native} profile in {@code pom.xml} enables. That leaves three gaps:
+ * <ul>
+ * <li>JSON written outside those signatures: {@code MeasurementArrayWriter} streams
+ * measurement arrays, and {@code MeasurementEventBroadcaster} writes events as
+ * server-sent events.</li>
+ * <li>Constraints that services check with a {@code Validator} directly, for batch rows,
+ * imports and updates.</li>
+ * <li>{@code META-INF/validation.xml}, which Hibernate Validator reads when it starts.</li>
+ * </ul>
+ */
+public class MeasurementRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                Measurement.class, MeasurementEvent.class);
+        for (Class<?> validated : new Class<?>[] { Measurement.class, MeasurementUpdate.class }) {
+            hints.reflection().registerType(validated, MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+        hints.resources().registerPattern("META-INF/validation.xml");
+    }
+}
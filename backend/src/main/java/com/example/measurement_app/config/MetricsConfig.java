@@ -0,0 +1,46 @@
+package com.example.measurement_app.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Metrics of the servlet stack that Spring Boot does not record on its own. Endpoint,
+ * repository and Hikari timings come from the auto-configured instrumentation; their
+ * histograms are enabled in {@code application.properties}.
+ */
+@Configuration
+@Profile("!reactive")
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final HibernateStatementMetrics hibernateStatementMetrics;
+
+    public MetricsConfig(MeterRegistry meterRegistry) {
+        this.hibernateStatementMetrics = new HibernateStatementMetrics(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCountingCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, hibernateStatementMetrics);
+    }
+
+    // Replaces the converter Spring Boot would otherwise register
+    @Bean
+    public TimedJacksonHttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(hibernateStatementMetrics);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.measurement_app.config;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The JSON converter of the servlet stack, timing each request body read and response
+ * body write as {@code http.json}, tagged with the operation and the Java type. Writes
+ * go to the response buffer, so large bodies also include time spent flushing it to the
+ * client. The streamed {@code GET /measurements} writes with its own generator and is
+ * only covered by {@code http.server.requests}.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final Meter.MeterProvider<Timer> timer;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timer = Timer.builder("http.json")
+                .description("Time to read a JSON request body or write a JSON response body")
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        long start = System.nanoTime();
+        try {
+            return super.read(type, contextClass, inputMessage);
+        } finally {
+            record("read", type, start);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        long start = System.nanoTime();
+        try {
+            return super.readInternal(clazz, inputMessage);
+        } finally {
+            record("read", clazz, start);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        long start = System.nanoTime();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            record("write", object.getClass(), start);
+        }
+    }
+
+    private void record(String operation, Type type, long start) {
+        // The raw type keeps the tag short and its values few
+        Class<?> rawType = ResolvableType.forType(type).resolve(Object.class);
+        timer.withTags("operation", operation, "type", rawType.getSimpleName())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.measurement_app.controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.measurement_app.model.Measurement;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streams measurements as an array in the format the client accepts, with the same mappers
+ * as the message converters. The endpoints using it declare {@link #PRODUCIBLE} as what
+ * they produce, so an Accept header without any of them never gets here.
+ */
+@Component
+@Profile("!reactive")
+class MeasurementArrayWriter {
+
+    static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    // JSON first, so wildcards get JSON
+    static final String[] PRODUCIBLE = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            APPLICATION_SMILE_VALUE };
+
+    private final Map<MediaType, ObjectMapper> mappers = new LinkedHashMap<>();
+
+    MeasurementArrayWriter(ObjectMapper objectMapper, MappingJackson2CborHttpMessageConverter cborConverter,
+            MappingJackson2SmileHttpMessageConverter smileConverter) {
+        mappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        mappers.put(MediaType.APPLICATION_CBOR, cborConverter.getObjectMapper());
+        mappers.put(MediaType.valueOf(APPLICATION_SMILE_VALUE), smileConverter.getObjectMapper());
+    }
+
+    ResponseEntity<StreamingResponseBody> write(List<MediaType> accept, Consumer<Consumer<Measurement>> source) {
+        Map.Entry<MediaType, ObjectMapper> format = negotiate(accept);
+        ObjectMapper mapper = format.getValue();
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                source.accept(measurement -> {
+                    try {
+                        generator.writeObject(measurement);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(format.getKey()).body(body);
+    }
+
+    private Map.Entry<MediaType, ObjectMapper> negotiate(List<MediaType> accept) {
+        List<MediaType> byQuality = new ArrayList<>(accept);
+        byQuality.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType accepted : byQuality) {
+            for (Map.Entry<MediaType, ObjectMapper> format : mappers.entrySet()) {
+                if (accepted.includes(format.getKey())) {
+                    return format;
+                }
+            }
+        }
+        return mappers.entrySet().iterator().next();
+    }
+}
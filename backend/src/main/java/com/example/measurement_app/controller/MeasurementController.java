@@ -1,11 +1,15 @@
 package com.example.measurement_app.controller;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -16,46 +20,96 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.measurement_app.dto.BatchResult;
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.dto.MeasurementUpdate;
+import com.example.measurement_app.dto.SummaryRebuildResult;
 import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementIngestQueue;
 import com.example.measurement_app.service.MeasurementService;
+import com.example.measurement_app.service.PatientSummaryService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/measurements")
 @Validated
 @CrossOrigin(origins = "*")
 public class MeasurementController {
 
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10000;
+
     private final MeasurementService measurementService;
+    private final PatientSummaryService patientSummaryService;
+    private final MeasurementArrayWriter arrayWriter;
+    // Present with measurement.ingest.mode=async
+    private final Optional<MeasurementIngestQueue> ingestQueue;
 
-    public MeasurementController(MeasurementService measurementService) {
+    public MeasurementController(MeasurementService measurementService, PatientSummaryService patientSummaryService,
+            MeasurementArrayWriter arrayWriter, Optional<MeasurementIngestQueue> ingestQueue) {
         this.measurementService = measurementService;
+        this.patientSummaryService = patientSummaryService;
+        this.arrayWriter = arrayWriter;
+        this.ingestQueue = ingestQueue;
     }
 
-    @Operation(summary = "Save a new measurement", description = "Creates a new measurement and saves it to the database.")
+    @Operation(summary = "Save a new measurement",
+            description = "Creates a new measurement and saves it to the database. With asynchronous ingest the measurement is queued and written with others in a single commit; it can be read by UUID right away.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Measurement saved successfully",
                 content = @Content(mediaType = "application/json", schema = @Schema(implementation = Measurement.class))),
+        @ApiResponse(responseCode = "202", description = "Measurement accepted for asynchronous ingest, its ID is not assigned yet",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = Measurement.class))),
         @ApiResponse(responseCode = "400", description = "Invalid input data",
+                content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "429", description = "Ingest queue is full, retry later",
                 content = @Content(mediaType = "application/json"))
     })
     @PostMapping
     public ResponseEntity<Measurement> saveMeasurement(
             @Valid @RequestBody @Parameter(description = "Measurement object to be saved") Measurement measurement) {
+        if (ingestQueue.isPresent()) {
+            return ingestQueue.get().offer(measurement)
+                    ? ResponseEntity.accepted().body(measurement)
+                    : ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
         Measurement savedMeasurement = measurementService.saveMeasurement(measurement);
         return ResponseEntity.ok(savedMeasurement);
     }
 
+    @Operation(summary = "Save a batch of measurements",
+            description = "Validates each measurement separately and saves the valid ones with batched inserts. Invalid items are reported per item and do not fail the batch.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed, see the per-item status",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchResult.class))),
+        @ApiResponse(responseCode = "400", description = "Batch is larger than " + MAX_BATCH_SIZE + " items",
+                content = @Content(mediaType = "application/json"))
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResult> saveMeasurements(
+            @RequestBody @Size(max = MAX_BATCH_SIZE) @Parameter(description = "Measurements to be saved") List<Measurement> measurements) {
+        return ResponseEntity.ok(measurementService.saveMeasurements(measurements));
+    }
+
     @Operation(summary = "Get a measurement by ID", description = "Retrieves a measurement by its unique ID.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Measurement retrieved successfully",
@@ -80,19 +134,83 @@ public class MeasurementController {
     @GetMapping("/uuid/{uuid}")
     public ResponseEntity<Measurement> getMeasurementByUuid(
             @PathVariable @Parameter(description = "UUID of the measurement to retrieve") UUID uuid) {
-        Optional<Measurement> measurement = measurementService.getMeasurementByUuid(uuid);
+        // Queued measurements first: the writer removes them only once they are committed
+        Optional<Measurement> measurement = ingestQueue.flatMap(queue -> queue.findPending(uuid))
+                .or(() -> measurementService.getMeasurementByUuid(uuid));
         return measurement.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
-    @Operation(summary = "Get all measurements", description = "Retrieves all measurements from the database.")
+    @Operation(summary = "Get all measurements",
+            description = "Streams all measurements as a JSON array, reading them from a database cursor. "
+                    + "Send `Accept: application/cbor` or `application/x-jackson-smile` for a binary array.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Measurements retrieved successfully",
-                content = @Content(mediaType = "application/json", schema = @Schema(implementation = Measurement.class)))
+                content = @Content(mediaType = "application/json",
+                        array = @ArraySchema(schema = @Schema(implementation = Measurement.class))))
+    })
+    @GetMapping(params = { "!from", "!to" }, produces = { MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, MeasurementArrayWriter.APPLICATION_SMILE_VALUE })
+    public ResponseEntity<StreamingResponseBody> getAllMeasurements(
+            @RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) List<MediaType> accept) {
+        return arrayWriter.write(accept, measurementService::streamAllMeasurements);
+    }
+
+    @Operation(summary = "Get measurements taken in a time range",
+            description = "Streams the measurements taken from `from` (inclusive) to `to` (exclusive) as a JSON array in time order. "
+                    + "Without `to` the range is open-ended. On PostgreSQL only the partitions overlapping the range are read. "
+                    + "Send `Accept: application/cbor` or `application/x-jackson-smile` for a binary array.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Measurements retrieved successfully",
+                content = @Content(mediaType = "application/json",
+                        array = @ArraySchema(schema = @Schema(implementation = Measurement.class)))),
+        @ApiResponse(responseCode = "400", description = "Invalid timestamp",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping(params = "from", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            MeasurementArrayWriter.APPLICATION_SMILE_VALUE })
+    public ResponseEntity<StreamingResponseBody> getMeasurementsBetween(
+            @RequestParam @Parameter(description = "Start of the range, ISO-8601, inclusive", example = "2024-05-01T00:00:00Z") Instant from,
+            @RequestParam(required = false) @Parameter(description = "End of the range, ISO-8601, exclusive", example = "2024-05-02T00:00:00Z") Instant to,
+            @RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) List<MediaType> accept) {
+        return arrayWriter.write(accept,
+                consumer -> measurementService.streamMeasurementsBetween(from, to, consumer));
+    }
+
+    @Operation(summary = "Get a page of measurements",
+            description = "Retrieves measurements in id order using keyset pagination. Pass the returned nextCursor as `after` to fetch the next page.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Page retrieved successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementPage.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid page size",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping(params = { "limit", "!from", "!to" })
+    public ResponseEntity<MeasurementPage> getMeasurementPage(
+            @RequestParam(required = false) @Parameter(description = "Cursor returned by the previous page") Long after,
+            @RequestParam @Min(1) @Max(MAX_PAGE_SIZE) @Parameter(description = "Maximum number of measurements to return") int limit) {
+        return ResponseEntity.ok(measurementService.getMeasurementPage(after, limit));
+    }
+
+    @Operation(summary = "Get measurement statistics",
+            description = "Returns count, min, max, mean, standard deviation and p50/p95/p99 of all results, computed in the database.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Statistics computed successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementStats.class)))
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<MeasurementStats> getStatistics() {
+        return ResponseEntity.ok(measurementService.getStatistics());
+    }
+
+    @Operation(summary = "Rebuild the per-patient summaries",
+            description = "Recomputes every patient's summary from the measurements table in parallel chunks.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Summaries rebuilt successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = SummaryRebuildResult.class)))
     })
-    @GetMapping
-    public ResponseEntity<List<Measurement>> getAllMeasurements() {
-        List<Measurement> measurements = measurementService.getAllMeasurements();
-        return ResponseEntity.ok(measurements);
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<SummaryRebuildResult> rebuildSummaries() {
+        return ResponseEntity.ok(patientSummaryService.rebuildAll());
     }
 
     @Operation(summary = "Delete a measurement by UUID", description = "Deletes a measurement by its unique UUID.")
@@ -103,8 +221,40 @@ public class MeasurementController {
     @DeleteMapping("/uuid/{uuid}")
     public ResponseEntity<Void> deleteMeasurementByUuid(
             @PathVariable @Parameter(description = "UUID of the measurement to delete") UUID uuid) {
-        measurementService.deleteMeasurementByUuid(uuid);
-        return ResponseEntity.noContent().build();
+        try {
+            measurementService.deleteMeasurementByUuid(uuid);
+            return ResponseEntity.noContent().build();
+        } catch (EntityNotFoundException ex) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(summary = "Delete a batch of measurements by UUID",
+            description = "Deletes the measurements with the given UUIDs in a single statement. UUIDs that do not exist are reported per item.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed, see the per-item status",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchResult.class))),
+        @ApiResponse(responseCode = "400", description = "Batch is larger than " + MAX_BATCH_SIZE + " items",
+                content = @Content(mediaType = "application/json"))
+    })
+    @PostMapping("/batch/delete")
+    public ResponseEntity<BatchResult> deleteMeasurementsByUuid(
+            @RequestBody @Size(max = MAX_BATCH_SIZE) @Parameter(description = "UUIDs of the measurements to delete") List<UUID> uuids) {
+        return ResponseEntity.ok(measurementService.deleteMeasurementsByUuid(uuids));
+    }
+
+    @Operation(summary = "Update a batch of measurements by UUID",
+            description = "Validates each update separately and applies the valid ones in a single statement. Invalid items and UUIDs that do not exist are reported per item.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed, see the per-item status",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchResult.class))),
+        @ApiResponse(responseCode = "400", description = "Batch is larger than " + MAX_BATCH_SIZE + " items",
+                content = @Content(mediaType = "application/json"))
+    })
+    @PutMapping("/batch")
+    public ResponseEntity<BatchResult> updateMeasurements(
+            @RequestBody @Size(max = MAX_BATCH_SIZE) @Parameter(description = "New values by UUID") List<MeasurementUpdate> updates) {
+        return ResponseEntity.ok(measurementService.updateMeasurements(updates));
     }
 
     @Operation(summary = "Update a measurement by UUID", description = "Updates an existing measurement by its unique UUID.")
@@ -128,5 +278,4 @@ public class MeasurementController {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
         }
     }
-
 }
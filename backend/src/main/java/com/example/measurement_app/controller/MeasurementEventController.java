@@ -0,0 +1,53 @@
+package com.example.measurement_app.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.service.MeasurementEventBroadcaster;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.constraints.Positive;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/measurements")
+@Validated
+@CrossOrigin(origins = "*")
+public class MeasurementEventController {
+
+    private final MeasurementEventBroadcaster eventBroadcaster;
+
+    public MeasurementEventController(MeasurementEventBroadcaster eventBroadcaster) {
+        this.eventBroadcaster = eventBroadcaster;
+    }
+
+    @Operation(summary = "Stream measurement changes",
+            description = "Server-sent events with one MeasurementEvent per created, updated or deleted measurement, sent once "
+                    + "the change is committed. With `patientId` only that patient's changes are sent. A client that falls "
+                    + "behind loses its oldest unsent events and receives a `dropped` event with their number; it should "
+                    + "reload what it shows.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream opened",
+                content = @Content(mediaType = "text/event-stream", schema = @Schema(implementation = MeasurementEvent.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid patient ID",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMeasurementEvents(
+            @RequestParam(required = false) @Positive @Parameter(description = "Only send changes to this patient's measurements") Long patientId) {
+        return eventBroadcaster.subscribe(patientId);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.measurement_app.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.measurement_app.service.MeasurementExportService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.constraints.Positive;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/measurements")
+@Validated
+@CrossOrigin(origins = "*")
+public class MeasurementExportController {
+
+    private final MeasurementExportService exportService;
+
+    public MeasurementExportController(MeasurementExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @Operation(summary = "Export measurements",
+            description = "Streams every measurement, or every one of a patient, in no particular order. `csv` has a header "
+                    + "row and times like `2024-05-01T08:30:00.000000Z`; `arrow` is an Arrow IPC stream with the columns id, "
+                    + "patient_id, result, uuid (fixed-size binary) and measured_at (UTC microseconds).")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Export started",
+                content = {
+                    @Content(mediaType = "text/csv"),
+                    @Content(mediaType = MeasurementExportService.ARROW_MEDIA_TYPE)
+                }),
+        @ApiResponse(responseCode = "400", description = "Unknown format or invalid patient ID",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMeasurements(
+            @RequestParam(defaultValue = "csv") @Parameter(description = "`csv` or `arrow`") String format,
+            @RequestParam(required = false) @Positive @Parameter(description = "Only export this patient's measurements") Long patientId) {
+        return switch (format) {
+            case "csv" -> attachment("measurements.csv", new MediaType("text", "csv"),
+                    out -> exportService.exportCsv(patientId, out));
+            case "arrow" -> attachment("measurements.arrows", MediaType.parseMediaType(MeasurementExportService.ARROW_MEDIA_TYPE),
+                    out -> exportService.exportArrow(patientId, out));
+            default -> ResponseEntity.badRequest().build();
+        };
+    }
+
+    private static ResponseEntity<StreamingResponseBody> attachment(String filename, MediaType contentType,
+            StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.measurement_app.controller;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.ReactiveMeasurementService;
+
+import jakarta.validation.Validator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handler functions behind {@link MeasurementRouter}. Status codes and error bodies follow
+ * {@link MeasurementController} and the {@code GlobalExceptionHandler}, so clients cannot
+ * tell which stack answered.
+ */
+@Component
+@Profile("reactive")
+public class MeasurementHandler {
+
+    private final ReactiveMeasurementService measurementService;
+    private final Validator validator;
+
+    public MeasurementHandler(ReactiveMeasurementService measurementService, Validator validator) {
+        this.measurementService = measurementService;
+        this.validator = validator;
+    }
+
+    public Mono<ServerResponse> saveMeasurement(ServerRequest request) {
+        return request.bodyToMono(Measurement.class)
+                .flatMap(measurement -> {
+                    Map<String, String> errors = validate(measurement);
+                    if (!errors.isEmpty()) {
+                        return ServerResponse.badRequest().bodyValue(errors);
+                    }
+                    return measurementService.saveMeasurement(measurement)
+                            .flatMap(saved -> ServerResponse.ok().bodyValue(saved));
+                })
+                .switchIfEmpty(ServerResponse.badRequest().bodyValue(Map.of("measurement", "Measurement is required.")));
+    }
+
+    public Mono<ServerResponse> getMeasurementById(ServerRequest request) {
+        long id;
+        try {
+            id = Long.parseLong(request.pathVariable("id"));
+        } catch (NumberFormatException ex) {
+            return invalidArgument("id", ex);
+        }
+        return measurementService.getMeasurementById(id)
+                .flatMap(measurement -> ServerResponse.ok().bodyValue(measurement))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    public Mono<ServerResponse> getMeasurementByUuid(ServerRequest request) {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(request.pathVariable("uuid"));
+        } catch (IllegalArgumentException ex) {
+            return invalidArgument("uuid", ex);
+        }
+        return measurementService.getMeasurementByUuid(uuid)
+                .flatMap(measurement -> ServerResponse.ok().bodyValue(measurement))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * Streams every measurement from a database cursor: as a JSON array by default, one
+     * document per line for {@code application/x-ndjson}, or as server-sent events for
+     * {@code text/event-stream}. Rows are only read as fast as the client consumes them.
+     */
+    public Mono<ServerResponse> getAllMeasurements(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(streamingContentType(request))
+                .body(measurementService.streamAllMeasurements(), Measurement.class);
+    }
+
+    public Mono<ServerResponse> getMeasurementsBetween(ServerRequest request) {
+        Optional<String> fromParam = request.queryParam("from");
+        if (fromParam.isEmpty()) {
+            return ServerResponse.badRequest().bodyValue(Map.of("from", "Required parameter 'from' is not present."));
+        }
+        Instant from;
+        Instant to;
+        try {
+            from = Instant.parse(fromParam.get());
+        } catch (DateTimeParseException ex) {
+            return invalidArgument("from", ex);
+        }
+        try {
+            to = request.queryParam("to").map(Instant::parse).orElse(null);
+        } catch (DateTimeParseException ex) {
+            return invalidArgument("to", ex);
+        }
+        return ServerResponse.ok()
+                .contentType(streamingContentType(request))
+                .body(measurementService.streamMeasurementsBetween(from, to), Measurement.class);
+    }
+
+    public Mono<ServerResponse> getMeasurementPage(ServerRequest request) {
+        Long after;
+        int limit;
+        try {
+            after = request.queryParam("after").map(Long::valueOf).orElse(null);
+        } catch (NumberFormatException ex) {
+            return invalidArgument("after", ex);
+        }
+        try {
+            limit = Integer.parseInt(request.queryParam("limit").orElseThrow());
+        } catch (NumberFormatException ex) {
+            return invalidArgument("limit", ex);
+        }
+        if (limit < 1) {
+            return ServerResponse.badRequest().bodyValue(Map.of("limit", "must be greater than or equal to 1"));
+        }
+        if (limit > MeasurementController.MAX_PAGE_SIZE) {
+            return ServerResponse.badRequest().bodyValue(
+                    Map.of("limit", "must be less than or equal to " + MeasurementController.MAX_PAGE_SIZE));
+        }
+        return measurementService.getMeasurementPage(after, limit)
+                .flatMap(page -> ServerResponse.ok().bodyValue(page));
+    }
+
+    public Mono<ServerResponse> getStatistics(ServerRequest request) {
+        return measurementService.getStatistics()
+                .flatMap(stats -> ServerResponse.ok().bodyValue(stats));
+    }
+
+    public Mono<ServerResponse> deleteMeasurementByUuid(ServerRequest request) {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(request.pathVariable("uuid"));
+        } catch (IllegalArgumentException ex) {
+            return invalidArgument("uuid", ex);
+        }
+        return measurementService.deleteMeasurementByUuid(uuid)
+                .flatMap(deleted -> ServerResponse.noContent().build())
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    public Mono<ServerResponse> updateMeasurementByUuid(ServerRequest request) {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(request.pathVariable("uuid"));
+        } catch (IllegalArgumentException ex) {
+            return invalidArgument("uuid", ex);
+        }
+        return request.bodyToMono(Measurement.class)
+                .flatMap(updatedMeasurement -> {
+                    Map<String, String> errors = validate(updatedMeasurement);
+                    if (!errors.isEmpty()) {
+                        return ServerResponse.badRequest().bodyValue(errors);
+                    }
+                    return measurementService.updateMeasurementByUuid(uuid, updatedMeasurement)
+                            .flatMap(saved -> ServerResponse.ok().bodyValue(saved))
+                            .switchIfEmpty(ServerResponse.notFound().build())
+                            .onErrorResume(DataIntegrityViolationException.class,
+                                    ex -> ServerResponse.status(HttpStatus.CONFLICT).build());
+                })
+                .switchIfEmpty(ServerResponse.badRequest().bodyValue(Map.of("measurement", "Measurement is required.")));
+    }
+
+    private Map<String, String> validate(Measurement measurement) {
+        Map<String, String> errors = new HashMap<>();
+        validator.validate(measurement).forEach(violation ->
+                errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return errors;
+    }
+
+    // JSON array unless the client asks for NDJSON or server-sent events
+    private static MediaType streamingContentType(ServerRequest request) {
+        for (MediaType accepted : request.headers().accept()) {
+            if (MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(accepted)) {
+                return MediaType.APPLICATION_NDJSON;
+            }
+            if (MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(accepted)) {
+                return MediaType.TEXT_EVENT_STREAM;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private static Mono<ServerResponse> invalidArgument(String parameter, Exception ex) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("error", "Invalid argument type");
+        errorDetails.put("message", Optional.ofNullable(ex.getMessage()).orElse(ex.getClass().getSimpleName()));
+        errorDetails.put("parameter", parameter);
+        return ServerResponse.badRequest().bodyValue(errorDetails);
+    }
+}
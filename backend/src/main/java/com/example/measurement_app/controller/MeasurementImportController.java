@@ -0,0 +1,124 @@
+package com.example.measurement_app.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.measurement_app.dto.MeasurementImport;
+import com.example.measurement_app.service.MeasurementImportService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.constraints.PositiveOrZero;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/measurements/imports")
+@Validated
+@CrossOrigin(origins = "*")
+public class MeasurementImportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final MeasurementImportService importService;
+
+    public MeasurementImportController(MeasurementImportService importService) {
+        this.importService = importService;
+    }
+
+    @Operation(summary = "Import a file of measurements",
+            description = "The request body is the file, CSV with a header row naming at least patient_id and result, or "
+                    + "NDJSON with one measurement object per line. It is stored and imported in the background in chunks "
+                    + "loaded with COPY; poll the returned import for progress. Rows that break the measurement constraints "
+                    + "are listed by GET /measurements/imports/{id}/rejected.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Import queued",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementImport.class))),
+        @ApiResponse(responseCode = "400", description = "Unknown format or invalid line count",
+                content = @Content(mediaType = "application/json"))
+    })
+    @PostMapping
+    public ResponseEntity<MeasurementImport> startImport(
+            @RequestParam(defaultValue = "csv") @Parameter(description = "`csv` or `ndjson`") String format,
+            @RequestParam(defaultValue = "0") @PositiveOrZero @Parameter(description = "Lines at the start of the file to skip, "
+                    + "e.g. the linesProcessed of an earlier import of it") long skipLines,
+            InputStream body) throws IOException {
+        MeasurementImportService.Format importFormat;
+        try {
+            importFormat = MeasurementImportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        MeasurementImport started = importService.start(importFormat, body, skipLines);
+        return ResponseEntity.accepted().location(URI.create("/measurements/imports/" + started.id())).body(started);
+    }
+
+    @Operation(summary = "Get the progress of an import")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import found",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementImport.class))),
+        @ApiResponse(responseCode = "404", description = "Import not found")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<MeasurementImport> getImport(@PathVariable UUID id) {
+        return importService.find(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Download the rejected rows of an import",
+            description = "NDJSON with the line number, the reason and the input of every rejected row.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Rejected rows", content = @Content(mediaType = "application/x-ndjson")),
+        @ApiResponse(responseCode = "404", description = "Import not found")
+    })
+    @GetMapping("/{id}/rejected")
+    public ResponseEntity<Resource> getRejectedRows(@PathVariable UUID id) {
+        return importService.findRejected(id)
+                .<ResponseEntity<Resource>>map(file -> ResponseEntity.ok().contentType(NDJSON).body(new FileSystemResource(file)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Resume an import",
+            description = "Imports the rest of a failed or stopped import, after the lines it committed or after `fromLine`. "
+                    + "Imports from before a restart can be resumed by ID as long as their file is kept. Rows that were "
+                    + "imported already are skipped as duplicates.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Import queued",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementImport.class))),
+        @ApiResponse(responseCode = "404", description = "Import not found"),
+        @ApiResponse(responseCode = "409", description = "Import is queued or running")
+    })
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<MeasurementImport> resumeImport(@PathVariable UUID id,
+            @RequestParam(required = false) @PositiveOrZero @Parameter(description = "Resume after this line") Long fromLine) {
+        try {
+            return importService.resume(id, fromLine)
+                    .map(resumed -> ResponseEntity.status(HttpStatus.ACCEPTED).body(resumed))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+}
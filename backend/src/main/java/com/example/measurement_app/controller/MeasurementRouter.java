@@ -0,0 +1,36 @@
+package com.example.measurement_app.controller;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * The {@code /measurements} API on the reactive stack, mapped like
+ * {@link MeasurementController}. The batch endpoints and the summary rebuild are only
+ * served by the servlet stack.
+ */
+@Configuration
+@Profile("reactive")
+public class MeasurementRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> measurementRoutes(MeasurementHandler handler) {
+        return RouterFunctions.route()
+                .POST("/measurements", handler::saveMeasurement)
+                .GET("/measurements", queryParam("from", from -> true).or(queryParam("to", to -> true)),
+                        handler::getMeasurementsBetween)
+                .GET("/measurements", queryParam("limit", limit -> true), handler::getMeasurementPage)
+                .GET("/measurements", handler::getAllMeasurements)
+                .GET("/measurements/stats", handler::getStatistics)
+                .GET("/measurements/uuid/{uuid}", handler::getMeasurementByUuid)
+                .PUT("/measurements/uuid/{uuid}", handler::updateMeasurementByUuid)
+                .DELETE("/measurements/uuid/{uuid}", handler::deleteMeasurementByUuid)
+                .GET("/measurements/{id}", handler::getMeasurementById)
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.measurement_app.controller;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementSeries;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/patients/{patientId}/measurements")
+@Validated
+@CrossOrigin(origins = "*")
+public class PatientMeasurementController {
+
+    static final int MAX_SERIES_POINTS = 10000;
+
+    private final MeasurementService measurementService;
+    private final MeasurementArrayWriter arrayWriter;
+
+    public PatientMeasurementController(MeasurementService measurementService, MeasurementArrayWriter arrayWriter) {
+        this.measurementService = measurementService;
+        this.arrayWriter = arrayWriter;
+    }
+
+    @Operation(summary = "Get a patient's measurements",
+            description = "Retrieves one page of a patient's measurements in id order. Pass the returned nextCursor as `after` to fetch the next page.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Page retrieved successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementPage.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid patient ID or page size",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping(params = { "!from", "!to" })
+    public ResponseEntity<MeasurementPage> getMeasurementsByPatientId(
+            @PathVariable @Positive @Parameter(description = "ID of the patient") Long patientId,
+            @RequestParam(required = false) @Parameter(description = "Cursor returned by the previous page") Long after,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(MeasurementController.MAX_PAGE_SIZE)
+            @Parameter(description = "Maximum number of measurements to return") int limit) {
+        return ResponseEntity.ok(measurementService.getMeasurementPageByPatientId(patientId, after, limit));
+    }
+
+    @Operation(summary = "Get a patient's measurements taken in a time range",
+            description = "Streams the patient's measurements taken from `from` (inclusive) to `to` (exclusive) as a JSON array in time order. "
+                    + "Without `to` the range is open-ended. On PostgreSQL only the partitions overlapping the range are read. "
+                    + "Send `Accept: application/cbor` or `application/x-jackson-smile` for a binary array.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Measurements retrieved successfully",
+                content = @Content(mediaType = "application/json",
+                        array = @ArraySchema(schema = @Schema(implementation = Measurement.class)))),
+        @ApiResponse(responseCode = "400", description = "Invalid patient ID or timestamp",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping(params = "from", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            MeasurementArrayWriter.APPLICATION_SMILE_VALUE })
+    public ResponseEntity<StreamingResponseBody> getMeasurementsByPatientIdBetween(
+            @PathVariable @Positive @Parameter(description = "ID of the patient") Long patientId,
+            @RequestParam @Parameter(description = "Start of the range, ISO-8601, inclusive", example = "2024-05-01T00:00:00Z") Instant from,
+            @RequestParam(required = false) @Parameter(description = "End of the range, ISO-8601, exclusive", example = "2024-05-02T00:00:00Z") Instant to,
+            @RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) List<MediaType> accept) {
+        return arrayWriter.write(accept,
+                consumer -> measurementService.streamMeasurementsByPatientIdBetween(patientId, from, to, consumer));
+    }
+
+    @Operation(summary = "Get a patient's measurements as a time series",
+            description = "Aggregates the patient's measurements taken from `from` (inclusive) to `to` (exclusive) into buckets "
+                    + "of `bucket` (e.g. `15m`, `1h`, `1d` or ISO-8601 `PT1H`), computed in the database. Buckets are aligned to the "
+                    + "epoch in UTC and only non-empty ones are returned. With `points`, the buckets are downsampled with "
+                    + "Largest-Triangle-Three-Buckets to at most that many, keeping peaks and dips.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Series computed successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementSeries.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid patient ID, timestamp, bucket or point count, or a range of more than "
+                + MeasurementService.MAX_SERIES_BUCKETS + " buckets",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping("/series")
+    public ResponseEntity<MeasurementSeries> getSeriesByPatientId(
+            @PathVariable @Positive @Parameter(description = "ID of the patient") Long patientId,
+            @RequestParam @DurationMin(seconds = 1) @Parameter(description = "Bucket width, whole seconds are used", example = "1h") Duration bucket,
+            @RequestParam @Parameter(description = "Start of the range, ISO-8601, inclusive", example = "2024-05-01T00:00:00Z") Instant from,
+            @RequestParam @Parameter(description = "End of the range, ISO-8601, exclusive", example = "2024-08-01T00:00:00Z") Instant to,
+            @RequestParam(required = false) @Min(3) @Max(MAX_SERIES_POINTS)
+            @Parameter(description = "Maximum number of buckets to return") Integer points) {
+        try {
+            return ResponseEntity.ok(measurementService.getSeriesByPatientId(patientId, from, to, bucket, points));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+    }
+
+    @Operation(summary = "Get a patient's measurement statistics",
+            description = "Returns count, min, max, mean and standard deviation of the patient's results from the per-patient summary. "
+                    + "p50/p95/p99 are only computed, from the patient's measurements, when percentiles=true.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Statistics computed successfully",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = MeasurementStats.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid patient ID",
+                content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<MeasurementStats> getStatisticsByPatientId(
+            @PathVariable @Positive @Parameter(description = "ID of the patient") Long patientId,
+            @RequestParam(defaultValue = "false") @Parameter(description = "Also compute p50/p95/p99") boolean percentiles) {
+        return ResponseEntity.ok(measurementService.getStatisticsByPatientId(patientId, percentiles));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.measurement_app.dto;
+
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of a single item of a batch request")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(
+        @Schema(description = "Position of the item in the request", example = "0")
+        int index,
+        @Schema(description = "What happened to the item")
+        Status status,
+        @Schema(description = "UUID of the measurement the item refers to")
+        UUID uuid,
+        @Schema(description = "Validation errors by field, only present for rejected items")
+        Map<String, String> errors) {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        INVALID
+    }
+
+    public static BatchItemResult created(int index, UUID uuid) {
+        return new BatchItemResult(index, Status.CREATED, uuid, null);
+    }
+
+    public static BatchItemResult updated(int index, UUID uuid) {
+        return new BatchItemResult(index, Status.UPDATED, uuid, null);
+    }
+
+    public static BatchItemResult deleted(int index, UUID uuid) {
+        return new BatchItemResult(index, Status.DELETED, uuid, null);
+    }
+
+    public static BatchItemResult notFound(int index, UUID uuid) {
+        return new BatchItemResult(index, Status.NOT_FOUND, uuid, null);
+    }
+
+    public static BatchItemResult invalid(int index, UUID uuid, Map<String, String> errors) {
+        return new BatchItemResult(index, Status.INVALID, uuid, errors);
+    }
+
+    public static BatchItemResult invalid(int index, Map<String, String> errors) {
+        return new BatchItemResult(index, Status.INVALID, null, errors);
+    }
+}
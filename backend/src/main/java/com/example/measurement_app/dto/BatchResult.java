@@ -0,0 +1,19 @@
+package com.example.measurement_app.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Per-item outcome of a batch request")
+public record BatchResult(
+        @Schema(description = "Number of items that were applied", example = "998")
+        int succeeded,
+        @Schema(description = "Number of items that were rejected", example = "2")
+        int failed,
+        @Schema(description = "Outcome of every item, in request order")
+        List<BatchItemResult> items) {
+
+    public static BatchResult of(List<BatchItemResult> items, int succeeded) {
+        return new BatchResult(succeeded, items.size() - succeeded, items);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.measurement_app.dto;
+
+import java.time.Instant;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Aggregates of the results measured in one time bucket; only buckets with measurements are returned")
+public record MeasurementBucket(
+        @Schema(description = "Start of the bucket, inclusive", example = "2024-05-01T13:00:00Z")
+        Instant start,
+        @Schema(description = "Number of measurements in the bucket", example = "12")
+        long count,
+        @Schema(description = "Lowest result in the bucket", example = "61.5")
+        double min,
+        @Schema(description = "Highest result in the bucket", example = "88.0")
+        double max,
+        @Schema(description = "Arithmetic mean of the results in the bucket", example = "74.2")
+        double avg) {
+}
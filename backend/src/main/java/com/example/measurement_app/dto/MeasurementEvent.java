@@ -0,0 +1,57 @@
+package com.example.measurement_app.dto;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.example.measurement_app.model.Measurement;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "A committed change to a measurement, as pushed by GET /measurements/stream")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MeasurementEvent(
+        @Schema(description = "Kind of change", example = "UPDATED")
+        Type type,
+        @Schema(description = "UUID of the measurement")
+        UUID uuid,
+        @Schema(description = "ID of the patient the measurement belongs to", example = "123")
+        Long patientId,
+        @Schema(description = "Result after the change, absent for deletions", example = "75.5")
+        Double result,
+        @Schema(description = "When the measurement was taken, absent for deletions", example = "2024-05-01T13:45:00Z")
+        Instant measuredAt,
+        @Schema(description = "Patient the measurement belonged to before an update that moved it", example = "122")
+        Long previousPatientId) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static MeasurementEvent created(Measurement measurement) {
+        return new MeasurementEvent(Type.CREATED, measurement.getUuid(), measurement.getPatientId(),
+                measurement.getResult(), measurement.getMeasuredAt(), null);
+    }
+
+    public static MeasurementEvent updated(Measurement previous, Measurement current) {
+        Long previousPatientId = Objects.equals(previous.getPatientId(), current.getPatientId())
+                ? null : previous.getPatientId();
+        return new MeasurementEvent(Type.UPDATED, current.getUuid(), current.getPatientId(),
+                current.getResult(), current.getMeasuredAt(), previousPatientId);
+    }
+
+    public static MeasurementEvent deleted(Measurement measurement) {
+        return new MeasurementEvent(Type.DELETED, measurement.getUuid(), measurement.getPatientId(), null, null, null);
+    }
+
+    /**
+     * Whether a subscriber to the given patient, or to everyone when null, gets this event.
+     * An update that moves a measurement reaches both patients' subscribers.
+     */
+    public boolean concerns(Long subscribedPatientId) {
+        return subscribedPatientId == null || subscribedPatientId.equals(patientId)
+                || subscribedPatientId.equals(previousPatientId);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.measurement_app.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Progress of a bulk import started with POST /measurements/imports")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MeasurementImport(
+        @Schema(description = "ID of the import")
+        UUID id,
+        @Schema(description = "Format of the uploaded file", example = "csv")
+        String format,
+        @Schema(description = "State of the import", example = "RUNNING")
+        Status status,
+        @Schema(description = "Lines of the file processed and committed, including a CSV header; resuming starts after them",
+                example = "1500001")
+        long linesProcessed,
+        @Schema(description = "Measurements inserted", example = "1499990")
+        long imported,
+        @Schema(description = "Rows skipped because a measurement with their UUID already exists", example = "0")
+        long duplicates,
+        @Schema(description = "Rows rejected, listed in GET /measurements/imports/{id}/rejected", example = "10")
+        long rejected,
+        @Schema(description = "Rows processed per second since the import last started", example = "180000.0")
+        double rowsPerSecond,
+        @Schema(description = "When the import last started")
+        Instant startedAt,
+        @Schema(description = "When the import completed, failed or was stopped")
+        Instant finishedAt,
+        @Schema(description = "Why the import failed or stopped")
+        String error) {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, STOPPED
+    }
+}
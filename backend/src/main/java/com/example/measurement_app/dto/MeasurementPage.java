@@ -0,0 +1,27 @@
+package com.example.measurement_app.dto;
+
+import java.util.List;
+
+import com.example.measurement_app.model.Measurement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "A keyset page of measurements ordered by their internal id")
+public record MeasurementPage(
+        @Schema(description = "Measurements in this page")
+        List<Measurement> items,
+        @Schema(description = "Cursor to pass as `after` for the next page, null when this is the last page", example = "1042")
+        Long nextCursor) {
+
+    /**
+     * Builds a page from up to {@code limit + 1} rows. The extra row, when present, only
+     * signals that another page follows, so the last page needs no extra round trip.
+     */
+    public static MeasurementPage fromLookahead(List<Measurement> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new MeasurementPage(rows, null);
+        }
+        List<Measurement> items = rows.subList(0, limit);
+        return new MeasurementPage(items, items.get(limit - 1).getId());
+    }
+}
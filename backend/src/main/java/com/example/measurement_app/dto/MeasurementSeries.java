@@ -0,0 +1,13 @@
+package com.example.measurement_app.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "A patient's measurements aggregated into time buckets, for charting")
+public record MeasurementSeries(
+        @Schema(description = "Non-empty buckets in time order, downsampled when `points` was given")
+        List<MeasurementBucket> buckets,
+        @Schema(description = "Number of non-empty buckets in the range before downsampling", example = "2160")
+        int bucketCount) {
+}
@@ -0,0 +1,23 @@
+package com.example.measurement_app.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Summary statistics of measurement results; all values are null when there are no measurements")
+public record MeasurementStats(
+        @Schema(description = "Number of measurements", example = "1200")
+        long count,
+        @Schema(description = "Lowest result", example = "50.2")
+        Double min,
+        @Schema(description = "Highest result", example = "99.8")
+        Double max,
+        @Schema(description = "Arithmetic mean of the results", example = "74.9")
+        Double mean,
+        @Schema(description = "Sample standard deviation of the results, null for fewer than two measurements", example = "14.4")
+        Double stddev,
+        @Schema(description = "Median result", example = "75.1")
+        Double p50,
+        @Schema(description = "95th percentile of the results", example = "97.5")
+        Double p95,
+        @Schema(description = "99th percentile of the results", example = "99.5")
+        Double p99) {
+}
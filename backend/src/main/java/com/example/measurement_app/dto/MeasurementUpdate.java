@@ -0,0 +1,25 @@
+package com.example.measurement_app.dto;
+
+import java.util.UUID;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+@Schema(description = "New values for the measurement with the given UUID")
+public record MeasurementUpdate(
+        @NotNull(message = "UUID is required.")
+        @Schema(description = "UUID of the measurement to update")
+        UUID uuid,
+        @NotNull(message = "Patient ID is required.")
+        @Positive(message = "Patient ID must be a positive number.")
+        @Schema(description = "ID of the patient associated with the measurement", example = "123")
+        Long patientId,
+        @NotNull(message = "Result is required.")
+        @DecimalMin(value = "50.0", message = "Result must be at least 50.0")
+        @DecimalMax(value = "100.0", message = "Result must not exceed 100.0")
+        @Schema(description = "Result of the measurement (must be between 50 and 100)", example = "75.5")
+        Double result) {
+}
@@ -0,0 +1,13 @@
+package com.example.measurement_app.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of recomputing the per-patient summaries from the measurements table")
+public record SummaryRebuildResult(
+        @Schema(description = "Number of patient id ranges processed", example = "12")
+        int chunks,
+        @Schema(description = "Number of patient summaries written", example = "118230")
+        long patients,
+        @Schema(description = "Wall-clock duration of the rebuild in milliseconds", example = "5320")
+        long durationMillis) {
+}
@@ -3,18 +3,23 @@ package com.example.measurement_app.exception;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.ServletRequestBindingException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import jakarta.validation.ConstraintViolationException;
 
 @ControllerAdvice
+@Profile("!reactive")
 public class GlobalExceptionHandler {
 
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
@@ -27,6 +32,22 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
     }
 
+    // Missing or unmatched request parameters, e.g. a range with only a "to"
+    @ExceptionHandler(ServletRequestBindingException.class)
+    public ResponseEntity<Map<String, String>> handleServletRequestBindingException(ServletRequestBindingException ex) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("error", "Invalid request parameters");
+        errorDetails.put("message", ex.getMessage());
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    // An Accept or Content-Type none of the JSON, CBOR and Smile converters handles; there is
+    // no format left to write an error body in
+    @ExceptionHandler(HttpMediaTypeException.class)
+    public ResponseEntity<Void> handleHttpMediaTypeException(HttpMediaTypeException ex) {
+        return ResponseEntity.status(ex.getStatusCode()).headers(ex.getHeaders()).build();
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex) {
         Map<String, String> errors = new HashMap<>();
@@ -45,6 +66,17 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
 
+    // Thrown by controllers that turn a service's IllegalArgumentException into a status; the
+    // reason is the service's message
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<String, String>> handleResponseStatusException(ResponseStatusException ex) {
+        Map<String, String> errorDetails = new HashMap<>();
+        HttpStatus status = HttpStatus.resolve(ex.getStatusCode().value());
+        errorDetails.put("error", status != null ? status.getReasonPhrase() : ex.getStatusCode().toString());
+        errorDetails.put("message", ex.getReason());
+        return ResponseEntity.status(ex.getStatusCode()).headers(ex.getHeaders()).body(errorDetails);
+    }
+
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<Object> handleDataIntegrityViolationException(DataIntegrityViolationException ex, WebRequest request) {
         Map<String, String> response = new HashMap<>();
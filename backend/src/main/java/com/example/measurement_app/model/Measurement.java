@@ -1,5 +1,7 @@
 package com.example.measurement_app.model;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -12,18 +14,32 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PastOrPresent;
 import jakarta.validation.constraints.Positive;
 
 @Entity
-@Table(name = "measurements")
+@Table(name = "measurements", indexes = {
+    // Serves per-patient keyset reads as an index range scan
+    @Index(name = "idx_measurements_patient_id_id", columnList = "patient_id, id"),
+    // Serve time-range reads, overall and per patient
+    @Index(name = "idx_measurements_measured_at", columnList = "measured_at"),
+    @Index(name = "idx_measurements_patient_id_measured_at", columnList = "patient_id, measured_at")
+})
 public class Measurement {
 
+    // Ids come from a sequence in blocks of 50 so Hibernate can batch inserts. The JDBC batch
+    // and COPY inserts take blocks the same way; the column default, which uses up a block
+    // per row, is left for single-row SQL inserts.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "measurements_id_seq")
+    @SequenceGenerator(name = "measurements_id_seq", sequenceName = "measurements_id_seq", allocationSize = 50)
+    @Column(columnDefinition = "bigint default nextval('measurements_id_seq')")
     @JsonIgnore 
     @Schema(hidden = true) 
     private Long id;
@@ -46,6 +62,16 @@ public class Measurement {
     @Schema(hidden = true) 
     private UUID uuid = UUID.randomUUID();
 
+    // The partition key on PostgreSQL, so it is never changed after the insert. Future times
+    // are allowed up to the clock skew tolerance in META-INF/validation.xml. Kept to whole
+    // microseconds, which the databases store, as they would round the nanoseconds of
+    // Instant.now() and the stored time would no longer match the one handed around
+    @NotNull(message = "Measurement time is required.")
+    @PastOrPresent(message = "Measurement time must not be in the future.")
+    @Column(name = "measured_at", nullable = false, updatable = false)
+    @Schema(description = "When the measurement was taken, defaults to when it was received", example = "2024-05-01T08:30:00Z")
+    private Instant measuredAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -78,4 +104,12 @@ public class Measurement {
     public void setUuid(UUID uuid) {
         this.uuid = uuid;
     }
+
+    public Instant getMeasuredAt() {
+        return measuredAt;
+    }
+
+    public void setMeasuredAt(Instant measuredAt) {
+        this.measuredAt = measuredAt != null ? measuredAt.truncatedTo(ChronoUnit.MICROS) : null;
+    }
 }
\ No newline at end of file
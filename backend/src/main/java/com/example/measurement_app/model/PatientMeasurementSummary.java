@@ -0,0 +1,84 @@
+package com.example.measurement_app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Running aggregates of one patient's results, kept up to date in the same transaction
+ * as every write to the measurements table. Count, sum and sum of squares are enough to
+ * derive the mean and standard deviation without reading the measurements.
+ */
+@Entity
+@Table(name = "patient_measurement_summary")
+public class PatientMeasurementSummary {
+
+    @Id
+    @Column(name = "patient_id")
+    private Long patientId;
+
+    @Column(name = "measurement_count", nullable = false)
+    private long measurementCount;
+
+    @Column(name = "result_sum", nullable = false)
+    private double resultSum;
+
+    @Column(name = "result_sum_of_squares", nullable = false)
+    private double resultSumOfSquares;
+
+    @Column(name = "min_result")
+    private Double minResult;
+
+    @Column(name = "max_result")
+    private Double maxResult;
+
+    // Getters and Setters
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+
+    public long getMeasurementCount() {
+        return measurementCount;
+    }
+
+    public void setMeasurementCount(long measurementCount) {
+        this.measurementCount = measurementCount;
+    }
+
+    public double getResultSum() {
+        return resultSum;
+    }
+
+    public void setResultSum(double resultSum) {
+        this.resultSum = resultSum;
+    }
+
+    public double getResultSumOfSquares() {
+        return resultSumOfSquares;
+    }
+
+    public void setResultSumOfSquares(double resultSumOfSquares) {
+        this.resultSumOfSquares = resultSumOfSquares;
+    }
+
+    public Double getMinResult() {
+        return minResult;
+    }
+
+    public void setMinResult(Double minResult) {
+        this.minResult = minResult;
+    }
+
+    public Double getMaxResult() {
+        return maxResult;
+    }
+
+    public void setMaxResult(Double maxResult) {
+        this.maxResult = maxResult;
+    }
+}
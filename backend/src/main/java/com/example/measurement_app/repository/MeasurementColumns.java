@@ -0,0 +1,85 @@
+package com.example.measurement_app.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * A batch of measurements stored column by column in primitive arrays, reused from one
+ * batch to the next so that streaming any number of rows allocates the arrays once.
+ * UUIDs are split into their two halves and times are microseconds since the epoch, the
+ * precision of both databases.
+ */
+public final class MeasurementColumns {
+
+    private final long[] ids;
+    private final long[] patientIds;
+    private final double[] results;
+    private final long[] uuidMostSignificantBits;
+    private final long[] uuidLeastSignificantBits;
+    private final long[] measuredAtMicros;
+    private int size;
+
+    public MeasurementColumns(int capacity) {
+        this.ids = new long[capacity];
+        this.patientIds = new long[capacity];
+        this.results = new double[capacity];
+        this.uuidMostSignificantBits = new long[capacity];
+        this.uuidLeastSignificantBits = new long[capacity];
+        this.measuredAtMicros = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == ids.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public long[] ids() {
+        return ids;
+    }
+
+    public long[] patientIds() {
+        return patientIds;
+    }
+
+    public double[] results() {
+        return results;
+    }
+
+    public long[] uuidMostSignificantBits() {
+        return uuidMostSignificantBits;
+    }
+
+    public long[] uuidLeastSignificantBits() {
+        return uuidLeastSignificantBits;
+    }
+
+    public long[] measuredAtMicros() {
+        return measuredAtMicros;
+    }
+
+    public void add(long id, long patientId, double result, UUID uuid, long measuredAtMicros) {
+        ids[size] = id;
+        patientIds[size] = patientId;
+        results[size] = result;
+        uuidMostSignificantBits[size] = uuid.getMostSignificantBits();
+        uuidLeastSignificantBits[size] = uuid.getLeastSignificantBits();
+        this.measuredAtMicros[size] = measuredAtMicros;
+        size++;
+    }
+
+    // Reads the columns in the order of MeasurementJdbcRepository.COLUMNS
+    void add(ResultSet rs) throws SQLException {
+        OffsetDateTime measuredAt = rs.getObject(5, OffsetDateTime.class);
+        add(rs.getLong(1), rs.getLong(2), rs.getDouble(3), rs.getObject(4, UUID.class),
+                measuredAt.toEpochSecond() * 1_000_000 + measuredAt.getNano() / 1_000);
+    }
+}
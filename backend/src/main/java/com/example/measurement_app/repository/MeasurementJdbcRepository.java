@@ -0,0 +1,478 @@
+package com.example.measurement_app.repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+
+import io.micrometer.core.annotation.Timed;
+
+/**
+ * Plain JDBC access to the measurements table for the paths where going through
+ * the persistence context costs more than it gives (large reads, bulk writes).
+ * Modifications by UUID are single statements that hand back the rows as they were
+ * before the change: {@code RETURNING} on PostgreSQL, an {@code OLD TABLE} delta
+ * table on H2.
+ */
+@Repository
+@Profile("!reactive")
+@Timed("measurement.jdbc.repository")
+public class MeasurementJdbcRepository {
+
+    // Statements shared with ReactiveMeasurementRepository are package-private
+    static final String COLUMNS = "id, patient_id, result, uuid, measured_at";
+
+    static final String STATS = "SELECT COUNT(*) AS cnt, MIN(result) AS min_result, MAX(result) AS max_result,"
+            + " AVG(result) AS mean_result, STDDEV_SAMP(result) AS stddev_result,"
+            + " PERCENTILE_CONT(0.5) WITHIN GROUP (ORDER BY result) AS p50,"
+            + " PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY result) AS p95,"
+            + " PERCENTILE_CONT(0.99) WITHIN GROUP (ORDER BY result) AS p99"
+            + " FROM measurements";
+
+    static final String POSTGRESQL_DELETE_BY_UUID = "DELETE FROM measurements WHERE uuid = ? RETURNING " + COLUMNS;
+
+    // RETURNING only sees the new row, so the old values come from a self-join whose
+    // FOR UPDATE makes them the ones current when the row lock was taken
+    static final String POSTGRESQL_UPDATE_BY_UUID = "UPDATE measurements m SET patient_id = ?, result = ?"
+            + " FROM (SELECT id, measured_at, patient_id, result FROM measurements WHERE uuid = ? FOR UPDATE) old"
+            + " WHERE m.id = old.id AND m.measured_at = old.measured_at"
+            + " RETURNING m.id, old.patient_id, old.result, m.uuid, m.measured_at";
+
+    static final String H2_DELETE_BY_UUID = "SELECT " + COLUMNS
+            + " FROM OLD TABLE (DELETE FROM measurements WHERE uuid = ?)";
+
+    static final String H2_UPDATE_BY_UUID = "SELECT " + COLUMNS
+            + " FROM OLD TABLE (UPDATE measurements SET patient_id = ?, result = ? WHERE uuid = ?)";
+
+    // Buckets are aligned to the epoch, so one-day buckets are UTC days. The bucket is
+    // computed in a derived table as H2 cannot group by an expression with a parameter.
+    private static final String BUCKETS = "SELECT bucket, COUNT(*) AS cnt, MIN(result) AS min_result,"
+            + " MAX(result) AS max_result, AVG(result) AS mean_result"
+            + " FROM (SELECT CAST(FLOOR(EXTRACT(EPOCH FROM measured_at) / ?) AS BIGINT) AS bucket, result"
+            + " FROM measurements WHERE patient_id = ? AND measured_at >= ? AND measured_at < ?) b"
+            + " GROUP BY bucket ORDER BY bucket";
+
+    private static final String POSTGRESQL_DELETE_BY_UUIDS = "DELETE FROM measurements WHERE uuid = ANY(?) RETURNING " + COLUMNS;
+
+    private static final String POSTGRESQL_UPDATE_ALL = "UPDATE measurements m SET patient_id = v.patient_id, result = v.result"
+            + " FROM unnest(?, ?, ?) AS v(uuid, patient_id, result),"
+            + " (SELECT id, measured_at, patient_id, result FROM measurements WHERE uuid = ANY(?) FOR UPDATE) old"
+            + " WHERE m.uuid = v.uuid AND m.id = old.id AND m.measured_at = old.measured_at"
+            + " RETURNING m.id, old.patient_id, old.result, m.uuid, m.measured_at";
+
+    private static final String H2_DELETE_BY_UUIDS = "SELECT " + COLUMNS
+            + " FROM OLD TABLE (DELETE FROM measurements WHERE uuid = ANY(?))";
+
+    private static final String H2_UPDATE_ALL = "SELECT " + COLUMNS
+            + " FROM OLD TABLE (MERGE INTO measurements m"
+            + " USING UNNEST(CAST(? AS UUID ARRAY), CAST(? AS BIGINT ARRAY), CAST(? AS DOUBLE PRECISION ARRAY))"
+            + " AS v(uuid, patient_id, result) ON m.uuid = v.uuid"
+            + " WHEN MATCHED THEN UPDATE SET patient_id = v.patient_id, result = v.result)";
+
+    // The block size of measurements_id_seq, the allocationSize of the Measurement entity
+    static final int ID_BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final int insertBatchSize;
+    private final SqlDialect dialect;
+
+    public MeasurementJdbcRepository(DataSource dataSource,
+            @Value("${measurement.stream.fetch-size:1000}") int fetchSize,
+            @Value("${measurement.batch.insert-batch-size:500}") int insertBatchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.insertBatchSize = insertBatchSize;
+        this.dialect = SqlDialect.detect(dataSource);
+    }
+
+    /**
+     * Streams every measurement in id order to the given consumer without keeping
+     * the rows around. PostgreSQL only opens a server-side cursor when the call
+     * runs inside a transaction, so callers must provide one.
+     */
+    public void streamAll(Consumer<Measurement> consumer) {
+        streamingJdbcTemplate.query("SELECT " + COLUMNS + " FROM measurements ORDER BY id",
+                (RowCallbackHandler) rs -> consumer.accept(mapMeasurement(rs, rs.getRow())));
+    }
+
+    /**
+     * Streams the measurements taken in {@code [from, to)}, optionally of one patient only,
+     * in {@code measured_at} order. A missing {@code to} leaves the range open. The bounds
+     * are plain comparisons on the partition key, so PostgreSQL only scans the partitions
+     * that overlap the range. Like {@link #streamAll}, needs a transaction.
+     */
+    public void streamRange(Long patientId, Instant from, Instant to, Consumer<Measurement> consumer) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM measurements WHERE measured_at >= ?");
+        List<Object> args = new ArrayList<>(3);
+        args.add(toOffsetDateTime(from));
+        if (to != null) {
+            sql.append(" AND measured_at < ?");
+            args.add(toOffsetDateTime(to));
+        }
+        if (patientId != null) {
+            sql.append(" AND patient_id = ?");
+            args.add(patientId);
+        }
+        sql.append(" ORDER BY measured_at, id");
+        streamingJdbcTemplate.query(sql.toString(),
+                (RowCallbackHandler) rs -> consumer.accept(mapMeasurement(rs, rs.getRow())), args.toArray());
+    }
+
+    /**
+     * Streams every measurement, or every one of a patient, in no particular order so that
+     * PostgreSQL can scan the partitions sequentially. Rows are collected into {@code batch},
+     * which is handed to the consumer whenever it is full and once more at the end if it
+     * holds any, then cleared. Like {@link #streamAll}, needs a transaction.
+     */
+    public void streamColumns(Long patientId, MeasurementColumns batch, Consumer<MeasurementColumns> consumer) {
+        String sql = "SELECT " + COLUMNS + " FROM measurements" + (patientId != null ? " WHERE patient_id = ?" : "");
+        batch.clear();
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            batch.add(rs);
+            if (batch.isFull()) {
+                consumer.accept(batch);
+                batch.clear();
+            }
+        }, patientId != null ? new Object[] { patientId } : new Object[0]);
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Streams the measurements with ids in {@code [fromId, toId)} like
+     * {@link #streamColumns(Long, MeasurementColumns, Consumer)}, so that several callers can
+     * read disjoint parts of the table at the same time. Each needs its own transaction.
+     */
+    public void streamColumns(long fromId, long toId, MeasurementColumns batch, Consumer<MeasurementColumns> consumer) {
+        batch.clear();
+        streamingJdbcTemplate.query("SELECT " + COLUMNS + " FROM measurements WHERE id >= ? AND id < ?",
+                (RowCallbackHandler) rs -> {
+                    batch.add(rs);
+                    if (batch.isFull()) {
+                        consumer.accept(batch);
+                        batch.clear();
+                    }
+                }, fromId, toId);
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * The number of measurements taken from {@code from} on, which the {@code measured_at}
+     * index answers without reading the rows.
+     */
+    public long countMeasuredSince(Instant from) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM measurements WHERE measured_at >= ?", Long.class,
+                toOffsetDateTime(from));
+    }
+
+    /**
+     * The highest measurement id, 0 if there are no measurements.
+     */
+    public long findMaxId() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM measurements", Long.class);
+    }
+
+    /**
+     * The measurement with the given UUID taken at the given time. The time is the
+     * partition key, so PostgreSQL looks into one partition only instead of probing the
+     * UUID index of every partition.
+     */
+    public Optional<Measurement> findByUuid(UUID uuid, Instant measuredAt) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM measurements WHERE uuid = ? AND measured_at = ?",
+                MeasurementJdbcRepository::mapMeasurement, uuid, toOffsetDateTime(measuredAt)).stream().findFirst();
+    }
+
+    /**
+     * Writes every measurement, or every one of a patient, as CSV with a header row using
+     * {@code COPY ... TO STDOUT}, so PostgreSQL formats the rows and the driver only copies
+     * bytes. Times are written like {@code 2024-05-01T08:30:00.000000Z}.
+     *
+     * @return false without writing anything if the database cannot copy out, i.e. on H2
+     */
+    public boolean copyCsv(Long patientId, OutputStream out) {
+        if (dialect != SqlDialect.POSTGRESQL) {
+            return false;
+        }
+        // COPY takes no parameters; the patient id is a long, so inlining it is safe
+        String sql = "COPY (SELECT id, patient_id, result, uuid,"
+                + " to_char(measured_at AT TIME ZONE 'UTC', 'YYYY-MM-DD\"T\"HH24:MI:SS.US\"Z\"') AS measured_at"
+                + " FROM measurements" + (patientId != null ? " WHERE patient_id = " + patientId.longValue() : "")
+                + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+        jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try {
+                return con.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Inserts the measurements as JDBC batches of {@code measurement.batch.insert-batch-size}
+     * statements. With {@code reWriteBatchedInserts=true} on the PostgreSQL URL the driver
+     * turns each batch into multi-row INSERTs. The ids come from {@link #allocateIds} and are
+     * not set on the measurements.
+     */
+    public void batchInsert(List<Measurement> measurements) {
+        long[] ids = allocateIds(measurements.size());
+        jdbcTemplate.batchUpdate("INSERT INTO measurements (id, patient_id, result, uuid, measured_at) VALUES (?, ?, ?, ?, ?)",
+                IntStream.range(0, measurements.size()).boxed().toList(), insertBatchSize, (ps, row) -> {
+                    Measurement measurement = measurements.get(row);
+                    ps.setLong(1, ids[row]);
+                    ps.setLong(2, measurement.getPatientId());
+                    ps.setDouble(3, measurement.getResult());
+                    ps.setObject(4, measurement.getUuid());
+                    ps.setObject(5, toOffsetDateTime(measurement.getMeasuredAt()));
+                });
+    }
+
+    /**
+     * Inserts the measurements with {@code COPY ... FROM STDIN} on PostgreSQL, which parses
+     * the rows as one stream instead of executing a statement per row; elsewhere the same
+     * as {@link #batchInsert}. The ids come from {@link #allocateIds} and are not set on the
+     * measurements.
+     */
+    public void copyIn(List<Measurement> measurements) {
+        if (dialect != SqlDialect.POSTGRESQL) {
+            batchInsert(measurements);
+            return;
+        }
+        long[] ids = allocateIds(measurements.size());
+        StringBuilder csv = new StringBuilder(measurements.size() * 100);
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement measurement = measurements.get(i);
+            csv.append(ids[i]).append(',')
+                    .append(measurement.getPatientId()).append(',')
+                    .append(measurement.getResult()).append(',')
+                    .append(measurement.getUuid()).append(',')
+                    .append(measurement.getMeasuredAt()).append('\n');
+        }
+        jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try {
+                return con.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                        "COPY measurements (id, patient_id, result, uuid, measured_at) FROM STDIN WITH (FORMAT csv)",
+                        new StringReader(csv.toString()));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Ids for the given number of rows, in ascending order. The column default would draw a
+     * whole block of {@link #ID_BLOCK_SIZE} ids for every row; instead blocks are taken from
+     * the sequence like the entity's pooled-lo optimizer does, a value {@code v} standing for
+     * {@code v} to {@code v + 49}, and used up row by row.
+     */
+    long[] allocateIds(int count) {
+        long[] ids = new long[count];
+        if (count == 0) {
+            return ids;
+        }
+        List<Long> blocks = jdbcTemplate.queryForList(
+                "SELECT nextval('measurements_id_seq') FROM generate_series(1, ?)", Long.class,
+                (count + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE);
+        blocks.sort(null);
+        for (int i = 0; i < count; i++) {
+            ids[i] = blocks.get(i / ID_BLOCK_SIZE) + i % ID_BLOCK_SIZE;
+        }
+        return ids;
+    }
+
+    /**
+     * The given UUIDs that belong to a measurement, in one statement.
+     */
+    public Set<UUID> findExistingUuids(Collection<UUID> uuids) {
+        PreparedStatementCreator statement = con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT uuid FROM measurements WHERE uuid = ANY(?)");
+            ps.setArray(1, con.createArrayOf("uuid", uuids.toArray()));
+            return ps;
+        };
+        return new HashSet<>(jdbcTemplate.query(statement, (rs, rowNum) -> rs.getObject(1, UUID.class)));
+    }
+
+    /**
+     * The measurements with the given UUIDs, in one statement.
+     */
+    public List<Measurement> findByUuids(Collection<UUID> uuids) {
+        PreparedStatementCreator statement = con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT " + COLUMNS + " FROM measurements WHERE uuid = ANY(?)");
+            ps.setArray(1, con.createArrayOf("uuid", uuids.toArray()));
+            return ps;
+        };
+        return jdbcTemplate.query(statement, MeasurementJdbcRepository::mapMeasurement);
+    }
+
+    /**
+     * Deletes the measurement with the given UUID in one statement.
+     *
+     * @return the deleted measurement, empty if there was none
+     */
+    public Optional<Measurement> deleteByUuid(UUID uuid) {
+        String sql = dialect == SqlDialect.H2 ? H2_DELETE_BY_UUID : POSTGRESQL_DELETE_BY_UUID;
+        return jdbcTemplate.query(sql, MeasurementJdbcRepository::mapMeasurement, uuid).stream().findFirst();
+    }
+
+    /**
+     * Deletes the measurements with the given UUIDs in one statement.
+     *
+     * @return the deleted measurements; UUIDs without a measurement have no entry
+     */
+    public List<Measurement> deleteByUuids(Collection<UUID> uuids) {
+        String sql = dialect == SqlDialect.H2 ? H2_DELETE_BY_UUIDS : POSTGRESQL_DELETE_BY_UUIDS;
+        PreparedStatementCreator statement = con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("uuid", uuids.toArray()));
+            return ps;
+        };
+        return jdbcTemplate.query(statement, MeasurementJdbcRepository::mapMeasurement);
+    }
+
+    /**
+     * Sets patient id and result of the measurement with the given UUID in one statement.
+     *
+     * @return the measurement as it was before the update, empty if there was none
+     */
+    public Optional<Measurement> updateByUuid(UUID uuid, Long patientId, Double result) {
+        String sql = dialect == SqlDialect.H2 ? H2_UPDATE_BY_UUID : POSTGRESQL_UPDATE_BY_UUID;
+        return jdbcTemplate.query(sql, MeasurementJdbcRepository::mapMeasurement, patientId, result, uuid)
+                .stream().findFirst();
+    }
+
+    /**
+     * Sets patient id and result of every measurement whose UUID matches one of the given
+     * measurements, in one statement. The UUIDs must be distinct.
+     *
+     * @return the updated measurements as they were before the update; UUIDs without a
+     *         measurement have no entry
+     */
+    public List<Measurement> updateAll(List<Measurement> measurements) {
+        Object[] uuids = new Object[measurements.size()];
+        Object[] patientIds = new Object[measurements.size()];
+        Object[] results = new Object[measurements.size()];
+        for (int i = 0; i < measurements.size(); i++) {
+            uuids[i] = measurements.get(i).getUuid();
+            patientIds[i] = measurements.get(i).getPatientId();
+            results[i] = measurements.get(i).getResult();
+        }
+        String sql = dialect == SqlDialect.H2 ? H2_UPDATE_ALL : POSTGRESQL_UPDATE_ALL;
+        PreparedStatementCreator statement = con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("uuid", uuids));
+            ps.setArray(2, con.createArrayOf("int8", patientIds));
+            ps.setArray(3, con.createArrayOf("float8", results));
+            if (dialect == SqlDialect.POSTGRESQL) {
+                ps.setArray(4, con.createArrayOf("uuid", uuids));
+            }
+            return ps;
+        };
+        return jdbcTemplate.query(statement, MeasurementJdbcRepository::mapMeasurement);
+    }
+
+    /**
+     * Makes sure the monthly partitions starting with the month of {@code firstMonth}
+     * exist, by calling {@code create_measurement_partitions} from schema-postgresql.sql.
+     * The H2 table is not partitioned, so there it does nothing.
+     */
+    public void createPartitions(LocalDate firstMonth, int months) {
+        if (dialect == SqlDialect.POSTGRESQL) {
+            jdbcTemplate.queryForList("SELECT create_measurement_partitions(?, ?)", firstMonth, months);
+        }
+    }
+
+    /**
+     * Aggregates the results of all measurements, or of one patient's when a patient id
+     * is given, in a single query so no rows leave the database.
+     */
+    public MeasurementStats computeStats(Long patientId) {
+        if (patientId == null) {
+            return jdbcTemplate.queryForObject(STATS, MeasurementJdbcRepository::mapStats);
+        }
+        return jdbcTemplate.queryForObject(STATS + " WHERE patient_id = ?", MeasurementJdbcRepository::mapStats, patientId);
+    }
+
+    /**
+     * Aggregates a patient's measurements taken in {@code [from, to)} into buckets of
+     * {@code bucketSeconds}, returning only the buckets that hold measurements, in time
+     * order. The range filter prunes partitions like {@link #streamRange} does.
+     */
+    public List<MeasurementBucket> findBuckets(Long patientId, Instant from, Instant to, long bucketSeconds) {
+        return jdbcTemplate.query(BUCKETS, (rs, rowNum) -> new MeasurementBucket(
+                Instant.ofEpochSecond(rs.getLong("bucket") * bucketSeconds),
+                rs.getLong("cnt"),
+                rs.getDouble("min_result"),
+                rs.getDouble("max_result"),
+                rs.getDouble("mean_result")),
+                bucketSeconds, patientId, toOffsetDateTime(from), toOffsetDateTime(to));
+    }
+
+    private static MeasurementStats mapStats(ResultSet rs, int rowNum) throws SQLException {
+        return new MeasurementStats(rs.getLong("cnt"),
+                getNullableDouble(rs, "min_result"),
+                getNullableDouble(rs, "max_result"),
+                getNullableDouble(rs, "mean_result"),
+                getNullableDouble(rs, "stddev_result"),
+                getNullableDouble(rs, "p50"),
+                getNullableDouble(rs, "p95"),
+                getNullableDouble(rs, "p99"));
+    }
+
+    private static Double getNullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Measurement mapMeasurement(ResultSet rs, int rowNum) throws SQLException {
+        Measurement measurement = new Measurement();
+        measurement.setId(rs.getLong("id"));
+        measurement.setPatientId(rs.getLong("patient_id"));
+        measurement.setResult(rs.getDouble("result"));
+        measurement.setUuid(rs.getObject("uuid", UUID.class));
+        measurement.setMeasuredAt(rs.getObject("measured_at", OffsetDateTime.class).toInstant());
+        return measurement;
+    }
+
+    // Both drivers bind and read TIMESTAMP WITH TIME ZONE as OffsetDateTime, not Instant
+    static OffsetDateTime toOffsetDateTime(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.measurement_app.repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -13,5 +15,9 @@ public interface MeasurementRepository extends JpaRepository<Measurement, Long>
     // Find a measurement by its UUID
     Optional<Measurement> findByUuid(UUID uuid);
 
-    void deleteByUuid(UUID uuid);
+    // Keyset page: the next `limit` measurements after the given id
+    List<Measurement> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Keyset page of one patient's measurements, served by the (patient_id, id) index
+    List<Measurement> findByPatientIdAndIdGreaterThanOrderByIdAsc(Long patientId, Long id, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.example.measurement_app.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.measurement_app.model.PatientMeasurementSummary;
+
+@Repository
+public interface PatientMeasurementSummaryRepository
+        extends JpaRepository<PatientMeasurementSummary, Long>, PatientMeasurementSummaryWriter {
+}
@@ -0,0 +1,36 @@
+package com.example.measurement_app.repository;
+
+/**
+ * Incremental updates of {@code patient_measurement_summary}. Every method has to run
+ * inside the transaction that changes the measurements it accounts for.
+ */
+public interface PatientMeasurementSummaryWriter {
+
+    /**
+     * Adds results to a patient's summary, creating the row on the patient's first
+     * measurement.
+     */
+    void addResults(long patientId, long count, double sum, double sumOfSquares, double min, double max);
+
+    /**
+     * Takes one result out of a patient's summary and drops the row when it was the last
+     * one. If the result was the patient's minimum or maximum, that bound is recomputed
+     * from the measurements table, so the removal must already be flushed.
+     */
+    void removeResult(long patientId, double result);
+
+    /**
+     * Takes several results of one patient out of the summary at once, recomputing a
+     * bound from the measurements table when one of the removed results reached it.
+     * The removals must already be flushed.
+     */
+    void removeResults(long patientId, long count, double sum, double sumOfSquares, double min, double max);
+
+    /**
+     * Replaces the summaries of all patients with ids in {@code [fromPatientId, toPatientId]}
+     * by aggregates computed from the measurements table.
+     *
+     * @return the number of summaries written
+     */
+    int rebuildRange(long fromPatientId, long toPatientId);
+}
@@ -0,0 +1,87 @@
+package com.example.measurement_app.repository;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JDBC implementation of {@link PatientMeasurementSummaryWriter}, picked up by Spring
+ * Data as a fragment of {@link PatientMeasurementSummaryRepository}. The upsert is a
+ * race-free {@code INSERT ... ON CONFLICT} on PostgreSQL and a {@code MERGE} on H2,
+ * which has no {@code ON CONFLICT DO UPDATE}.
+ */
+class PatientMeasurementSummaryWriterImpl implements PatientMeasurementSummaryWriter {
+
+    // Package-private so ReactivePatientSummaryWriter runs the same statements
+    static final String POSTGRESQL_UPSERT = "INSERT INTO patient_measurement_summary AS s"
+            + " (patient_id, measurement_count, result_sum, result_sum_of_squares, min_result, max_result)"
+            + " VALUES (?, ?, ?, ?, ?, ?)"
+            + " ON CONFLICT (patient_id) DO UPDATE SET"
+            + " measurement_count = s.measurement_count + EXCLUDED.measurement_count,"
+            + " result_sum = s.result_sum + EXCLUDED.result_sum,"
+            + " result_sum_of_squares = s.result_sum_of_squares + EXCLUDED.result_sum_of_squares,"
+            + " min_result = LEAST(s.min_result, EXCLUDED.min_result),"
+            + " max_result = GREATEST(s.max_result, EXCLUDED.max_result)";
+
+    static final String H2_UPSERT = "MERGE INTO patient_measurement_summary s"
+            + " USING (SELECT CAST(? AS BIGINT) AS patient_id, CAST(? AS BIGINT) AS measurement_count,"
+            + " CAST(? AS DOUBLE PRECISION) AS result_sum, CAST(? AS DOUBLE PRECISION) AS result_sum_of_squares,"
+            + " CAST(? AS DOUBLE PRECISION) AS min_result, CAST(? AS DOUBLE PRECISION) AS max_result) d"
+            + " ON s.patient_id = d.patient_id"
+            + " WHEN MATCHED THEN UPDATE SET"
+            + " measurement_count = s.measurement_count + d.measurement_count,"
+            + " result_sum = s.result_sum + d.result_sum,"
+            + " result_sum_of_squares = s.result_sum_of_squares + d.result_sum_of_squares,"
+            + " min_result = LEAST(s.min_result, d.min_result),"
+            + " max_result = GREATEST(s.max_result, d.max_result)"
+            + " WHEN NOT MATCHED THEN INSERT"
+            + " (patient_id, measurement_count, result_sum, result_sum_of_squares, min_result, max_result)"
+            + " VALUES (d.patient_id, d.measurement_count, d.result_sum, d.result_sum_of_squares, d.min_result, d.max_result)";
+
+    static final String REMOVE_RESULTS = "UPDATE patient_measurement_summary SET"
+            + " measurement_count = measurement_count - ?,"
+            + " result_sum = result_sum - ?,"
+            + " result_sum_of_squares = result_sum_of_squares - ?,"
+            + " min_result = CASE WHEN ? <= min_result"
+            + " THEN (SELECT MIN(result) FROM measurements WHERE patient_id = ?) ELSE min_result END,"
+            + " max_result = CASE WHEN ? >= max_result"
+            + " THEN (SELECT MAX(result) FROM measurements WHERE patient_id = ?) ELSE max_result END"
+            + " WHERE patient_id = ?";
+
+    static final String DELETE_EMPTY = "DELETE FROM patient_measurement_summary WHERE patient_id = ? AND measurement_count <= 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String upsertSql;
+
+    PatientMeasurementSummaryWriterImpl(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.upsertSql = SqlDialect.detect(dataSource) == SqlDialect.H2 ? H2_UPSERT : POSTGRESQL_UPSERT;
+    }
+
+    @Override
+    public void addResults(long patientId, long count, double sum, double sumOfSquares, double min, double max) {
+        jdbcTemplate.update(upsertSql, patientId, count, sum, sumOfSquares, min, max);
+    }
+
+    @Override
+    public void removeResult(long patientId, double result) {
+        removeResults(patientId, 1, result, result * result, result, result);
+    }
+
+    @Override
+    public void removeResults(long patientId, long count, double sum, double sumOfSquares, double min, double max) {
+        jdbcTemplate.update(REMOVE_RESULTS, count, sum, sumOfSquares, min, patientId, max, patientId, patientId);
+        jdbcTemplate.update(DELETE_EMPTY, patientId);
+    }
+
+    @Override
+    public int rebuildRange(long fromPatientId, long toPatientId) {
+        jdbcTemplate.update("DELETE FROM patient_measurement_summary WHERE patient_id BETWEEN ? AND ?",
+                fromPatientId, toPatientId);
+        return jdbcTemplate.update("INSERT INTO patient_measurement_summary"
+                + " (patient_id, measurement_count, result_sum, result_sum_of_squares, min_result, max_result)"
+                + " SELECT patient_id, COUNT(*), SUM(result), SUM(result * result), MIN(result), MAX(result)"
+                + " FROM measurements WHERE patient_id BETWEEN ? AND ? GROUP BY patient_id",
+                fromPatientId, toPatientId);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.measurement_app.repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking access to the measurements table for the reactive profile. Runs the same
+ * statements as {@link MeasurementJdbcRepository} over R2DBC, so deletes and updates by
+ * UUID are single statements that return the previous row here as well.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveMeasurementRepository {
+
+    private static final String INSERT = "INSERT INTO measurements (patient_id, result, uuid, measured_at) VALUES ($1, $2, $3, $4)";
+
+    private final DatabaseClient databaseClient;
+    private final int fetchSize;
+    private final String deleteByUuidSql;
+    private final String updateByUuidSql;
+
+    public ReactiveMeasurementRepository(DatabaseClient databaseClient, ConnectionFactory connectionFactory,
+            @Value("${measurement.stream.fetch-size:1000}") int fetchSize) {
+        this.databaseClient = databaseClient;
+        this.fetchSize = fetchSize;
+        boolean h2 = SqlDialect.detect(connectionFactory) == SqlDialect.H2;
+        this.deleteByUuidSql = SqlDialect.indexedBindMarkers(
+                h2 ? MeasurementJdbcRepository.H2_DELETE_BY_UUID : MeasurementJdbcRepository.POSTGRESQL_DELETE_BY_UUID);
+        this.updateByUuidSql = SqlDialect.indexedBindMarkers(
+                h2 ? MeasurementJdbcRepository.H2_UPDATE_BY_UUID : MeasurementJdbcRepository.POSTGRESQL_UPDATE_BY_UUID);
+    }
+
+    /**
+     * Inserts the measurement and sets the id the database generated for it.
+     */
+    public Mono<Measurement> insert(Measurement measurement) {
+        return databaseClient.sql(INSERT)
+                .bind(0, measurement.getPatientId())
+                .bind(1, measurement.getResult())
+                .bind(2, measurement.getUuid())
+                .bind(3, MeasurementJdbcRepository.toOffsetDateTime(measurement.getMeasuredAt()))
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> {
+                    measurement.setId(id);
+                    return measurement;
+                });
+    }
+
+    public Mono<Measurement> findById(Long id) {
+        return databaseClient.sql("SELECT " + MeasurementJdbcRepository.COLUMNS + " FROM measurements WHERE id = $1")
+                .bind(0, id)
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .one();
+    }
+
+    public Mono<Measurement> findByUuid(UUID uuid) {
+        return databaseClient.sql("SELECT " + MeasurementJdbcRepository.COLUMNS + " FROM measurements WHERE uuid = $1")
+                .bind(0, uuid)
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .one();
+    }
+
+    /**
+     * Every measurement in id order. Rows are fetched {@code measurement.stream.fetch-size}
+     * at a time as the subscriber requests them, so a slow consumer holds back the query
+     * instead of buffering the table.
+     */
+    public Flux<Measurement> findAll() {
+        return databaseClient.sql("SELECT " + MeasurementJdbcRepository.COLUMNS + " FROM measurements ORDER BY id")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .all();
+    }
+
+    /**
+     * The measurements taken in {@code [from, to)} in {@code measured_at} order, fetched
+     * on demand like {@link #findAll()}. A null {@code to} leaves the range open.
+     */
+    public Flux<Measurement> findRange(Instant from, Instant to) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("SELECT " + MeasurementJdbcRepository.COLUMNS
+                        + " FROM measurements WHERE measured_at >= $1"
+                        + (to != null ? " AND measured_at < $2" : "")
+                        + " ORDER BY measured_at, id")
+                .bind(0, MeasurementJdbcRepository.toOffsetDateTime(from));
+        if (to != null) {
+            spec = spec.bind(1, MeasurementJdbcRepository.toOffsetDateTime(to));
+        }
+        return spec.filter(statement -> statement.fetchSize(fetchSize))
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .all();
+    }
+
+    // Keyset page: the next `limit` measurements after the given id
+    public Flux<Measurement> findPage(long after, int limit) {
+        return databaseClient.sql("SELECT " + MeasurementJdbcRepository.COLUMNS
+                        + " FROM measurements WHERE id > $1 ORDER BY id LIMIT $2")
+                .bind(0, after)
+                .bind(1, limit)
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .all();
+    }
+
+    /**
+     * Deletes the measurement with the given UUID in one statement.
+     *
+     * @return the deleted measurement, empty if there was none
+     */
+    public Mono<Measurement> deleteByUuid(UUID uuid) {
+        return databaseClient.sql(deleteByUuidSql)
+                .bind(0, uuid)
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .one();
+    }
+
+    /**
+     * Sets patient id and result of the measurement with the given UUID in one statement.
+     *
+     * @return the measurement as it was before the update, empty if there was none
+     */
+    public Mono<Measurement> updateByUuid(UUID uuid, Long patientId, Double result) {
+        return databaseClient.sql(updateByUuidSql)
+                .bind(0, patientId)
+                .bind(1, result)
+                .bind(2, uuid)
+                .map(ReactiveMeasurementRepository::mapMeasurement)
+                .one();
+    }
+
+    public Mono<MeasurementStats> computeStats() {
+        return databaseClient.sql(MeasurementJdbcRepository.STATS)
+                .map(ReactiveMeasurementRepository::mapStats)
+                .one();
+    }
+
+    private static MeasurementStats mapStats(Readable row) {
+        return new MeasurementStats(row.get("cnt", Long.class),
+                getNullableDouble(row, "min_result"),
+                getNullableDouble(row, "max_result"),
+                getNullableDouble(row, "mean_result"),
+                getNullableDouble(row, "stddev_result"),
+                getNullableDouble(row, "p50"),
+                getNullableDouble(row, "p95"),
+                getNullableDouble(row, "p99"));
+    }
+
+    // Aggregates may come back as DECIMAL, which the drivers will not convert to Double
+    private static Double getNullableDouble(Readable row, String column) {
+        Number value = row.get(column, Number.class);
+        return value == null ? null : value.doubleValue();
+    }
+
+    private static Measurement mapMeasurement(Readable row) {
+        Measurement measurement = new Measurement();
+        measurement.setId(row.get("id", Long.class));
+        measurement.setPatientId(row.get("patient_id", Long.class));
+        measurement.setResult(row.get("result", Double.class));
+        measurement.setUuid(row.get("uuid", UUID.class));
+        measurement.setMeasuredAt(row.get("measured_at", OffsetDateTime.class).toInstant());
+        return measurement;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.measurement_app.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps {@code patient_measurement_summary} up to date for writes made through the
+ * reactive stack, with the statements {@link PatientMeasurementSummaryWriterImpl} uses.
+ * Every method has to run inside the transaction that changes the measurement.
+ */
+@Repository
+@Profile("reactive")
+public class ReactivePatientSummaryWriter {
+
+    private final DatabaseClient databaseClient;
+    private final String upsertSql;
+    private final String removeResultsSql;
+    private final String deleteEmptySql;
+
+    public ReactivePatientSummaryWriter(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.upsertSql = SqlDialect.indexedBindMarkers(SqlDialect.detect(connectionFactory) == SqlDialect.H2
+                ? PatientMeasurementSummaryWriterImpl.H2_UPSERT
+                : PatientMeasurementSummaryWriterImpl.POSTGRESQL_UPSERT);
+        this.removeResultsSql = SqlDialect.indexedBindMarkers(PatientMeasurementSummaryWriterImpl.REMOVE_RESULTS);
+        this.deleteEmptySql = SqlDialect.indexedBindMarkers(PatientMeasurementSummaryWriterImpl.DELETE_EMPTY);
+    }
+
+    public Mono<Void> addResult(long patientId, double result) {
+        return databaseClient.sql(upsertSql)
+                .bind(0, patientId)
+                .bind(1, 1L)
+                .bind(2, result)
+                .bind(3, result * result)
+                .bind(4, result)
+                .bind(5, result)
+                .then();
+    }
+
+    /**
+     * Takes one result out of a patient's summary and drops the row when it was the last
+     * one. The measurement must already be deleted or updated.
+     */
+    public Mono<Void> removeResult(long patientId, double result) {
+        return databaseClient.sql(removeResultsSql)
+                .bind(0, 1L)
+                .bind(1, result)
+                .bind(2, result * result)
+                .bind(3, result)
+                .bind(4, patientId)
+                .bind(5, result)
+                .bind(6, patientId)
+                .bind(7, patientId)
+                .then()
+                .then(databaseClient.sql(deleteEmptySql).bind(0, patientId).then());
+    }
+}
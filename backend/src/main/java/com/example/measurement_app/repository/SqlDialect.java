@@ -0,0 +1,58 @@
+package com.example.measurement_app.repository;
+
+import java.sql.DatabaseMetaData;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.r2dbc.spi.ConnectionFactory;
+
+/**
+ * The databases the hand-written SQL in this package supports. PostgreSQL is what runs
+ * in production; H2 backs the tests.
+ */
+enum SqlDialect {
+
+    POSTGRESQL,
+    H2;
+
+    static SqlDialect detect(DataSource dataSource) {
+        // The pool's URL tells without a connection, which startup would otherwise wait for
+        if (dataSource instanceof HikariDataSource pool && pool.getJdbcUrl() != null) {
+            return pool.getJdbcUrl().startsWith("jdbc:h2:") ? H2 : POSTGRESQL;
+        }
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "H2".equals(product) ? H2 : POSTGRESQL;
+        } catch (MetaDataAccessException ex) {
+            throw new IllegalStateException("Could not determine the database product", ex);
+        }
+    }
+
+    static SqlDialect detect(ConnectionFactory connectionFactory) {
+        return "H2".equals(connectionFactory.getMetadata().getName()) ? H2 : POSTGRESQL;
+    }
+
+    /**
+     * Rewrites the JDBC {@code ?} placeholders of a statement to the {@code $1, $2, ...}
+     * bind markers R2DBC drivers expect, so both stacks can share the same SQL. Only meant
+     * for the statements in this package, which have no {@code ?} inside literals.
+     */
+    static String indexedBindMarkers(String sql) {
+        StringBuilder rewritten = new StringBuilder(sql.length() + 16);
+        int index = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                rewritten.append('$').append(++index);
+            } else {
+                rewritten.append(c);
+            }
+        }
+        return rewritten.toString();
+    }
+}
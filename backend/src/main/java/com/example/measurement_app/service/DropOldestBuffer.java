@@ -0,0 +1,82 @@
+package com.example.measurement_app.service;
+
+import java.util.ArrayDeque;
+import java.util.function.LongFunction;
+
+/**
+ * A bounded FIFO buffer for one consumer that drains it on demand. When full, an offer
+ * drops the oldest element, and the consumer is handed a notice with the number of dropped
+ * elements ahead of the ones that are left. {@link #offer} tells the producer when the
+ * buffer was idle, so exactly one drain runs at a time without a thread per buffer.
+ */
+final class DropOldestBuffer<T> {
+
+    private final ArrayDeque<T> elements = new ArrayDeque<>();
+    private final int capacity;
+    private final LongFunction<T> dropNotice;
+    private final Runnable onDrop;
+    private long dropped;
+    private boolean draining;
+    private boolean closed;
+
+    DropOldestBuffer(int capacity, LongFunction<T> dropNotice, Runnable onDrop) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.dropNotice = dropNotice;
+        this.onDrop = onDrop;
+    }
+
+    /**
+     * Adds the element, dropping the oldest one when the buffer is full.
+     *
+     * @return whether the caller has to start draining, i.e. no drain is running
+     */
+    synchronized boolean offer(T element) {
+        if (closed) {
+            return false;
+        }
+        if (elements.size() == capacity) {
+            elements.pollFirst();
+            dropped++;
+            onDrop.run();
+        }
+        elements.addLast(element);
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /**
+     * The next element for the draining consumer, or null once the buffer is empty,
+     * which ends the drain.
+     */
+    synchronized T next() {
+        if (closed) {
+            draining = false;
+            return null;
+        }
+        if (dropped > 0) {
+            T notice = dropNotice.apply(dropped);
+            dropped = 0;
+            return notice;
+        }
+        T element = elements.pollFirst();
+        if (element == null) {
+            draining = false;
+        }
+        return element;
+    }
+
+    synchronized boolean isIdle() {
+        return !closed && !draining;
+    }
+
+    synchronized void close() {
+        closed = true;
+        elements.clear();
+    }
+}
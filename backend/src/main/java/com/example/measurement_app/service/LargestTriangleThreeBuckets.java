@@ -0,0 +1,75 @@
+package com.example.measurement_app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013) of a bucket series,
+ * with the bucket start as x and the bucket mean as y. The first and last bucket are
+ * always kept; the others are split into {@code threshold - 2} equal bins and from each
+ * bin the bucket spanning the largest triangle with the previously kept bucket and the
+ * mean of the next bin is kept. Peaks and dips survive, which plain averaging would flatten.
+ */
+final class LargestTriangleThreeBuckets {
+
+    private LargestTriangleThreeBuckets() {
+    }
+
+    static List<MeasurementBucket> downsample(List<MeasurementBucket> series, int threshold) {
+        if (threshold < 3) {
+            throw new IllegalArgumentException("threshold must be at least 3");
+        }
+        int size = series.size();
+        if (size <= threshold) {
+            return series;
+        }
+        List<MeasurementBucket> sampled = new ArrayList<>(threshold);
+        sampled.add(series.get(0));
+        double binSize = (double) (size - 2) / (threshold - 2);
+        int kept = 0;
+        for (int bin = 0; bin < threshold - 2; bin++) {
+            int binStart = (int) (bin * binSize) + 1;
+            int binEnd = (int) ((bin + 1) * binSize) + 1;
+
+            // Mean of the next bin, or the last bucket for the last bin
+            int nextStart = binEnd;
+            int nextEnd = Math.min((int) ((bin + 2) * binSize) + 1, size);
+            if (bin == threshold - 3) {
+                nextStart = size - 1;
+                nextEnd = size;
+            }
+            double nextX = 0;
+            double nextY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                nextX += x(series.get(i));
+                nextY += series.get(i).avg();
+            }
+            nextX /= nextEnd - nextStart;
+            nextY /= nextEnd - nextStart;
+
+            double keptX = x(series.get(kept));
+            double keptY = series.get(kept).avg();
+            double maxArea = -1;
+            int selected = binStart;
+            for (int i = binStart; i < binEnd; i++) {
+                // Twice the triangle's area; only the comparison matters
+                double area = Math.abs((keptX - nextX) * (series.get(i).avg() - keptY)
+                        - (keptX - x(series.get(i))) * (nextY - keptY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected = i;
+                }
+            }
+            sampled.add(series.get(selected));
+            kept = selected;
+        }
+        sampled.add(series.get(size - 1));
+        return sampled;
+    }
+
+    private static double x(MeasurementBucket bucket) {
+        return bucket.start().getEpochSecond();
+    }
+}
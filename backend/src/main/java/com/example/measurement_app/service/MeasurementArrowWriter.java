@@ -0,0 +1,137 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.arrow.flatbuf.Buffer;
+import org.apache.arrow.flatbuf.Endianness;
+import org.apache.arrow.flatbuf.Field;
+import org.apache.arrow.flatbuf.FieldNode;
+import org.apache.arrow.flatbuf.FixedSizeBinary;
+import org.apache.arrow.flatbuf.FloatingPoint;
+import org.apache.arrow.flatbuf.Int;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.MetadataVersion;
+import org.apache.arrow.flatbuf.Precision;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.flatbuf.Schema;
+import org.apache.arrow.flatbuf.TimeUnit;
+import org.apache.arrow.flatbuf.Timestamp;
+import org.apache.arrow.flatbuf.Type;
+
+import com.example.measurement_app.repository.MeasurementColumns;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+
+/**
+ * Writes measurements in the Arrow IPC streaming format: a schema message, one record
+ * batch per {@link MeasurementColumns} batch and the end-of-stream marker. The columns are
+ * {@code id} and {@code patient_id} as int64, {@code result} as float64, {@code uuid} as
+ * fixed-size binary(16) in the canonical big-endian byte order and {@code measured_at} as a
+ * UTC microsecond timestamp, none of them nullable.
+ * <p>
+ * Only the flatbuffer message definitions come from Arrow; the batch bodies are copied
+ * straight from the primitive arrays into one reused little-endian buffer.
+ */
+final class MeasurementArrowWriter {
+
+    static final String MEDIA_TYPE = "application/vnd.apache.arrow.stream";
+
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final int FIELD_COUNT = 5;
+    // Bytes per row of the five columns
+    private static final int ROW_SIZE = 8 + 8 + 8 + 16 + 8;
+
+    private final OutputStream out;
+    private final ByteBuffer prefix = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer body;
+
+    MeasurementArrowWriter(OutputStream out, int capacity) {
+        this.out = out;
+        this.body = ByteBuffer.allocate(capacity * ROW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    void writeSchema() throws IOException {
+        FlatBufferBuilder builder = new FlatBufferBuilder(512);
+        int[] fields = {
+            field(builder, "id", Type.Int, Int.createInt(builder, 64, true)),
+            field(builder, "patient_id", Type.Int, Int.createInt(builder, 64, true)),
+            field(builder, "result", Type.FloatingPoint, FloatingPoint.createFloatingPoint(builder, Precision.DOUBLE)),
+            field(builder, "uuid", Type.FixedSizeBinary, FixedSizeBinary.createFixedSizeBinary(builder, 16)),
+            field(builder, "measured_at", Type.Timestamp,
+                    Timestamp.createTimestamp(builder, TimeUnit.MICROSECOND, builder.createString("UTC"))),
+        };
+        int schema = Schema.createSchema(builder, Endianness.Little, Schema.createFieldsVector(builder, fields), 0, 0);
+        writeMessage(builder, MessageHeader.Schema, schema, 0);
+    }
+
+    void write(MeasurementColumns batch) throws IOException {
+        int rows = batch.size();
+        body.clear();
+        body.asLongBuffer().put(batch.ids(), 0, rows);
+        body.position(body.position() + 8 * rows);
+        body.asLongBuffer().put(batch.patientIds(), 0, rows);
+        body.position(body.position() + 8 * rows);
+        body.asDoubleBuffer().put(batch.results(), 0, rows);
+        body.position(body.position() + 8 * rows);
+        body.order(ByteOrder.BIG_ENDIAN);
+        long[] most = batch.uuidMostSignificantBits();
+        long[] least = batch.uuidLeastSignificantBits();
+        for (int i = 0; i < rows; i++) {
+            body.putLong(most[i]).putLong(least[i]);
+        }
+        body.order(ByteOrder.LITTLE_ENDIAN);
+        body.asLongBuffer().put(batch.measuredAtMicros(), 0, rows);
+        body.position(body.position() + 8 * rows);
+
+        FlatBufferBuilder builder = new FlatBufferBuilder(256);
+        RecordBatch.startNodesVector(builder, FIELD_COUNT);
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            FieldNode.createFieldNode(builder, rows, 0);
+        }
+        int nodes = builder.endVector();
+        // Structs are prepended, so the buffers go in from the last column to the first;
+        // each column has an empty validity buffer followed by its values
+        long[] sizes = { 8L * rows, 8L * rows, 8L * rows, 16L * rows, 8L * rows };
+        long offset = body.position();
+        RecordBatch.startBuffersVector(builder, 2 * FIELD_COUNT);
+        for (int i = FIELD_COUNT - 1; i >= 0; i--) {
+            offset -= sizes[i];
+            Buffer.createBuffer(builder, offset, sizes[i]);
+            Buffer.createBuffer(builder, offset, 0);
+        }
+        int buffers = builder.endVector();
+        int recordBatch = RecordBatch.createRecordBatch(builder, rows, nodes, buffers, 0, 0);
+        writeMessage(builder, MessageHeader.RecordBatch, recordBatch, body.position());
+        out.write(body.array(), 0, body.position());
+    }
+
+    void writeEndOfStream() throws IOException {
+        prefix.clear();
+        prefix.putInt(CONTINUATION).putInt(0);
+        out.write(prefix.array(), 0, 8);
+    }
+
+    private static int field(FlatBufferBuilder builder, String name, byte typeType, int type) {
+        int fieldName = builder.createString(name);
+        int children = Field.createChildrenVector(builder, new int[0]);
+        return Field.createField(builder, fieldName, false, typeType, type, 0, children, 0);
+    }
+
+    // Continuation marker, metadata length, metadata padded to 8 bytes, then the body
+    private void writeMessage(FlatBufferBuilder builder, byte headerType, int header, long bodyLength)
+            throws IOException {
+        int message = Message.createMessage(builder, MetadataVersion.V5, headerType, header, bodyLength, 0);
+        builder.finish(message);
+        byte[] metadata = builder.sizedByteArray();
+        int padded = (metadata.length + 7) & ~7;
+        prefix.clear();
+        prefix.putInt(CONTINUATION).putInt(padded);
+        out.write(prefix.array(), 0, 8);
+        out.write(metadata);
+        out.write(new byte[padded - metadata.length]);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes committed measurement changes to the subscribers of {@code GET /measurements/stream}
+ * as server-sent events. Every subscriber has its own {@link DropOldestBuffer} of
+ * {@code measurement.events.buffer-size} events, drained on a virtual thread while it holds
+ * any. A subscriber that reads slower than changes arrive loses its oldest buffered events
+ * instead of holding up writers or growing without bound, and is then sent a
+ * {@code dropped} event with the number it lost so it can reload.
+ */
+@Service
+@Profile("!reactive")
+public class MeasurementEventBroadcaster {
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final Counter droppedEvents;
+
+    public MeasurementEventBroadcaster(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${measurement.events.buffer-size:256}") int bufferSize,
+            @Value("${measurement.events.timeout:30m}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.droppedEvents = Counter.builder("measurement.events.dropped")
+                .description("Events dropped from the buffers of subscribers that fell behind")
+                .register(meterRegistry);
+        Gauge.builder("measurement.events.subscribers", subscribers, Set::size)
+                .description("Open measurement event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the changes to one patient's measurements, or to all of them when
+     * {@code patientId} is null.
+     */
+    public SseEmitter subscribe(Long patientId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, patientId);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onError(ex -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        subscribers.add(subscriber);
+        // Commits the response right away, so the client sees the stream open
+        offer(subscriber, SseEmitter.event().comment("subscribed"));
+        return emitter;
+    }
+
+    /**
+     * Sends the events to the subscribers they concern once the current transaction has
+     * committed, or right away outside of one. Changes that roll back are never sent.
+     */
+    public void publish(List<MeasurementEvent> events) {
+        if (events.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(events);
+                }
+            });
+        } else {
+            broadcast(events);
+        }
+    }
+
+    public void publish(MeasurementEvent event) {
+        publish(List.of(event));
+    }
+
+    // Finds clients that went away without closing the connection, and keeps proxies from
+    // timing out quiet streams
+    @Scheduled(fixedRateString = "${measurement.events.heartbeat-interval:15s}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.buffer.isIdle()) {
+                offer(subscriber, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    // Ends the streams before the web server stops, whose graceful shutdown would
+    // otherwise wait for them to finish
+    @EventListener(ContextClosedEvent.class)
+    public void completeSubscribers() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private void broadcast(List<MeasurementEvent> events) {
+        for (MeasurementEvent event : events) {
+            // Serialized once for all subscribers, and only if one of them wants it
+            String json = null;
+            for (Subscriber subscriber : subscribers) {
+                if (event.concerns(subscriber.patientId)) {
+                    if (json == null) {
+                        json = toJson(event);
+                    }
+                    offer(subscriber, SseEmitter.event().data(json, MediaType.APPLICATION_JSON));
+                }
+            }
+        }
+    }
+
+    private void offer(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.buffer.offer(event)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        SseEmitter.SseEventBuilder event;
+        while ((event = subscriber.buffer.next()) != null) {
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException ex) {
+                // The client is gone or the emitter has completed
+                unsubscribe(subscriber);
+                return;
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.buffer.close();
+    }
+
+    private String toJson(MeasurementEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize " + event, ex);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Long patientId;
+        private final DropOldestBuffer<SseEmitter.SseEventBuilder> buffer;
+
+        Subscriber(SseEmitter emitter, Long patientId) {
+            this.emitter = emitter;
+            this.patientId = patientId;
+            this.buffer = new DropOldestBuffer<>(bufferSize,
+                    dropped -> SseEmitter.event().name("dropped")
+                            .data("{\"dropped\":" + dropped + "}", MediaType.APPLICATION_JSON),
+                    droppedEvents::increment);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.measurement_app.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.example.measurement_app.repository.MeasurementColumns;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+import jakarta.transaction.Transactional;
+
+/**
+ * Bulk export of measurements for {@code GET /measurements/export}. Rows are read from a
+ * cursor into one {@link MeasurementColumns} batch of {@code measurement.export.batch-size}
+ * rows that is written out and reused, so an export of any size holds a single batch.
+ */
+@Service
+@Profile("!reactive")
+public class MeasurementExportService {
+
+    public static final String CSV_HEADER = "id,patient_id,result,uuid,measured_at";
+    public static final String ARROW_MEDIA_TYPE = MeasurementArrowWriter.MEDIA_TYPE;
+
+    private static final DateTimeFormatter MEASURED_AT_FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final int batchSize;
+
+    public MeasurementExportService(MeasurementJdbcRepository measurementJdbcRepository,
+            @Value("${measurement.export.batch-size:65536}") int batchSize) {
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writes the measurements, or one patient's, as CSV with a header row. PostgreSQL
+     * formats the rows itself with {@code COPY}; elsewhere they are formatted here the same way.
+     */
+    @Transactional
+    public void exportCsv(Long patientId, OutputStream out) throws IOException {
+        if (measurementJdbcRepository.copyCsv(patientId, out)) {
+            return;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        stream(patientId, batch -> writeCsv(batch, writer));
+        writer.flush();
+    }
+
+    /**
+     * Writes the measurements, or one patient's, as an Arrow IPC stream with one record
+     * batch per {@code measurement.export.batch-size} rows.
+     */
+    @Transactional
+    public void exportArrow(Long patientId, OutputStream out) throws IOException {
+        MeasurementArrowWriter writer = new MeasurementArrowWriter(out, batchSize);
+        writer.writeSchema();
+        stream(patientId, writer::write);
+        writer.writeEndOfStream();
+        out.flush();
+    }
+
+    private void stream(Long patientId, BatchWriter writer) throws IOException {
+        try {
+            measurementJdbcRepository.streamColumns(patientId, new MeasurementColumns(batchSize), batch -> {
+                try {
+                    writer.write(batch);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static void writeCsv(MeasurementColumns batch, Writer writer) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            writer.write(Long.toString(batch.ids()[i]));
+            writer.write(',');
+            writer.write(Long.toString(batch.patientIds()[i]));
+            writer.write(',');
+            writer.write(formatResult(batch.results()[i]));
+            writer.write(',');
+            writer.write(new UUID(batch.uuidMostSignificantBits()[i], batch.uuidLeastSignificantBits()[i]).toString());
+            writer.write(',');
+            long micros = batch.measuredAtMicros()[i];
+            writer.write(MEASURED_AT_FORMAT.format(Instant.ofEpochSecond(
+                    Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000)));
+            writer.write('\n');
+        }
+    }
+
+    // Like PostgreSQL, which writes 60 rather than 60.0
+    private static String formatResult(double result) {
+        return result == Math.rint(result) && Math.abs(result) < 1e15
+                ? Long.toString((long) result)
+                : Double.toString(result);
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter {
+        void write(MeasurementColumns batch) throws IOException;
+    }
+}
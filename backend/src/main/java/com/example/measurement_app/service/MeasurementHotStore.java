@@ -0,0 +1,784 @@
+package com.example.measurement_app.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementColumns;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The measurements of the last {@code measurement.hot-store.window}, held in primitive
+ * arrays so that {@link MeasurementService} can answer reads of recent data without a query.
+ * Enabled with {@code measurement.hot-store.enabled=true}; the database stays the source of
+ * truth. The store is loaded when the application is ready, follows committed changes through
+ * {@link #apply} and drops rows that fall out of the window every
+ * {@code measurement.hot-store.evict-interval}.
+ * <p>
+ * A row is its result, UUID halves, time in microseconds and the index of the patient's next
+ * row: 36 bytes, so 10 million rows take about 360 MB. Each patient's rows form a chain in
+ * time order, found through a {@link LongIntHashMap}, so a patient's reads walk only that
+ * patient's rows and aggregates allocate nothing. Rows freed by deletes and eviction are
+ * reused. If more than {@code measurement.hot-store.capacity} rows would be needed, the store
+ * stops answering until it has been reloaded.
+ * <p>
+ * A failed load is retried at the next maintenance, and after each further failure only
+ * every 2nd, 4th, up to every 64th. A store that was full first counts the rows in the window
+ * and only reloads once eviction has brought them back within capacity.
+ * <p>
+ * With {@link MeasurementSnapshotStore} the rows are written to a snapshot patient by patient
+ * and read back from it on the next start, which then only reads what changed since.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "measurement.hot-store.enabled", havingValue = "true")
+public class MeasurementHotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementHotStore.class);
+
+    private static final String SNAPSHOT = "hot-store";
+    private static final int NONE = -1;
+    private static final int BATCH_SIZE = 4096;
+    private static final int INITIAL_ROWS = 1024;
+    // Failed loads back off to one retry in this many maintenance runs
+    private static final int MAX_RETRY_TICKS = 64;
+
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final Optional<MeasurementSnapshotStore> snapshots;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration window;
+    private final int capacity;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Rows
+    private double[] results = new double[INITIAL_ROWS];
+    private long[] uuidMostSignificantBits = new long[INITIAL_ROWS];
+    private long[] uuidLeastSignificantBits = new long[INITIAL_ROWS];
+    private long[] measuredAtMicros = new long[INITIAL_ROWS];
+    private int[] next = new int[INITIAL_ROWS];
+    private int allocatedRows;
+    private int freeRow = NONE;
+    private int liveRows;
+
+    // Patients, by the slot the map gives for their ID
+    private final LongIntHashMap slots = new LongIntHashMap(1024);
+    private long[] patientIds = new long[1024];
+    private int[] heads = new int[1024];
+    private int[] tails = new int[1024];
+    private int[] sizes = new int[1024];
+
+    // Rows older than this are not held; Long.MAX_VALUE while the store is not ready
+    private volatile long lowerBoundMicros = Long.MAX_VALUE;
+    // Changes committed while loading, applied once the load is done
+    private List<MeasurementEvent> pending;
+    private boolean stale = true;
+    // Loads that failed in a row, the maintenance runs to skip before the next one, and
+    // whether the last one failed because the window holds more than capacity rows
+    private int failedLoads;
+    private int skipLoads;
+    private boolean full;
+
+    public MeasurementHotStore(MeasurementJdbcRepository measurementJdbcRepository,
+            Optional<MeasurementSnapshotStore> snapshots, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${measurement.hot-store.window:7d}") Duration window,
+            @Value("${measurement.hot-store.capacity:10000000}") int capacity) {
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.snapshots = snapshots;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.window = window;
+        this.capacity = capacity;
+        Gauge.builder("measurement.hot-store.rows", this, store -> store.liveRows)
+                .description("Measurements held by the hot store")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread.ofPlatform().name("measurement-hot-store").start(() -> {
+            if (!restore()) {
+                reload();
+            }
+        });
+    }
+
+    /**
+     * Replaces the content with the measurements of the window as the database has them.
+     * Reads fall through to the database until it is done.
+     */
+    public void reload() {
+        Instant started = Instant.now();
+        long cutoff = toMicros(started.minus(window));
+        if (!startLoad()) {
+            return;
+        }
+        try {
+            // Rows come in time order, so every insert is an append to its patient's chain
+            transactionTemplate.executeWithoutResult(status -> measurementJdbcRepository.streamRange(null,
+                    started.minus(window), null, measurement -> {
+                        lock.writeLock().lock();
+                        try {
+                            insertOrFail(measurement.getPatientId(), measurement.getUuid().getMostSignificantBits(),
+                                    measurement.getUuid().getLeastSignificantBits(), measurement.getResult(),
+                                    toMicros(measurement.getMeasuredAt()));
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    }));
+        } catch (RuntimeException ex) {
+            failLoad(ex);
+            return;
+        }
+        finishLoad(started, cutoff, "the database");
+    }
+
+    /**
+     * Reads the rows of the window back from the last snapshot, then the measurements changed
+     * since from the database: those the change journal names and those from the snapshot's
+     * catch-up id on.
+     *
+     * @return false if there is no usable snapshot
+     */
+    boolean restore() {
+        Optional<MeasurementSnapshotStore.Snapshot> opened = snapshots.flatMap(store -> store.open(SNAPSHOT));
+        if (opened.isEmpty()) {
+            return false;
+        }
+        Instant started = Instant.now();
+        long cutoff = toMicros(started.minus(window));
+        try (MeasurementSnapshotStore.Snapshot snapshot = opened.get()) {
+            if (!startLoad()) {
+                return true;
+            }
+            Set<UUID> changed = snapshots.get().changes(SNAPSHOT);
+            PrimitiveIterator.OfLong longs = snapshot.longs();
+            while (longs.hasNext()) {
+                long patientId = longs.nextLong();
+                long count = longs.nextLong();
+                lock.writeLock().lock();
+                try {
+                    for (long i = 0; i < count; i++) {
+                        long micros = longs.nextLong();
+                        double result = Double.longBitsToDouble(longs.nextLong());
+                        long mostSignificantBits = longs.nextLong();
+                        long leastSignificantBits = longs.nextLong();
+                        if (micros >= cutoff && (changed.isEmpty()
+                                || !changed.contains(new UUID(mostSignificantBits, leastSignificantBits)))) {
+                            insertOrFail(patientId, mostSignificantBits, leastSignificantBits, result, micros);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            List<UUID> reread = new ArrayList<>(changed);
+            for (int from = 0; from < reread.size(); from += BATCH_SIZE) {
+                List<Measurement> current = measurementJdbcRepository.findByUuids(
+                        reread.subList(from, Math.min(reread.size(), from + BATCH_SIZE)));
+                lock.writeLock().lock();
+                try {
+                    for (Measurement measurement : current) {
+                        catchUp(measurement.getPatientId(), measurement.getUuid().getMostSignificantBits(),
+                                measurement.getUuid().getLeastSignificantBits(), measurement.getResult(),
+                                toMicros(measurement.getMeasuredAt()), cutoff);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> measurementJdbcRepository.streamColumns(
+                    snapshot.catchUpFromId(), Long.MAX_VALUE, new MeasurementColumns(BATCH_SIZE), batch -> {
+                        lock.writeLock().lock();
+                        try {
+                            for (int i = 0; i < batch.size(); i++) {
+                                catchUp(batch.patientIds()[i], batch.uuidMostSignificantBits()[i],
+                                        batch.uuidLeastSignificantBits()[i], batch.results()[i],
+                                        batch.measuredAtMicros()[i], cutoff);
+                            }
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    }));
+            finishLoad(started, cutoff, "the snapshot of " + snapshot.writtenAt());
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            failLoad(ex);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the rows to a snapshot, if snapshots are enabled and the store is loaded.
+     * Changes wait while it is written.
+     */
+    @Scheduled(fixedRateString = "${measurement.snapshot.interval:5m}",
+            initialDelayString = "${measurement.snapshot.interval:5m}")
+    @PreDestroy
+    public void writeSnapshot() {
+        if (snapshots.isEmpty() || lowerBoundMicros == Long.MAX_VALUE) {
+            return;
+        }
+        snapshots.get().write(SNAPSHOT, channel -> {
+            // Not closed, which would close the channel before it is forced
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            lock.readLock().lock();
+            try {
+                for (int slot = 0; slot < slots.size(); slot++) {
+                    if (sizes[slot] == 0) {
+                        continue;
+                    }
+                    out.writeLong(patientIds[slot]);
+                    out.writeLong(sizes[slot]);
+                    for (int row = heads[slot]; row != NONE; row = next[row]) {
+                        out.writeLong(measuredAtMicros[row]);
+                        out.writeLong(Double.doubleToRawLongBits(results[row]));
+                        out.writeLong(uuidMostSignificantBits[row]);
+                        out.writeLong(uuidLeastSignificantBits[row]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * Applies the changes once the current transaction has committed, or right away outside
+     * of one, like the events sent to subscribers.
+     */
+    public void apply(List<MeasurementEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAll(events);
+                }
+            });
+        } else {
+            applyAll(events);
+        }
+    }
+
+    /**
+     * Whether every measurement taken at or after {@code from} is held.
+     */
+    public boolean covers(Instant from) {
+        return toMicros(from) >= lowerBoundMicros;
+    }
+
+    /**
+     * Whether the store holds exactly {@code count} measurements of the patient, which, with
+     * the count from the patient's summary, means it holds all of them.
+     */
+    public boolean holdsAll(Long patientId, long count) {
+        lock.readLock().lock();
+        try {
+            if (lowerBoundMicros == Long.MAX_VALUE) {
+                return false;
+            }
+            int slot = slots.get(patientId);
+            return (slot == LongIntHashMap.MISSING ? 0 : sizes[slot]) == count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Statistics of the patient's measurements held, with percentiles computed like
+     * PostgreSQL's {@code PERCENTILE_CONT}.
+     */
+    public MeasurementStats computeStats(Long patientId) {
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(patientId);
+            int count = slot == LongIntHashMap.MISSING ? 0 : sizes[slot];
+            if (count == 0) {
+                return new MeasurementStats(0, null, null, null, null, null, null, null);
+            }
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (int row = heads[slot]; row != NONE; row = next[row]) {
+                min = Math.min(min, results[row]);
+                max = Math.max(max, results[row]);
+                sum += results[row];
+            }
+            double mean = sum / count;
+            double squares = 0;
+            double[] sorted = new double[count];
+            int i = 0;
+            for (int row = heads[slot]; row != NONE; row = next[row]) {
+                squares += (results[row] - mean) * (results[row] - mean);
+                sorted[i++] = results[row];
+            }
+            Arrays.sort(sorted);
+            return new MeasurementStats(count, min, max, mean, count > 1 ? Math.sqrt(squares / (count - 1)) : null,
+                    percentile(sorted, 0.5), percentile(sorted, 0.95), percentile(sorted, 0.99));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The patient's measurements in {@code [from, to)} in buckets, like
+     * {@link MeasurementJdbcRepository#findBuckets}. The caller checks {@link #covers}.
+     */
+    public List<MeasurementBucket> findBuckets(Long patientId, Instant from, Instant to, long bucketSeconds) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        long bucketMicros = bucketSeconds * 1_000_000;
+        List<MeasurementBucket> buckets = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(patientId);
+            int row = slot == LongIntHashMap.MISSING ? NONE : heads[slot];
+            while (row != NONE && measuredAtMicros[row] < fromMicros) {
+                row = next[row];
+            }
+            while (row != NONE && measuredAtMicros[row] < toMicros) {
+                long bucket = Math.floorDiv(measuredAtMicros[row], bucketMicros);
+                long count = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double sum = 0;
+                for (; row != NONE && measuredAtMicros[row] < toMicros
+                        && Math.floorDiv(measuredAtMicros[row], bucketMicros) == bucket; row = next[row]) {
+                    count++;
+                    min = Math.min(min, results[row]);
+                    max = Math.max(max, results[row]);
+                    sum += results[row];
+                }
+                buckets.add(new MeasurementBucket(Instant.ofEpochSecond(bucket * bucketSeconds), count, min, max,
+                        sum / count));
+            }
+            return buckets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands the patient's measurements taken in {@code [from, to)} to the consumer in time
+     * order; a null {@code to} leaves the range open. They are copied out first, so the
+     * consumer does not hold up writers. The caller checks {@link #covers}.
+     */
+    public void streamRange(Long patientId, Instant from, Instant to, Consumer<Measurement> consumer) {
+        long fromMicros = toMicros(from);
+        long toMicros = to != null ? toMicros(to) : Long.MAX_VALUE;
+        List<Measurement> measurements = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(patientId);
+            for (int row = slot == LongIntHashMap.MISSING ? NONE : heads[slot];
+                    row != NONE && measuredAtMicros[row] < toMicros; row = next[row]) {
+                if (measuredAtMicros[row] >= fromMicros) {
+                    measurements.add(toMeasurement(patientId, row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        measurements.forEach(consumer);
+    }
+
+    /**
+     * The patient's measurement with the given UUID, if held. The caller checks
+     * {@link #covers} for the time it was taken.
+     */
+    public Optional<Measurement> findByUuid(Long patientId, UUID uuid) {
+        lock.readLock().lock();
+        try {
+            int row = find(patientId, uuid);
+            return row == NONE ? Optional.empty() : Optional.of(toMeasurement(patientId, row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedRateString = "${measurement.hot-store.evict-interval:1m}",
+            initialDelayString = "${measurement.hot-store.evict-interval:1m}")
+    public void maintain() {
+        boolean reload = false;
+        boolean checkSize = false;
+        lock.writeLock().lock();
+        try {
+            if (stale && pending == null) {
+                reload = skipLoads == 0;
+                skipLoads = Math.max(0, skipLoads - 1);
+                checkSize = full;
+            } else if (lowerBoundMicros != Long.MAX_VALUE) {
+                evictBefore(toMicros(Instant.now().minus(window)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (reload && checkSize) {
+            // Counting on the measured_at index is much cheaper than a load that fails again
+            long rows = measurementJdbcRepository.countMeasuredSince(Instant.now().minus(window));
+            if (rows > capacity) {
+                log.warn("The hot store window holds {} measurements, more than its capacity of {}; "
+                        + "reads go to the database", rows, capacity);
+                lock.writeLock().lock();
+                try {
+                    backOff(true);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return;
+            }
+        }
+        if (reload) {
+            reload();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean startLoad() {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                return false;
+            }
+            lowerBoundMicros = Long.MAX_VALUE;
+            clear();
+            pending = new ArrayList<>();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void finishLoad(Instant started, long cutoff, String source) {
+        lock.writeLock().lock();
+        try {
+            List<MeasurementEvent> committedWhileLoading = pending;
+            pending = null;
+            stale = false;
+            failedLoads = 0;
+            skipLoads = 0;
+            full = false;
+            lowerBoundMicros = cutoff;
+            committedWhileLoading.forEach(event -> applyNow(event, true));
+            log.info("Loaded {} measurements of {} patients into the hot store from {} in {} ms", liveRows,
+                    slots.size(), source, Duration.between(started, Instant.now()).toMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void failLoad(Exception ex) {
+        log.error("Loading the hot store failed; reads go to the database", ex);
+        lock.writeLock().lock();
+        try {
+            clear();
+            pending = null;
+            stale = true;
+            backOff(ex instanceof CapacityExceededException);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void backOff(boolean exceeded) {
+        failedLoads++;
+        skipLoads = Math.min(MAX_RETRY_TICKS, 1 << Math.min(failedLoads - 1, 30)) - 1;
+        full = exceeded;
+    }
+
+    private void applyAll(List<MeasurementEvent> events) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.addAll(events);
+            } else if (!stale) {
+                events.forEach(event -> applyNow(event, false));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshots.ifPresent(store -> store.recordChanges(SNAPSHOT, events));
+    }
+
+    // A row read while catching up may already have been restored or replayed
+    private void catchUp(long patientId, long mostSignificantBits, long leastSignificantBits, double result,
+            long micros, long cutoff) {
+        if (micros >= cutoff && find(patientId, new UUID(mostSignificantBits, leastSignificantBits)) == NONE) {
+            insertOrFail(patientId, mostSignificantBits, leastSignificantBits, result, micros);
+        }
+    }
+
+    private void insertOrFail(long patientId, long mostSignificantBits, long leastSignificantBits, double result,
+            long micros) {
+        if (!insert(patientId, mostSignificantBits, leastSignificantBits, result, micros)) {
+            throw new CapacityExceededException("More than " + capacity + " measurements in the window");
+        }
+    }
+
+    // A change replayed after a load may already be part of what was loaded
+    private void applyNow(MeasurementEvent event, boolean replayed) {
+        switch (event.type()) {
+            case CREATED -> {
+                long micros = toMicros(event.measuredAt());
+                if (micros < lowerBoundMicros
+                        || replayed && find(event.patientId(), event.uuid()) != NONE) {
+                    return;
+                }
+                if (!insert(event.patientId(), event.uuid().getMostSignificantBits(),
+                        event.uuid().getLeastSignificantBits(), event.result(), micros)) {
+                    log.warn("The hot store is full at {} measurements; reads go to the database until it is reloaded",
+                            capacity);
+                    lowerBoundMicros = Long.MAX_VALUE;
+                    clear();
+                    stale = true;
+                    backOff(true);
+                }
+            }
+            case UPDATED -> {
+                Long from = event.previousPatientId() != null ? event.previousPatientId() : event.patientId();
+                int row = event.previousPatientId() != null
+                        ? unlink(from, event.uuid())
+                        : find(from, event.uuid());
+                if (row == NONE) {
+                    return;
+                }
+                results[row] = event.result();
+                if (event.previousPatientId() != null) {
+                    link(slotOf(event.patientId()), row);
+                }
+            }
+            case DELETED -> {
+                int row = unlink(event.patientId(), event.uuid());
+                if (row != NONE) {
+                    release(row);
+                }
+            }
+        }
+    }
+
+    private boolean insert(long patientId, long mostSignificantBits, long leastSignificantBits, double result,
+            long micros) {
+        int row = allocate();
+        if (row == NONE) {
+            return false;
+        }
+        results[row] = result;
+        uuidMostSignificantBits[row] = mostSignificantBits;
+        uuidLeastSignificantBits[row] = leastSignificantBits;
+        measuredAtMicros[row] = micros;
+        link(slotOf(patientId), row);
+        liveRows++;
+        return true;
+    }
+
+    // Keeps the chain in time order; rows mostly arrive in order, so this is usually an append
+    private void link(int slot, int row) {
+        long micros = measuredAtMicros[row];
+        if (heads[slot] == NONE) {
+            next[row] = NONE;
+            heads[slot] = row;
+            tails[slot] = row;
+        } else if (micros >= measuredAtMicros[tails[slot]]) {
+            next[row] = NONE;
+            next[tails[slot]] = row;
+            tails[slot] = row;
+        } else {
+            int previous = NONE;
+            int current = heads[slot];
+            while (current != NONE && measuredAtMicros[current] <= micros) {
+                previous = current;
+                current = next[current];
+            }
+            next[row] = current;
+            if (previous == NONE) {
+                heads[slot] = row;
+            } else {
+                next[previous] = row;
+            }
+        }
+        sizes[slot]++;
+    }
+
+    private int unlink(long patientId, UUID uuid) {
+        int slot = slots.get(patientId);
+        if (slot == LongIntHashMap.MISSING) {
+            return NONE;
+        }
+        int previous = NONE;
+        for (int row = heads[slot]; row != NONE; previous = row, row = next[row]) {
+            if (matches(row, uuid)) {
+                if (previous == NONE) {
+                    heads[slot] = next[row];
+                } else {
+                    next[previous] = next[row];
+                }
+                if (tails[slot] == row) {
+                    tails[slot] = previous;
+                }
+                sizes[slot]--;
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    private int find(long patientId, UUID uuid) {
+        int slot = slots.get(patientId);
+        for (int row = slot == LongIntHashMap.MISSING ? NONE : heads[slot]; row != NONE; row = next[row]) {
+            if (matches(row, uuid)) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    // The oldest rows are at the head of every chain
+    private void evictBefore(long cutoff) {
+        lowerBoundMicros = cutoff;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            while (heads[slot] != NONE && measuredAtMicros[heads[slot]] < cutoff) {
+                int row = heads[slot];
+                heads[slot] = next[row];
+                sizes[slot]--;
+                release(row);
+            }
+            if (heads[slot] == NONE) {
+                tails[slot] = NONE;
+            }
+        }
+    }
+
+    private boolean matches(int row, UUID uuid) {
+        return uuidMostSignificantBits[row] == uuid.getMostSignificantBits()
+                && uuidLeastSignificantBits[row] == uuid.getLeastSignificantBits();
+    }
+
+    private int slotOf(long patientId) {
+        int slot = slots.get(patientId);
+        if (slot != LongIntHashMap.MISSING) {
+            return slot;
+        }
+        slot = slots.size();
+        if (slot == heads.length) {
+            int grown = slot + (slot >> 1);
+            patientIds = Arrays.copyOf(patientIds, grown);
+            heads = Arrays.copyOf(heads, grown);
+            tails = Arrays.copyOf(tails, grown);
+            sizes = Arrays.copyOf(sizes, grown);
+        }
+        patientIds[slot] = patientId;
+        heads[slot] = NONE;
+        tails[slot] = NONE;
+        sizes[slot] = 0;
+        slots.put(patientId, slot);
+        return slot;
+    }
+
+    private int allocate() {
+        if (freeRow != NONE) {
+            int row = freeRow;
+            freeRow = next[row];
+            return row;
+        }
+        if (allocatedRows == capacity) {
+            return NONE;
+        }
+        if (allocatedRows == results.length) {
+            int grown = (int) Math.min(capacity, allocatedRows + (long) (allocatedRows >> 1));
+            results = Arrays.copyOf(results, grown);
+            uuidMostSignificantBits = Arrays.copyOf(uuidMostSignificantBits, grown);
+            uuidLeastSignificantBits = Arrays.copyOf(uuidLeastSignificantBits, grown);
+            measuredAtMicros = Arrays.copyOf(measuredAtMicros, grown);
+            next = Arrays.copyOf(next, grown);
+        }
+        return allocatedRows++;
+    }
+
+    private void release(int row) {
+        next[row] = freeRow;
+        freeRow = row;
+        liveRows--;
+    }
+
+    private void clear() {
+        slots.clear();
+        allocatedRows = 0;
+        freeRow = NONE;
+        liveRows = 0;
+    }
+
+    private Measurement toMeasurement(Long patientId, int row) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(results[row]);
+        measurement.setUuid(new UUID(uuidMostSignificantBits[row], uuidLeastSignificantBits[row]));
+        long micros = measuredAtMicros[row];
+        measurement.setMeasuredAt(Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1_000));
+        return measurement;
+    }
+
+    private static Double percentile(double[] sorted, double fraction) {
+        double position = fraction * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = (int) Math.ceil(position);
+        return sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000), instant.getNano() / 1_000);
+    }
+
+    private static final class CapacityExceededException extends IllegalStateException {
+
+        CapacityExceededException(String message) {
+            super(message);
+        }
+    }
+}
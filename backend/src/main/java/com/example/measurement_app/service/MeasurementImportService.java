@@ -0,0 +1,451 @@
+package com.example.measurement_app.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementImport;
+import com.example.measurement_app.dto.MeasurementImport.Status;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Bulk import of measurement files for {@code POST /measurements/imports}. The upload is
+ * spooled to {@code measurement.import.directory} and imported in the background, one file
+ * at a time, in chunks of {@code measurement.import.chunk-size} lines. Each chunk is
+ * validated against the constraints of {@link Measurement}, given the partitions of its
+ * months, inserted with {@link MeasurementJdbcRepository#copyIn} and added to the patient
+ * summaries in one transaction; its rejected rows are then appended to the import's error
+ * file.
+ * <p>
+ * Rows without a UUID get one derived from the import and the line number, so every row
+ * has the same UUID however often it is read. Rows whose UUID already exists are counted as
+ * duplicates and skipped, which makes resuming from any earlier line safe. Imports keep the
+ * {@link MeasurementHotStore} and {@link MeasurementUuidIndex} current, and the index, once
+ * loaded, answers the duplicate check. They do not send measurement events; subscribers
+ * should reload once an import has completed.
+ */
+@Service
+@Profile("!reactive")
+public class MeasurementImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementImportService.class);
+
+    public enum Format {
+        CSV, NDJSON;
+
+        String extension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final PatientSummaryService patientSummaryService;
+    private final MeasurementPartitionService partitionService;
+    private final Optional<MeasurementHotStore> hotStore;
+    private final Optional<MeasurementUuidIndex> uuidIndex;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final int chunkSize;
+    private final Map<UUID, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> Thread.ofPlatform().name("measurement-import").unstarted(runnable));
+    private volatile boolean stopping;
+
+    public MeasurementImportService(MeasurementJdbcRepository measurementJdbcRepository,
+            PatientSummaryService patientSummaryService, MeasurementPartitionService partitionService,
+            Optional<MeasurementHotStore> hotStore, Optional<MeasurementUuidIndex> uuidIndex, Validator validator,
+            ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+            @Value("${measurement.import.directory:imports}") Path directory,
+            @Value("${measurement.import.chunk-size:50000}") int chunkSize) {
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.patientSummaryService = patientSummaryService;
+        this.partitionService = partitionService;
+        this.hotStore = hotStore;
+        this.uuidIndex = uuidIndex;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Spools the upload and queues its import. CSV files start with a header naming the
+     * columns; {@code patient_id} and {@code result} are required, {@code uuid} and
+     * {@code measured_at} optional and others ignored, so an export can be imported as it
+     * is. NDJSON lines are objects like the body of {@code POST /measurements}, optionally
+     * with a {@code uuid}.
+     *
+     * @param skipLines lines to skip, e.g. those an earlier import of the same file committed
+     */
+    public MeasurementImport start(Format format, InputStream upload, long skipLines) throws IOException {
+        UUID id = UUID.randomUUID();
+        Files.createDirectories(directory);
+        Path file = directory.resolve(id + "." + format.extension());
+        Files.copy(upload, file);
+        Job job = new Job(id, format, file);
+        jobs.put(id, job);
+        return submit(job, skipLines);
+    }
+
+    /**
+     * Queues an import that failed or was stopped again, after its committed lines or after
+     * {@code fromLine}. Imports from before a restart are found by their spooled file.
+     *
+     * @return empty if there is no such import
+     * @throws IllegalStateException if the import is queued or running
+     */
+    public Optional<MeasurementImport> resume(UUID id, Long fromLine) {
+        Job job = jobs.computeIfAbsent(id, this::recover);
+        if (job == null) {
+            return Optional.empty();
+        }
+        return Optional.of(submit(job, fromLine != null ? fromLine : job.linesProcessed()));
+    }
+
+    public Optional<MeasurementImport> find(UUID id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::snapshot);
+    }
+
+    /**
+     * The NDJSON file listing the import's rejected rows with their line and the reason.
+     */
+    public Optional<Path> findRejected(UUID id) {
+        return Optional.ofNullable(jobs.get(id)).map(job -> rejectedFile(job.id)).filter(Files::exists);
+    }
+
+    // The running import stops after its current chunk and can be resumed after the restart
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private MeasurementImport submit(Job job, long fromLine) {
+        synchronized (job) {
+            if (job.status == Status.QUEUED || job.status == Status.RUNNING) {
+                throw new IllegalStateException("Import " + job.id + " is " + job.status);
+            }
+            job.status = Status.QUEUED;
+            job.error = null;
+            job.finishedAt = null;
+        }
+        executor.execute(() -> run(job, fromLine));
+        return job.snapshot();
+    }
+
+    private Job recover(UUID id) {
+        for (Format format : Format.values()) {
+            Path file = directory.resolve(id + "." + format.extension());
+            if (Files.exists(file)) {
+                Job job = new Job(id, format, file);
+                job.status = Status.STOPPED;
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private Path rejectedFile(UUID id) {
+        return directory.resolve(id + ".rejected.ndjson");
+    }
+
+    private void run(Job job, long fromLine) {
+        if (stopping) {
+            job.finished(Status.STOPPED, "Stopped by shutdown");
+            return;
+        }
+        job.started(fromLine);
+        try (BufferedReader reader = Files.newBufferedReader(job.file, StandardCharsets.UTF_8);
+                Writer rejectedWriter = Files.newBufferedWriter(rejectedFile(job.id), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            long lineNumber = 0;
+            RowParser parser;
+            if (job.format == Format.CSV) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null) {
+                    throw new IllegalArgumentException("The file is empty");
+                }
+                parser = new CsvRowParser(header);
+            } else {
+                parser = this::parseJson;
+            }
+
+            Chunk chunk = new Chunk();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= fromLine || line.isBlank()) {
+                    continue;
+                }
+                chunk.add(job, lineNumber, line, parser);
+                if (chunk.lines() >= chunkSize) {
+                    commit(job, chunk, lineNumber, rejectedWriter);
+                    chunk = new Chunk();
+                    if (stopping) {
+                        job.finished(Status.STOPPED, "Stopped by shutdown");
+                        return;
+                    }
+                }
+            }
+            commit(job, chunk, Math.max(lineNumber, fromLine), rejectedWriter);
+            job.finished(Status.COMPLETED, null);
+            log.info("Imported {}", job.snapshot());
+        } catch (IOException | RuntimeException ex) {
+            log.error("Import {} failed after line {}", job.id, job.linesProcessed(), ex);
+            job.finished(Status.FAILED, ex.getMessage());
+        }
+    }
+
+    private void commit(Job job, Chunk chunk, long lineNumber, Writer rejectedWriter) throws IOException {
+        int duplicates = chunk.measurements.isEmpty() ? 0 : transactionTemplate.execute(status -> {
+            // Duplicates within the file, then those already in the table
+            Map<UUID, Measurement> unique = new LinkedHashMap<>();
+            chunk.measurements.forEach(measurement -> unique.putIfAbsent(measurement.getUuid(), measurement));
+            (uuidIndex.isPresent() && uuidIndex.get().isReady()
+                    ? uuidIndex.get().findExisting(unique.keySet())
+                    : measurementJdbcRepository.findExistingUuids(unique.keySet())).forEach(unique::remove);
+            List<Measurement> fresh = new ArrayList<>(unique.values());
+            if (!fresh.isEmpty()) {
+                // Imported rows are often old; their months need partitions before COPY
+                partitionService.ensurePartitions(fresh.stream().map(Measurement::getMeasuredAt).toList());
+                measurementJdbcRepository.copyIn(fresh);
+                patientSummaryService.recordAdded(fresh);
+                List<MeasurementEvent> created = fresh.stream().map(MeasurementEvent::created).toList();
+                hotStore.ifPresent(store -> store.apply(created));
+                uuidIndex.ifPresent(index -> index.apply(created));
+            }
+            return chunk.measurements.size() - fresh.size();
+        });
+        for (String rejected : chunk.rejected) {
+            rejectedWriter.write(rejected);
+            rejectedWriter.write('\n');
+        }
+        rejectedWriter.flush();
+        job.committed(lineNumber, chunk.measurements.size() - duplicates, duplicates, chunk.rejected.size());
+    }
+
+    private Measurement parseJson(UUID jobId, long lineNumber, String line) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(line);
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return measurement(jobId, lineNumber,
+                node.hasNonNull("patientId") ? node.get("patientId").asText() : null,
+                node.hasNonNull("result") ? node.get("result").asText() : null,
+                node.hasNonNull("uuid") ? node.get("uuid").asText() : null,
+                node.hasNonNull("measuredAt") ? objectMapper.convertValue(node.get("measuredAt"), Instant.class) : null);
+    }
+
+    private static Measurement measurement(UUID jobId, long lineNumber, String patientId, String result,
+            String uuid, Instant measuredAt) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId != null ? Long.valueOf(patientId) : null);
+        measurement.setResult(result != null ? Double.valueOf(result) : null);
+        measurement.setUuid(uuid != null
+                ? UUID.fromString(uuid)
+                : UUID.nameUUIDFromBytes((jobId + ":" + lineNumber).getBytes(StandardCharsets.UTF_8)));
+        if (measuredAt != null) {
+            measurement.setMeasuredAt(measuredAt);
+        }
+        return measurement;
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        Measurement parse(UUID jobId, long lineNumber, String line) throws JsonProcessingException;
+    }
+
+    /**
+     * Plain comma-separated values as written by {@code GET /measurements/export}: no
+     * quoted commas, but surrounding quotes are stripped.
+     */
+    private static final class CsvRowParser implements RowParser {
+
+        private final int columns;
+        private final int patientId;
+        private final int result;
+        private final int uuid;
+        private final int measuredAt;
+
+        CsvRowParser(String header) {
+            List<String> names = Arrays.stream(header.split(",", -1))
+                    .map(name -> unquote(name).toLowerCase(Locale.ROOT).replace("_", ""))
+                    .toList();
+            this.columns = names.size();
+            this.patientId = names.indexOf("patientid");
+            this.result = names.indexOf("result");
+            this.uuid = names.indexOf("uuid");
+            this.measuredAt = names.indexOf("measuredat");
+            if (patientId < 0 || result < 0) {
+                throw new IllegalArgumentException("The CSV header must name the patient_id and result columns");
+            }
+        }
+
+        @Override
+        public Measurement parse(UUID jobId, long lineNumber, String line) {
+            String[] values = line.split(",", -1);
+            if (values.length != columns) {
+                throw new IllegalArgumentException("Expected " + columns + " columns but found " + values.length);
+            }
+            return measurement(jobId, lineNumber, value(values, patientId), value(values, result), value(values, uuid),
+                    value(values, measuredAt) != null ? Instant.parse(value(values, measuredAt)) : null);
+        }
+
+        private static String value(String[] values, int index) {
+            if (index < 0) {
+                return null;
+            }
+            String value = unquote(values[index].trim());
+            return value.isEmpty() ? null : value;
+        }
+
+        private static String unquote(String value) {
+            return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                    ? value.substring(1, value.length() - 1)
+                    : value;
+        }
+    }
+
+    private final class Chunk {
+
+        private final List<Measurement> measurements = new ArrayList<>();
+        private final List<String> rejected = new ArrayList<>();
+
+        int lines() {
+            return measurements.size() + rejected.size();
+        }
+
+        void add(Job job, long lineNumber, String line, RowParser parser) {
+            Measurement measurement;
+            try {
+                measurement = parser.parse(job.id, lineNumber, line);
+            } catch (JsonProcessingException | RuntimeException ex) {
+                reject(lineNumber, line, ex.getMessage());
+                return;
+            }
+            Set<ConstraintViolation<Measurement>> violations = validator.validate(measurement);
+            if (violations.isEmpty()) {
+                measurements.add(measurement);
+            } else {
+                reject(lineNumber, line, violations.stream().map(ConstraintViolation::getMessage).sorted()
+                        .collect(Collectors.joining(" ")));
+            }
+        }
+
+        private void reject(long lineNumber, String line, String error) {
+            try {
+                rejected.add(objectMapper.writeValueAsString(Map.of("line", lineNumber, "error", String.valueOf(error),
+                        "input", line)));
+            } catch (JsonProcessingException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private static final class Job {
+
+        private final UUID id;
+        private final Format format;
+        private final Path file;
+        private Status status;
+        private long linesProcessed;
+        private long imported;
+        private long duplicates;
+        private long rejected;
+        private long rowsThisRun;
+        private long startedNanos;
+        private long finishedNanos;
+        private Instant startedAt;
+        private Instant finishedAt;
+        private String error;
+
+        Job(UUID id, Format format, Path file) {
+            this.id = id;
+            this.format = format;
+            this.file = file;
+        }
+
+        synchronized void started(long fromLine) {
+            status = Status.RUNNING;
+            linesProcessed = fromLine;
+            rowsThisRun = 0;
+            startedNanos = System.nanoTime();
+            startedAt = Instant.now();
+        }
+
+        synchronized void committed(long lines, long imported, long duplicates, long rejected) {
+            this.linesProcessed = lines;
+            this.imported += imported;
+            this.duplicates += duplicates;
+            this.rejected += rejected;
+            this.rowsThisRun += imported + duplicates + rejected;
+        }
+
+        synchronized void finished(Status status, String error) {
+            this.status = status;
+            this.error = error;
+            this.finishedNanos = System.nanoTime();
+            this.finishedAt = Instant.now();
+        }
+
+        synchronized long linesProcessed() {
+            return linesProcessed;
+        }
+
+        synchronized MeasurementImport snapshot() {
+            double rowsPerSecond = 0;
+            if (status != Status.QUEUED && startedAt != null) {
+                long elapsed = (status == Status.RUNNING ? System.nanoTime() : finishedNanos) - startedNanos;
+                rowsPerSecond = elapsed > 0 ? rowsThisRun * 1e9 / elapsed : 0;
+            }
+            return new MeasurementImport(id, format.extension(), status, linesProcessed, imported, duplicates, rejected,
+                    rowsPerSecond, startedAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.measurement_app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.example.measurement_app.model.Measurement;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind ingest for {@code POST /measurements}, enabled with
+ * {@code measurement.ingest.mode=async}. Accepted measurements wait in a bounded queue and
+ * a single writer thread inserts whatever has accumulated, up to
+ * {@code measurement.ingest.batch-size} at a time, through
+ * {@link MeasurementService#saveMeasurements}: one transaction and one commit per batch
+ * instead of one per request. Bursts therefore raise the batch size rather than the
+ * latency of each request.
+ * <p>
+ * Until its batch commits, a measurement can be looked up by UUID with
+ * {@link #findPending}. A batch that fails is retried with backoff up to
+ * {@code measurement.ingest.max-attempts} times and then dropped and logged, except that a
+ * constraint violation makes the writer save that batch's measurements one at a time so only
+ * the offending one is lost. On shutdown
+ * the queue stops accepting and the writer flushes what is left before the database goes away.
+ * <p>
+ * With a {@link MeasurementWriteAheadLog} every measurement is logged before it is
+ * acknowledged and the log is replayed on startup. Every failure other than a constraint
+ * violation, including those of the replay's check for measurements already written, is
+ * then retried until it succeeds, or left in the log for the next start when shutting down.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "measurement.ingest.mode", havingValue = "async")
+public class MeasurementIngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementIngestQueue.class);
+
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+
+    private final MeasurementService measurementService;
+    private final Optional<MeasurementWriteAheadLog> writeAheadLog;
+    private final BlockingQueue<Measurement> queue;
+    // Keeps the log and the queue in the same order
+    private final ReentrantLock offerLock = new ReentrantLock();
+    // Measurements from acceptance until their batch has committed
+    private final Map<UUID, Measurement> pending = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Thread writer;
+    private volatile boolean accepting = true;
+
+    public MeasurementIngestQueue(MeasurementService measurementService,
+            Optional<MeasurementWriteAheadLog> writeAheadLog, MeterRegistry meterRegistry,
+            @Value("${measurement.ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${measurement.ingest.batch-size:500}") int batchSize,
+            @Value("${measurement.ingest.max-attempts:5}") int maxAttempts,
+            @Value("${measurement.ingest.retry-backoff:200ms}") Duration retryBackoff) {
+        this.measurementService = measurementService;
+        this.writeAheadLog = writeAheadLog;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.rejected = Counter.builder("measurement.ingest.rejected")
+                .description("Measurements rejected because the ingest queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("measurement.ingest.failed")
+                .description("Accepted measurements dropped after their batch failed every attempt")
+                .register(meterRegistry);
+        Gauge.builder("measurement.ingest.pending", pending, Map::size)
+                .description("Accepted measurements not yet committed")
+                .register(meterRegistry);
+        this.writer = Thread.ofPlatform().name("measurement-ingest").start(this::writeLoop);
+    }
+
+    /**
+     * Queues an already validated measurement for the writer.
+     *
+     * @return false if the queue is full or shutting down, in which case nothing was queued
+     */
+    public boolean offer(Measurement measurement) {
+        if (!accepting) {
+            rejected.increment();
+            return false;
+        }
+        long sequence = -1;
+        offerLock.lock();
+        try {
+            if (queue.remainingCapacity() == 0) {
+                rejected.increment();
+                return false;
+            }
+            if (writeAheadLog.isPresent()) {
+                sequence = writeAheadLog.get().append(measurement);
+            }
+            // Visible to lookups before the writer can possibly have committed it
+            pending.put(measurement.getUuid(), measurement);
+            // Only offers add to the queue, so there is still room
+            queue.add(measurement);
+        } finally {
+            offerLock.unlock();
+        }
+        // Outside the lock, so that concurrent offers share one force of the log
+        if (writeAheadLog.isPresent()) {
+            writeAheadLog.get().awaitDurable(sequence);
+        }
+        return true;
+    }
+
+    /**
+     * A measurement that was accepted but whose batch has not committed yet.
+     */
+    public Optional<Measurement> findPending(UUID uuid) {
+        return Optional.ofNullable(pending.get(uuid));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        accepting = false;
+        writer.join();
+        if (!pending.isEmpty() && writeAheadLog.isPresent()) {
+            log.warn("{} accepted measurements are left in the write-ahead log for the next start", pending.size());
+        } else if (!pending.isEmpty()) {
+            log.error("{} accepted measurements were not written before shutdown", pending.size());
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            if (writeAheadLog.isPresent() && !replay()) {
+                return;
+            }
+            List<Measurement> batch = new ArrayList<>(batchSize);
+            while (accepting || !queue.isEmpty()) {
+                Measurement first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                if (!write(batch, false)) {
+                    // Later batches must not be committed to the log before this one
+                    return;
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Measurements whose batch committed before the checkpoint was saved are in the database already
+    private boolean replay() throws InterruptedException {
+        List<Measurement> logged = writeAheadLog.get().uncommitted();
+        logged.forEach(measurement -> pending.put(measurement.getUuid(), measurement));
+        for (int from = 0; from < logged.size(); from += batchSize) {
+            if (!write(logged.subList(from, Math.min(from + batchSize, logged.size())), true)) {
+                return false;
+            }
+        }
+        if (!logged.isEmpty()) {
+            log.info("Replayed {} measurements from the write-ahead log", logged.size());
+        }
+        return true;
+    }
+
+    /**
+     * Writes the batch and then marks its records in the write-ahead log as committed. A
+     * replayed batch first leaves out the measurements that are in the database already;
+     * that check is retried like the write.
+     *
+     * @return false if the batch was left in the write-ahead log because of shutdown
+     */
+    private boolean write(List<Measurement> logged, boolean replayed) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Measurement> batch = replayed ? missing(logged) : logged;
+                try {
+                    if (!batch.isEmpty()) {
+                        measurementService.saveMeasurements(batch);
+                    }
+                } catch (DataIntegrityViolationException ex) {
+                    // Most likely a client-supplied UUID that already exists; retrying the batch
+                    // cannot help, so keep the rest of it by writing its measurements one by one
+                    if (!writeEach(batch)) {
+                        return false;
+                    }
+                }
+                break;
+            } catch (RuntimeException ex) {
+                Failure failure = afterFailure(attempt, logged.size(), ex);
+                if (failure == Failure.LEAVE) {
+                    return false;
+                } else if (failure == Failure.DROP) {
+                    break;
+                }
+            }
+        }
+        if (writeAheadLog.isPresent() && !commit(logged.size())) {
+            return false;
+        }
+        logged.forEach(measurement -> pending.remove(measurement.getUuid()));
+        return true;
+    }
+
+    /**
+     * Writes the measurements one at a time. Only a constraint violation drops one right
+     * away; other failures are retried like a batch, so with a write-ahead log only
+     * measurements that can never be written are lost.
+     *
+     * @return false if measurements were left in the write-ahead log because of shutdown
+     */
+    private boolean writeEach(List<Measurement> batch) throws InterruptedException {
+        for (Measurement measurement : batch) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    measurementService.saveMeasurement(measurement);
+                    break;
+                } catch (DataIntegrityViolationException ex) {
+                    failed.increment();
+                    log.error("Dropping measurement {}", measurement.getUuid(), ex);
+                    break;
+                } catch (RuntimeException ex) {
+                    Failure failure = afterFailure(attempt, 1, ex);
+                    if (failure == Failure.LEAVE) {
+                        return false;
+                    } else if (failure == Failure.DROP) {
+                        break;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // The batch is in the database, so a failing checkpoint is retried on its own
+    private boolean commit(int records) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeAheadLog.get().commit(records);
+                return true;
+            } catch (RuntimeException ex) {
+                if (!accepting) {
+                    // The replay on the next start finds these records in the database
+                    log.warn("Committing {} records of the write-ahead log failed during shutdown", records, ex);
+                    return false;
+                }
+                log.warn("Committing {} records of the write-ahead log failed, attempt {}", records, attempt, ex);
+                backOff(attempt);
+            }
+        }
+    }
+
+    private List<Measurement> missing(List<Measurement> logged) {
+        Set<UUID> existing = measurementService.findExistingUuids(logged.stream().map(Measurement::getUuid).toList());
+        return logged.stream().filter(measurement -> !existing.contains(measurement.getUuid())).toList();
+    }
+
+    /**
+     * Decides what happens after an attempt to write {@code size} measurements failed, and
+     * backs off if it is retried. Without a write-ahead log the measurements are dropped
+     * after {@code measurement.ingest.max-attempts}; with one they are retried until they
+     * succeed, or left in the log when shutting down.
+     */
+    private Failure afterFailure(int attempt, int size, RuntimeException ex) throws InterruptedException {
+        if (writeAheadLog.isPresent() && !accepting) {
+            log.warn("Writing {} measurements failed during shutdown", size, ex);
+            return Failure.LEAVE;
+        }
+        if (writeAheadLog.isEmpty() && attempt >= maxAttempts) {
+            failed.increment(size);
+            log.error("Dropping {} measurements after {} attempts", size, attempt, ex);
+            return Failure.DROP;
+        }
+        log.warn("Writing {} measurements failed, attempt {}", size, attempt, ex);
+        backOff(attempt);
+        return Failure.RETRY;
+    }
+
+    private void backOff(int attempt) throws InterruptedException {
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+        Thread.sleep(backoff.compareTo(MAX_RETRY_BACKOFF) < 0 ? backoff.toMillis() : MAX_RETRY_BACKOFF.toMillis());
+    }
+
+    private enum Failure {
+        RETRY,
+        DROP,
+        LEAVE
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.measurement_app.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+/**
+ * Keeps monthly measurement partitions ready on PostgreSQL: ahead of the data for the
+ * coming months, and on demand for measurements taken in months outside of those, which
+ * would otherwise land in the default partition. Months that are known to have a partition
+ * are remembered, so a write only reaches the database for a month it has not seen yet.
+ */
+@Service
+@Profile("!reactive")
+public class MeasurementPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementPartitionService.class);
+
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final int monthsAhead;
+    private final Set<YearMonth> partitionedMonths = ConcurrentHashMap.newKeySet();
+
+    public MeasurementPartitionService(MeasurementJdbcRepository measurementJdbcRepository,
+            @Value("${measurement.partitions.months-ahead:3}") int monthsAhead) {
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @Scheduled(cron = "${measurement.partitions.cron:0 0 3 * * *}")
+    public void createUpcomingPartitions() {
+        LocalDate currentMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        measurementJdbcRepository.createPartitions(currentMonth, monthsAhead + 1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            partitionedMonths.add(YearMonth.from(currentMonth).plusMonths(i));
+        }
+        log.debug("Measurement partitions ensured from {} for {} months", currentMonth, monthsAhead + 1);
+    }
+
+    /**
+     * Makes sure there is a partition for the month of each of the given times, in the UTC
+     * months the partitions are cut in. Inside a transaction the partitions are created in
+     * it, and only remembered once it commits.
+     */
+    public void ensurePartitions(Collection<Instant> measuredAt) {
+        Set<YearMonth> missing = new TreeSet<>();
+        for (Instant instant : measuredAt) {
+            YearMonth month = YearMonth.from(instant.atOffset(ZoneOffset.UTC));
+            if (!partitionedMonths.contains(month)) {
+                missing.add(month);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (YearMonth month : missing) {
+            measurementJdbcRepository.createPartitions(month.atDay(1), 1);
+        }
+        log.debug("Measurement partitions ensured for {}", missing);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    partitionedMonths.addAll(missing);
+                }
+            });
+        } else {
+            partitionedMonths.addAll(missing);
+        }
+    }
+}
@@ -1,62 +1,366 @@
 package com.example.measurement_app.service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import com.example.measurement_app.config.CacheConfig;
+import com.example.measurement_app.dto.BatchItemResult;
+import com.example.measurement_app.dto.BatchResult;
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementSeries;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.dto.MeasurementUpdate;
 import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
 import com.example.measurement_app.repository.MeasurementRepository;
+import com.example.measurement_app.service.MeasurementUuidIndex.Location;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 
 @Service
+@Profile("!reactive")
+@Timed("measurement.service")
 public class MeasurementService {
 
+    public static final int MAX_SERIES_BUCKETS = 100_000;
+
     private final MeasurementRepository measurementRepository;
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final PatientSummaryService patientSummaryService;
+    private final MeasurementPartitionService partitionService;
+    private final Validator validator;
+    private final MeasurementEventBroadcaster eventBroadcaster;
+    private final Optional<MeasurementHotStore> hotStore;
+    private final Optional<MeasurementUuidIndex> uuidIndex;
+    // Bulk changes evict their UUIDs by hand; the decorator defers that until after commit
+    private final Cache measurementsByUuid;
 
-    public MeasurementService(MeasurementRepository measurementRepository) {
+    public MeasurementService(MeasurementRepository measurementRepository,
+            MeasurementJdbcRepository measurementJdbcRepository, PatientSummaryService patientSummaryService,
+            MeasurementPartitionService partitionService, Validator validator, CacheManager cacheManager,
+            MeasurementEventBroadcaster eventBroadcaster, Optional<MeasurementHotStore> hotStore,
+            Optional<MeasurementUuidIndex> uuidIndex) {
         this.measurementRepository = measurementRepository;
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.patientSummaryService = patientSummaryService;
+        this.partitionService = partitionService;
+        this.validator = validator;
+        this.eventBroadcaster = eventBroadcaster;
+        this.hotStore = hotStore;
+        this.uuidIndex = uuidIndex;
+        this.measurementsByUuid = new TransactionAwareCacheDecorator(
+                cacheManager.getCache(CacheConfig.MEASUREMENTS_BY_UUID));
     }
 
+    @Transactional
     public Measurement saveMeasurement(Measurement measurement) {
-        return measurementRepository.save(measurement);
+        partitionService.ensurePartitions(List.of(measurement.getMeasuredAt()));
+        Measurement saved = measurementRepository.save(measurement);
+        patientSummaryService.recordAdded(saved.getPatientId(), saved.getResult());
+        publish(MeasurementEvent.created(saved));
+        return saved;
+    }
+
+    /**
+     * Validates every measurement on its own and inserts the valid ones in a single
+     * transaction. Invalid items are reported back instead of failing the whole batch.
+     */
+    @Transactional
+    public BatchResult saveMeasurements(List<Measurement> measurements) {
+        List<BatchItemResult> results = new ArrayList<>(measurements.size());
+        List<Measurement> valid = new ArrayList<>(measurements.size());
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement measurement = measurements.get(i);
+            if (measurement == null) {
+                results.add(BatchItemResult.invalid(i, Map.of("measurement", "Measurement is required.")));
+                continue;
+            }
+            Set<ConstraintViolation<Measurement>> violations = validator.validate(measurement);
+            if (violations.isEmpty()) {
+                valid.add(measurement);
+                results.add(BatchItemResult.created(i, measurement.getUuid()));
+            } else {
+                Map<String, String> errors = new HashMap<>();
+                violations.forEach(violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+                results.add(BatchItemResult.invalid(i, errors));
+            }
+        }
+        if (!valid.isEmpty()) {
+            partitionService.ensurePartitions(valid.stream().map(Measurement::getMeasuredAt).toList());
+            measurementJdbcRepository.batchInsert(valid);
+            patientSummaryService.recordAdded(valid);
+            publish(valid.stream().map(MeasurementEvent::created).toList());
+        }
+        return BatchResult.of(results, valid.size());
     }
 
     public Optional<Measurement> getMeasurementById(Long id) {
         return measurementRepository.findById(id);
     }
 
+    // Misses are not cached, so a UUID that shows up later is found right away
+    @Cacheable(cacheNames = CacheConfig.MEASUREMENTS_BY_UUID, key = "#uuid", unless = "#result == null")
     public Optional<Measurement> getMeasurementByUuid(UUID uuid) {
-        return measurementRepository.findByUuid(uuid);
+        if (uuidIndex.isEmpty() || !uuidIndex.get().isReady()) {
+            return measurementRepository.findByUuid(uuid);
+        }
+        Optional<Location> location = uuidIndex.get().find(uuid);
+        if (location.isEmpty()) {
+            return Optional.empty();
+        }
+        Long patientId = location.get().patientId();
+        Instant measuredAt = location.get().measuredAt();
+        return hotStore.filter(store -> store.covers(measuredAt))
+                .flatMap(store -> store.findByUuid(patientId, uuid))
+                .or(() -> measurementJdbcRepository.findByUuid(uuid, measuredAt));
+    }
+
+    public Set<UUID> findExistingUuids(Collection<UUID> uuids) {
+        return uuidIndex.isPresent() && uuidIndex.get().isReady()
+                ? uuidIndex.get().findExisting(uuids)
+                : measurementJdbcRepository.findExistingUuids(uuids);
     }
 
     public List<Measurement> getAllMeasurements() {
         return measurementRepository.findAll();
     }
 
+    public MeasurementPage getMeasurementPage(Long after, int limit) {
+        return MeasurementPage.fromLookahead(measurementRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, Limit.of(limit + 1)), limit);
+    }
+
+    public MeasurementPage getMeasurementPageByPatientId(Long patientId, Long after, int limit) {
+        return MeasurementPage.fromLookahead(measurementRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(
+                patientId, after != null ? after : 0L, Limit.of(limit + 1)), limit);
+    }
+
+    public MeasurementStats getStatistics() {
+        return measurementJdbcRepository.computeStats(null);
+    }
+
+    /**
+     * A patient's statistics from the summary table. Percentiles need the individual
+     * results, so they are only computed on request: from the hot store when it holds all of
+     * the patient's measurements, otherwise with a query over the patient's rows.
+     */
+    public MeasurementStats getStatisticsByPatientId(Long patientId, boolean includePercentiles) {
+        if (!includePercentiles) {
+            return patientSummaryService.getStatistics(patientId);
+        }
+        if (hotStore.isPresent()
+                && hotStore.get().holdsAll(patientId, patientSummaryService.getStatistics(patientId).count())) {
+            return hotStore.get().computeStats(patientId);
+        }
+        return measurementJdbcRepository.computeStats(patientId);
+    }
+
+    /**
+     * A patient's measurements in {@code [from, to)} aggregated into epoch-aligned buckets
+     * of whole seconds, downsampled with {@link LargestTriangleThreeBuckets} to at most
+     * {@code points} buckets when given. Ranges that would span more than
+     * {@link #MAX_SERIES_BUCKETS} buckets are rejected, so a response stays bounded.
+     *
+     * @throws IllegalArgumentException if the range spans too many buckets
+     */
+    public MeasurementSeries getSeriesByPatientId(Long patientId, Instant from, Instant to, Duration bucket,
+            Integer points) {
+        if (!to.isAfter(from)) {
+            return new MeasurementSeries(List.of(), 0);
+        }
+        long bucketSeconds = bucket.toSeconds();
+        // One more for a range that does not start on a bucket boundary
+        long spanned = Duration.between(from, to).toSeconds() / bucketSeconds + 2;
+        if (spanned > MAX_SERIES_BUCKETS) {
+            throw new IllegalArgumentException("The range spans more than " + MAX_SERIES_BUCKETS
+                    + " buckets of " + bucket + "; use a larger bucket or a shorter range.");
+        }
+        List<MeasurementBucket> buckets = hotStore.isPresent() && hotStore.get().covers(from)
+                ? hotStore.get().findBuckets(patientId, from, to, bucketSeconds)
+                : measurementJdbcRepository.findBuckets(patientId, from, to, bucketSeconds);
+        List<MeasurementBucket> sampled = points != null
+                ? LargestTriangleThreeBuckets.downsample(buckets, points)
+                : buckets;
+        return new MeasurementSeries(sampled, buckets.size());
+    }
+
     @Transactional
-    public void deleteMeasurementByUuid(UUID uuid) {
-        Optional<Measurement> measurement = measurementRepository.findByUuid(uuid);
-        if (measurement.isPresent()) {
-            measurementRepository.deleteByUuid(uuid);
+    public void streamAllMeasurements(Consumer<Measurement> consumer) {
+        measurementJdbcRepository.streamAll(consumer);
+    }
+
+    /**
+     * Streams the measurements taken in {@code [from, to)} in time order. A null
+     * {@code to} leaves the range open.
+     */
+    @Transactional
+    public void streamMeasurementsBetween(Instant from, Instant to, Consumer<Measurement> consumer) {
+        measurementJdbcRepository.streamRange(null, from, to, consumer);
+    }
+
+    @Transactional
+    public void streamMeasurementsByPatientIdBetween(Long patientId, Instant from, Instant to,
+            Consumer<Measurement> consumer) {
+        if (hotStore.isPresent() && hotStore.get().covers(from)) {
+            hotStore.get().streamRange(patientId, from, to, consumer);
         } else {
-            throw new IllegalArgumentException("Measurement with UUID " + uuid + " not found.");
+            measurementJdbcRepository.streamRange(patientId, from, to, consumer);
+        }
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.MEASUREMENTS_BY_UUID, key = "#uuid")
+    public void deleteMeasurementByUuid(UUID uuid) {
+        Measurement deleted = measurementJdbcRepository.deleteByUuid(uuid)
+                .orElseThrow(() -> new EntityNotFoundException("Measurement with UUID " + uuid + " not found"));
+        patientSummaryService.recordRemoved(deleted.getPatientId(), deleted.getResult());
+        publish(MeasurementEvent.deleted(deleted));
+    }
+
+    /**
+     * Deletes the measurements with the given UUIDs in one statement. UUIDs that do not
+     * exist are reported as not found instead of failing the batch.
+     */
+    @Transactional
+    public BatchResult deleteMeasurementsByUuid(List<UUID> uuids) {
+        Set<UUID> distinct = new LinkedHashSet<>(uuids);
+        distinct.remove(null);
+        List<Measurement> deleted = distinct.isEmpty() ? List.of() : measurementJdbcRepository.deleteByUuids(distinct);
+        Set<UUID> deletedUuids = new HashSet<>();
+        deleted.forEach(measurement -> deletedUuids.add(measurement.getUuid()));
+
+        List<BatchItemResult> results = new ArrayList<>(uuids.size());
+        Set<UUID> reported = new HashSet<>();
+        for (int i = 0; i < uuids.size(); i++) {
+            UUID uuid = uuids.get(i);
+            if (uuid == null) {
+                results.add(BatchItemResult.invalid(i, Map.of("uuid", "UUID is required.")));
+            } else if (deletedUuids.contains(uuid) && reported.add(uuid)) {
+                results.add(BatchItemResult.deleted(i, uuid));
+            } else {
+                results.add(BatchItemResult.notFound(i, uuid));
+            }
+        }
+        if (!deleted.isEmpty()) {
+            patientSummaryService.recordRemoved(deleted);
+            deletedUuids.forEach(measurementsByUuid::evict);
+            publish(deleted.stream().map(MeasurementEvent::deleted).toList());
         }
+        return BatchResult.of(results, deleted.size());
     }
 
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.MEASUREMENTS_BY_UUID, key = "#uuid")
     public Measurement updateMeasurementByUuid(UUID uuid, Measurement updatedMeasurement) {
-        Optional<Measurement> existing = measurementRepository.findByUuid(uuid);
-        if (existing.isPresent()) {
-            Measurement existingMeasurement = existing.get();
-            existingMeasurement.setPatientId(updatedMeasurement.getPatientId());
-            existingMeasurement.setResult(updatedMeasurement.getResult());
-            return measurementRepository.save(existingMeasurement);
-        } else {
-            throw new EntityNotFoundException("Measurement with UUID " + uuid + " not found");
+        Measurement previous = measurementJdbcRepository
+                .updateByUuid(uuid, updatedMeasurement.getPatientId(), updatedMeasurement.getResult())
+                .orElseThrow(() -> new EntityNotFoundException("Measurement with UUID " + uuid + " not found"));
+        patientSummaryService.recordReplaced(List.of(previous), List.of(updatedMeasurement));
+
+        Measurement saved = new Measurement();
+        saved.setId(previous.getId());
+        saved.setUuid(uuid);
+        saved.setPatientId(updatedMeasurement.getPatientId());
+        saved.setResult(updatedMeasurement.getResult());
+        saved.setMeasuredAt(previous.getMeasuredAt());
+        publish(MeasurementEvent.updated(previous, saved));
+        return saved;
+    }
+
+    /**
+     * Validates every update on its own and applies the valid ones in one statement.
+     * Invalid items, repeated UUIDs and UUIDs that do not exist are reported per item.
+     */
+    @Transactional
+    public BatchResult updateMeasurements(List<MeasurementUpdate> updates) {
+        List<BatchItemResult> results = new ArrayList<>(updates.size());
+        Map<Integer, Measurement> valid = new HashMap<>();
+        Set<UUID> seen = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            MeasurementUpdate update = updates.get(i);
+            if (update == null) {
+                results.add(BatchItemResult.invalid(i, Map.of("measurement", "Measurement is required.")));
+                continue;
+            }
+            Set<ConstraintViolation<MeasurementUpdate>> violations = validator.validate(update);
+            if (!violations.isEmpty()) {
+                Map<String, String> errors = new HashMap<>();
+                violations.forEach(violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+                results.add(BatchItemResult.invalid(i, update.uuid(), errors));
+            } else if (!seen.add(update.uuid())) {
+                results.add(BatchItemResult.invalid(i, update.uuid(), Map.of("uuid", "UUID appears more than once in the batch.")));
+            } else {
+                Measurement measurement = new Measurement();
+                measurement.setUuid(update.uuid());
+                measurement.setPatientId(update.patientId());
+                measurement.setResult(update.result());
+                valid.put(i, measurement);
+                results.add(null);
+            }
+        }
+
+        List<Measurement> previous = valid.isEmpty() ? List.of()
+                : measurementJdbcRepository.updateAll(new ArrayList<>(valid.values()));
+        Map<UUID, Measurement> previousByUuid = previous.stream()
+                .collect(Collectors.toMap(Measurement::getUuid, Function.identity()));
+        List<Measurement> applied = new ArrayList<>(previous.size());
+        valid.forEach((index, measurement) -> {
+            if (previousByUuid.containsKey(measurement.getUuid())) {
+                measurement.setMeasuredAt(previousByUuid.get(measurement.getUuid()).getMeasuredAt());
+                applied.add(measurement);
+                results.set(index, BatchItemResult.updated(index, measurement.getUuid()));
+            } else {
+                results.set(index, BatchItemResult.notFound(index, measurement.getUuid()));
+            }
+        });
+        if (!applied.isEmpty()) {
+            patientSummaryService.recordReplaced(previous, applied);
+            previousByUuid.keySet().forEach(measurementsByUuid::evict);
+            publish(applied.stream()
+                    .map(measurement -> MeasurementEvent.updated(previousByUuid.get(measurement.getUuid()), measurement))
+                    .toList());
         }
+        return BatchResult.of(results, applied.size());
     }
 
+    // Committed changes go to the event subscribers and keep the hot store and UUID index current
+    private void publish(List<MeasurementEvent> events) {
+        eventBroadcaster.publish(events);
+        hotStore.ifPresent(store -> store.apply(events));
+        uuidIndex.ifPresent(index -> index.apply(events));
+    }
+
+    private void publish(MeasurementEvent event) {
+        eventBroadcaster.publish(event);
+        hotStore.ifPresent(store -> store.apply(List.of(event)));
+        uuidIndex.ifPresent(index -> index.apply(List.of(event)));
+    }
 }
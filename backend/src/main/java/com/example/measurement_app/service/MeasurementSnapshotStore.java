@@ -0,0 +1,332 @@
+package com.example.measurement_app.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Snapshots of the in-process measurement data in {@code measurement.snapshot.directory}, so
+ * that after a restart {@link MeasurementHotStore} and {@link MeasurementUuidIndex} are
+ * restored from a memory-mapped file and catch up with the database instead of loading all
+ * of it again. Enabled with {@code measurement.snapshot.enabled=true}; each of them writes
+ * its snapshot every {@code measurement.snapshot.interval} and on shutdown.
+ * <p>
+ * The UUIDs of all committed changes, creates included, go to a change journal next to the
+ * snapshot, which starts over with every snapshot, and the restore reads those rows again.
+ * Ids are handed out in blocks and commit out of order, so a create that commits after the
+ * snapshot may well have a lower id than any row in it; only the journal finds it for sure.
+ * A snapshot also starts with the highest measurement id when it was taken, and the restore
+ * reads the rows from {@code measurement.snapshot.id-margin} ids below it as well, for rows
+ * whose change never reached the journal. The journal is not forced to disk, so it survives
+ * a crash of the process but not of the machine. Writing a snapshot deletes the previous one
+ * first, so an interrupted write leaves none and the next start loads everything from the
+ * database.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "measurement.snapshot.enabled", havingValue = "true")
+public class MeasurementSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementSnapshotStore.class);
+
+    private static final int MAGIC = 0x4D534E50;
+    private static final int VERSION = 1;
+    // Magic, version, high-water id and the time written in microseconds, padded to 32 bytes
+    static final int HEADER_SIZE = 32;
+    private static final int UUID_SIZE = 16;
+    // Sequential reads map this much of the file at a time
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    /**
+     * Writes the body of a snapshot after the header.
+     */
+    @FunctionalInterface
+    interface Body {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final Path directory;
+    private final long idMargin;
+    private final Map<String, FileChannel> journals = new HashMap<>();
+
+    public MeasurementSnapshotStore(MeasurementJdbcRepository measurementJdbcRepository,
+            @Value("${measurement.snapshot.directory:snapshots}") Path directory,
+            @Value("${measurement.snapshot.id-margin:100000}") long idMargin) throws IOException {
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.directory = Files.createDirectories(directory);
+        this.idMargin = idMargin;
+    }
+
+    /**
+     * Replaces the snapshot with the given name and starts its change journal over. The body
+     * is written after the journal has been restarted, so every change it misses, including
+     * creates with ids below the high-water id, is in the journal.
+     *
+     * @return whether the snapshot was written; failures are logged
+     */
+    boolean write(String name, Body body) {
+        Instant started = Instant.now();
+        Path file = directory.resolve(name + ".snapshot");
+        Path temporary = directory.resolve(name + ".snapshot.tmp");
+        try {
+            long highWaterId = measurementJdbcRepository.findMaxId();
+            Files.deleteIfExists(file);
+            restartJournal(name);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(highWaterId)
+                        .putLong(toMicros(started))
+                        .putLong(0)
+                        .flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                body.write(channel);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote the {} snapshot up to id {} in {} ms", name, highWaterId,
+                    Duration.between(started, Instant.now()).toMillis());
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            log.error("Writing the {} snapshot failed; the next start loads from the database", name, ex);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException cleanup) {
+                ex.addSuppressed(cleanup);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The snapshot with the given name, if there is a readable one.
+     */
+    Optional<Snapshot> open(String name) {
+        Path file = directory.resolve(name + ".snapshot");
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            // Copy-on-write mappings need a channel open for writing, though the file is never written
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                channel.close();
+                log.warn("Ignoring {}, which is not a snapshot of this version", file);
+                return Optional.empty();
+            }
+            long highWaterId = header.getLong();
+            long micros = header.getLong();
+            return Optional.of(new Snapshot(channel, Math.max(0, highWaterId - idMargin),
+                    Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000)));
+        } catch (IOException ex) {
+            log.warn("Cannot read {}; loading from the database", file, ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Appends the UUIDs of created, updated and deleted measurements to the change journal of
+     * the snapshot with the given name.
+     */
+    synchronized void recordChanges(String name, List<MeasurementEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.allocate(events.size() * UUID_SIZE);
+        for (MeasurementEvent event : events) {
+            records.putLong(event.uuid().getMostSignificantBits())
+                    .putLong(event.uuid().getLeastSignificantBits());
+        }
+        try {
+            FileChannel journal = journals.get(name);
+            if (journal == null) {
+                journal = FileChannel.open(directory.resolve(name + ".changes"), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                journals.put(name, journal);
+            }
+            records.flip();
+            while (records.hasRemaining()) {
+                journal.write(records);
+            }
+        } catch (IOException ex) {
+            // Without the journal entry the snapshot may hold an outdated row
+            log.error("Cannot journal changes for the {} snapshot; deleting it", name, ex);
+            try {
+                Files.deleteIfExists(directory.resolve(name + ".snapshot"));
+            } catch (IOException delete) {
+                log.error("Cannot delete the {} snapshot", name, delete);
+            }
+        }
+    }
+
+    /**
+     * The UUIDs of the measurements created, updated or deleted since the snapshot with the
+     * given name was taken.
+     */
+    synchronized Set<UUID> changes(String name) throws IOException {
+        Path file = directory.resolve(name + ".changes");
+        Set<UUID> uuids = new HashSet<>();
+        if (!Files.exists(file)) {
+            return uuids;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // A record torn by a crash is ignored
+            long records = channel.size() / UUID_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate(UUID_SIZE * 4096);
+            for (long read = 0; read < records; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), (records - read) * UUID_SIZE));
+                readFully(channel, buffer);
+                buffer.flip();
+                while (buffer.remaining() >= UUID_SIZE) {
+                    uuids.add(new UUID(buffer.getLong(), buffer.getLong()));
+                    read++;
+                }
+            }
+        }
+        return uuids;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (FileChannel journal : journals.values()) {
+            journal.close();
+        }
+        journals.clear();
+    }
+
+    private synchronized void restartJournal(String name) throws IOException {
+        FileChannel journal = journals.remove(name);
+        if (journal != null) {
+            journal.close();
+        }
+        journals.put(name, FileChannel.open(directory.resolve(name + ".changes"), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    // Stops early at the end of the file
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000), instant.getNano() / 1_000);
+    }
+
+    /**
+     * An open snapshot. Mappings taken from it stay valid after it is closed.
+     */
+    static final class Snapshot implements Closeable {
+
+        private final FileChannel channel;
+        private final long catchUpFromId;
+        private final Instant writtenAt;
+
+        private Snapshot(FileChannel channel, long catchUpFromId, Instant writtenAt) {
+            this.channel = channel;
+            this.catchUpFromId = catchUpFromId;
+            this.writtenAt = writtenAt;
+        }
+
+        /**
+         * The first id the database has to be read from to catch up.
+         */
+        long catchUpFromId() {
+            return catchUpFromId;
+        }
+
+        Instant writtenAt() {
+            return writtenAt;
+        }
+
+        long bodySize() throws IOException {
+            return channel.size() - HEADER_SIZE;
+        }
+
+        /**
+         * Maps part of the body copy-on-write: the mapping can be changed without changing
+         * the file, and pages are only read from disk when first touched.
+         */
+        ByteBuffer map(long offset, long size) throws IOException {
+            return channel.map(FileChannel.MapMode.PRIVATE, HEADER_SIZE + offset, size);
+        }
+
+        /**
+         * The body as big-endian longs, as {@link java.io.DataOutputStream} writes them.
+         */
+        PrimitiveIterator.OfLong longs() throws IOException {
+            long size = bodySize() / Long.BYTES * Long.BYTES;
+            return new PrimitiveIterator.OfLong() {
+                private long position;
+                private ByteBuffer window = ByteBuffer.allocate(0);
+
+                @Override
+                public boolean hasNext() {
+                    return position < size;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (!window.hasRemaining()) {
+                        try {
+                            window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + position,
+                                    Math.min(WINDOW_SIZE, size - position));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                    position += Long.BYTES;
+                    return window.getLong();
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementColumns;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Every measurement's UUID with the patient and the time it was taken, held off the heap in
+ * a {@link UuidLocationMap} at 32 bytes a slot, so {@link MeasurementService} can tell
+ * unknown UUIDs apart without a query and look up known ones in their partition only, or in
+ * the {@link MeasurementHotStore}. Enabled with {@code measurement.uuid-index.enabled=true}.
+ * <p>
+ * The index is built when the application is ready by {@code measurement.uuid-index.load-threads}
+ * threads, each streaming its own range of ids, and follows committed changes through
+ * {@link #apply}. With {@link MeasurementSnapshotStore} the slots are written to a snapshot
+ * as they are and mapped back on the next start, which then only reads what changed since.
+ * Changes by other instances are not seen, so it is meant for a single writer.
+ * <p>
+ * A failed load, or an index that filled up, is loaded again by {@link #retryLoad} every
+ * {@code measurement.uuid-index.retry-interval}, after each further failure only every 2nd,
+ * 4th, up to every 64th time. A full index waits the longest right away, as loading it again
+ * only helps once enough measurements have been deleted.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "measurement.uuid-index.enabled", havingValue = "true")
+public class MeasurementUuidIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementUuidIndex.class);
+
+    private static final String SNAPSHOT = "uuid-index";
+    private static final int BATCH_SIZE = 4096;
+    // Failed loads back off to one retry in this many runs of retryLoad
+    private static final int MAX_RETRY_TICKS = 64;
+
+    /**
+     * Where a measurement lives: its patient and the time it was taken, the partition key.
+     */
+    public record Location(Long patientId, Instant measuredAt) {
+    }
+
+    private final MeasurementJdbcRepository measurementJdbcRepository;
+    private final Optional<MeasurementSnapshotStore> snapshots;
+    private final TransactionTemplate transactionTemplate;
+    private final int expectedSize;
+    private final int loadThreads;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final UuidLocationMap locations;
+
+    private volatile boolean ready;
+    // Changes committed while loading, applied once more when the load is done
+    private List<MeasurementEvent> pending;
+    private int failedLoads;
+    private int skipLoads;
+
+    public MeasurementUuidIndex(MeasurementJdbcRepository measurementJdbcRepository,
+            Optional<MeasurementSnapshotStore> snapshots, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${measurement.uuid-index.expected-size:1000000}") int expectedSize,
+            @Value("${measurement.uuid-index.load-threads:4}") int loadThreads) {
+        this.measurementJdbcRepository = measurementJdbcRepository;
+        this.snapshots = snapshots;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expectedSize = expectedSize;
+        this.loadThreads = loadThreads;
+        this.locations = new UuidLocationMap(expectedSize);
+        Gauge.builder("measurement.uuid-index.entries", this, index -> index.size())
+                .description("Measurement UUIDs held by the UUID index")
+                .register(meterRegistry);
+        Gauge.builder("measurement.uuid-index.bytes", this, index -> index.bytes())
+                .description("Memory outside the heap taken by the UUID index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread.ofPlatform().name("measurement-uuid-index").start(() -> {
+            if (!restore()) {
+                reload();
+            }
+        });
+    }
+
+    /**
+     * Replaces the content with the UUIDs the database has. Lookups go to the database
+     * until it is done.
+     */
+    public void reload() {
+        Instant started = Instant.now();
+        if (!startLoad()) {
+            return;
+        }
+        try {
+            long step = measurementJdbcRepository.findMaxId() / loadThreads + 1;
+            List<Future<?>> parts = new ArrayList<>(loadThreads);
+            try (ExecutorService executor = Executors.newFixedThreadPool(loadThreads,
+                    Thread.ofPlatform().name("measurement-uuid-index-", 0).factory())) {
+                for (int i = 0; i < loadThreads; i++) {
+                    long fromId = i * step;
+                    parts.add(executor.submit(() -> transactionTemplate.executeWithoutResult(status ->
+                            measurementJdbcRepository.streamColumns(fromId, fromId + step,
+                                    new MeasurementColumns(BATCH_SIZE), this::putAll))));
+                }
+                for (Future<?> part : parts) {
+                    part.get();
+                }
+            }
+        } catch (ExecutionException | RuntimeException ex) {
+            failLoad(ex instanceof ExecutionException ? ex.getCause() : ex);
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failLoad(ex);
+            return;
+        }
+        finishLoad(started, "the database");
+    }
+
+    /**
+     * Maps the last snapshot back in, then reads the measurements changed since from the
+     * database: those the change journal names and those from the snapshot's catch-up id on.
+     *
+     * @return false if there is no usable snapshot
+     */
+    boolean restore() {
+        Optional<MeasurementSnapshotStore.Snapshot> opened = snapshots.flatMap(store -> store.open(SNAPSHOT));
+        if (opened.isEmpty()) {
+            return false;
+        }
+        Instant started = Instant.now();
+        try (MeasurementSnapshotStore.Snapshot snapshot = opened.get()) {
+            if (!startLoad()) {
+                return true;
+            }
+            List<UUID> changed = new ArrayList<>(snapshots.get().changes(SNAPSHOT));
+            lock.writeLock().lock();
+            try {
+                locations.restore(snapshot);
+                changed.forEach(uuid -> locations.remove(uuid.getMostSignificantBits(),
+                        uuid.getLeastSignificantBits()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (int from = 0; from < changed.size(); from += BATCH_SIZE) {
+                List<Measurement> current = measurementJdbcRepository.findByUuids(
+                        changed.subList(from, Math.min(changed.size(), from + BATCH_SIZE)));
+                lock.writeLock().lock();
+                try {
+                    current.forEach(measurement -> locations.put(measurement.getUuid().getMostSignificantBits(),
+                            measurement.getUuid().getLeastSignificantBits(), measurement.getPatientId(),
+                            toMicros(measurement.getMeasuredAt())));
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> measurementJdbcRepository.streamColumns(
+                    snapshot.catchUpFromId(), Long.MAX_VALUE, new MeasurementColumns(BATCH_SIZE), this::putAll));
+            finishLoad(started, "the snapshot of " + snapshot.writtenAt());
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            failLoad(ex);
+            return false;
+        }
+    }
+
+    /**
+     * Loads the index again after a load failed or it filled up, unless it is still
+     * backing off.
+     */
+    @Scheduled(fixedRateString = "${measurement.uuid-index.retry-interval:1m}",
+            initialDelayString = "${measurement.uuid-index.retry-interval:1m}")
+    public void retryLoad() {
+        lock.writeLock().lock();
+        try {
+            if (failedLoads == 0 || pending != null) {
+                return;
+            }
+            if (skipLoads > 0) {
+                skipLoads--;
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reload();
+    }
+
+    /**
+     * Writes the slots to a snapshot, if snapshots are enabled and the index is loaded.
+     * Changes wait while it is written.
+     */
+    @Scheduled(fixedRateString = "${measurement.snapshot.interval:5m}",
+            initialDelayString = "${measurement.snapshot.interval:5m}")
+    @PreDestroy
+    public void writeSnapshot() {
+        if (snapshots.isEmpty() || !ready) {
+            return;
+        }
+        snapshots.get().write(SNAPSHOT, channel -> {
+            lock.readLock().lock();
+            try {
+                locations.write(channel);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Applies the changes once the current transaction has committed, or right away outside
+     * of one, like the events sent to subscribers.
+     */
+    public void apply(List<MeasurementEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAll(events);
+                }
+            });
+        } else {
+            applyAll(events);
+        }
+    }
+
+    /**
+     * Whether the index holds every measurement, so that {@link #find} can be trusted.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Where the measurement with the given UUID lives, empty if there is none.
+     */
+    public Optional<Location> find(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            int slot = locations.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (slot == UuidLocationMap.MISSING) {
+                return Optional.empty();
+            }
+            long micros = locations.measuredAtMicros(slot);
+            return Optional.of(new Location(locations.patientId(slot), Instant.ofEpochSecond(
+                    Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The given UUIDs that belong to a measurement, like
+     * {@link MeasurementJdbcRepository#findExistingUuids}.
+     */
+    public Set<UUID> findExisting(Collection<UUID> uuids) {
+        Set<UUID> existing = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (UUID uuid : uuids) {
+                if (locations.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())
+                        != UuidLocationMap.MISSING) {
+                    existing.add(uuid);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return existing;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long bytes() {
+        lock.readLock().lock();
+        try {
+            return locations.bytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean startLoad() {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                return false;
+            }
+            ready = false;
+            locations.clear(expectedSize);
+            pending = new ArrayList<>();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void finishLoad(Instant started, String source) {
+        lock.writeLock().lock();
+        try {
+            pending.forEach(this::applyNow);
+            pending = null;
+            ready = true;
+            failedLoads = 0;
+            skipLoads = 0;
+            log.info("Loaded {} measurement UUIDs into the UUID index from {} in {} ms", locations.size(), source,
+                    Duration.between(started, Instant.now()).toMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putAll(MeasurementColumns batch) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                locations.put(batch.uuidMostSignificantBits()[i], batch.uuidLeastSignificantBits()[i],
+                        batch.patientIds()[i], batch.measuredAtMicros()[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // While loading, changes are applied at once and again at the end, as a loader may
+    // have read the row before the change and put it back afterwards
+    private void applyAll(List<MeasurementEvent> events) {
+        lock.writeLock().lock();
+        try {
+            if (pending == null && !ready) {
+                return;
+            }
+            events.forEach(this::applyNow);
+            if (pending != null) {
+                pending.addAll(events);
+            }
+        } catch (IllegalStateException ex) {
+            log.error("The UUID index is full; lookups go to the database until it is loaded again", ex);
+            ready = false;
+            locations.clear(expectedSize);
+            backOff(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        snapshots.ifPresent(store -> store.recordChanges(SNAPSHOT, events));
+    }
+
+    private void applyNow(MeasurementEvent event) {
+        long mostSignificantBits = event.uuid().getMostSignificantBits();
+        long leastSignificantBits = event.uuid().getLeastSignificantBits();
+        switch (event.type()) {
+            case CREATED -> locations.put(mostSignificantBits, leastSignificantBits, event.patientId(),
+                    toMicros(event.measuredAt()));
+            case UPDATED -> {
+                int slot = locations.find(mostSignificantBits, leastSignificantBits);
+                if (slot != UuidLocationMap.MISSING) {
+                    locations.put(mostSignificantBits, leastSignificantBits, event.patientId(),
+                            locations.measuredAtMicros(slot));
+                }
+            }
+            case DELETED -> locations.remove(mostSignificantBits, leastSignificantBits);
+        }
+    }
+
+    private void failLoad(Throwable cause) {
+        log.error("Loading the UUID index failed; lookups go to the database", cause);
+        lock.writeLock().lock();
+        try {
+            locations.clear(expectedSize);
+            pending = null;
+            backOff(false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void backOff(boolean full) {
+        failedLoads++;
+        skipLoads = full ? MAX_RETRY_TICKS - 1 : Math.min(MAX_RETRY_TICKS, 1 << Math.min(failedLoads - 1, 30)) - 1;
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000), instant.getNano() / 1_000);
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.example.measurement_app.model.Measurement;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local write-ahead log of the measurements accepted by {@link MeasurementIngestQueue}, so
+ * that a 202 survives a crash or restart before the measurement reaches the database.
+ * Enabled with {@code measurement.ingest.wal.enabled=true} next to asynchronous ingest.
+ * <p>
+ * Records have a fixed size and are appended to memory-mapped segment files of
+ * {@code measurement.ingest.wal.segment-size} bytes, each named after the sequence number
+ * of its first record. Every record carries a CRC32C, so a record torn by a crash ends the
+ * log. {@link #commit} moves the checkpoint past records the database has committed and
+ * deletes segments that lie entirely before it. On startup {@link #uncommitted} holds the
+ * records after the checkpoint, for the ingest queue to replay.
+ * <p>
+ * {@code measurement.ingest.wal.fsync} decides when an acknowledged record is on disk:
+ * {@code RECORD} forces every record before it is acknowledged, {@code BATCH} lets
+ * concurrent appends wait for one shared force, and {@code INTERVAL} forces every
+ * {@code measurement.ingest.wal.fsync-interval} without waiting, which survives a crash
+ * of the process but may lose the last interval on power loss.
+ */
+@Service
+@Profile("!reactive")
+@ConditionalOnExpression("'${measurement.ingest.mode:sync}' == 'async' and ${measurement.ingest.wal.enabled:false}")
+public class MeasurementWriteAheadLog {
+
+    public enum FsyncPolicy {
+        RECORD, BATCH, INTERVAL
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementWriteAheadLog.class);
+
+    // uuid, patient id, result, measured at seconds and nanos
+    static final int PAYLOAD_SIZE = 8 + 8 + 8 + 8 + 8 + 4;
+    // Payload size as a marker that the slot holds a record, CRC32C of the payload
+    static final int RECORD_SIZE = 4 + 4 + PAYLOAD_SIZE;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final FsyncPolicy fsyncPolicy;
+    private final FileChannel checkpoint;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition forced = lock.newCondition();
+    private final ScheduledExecutorService syncer;
+    private List<Measurement> uncommitted;
+    private MappedByteBuffer segment;
+    private long segmentBase;
+    // Sequence number of the next record to append, to force and to commit
+    private long next;
+    private long durable;
+    private long committed;
+    private boolean forcing;
+    // Only touched by the committing thread after recovery
+    private long oldestSegment;
+
+    public MeasurementWriteAheadLog(MeterRegistry meterRegistry,
+            @Value("${measurement.ingest.wal.directory:wal}") Path directory,
+            @Value("${measurement.ingest.wal.segment-size:64MB}") DataSize segmentSize,
+            @Value("${measurement.ingest.wal.fsync:BATCH}") FsyncPolicy fsyncPolicy,
+            @Value("${measurement.ingest.wal.fsync-interval:50ms}") Duration fsyncInterval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        // A mapping cannot exceed 2 GB
+        this.recordsPerSegment = (int) Math.clamp(segmentSize.toBytes() / RECORD_SIZE, 1, Integer.MAX_VALUE / RECORD_SIZE);
+        this.fsyncPolicy = fsyncPolicy;
+        this.checkpoint = FileChannel.open(directory.resolve(CHECKPOINT), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(
+                    runnable -> Thread.ofPlatform().name("measurement-wal-sync").daemon().unstarted(runnable));
+            long interval = fsyncInterval.toNanos();
+            syncer.scheduleWithFixedDelay(this::forceAppended, interval, interval, TimeUnit.NANOSECONDS);
+        } else {
+            this.syncer = null;
+        }
+        Gauge.builder("measurement.ingest.wal.uncommitted", this, MeasurementWriteAheadLog::uncommittedCount)
+                .description("Records in the write-ahead log not yet committed to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The records found after the checkpoint on startup, oldest first. The caller must commit
+     * them before anything appended later.
+     */
+    public synchronized List<Measurement> uncommitted() {
+        List<Measurement> records = uncommitted;
+        uncommitted = List.of();
+        return records;
+    }
+
+    /**
+     * Appends a record, forcing it to disk right away with the {@code RECORD} policy.
+     * Records are committed in the order they are appended.
+     *
+     * @return the sequence number of the record, for {@link #awaitDurable}
+     */
+    public long append(Measurement measurement) {
+        long sequence;
+        lock.lock();
+        try {
+            if (next - segmentBase == recordsPerSegment) {
+                rollSegment();
+            }
+            sequence = next;
+            int offset = (int) (sequence - segmentBase) * RECORD_SIZE;
+            ByteBuffer payload = segment.slice(offset + 8, PAYLOAD_SIZE);
+            payload.putLong(measurement.getUuid().getMostSignificantBits())
+                    .putLong(measurement.getUuid().getLeastSignificantBits())
+                    .putLong(measurement.getPatientId())
+                    .putDouble(measurement.getResult())
+                    .putLong(measurement.getMeasuredAt().getEpochSecond())
+                    .putInt(measurement.getMeasuredAt().getNano());
+            CRC32C crc = new CRC32C();
+            crc.update(payload.flip());
+            segment.putInt(offset, PAYLOAD_SIZE).putInt(offset + 4, (int) crc.getValue());
+            next = sequence + 1;
+            if (fsyncPolicy == FsyncPolicy.RECORD) {
+                segment.force(offset, RECORD_SIZE);
+                durable = next;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return sequence;
+    }
+
+    /**
+     * Returns once the record is as durable as the fsync policy promises, which with the
+     * {@code BATCH} policy means waiting for a force that covers it.
+     */
+    public void awaitDurable(long sequence) {
+        if (fsyncPolicy != FsyncPolicy.BATCH) {
+            return;
+        }
+        lock.lock();
+        try {
+            // Whoever finds no force running forces everything appended so far and the
+            // others wait for it, so one force covers all records appended while the
+            // previous one ran
+            while (durable <= sequence) {
+                if (forcing) {
+                    forced.awaitUninterruptibly();
+                    continue;
+                }
+                forcing = true;
+                long target = next;
+                MappedByteBuffer toForce = segment;
+                lock.unlock();
+                try {
+                    toForce.force();
+                } finally {
+                    lock.lock();
+                    forcing = false;
+                    durable = Math.max(durable, target);
+                    forced.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the oldest {@code records} uncommitted records as committed to the database.
+     */
+    public void commit(int records) {
+        long base;
+        long checkpointed;
+        lock.lock();
+        try {
+            committed += records;
+            checkpointed = committed;
+            base = segmentBase;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            // Not forced: a checkpoint lost in a crash only makes the replay check more records
+            checkpoint.write(ByteBuffer.allocate(Long.BYTES).putLong(0, checkpointed), 0);
+            while (oldestSegment < base && oldestSegment + recordsPerSegment <= checkpointed) {
+                Files.deleteIfExists(segmentPath(oldestSegment));
+                oldestSegment += recordsPerSegment;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        forceAppended();
+        checkpoint.close();
+    }
+
+    long uncommittedCount() {
+        lock.lock();
+        try {
+            return next - committed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forceAppended() {
+        long target;
+        MappedByteBuffer toForce;
+        lock.lock();
+        try {
+            target = next;
+            toForce = segment;
+        } finally {
+            lock.unlock();
+        }
+        toForce.force();
+        lock.lock();
+        try {
+            durable = Math.max(durable, target);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forces the full segment before leaving it, so forcing only ever concerns the current one
+    private void rollSegment() {
+        segment.force();
+        try {
+            segment = map(segmentBase + recordsPerSegment);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        segmentBase += recordsPerSegment;
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer stored = ByteBuffer.allocate(Long.BYTES);
+        committed = checkpoint.read(stored, 0) == Long.BYTES ? stored.getLong(0) : 0;
+        List<Long> bases;
+        try (Stream<Path> segments = Files.list(directory)) {
+            bases = segments.filter(MeasurementWriteAheadLog::isSegment)
+                    .map(MeasurementWriteAheadLog::segmentBase)
+                    .sorted()
+                    .toList();
+        }
+        uncommitted = new ArrayList<>();
+        // Records before the checkpoint are committed; the log ends at the first empty or
+        // torn slot after it, and records from there on were never acknowledged
+        long sequence = bases.isEmpty() ? committed : Math.max(committed, bases.get(0));
+        committed = sequence;
+        oldestSegment = bases.isEmpty() ? sequence - sequence % recordsPerSegment : bases.get(0);
+        segmentBase = sequence - sequence % recordsPerSegment;
+        segment = map(segmentBase);
+        Measurement measurement;
+        while ((measurement = read(sequence)) != null) {
+            uncommitted.add(measurement);
+            sequence++;
+            if (sequence - segmentBase == recordsPerSegment) {
+                if (!bases.contains(sequence)) {
+                    break;
+                }
+                segmentBase = sequence;
+                segment = map(segmentBase);
+            }
+        }
+        // Leftovers past the end would otherwise be read back once new records reach them
+        for (int offset = (int) (sequence - segmentBase) * RECORD_SIZE; offset < segment.capacity(); offset += RECORD_SIZE) {
+            segment.putInt(offset, 0);
+        }
+        for (long base : bases) {
+            if (base > segmentBase) {
+                Files.delete(segmentPath(base));
+            }
+        }
+        next = sequence;
+        durable = sequence;
+        if (!uncommitted.isEmpty()) {
+            log.info("Write-ahead log holds {} uncommitted measurements to replay", uncommitted.size());
+        }
+        commit(0);
+    }
+
+    private Measurement read(long sequence) {
+        if (sequence - segmentBase == recordsPerSegment) {
+            return null;
+        }
+        int offset = (int) (sequence - segmentBase) * RECORD_SIZE;
+        if (segment.getInt(offset) != PAYLOAD_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = segment.slice(offset + 8, PAYLOAD_SIZE);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+            return null;
+        }
+        Measurement measurement = new Measurement();
+        measurement.setUuid(new UUID(payload.getLong(), payload.getLong()));
+        measurement.setPatientId(payload.getLong());
+        measurement.setResult(payload.getDouble());
+        measurement.setMeasuredAt(Instant.ofEpochSecond(payload.getLong(), payload.getInt()));
+        return measurement;
+    }
+
+    private MappedByteBuffer map(long base) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file to its full size, filled with zeros
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        }
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve("%020d%s".formatted(base, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentBase(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
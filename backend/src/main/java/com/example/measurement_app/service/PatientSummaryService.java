@@ -0,0 +1,198 @@
+package com.example.measurement_app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.dto.SummaryRebuildResult;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.model.PatientMeasurementSummary;
+import com.example.measurement_app.repository.PatientMeasurementSummaryRepository;
+
+/**
+ * Maintains {@code patient_measurement_summary} alongside the measurements table so that
+ * per-patient count, min, max, mean and standard deviation are a primary key lookup.
+ */
+@Service
+@Profile("!reactive")
+public class PatientSummaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientSummaryService.class);
+
+    private final PatientMeasurementSummaryRepository summaryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long rebuildChunkSize;
+    private final int rebuildThreads;
+
+    public PatientSummaryService(PatientMeasurementSummaryRepository summaryRepository, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${measurement.summary.rebuild-chunk-size:10000}") long rebuildChunkSize,
+            @Value("${measurement.summary.rebuild-threads:4}") int rebuildThreads) {
+        this.summaryRepository = summaryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.rebuildThreads = rebuildThreads;
+    }
+
+    public void recordAdded(Long patientId, Double result) {
+        summaryRepository.addResults(patientId, 1, result, result * result, result, result);
+    }
+
+    /**
+     * Applies a batch of new measurements with one upsert per patient, in patient id order
+     * so concurrent batches lock summary rows in the same order.
+     */
+    public void recordAdded(List<Measurement> measurements) {
+        aggregateByPatient(measurements).forEach((patientId, agg) ->
+                summaryRepository.addResults(patientId, (long) agg[0], agg[1], agg[2], agg[3], agg[4]));
+    }
+
+    public void recordRemoved(Long patientId, Double result) {
+        summaryRepository.removeResult(patientId, result);
+    }
+
+    /**
+     * Takes a batch of deleted or replaced measurements out of the summaries with one
+     * update per patient, in patient id order like {@link #recordAdded(List)}.
+     */
+    public void recordRemoved(List<Measurement> measurements) {
+        aggregateByPatient(measurements).forEach((patientId, agg) ->
+                summaryRepository.removeResults(patientId, (long) agg[0], agg[1], agg[2], agg[3], agg[4]));
+    }
+
+    /**
+     * Replaces updated measurements in the summaries, patient by patient in patient id order,
+     * taking out the previous results and adding the new ones. Removing all of them first
+     * would have two updates moving measurements between the same patients in opposite
+     * directions lock their summary rows in opposite order.
+     */
+    public void recordReplaced(List<Measurement> previous, List<Measurement> current) {
+        Map<Long, double[]> removed = aggregateByPatient(previous);
+        Map<Long, double[]> added = aggregateByPatient(current);
+        Set<Long> patientIds = new TreeSet<>(removed.keySet());
+        patientIds.addAll(added.keySet());
+        for (Long patientId : patientIds) {
+            double[] agg = removed.get(patientId);
+            if (agg != null) {
+                summaryRepository.removeResults(patientId, (long) agg[0], agg[1], agg[2], agg[3], agg[4]);
+            }
+            agg = added.get(patientId);
+            if (agg != null) {
+                summaryRepository.addResults(patientId, (long) agg[0], agg[1], agg[2], agg[3], agg[4]);
+            }
+        }
+    }
+
+    /**
+     * Statistics of one patient read from the summary row. Percentiles cannot be derived
+     * from running sums and are left null.
+     */
+    public MeasurementStats getStatistics(Long patientId) {
+        return summaryRepository.findById(patientId)
+                .map(PatientSummaryService::toStats)
+                .orElseGet(() -> new MeasurementStats(0, null, null, null, null, null, null, null));
+    }
+
+    /**
+     * Recomputes every summary from the measurements table. The patient ids found in the
+     * measurements or the summaries are paged through in order, {@code measurement.summary.rebuild-chunk-size}
+     * at a time, and the range of each page is rebuilt in parallel, each in its own
+     * transaction, so sparse ids cost nothing. A write racing the rebuild of its page can
+     * be missed, so run it while writes are quiet or run it again.
+     */
+    public SummaryRebuildResult rebuildAll() {
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            List<Long> page = patientIdsAfter(Long.MIN_VALUE);
+            while (!page.isEmpty()) {
+                long chunkFrom = page.get(0);
+                long chunkTo = page.get(page.size() - 1);
+                chunks.add(executor.submit(() ->
+                        transactionTemplate.execute(status -> summaryRepository.rebuildRange(chunkFrom, chunkTo))));
+                page = page.size() < rebuildChunkSize ? List.of() : patientIdsAfter(chunkTo);
+            }
+            long patients = 0;
+            for (Future<Integer> chunk : chunks) {
+                patients += chunk.get();
+            }
+            long durationMillis = (System.nanoTime() - started) / 1_000_000;
+            log.info("Rebuilt {} patient summaries in {} chunks in {} ms", patients, chunks.size(), durationMillis);
+            return new SummaryRebuildResult(chunks.size(), patients, durationMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Summary rebuild was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Summary rebuild failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Disabled unless measurement.summary.reconcile-cron is set
+    @Scheduled(cron = "${measurement.summary.reconcile-cron:-}")
+    void reconcile() {
+        rebuildAll();
+    }
+
+    // The next page of patient ids after the given one. Summaries without measurements are
+    // included so that their rebuild removes them; each side is limited on its own so that
+    // both stop at the page instead of reading every id after it.
+    private List<Long> patientIdsAfter(long afterPatientId) {
+        return jdbcTemplate.queryForList("SELECT patient_id FROM ("
+                + "(SELECT DISTINCT patient_id FROM measurements WHERE patient_id > ? ORDER BY patient_id LIMIT ?)"
+                + " UNION (SELECT patient_id FROM patient_measurement_summary WHERE patient_id > ?"
+                + " ORDER BY patient_id LIMIT ?)) ids ORDER BY patient_id LIMIT ?", Long.class,
+                afterPatientId, rebuildChunkSize, afterPatientId, rebuildChunkSize, rebuildChunkSize);
+    }
+
+    // Count, sum, sum of squares, min and max of the results per patient
+    private static Map<Long, double[]> aggregateByPatient(List<Measurement> measurements) {
+        Map<Long, double[]> byPatient = new TreeMap<>();
+        for (Measurement measurement : measurements) {
+            double result = measurement.getResult();
+            double[] agg = byPatient.computeIfAbsent(measurement.getPatientId(),
+                    id -> new double[] { 0, 0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY });
+            agg[0]++;
+            agg[1] += result;
+            agg[2] += result * result;
+            agg[3] = Math.min(agg[3], result);
+            agg[4] = Math.max(agg[4], result);
+        }
+        return byPatient;
+    }
+
+    private static MeasurementStats toStats(PatientMeasurementSummary summary) {
+        long count = summary.getMeasurementCount();
+        double mean = summary.getResultSum() / count;
+        Double stddev = null;
+        if (count > 1) {
+            // Clamp rounding noise that can push the variance of near-identical values below zero
+            double variance = (summary.getResultSumOfSquares() - count * mean * mean) / (count - 1);
+            stddev = Math.sqrt(Math.max(0, variance));
+        }
+        return new MeasurementStats(count, summary.getMinResult(), summary.getMaxResult(), mean, stddev,
+                null, null, null);
+    }
+}
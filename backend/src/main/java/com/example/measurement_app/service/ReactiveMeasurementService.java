@@ -0,0 +1,100 @@
+package com.example.measurement_app.service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.ReactiveMeasurementRepository;
+import com.example.measurement_app.repository.ReactivePatientSummaryWriter;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link MeasurementService} for the reactive profile. Lookups that find nothing complete
+ * empty instead of throwing, and writes keep the patient summaries in step within the
+ * same transaction.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveMeasurementService {
+
+    private final ReactiveMeasurementRepository measurementRepository;
+    private final ReactivePatientSummaryWriter summaryWriter;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactiveMeasurementService(ReactiveMeasurementRepository measurementRepository,
+            ReactivePatientSummaryWriter summaryWriter, TransactionalOperator transactionalOperator) {
+        this.measurementRepository = measurementRepository;
+        this.summaryWriter = summaryWriter;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Mono<Measurement> saveMeasurement(Measurement measurement) {
+        return measurementRepository.insert(measurement)
+                .flatMap(saved -> summaryWriter.addResult(saved.getPatientId(), saved.getResult()).thenReturn(saved))
+                .as(transactionalOperator::transactional);
+    }
+
+    public Mono<Measurement> getMeasurementById(Long id) {
+        return measurementRepository.findById(id);
+    }
+
+    public Mono<Measurement> getMeasurementByUuid(UUID uuid) {
+        return measurementRepository.findByUuid(uuid);
+    }
+
+    public Flux<Measurement> streamAllMeasurements() {
+        return measurementRepository.findAll();
+    }
+
+    public Flux<Measurement> streamMeasurementsBetween(Instant from, Instant to) {
+        return measurementRepository.findRange(from, to);
+    }
+
+    public Mono<MeasurementPage> getMeasurementPage(Long after, int limit) {
+        return measurementRepository.findPage(after != null ? after : 0L, limit + 1)
+                .collectList()
+                .map(rows -> MeasurementPage.fromLookahead(rows, limit));
+    }
+
+    public Mono<MeasurementStats> getStatistics() {
+        return measurementRepository.computeStats();
+    }
+
+    /**
+     * @return the deleted measurement, empty if there was none
+     */
+    public Mono<Measurement> deleteMeasurementByUuid(UUID uuid) {
+        return measurementRepository.deleteByUuid(uuid)
+                .flatMap(deleted -> summaryWriter.removeResult(deleted.getPatientId(), deleted.getResult())
+                        .thenReturn(deleted))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * @return the measurement with its new values, empty if there was none
+     */
+    public Mono<Measurement> updateMeasurementByUuid(UUID uuid, Measurement updatedMeasurement) {
+        return measurementRepository
+                .updateByUuid(uuid, updatedMeasurement.getPatientId(), updatedMeasurement.getResult())
+                .flatMap(previous -> summaryWriter.removeResult(previous.getPatientId(), previous.getResult())
+                        .then(summaryWriter.addResult(updatedMeasurement.getPatientId(), updatedMeasurement.getResult()))
+                        .then(Mono.fromSupplier(() -> {
+                            Measurement saved = new Measurement();
+                            saved.setId(previous.getId());
+                            saved.setUuid(uuid);
+                            saved.setPatientId(updatedMeasurement.getPatientId());
+                            saved.setResult(updatedMeasurement.getResult());
+                            saved.setMeasuredAt(previous.getMeasuredAt());
+                            return saved;
+                        })))
+                .as(transactionalOperator::transactional);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * An open-addressing map from UUIDs to where their measurement lives, the patient and the
+ * time in microseconds, with linear probing. Entries are 32 bytes in direct buffers outside
+ * the heap: the UUID halves, the time and the patient ID, which is 0 in an empty slot, so
+ * patient IDs must be positive. A buffer holds at most {@code 1 << SEGMENT_BITS} slots, as
+ * one cannot be larger than 2 GB. The map grows once it is three quarters full. The buffers
+ * can be written to a snapshot as they are and mapped back from it.
+ */
+final class UuidLocationMap {
+
+    static final int MISSING = -1;
+
+    private static final int ENTRY_BYTES = 32;
+    private static final int SEGMENT_BITS = 22;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+    private static final int MAX_SLOTS = 1 << 30;
+
+    private ByteBuffer[] segments;
+    private int mask;
+    private int size;
+
+    UuidLocationMap(int expectedSize) {
+        allocate(slotsFor(expectedSize));
+    }
+
+    /**
+     * The slot holding the UUID, to read with {@link #patientId} and
+     * {@link #measuredAtMicros}, or {@link #MISSING}.
+     */
+    int find(long mostSignificantBits, long leastSignificantBits) {
+        for (int slot = index(mostSignificantBits, leastSignificantBits); ; slot = (slot + 1) & mask) {
+            long patientId = read(slot, 24);
+            if (patientId == 0) {
+                return MISSING;
+            }
+            if (read(slot, 0) == mostSignificantBits && read(slot, 8) == leastSignificantBits) {
+                return slot;
+            }
+        }
+    }
+
+    long patientId(int slot) {
+        return read(slot, 24);
+    }
+
+    long measuredAtMicros(int slot) {
+        return read(slot, 16);
+    }
+
+    void put(long mostSignificantBits, long leastSignificantBits, long patientId, long measuredAtMicros) {
+        if (patientId <= 0) {
+            throw new IllegalArgumentException("Patient IDs must be positive: " + patientId);
+        }
+        if (4L * (size + 1) > 3L * (mask + 1L)) {
+            resize();
+        }
+        int slot = index(mostSignificantBits, leastSignificantBits);
+        while (read(slot, 24) != 0
+                && (read(slot, 0) != mostSignificantBits || read(slot, 8) != leastSignificantBits)) {
+            slot = (slot + 1) & mask;
+        }
+        if (read(slot, 24) == 0) {
+            size++;
+        }
+        write(slot, mostSignificantBits, leastSignificantBits, measuredAtMicros, patientId);
+    }
+
+    /**
+     * Removes the UUID, moving later entries of its probe sequence back into the gap so that
+     * lookups never need markers for removed entries.
+     */
+    boolean remove(long mostSignificantBits, long leastSignificantBits) {
+        int gap = find(mostSignificantBits, leastSignificantBits);
+        if (gap == MISSING) {
+            return false;
+        }
+        for (int slot = (gap + 1) & mask; read(slot, 24) != 0; slot = (slot + 1) & mask) {
+            int home = index(read(slot, 0), read(slot, 8));
+            // The entry may fill the gap unless its home lies cyclically in (gap, slot]
+            boolean stays = gap <= slot ? gap < home && home <= slot : gap < home || home <= slot;
+            if (!stays) {
+                write(gap, read(slot, 0), read(slot, 8), read(slot, 16), read(slot, 24));
+                gap = slot;
+            }
+        }
+        write(gap, 0, 0, 0, 0);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long bytes() {
+        return (mask + 1L) * ENTRY_BYTES;
+    }
+
+    void clear(int expectedSize) {
+        allocate(slotsFor(expectedSize));
+    }
+
+    /**
+     * Writes the slot count, the size and the slots as they are in memory.
+     */
+    void write(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+        writeFully(channel, header.putInt(mask + 1).putInt(size).flip());
+        for (ByteBuffer segment : segments) {
+            writeFully(channel, segment.duplicate().clear());
+        }
+    }
+
+    /**
+     * Replaces the content with what {@link #write} wrote to the snapshot. The slots are
+     * mapped copy-on-write rather than read, so the map is usable at once and pages come
+     * from disk when first probed.
+     */
+    void restore(MeasurementSnapshotStore.Snapshot snapshot) throws IOException {
+        ByteBuffer header = snapshot.map(0, 8).order(ByteOrder.nativeOrder());
+        int slots = header.getInt();
+        int restoredSize = header.getInt();
+        if (slots <= 0 || Integer.bitCount(slots) != 1 || slots > MAX_SLOTS
+                || snapshot.bodySize() != 8 + (long) slots * ENTRY_BYTES) {
+            throw new IOException("Not a UUID index snapshot of this machine");
+        }
+        int segmentSlots = Math.min(slots, 1 << SEGMENT_BITS);
+        ByteBuffer[] restored = new ByteBuffer[slots / segmentSlots];
+        for (int i = 0; i < restored.length; i++) {
+            restored[i] = snapshot.map(8 + (long) i * segmentSlots * ENTRY_BYTES, (long) segmentSlots * ENTRY_BYTES)
+                    .order(ByteOrder.nativeOrder());
+        }
+        segments = restored;
+        mask = slots - 1;
+        size = restoredSize;
+    }
+
+    private void resize() {
+        if (mask + 1 == MAX_SLOTS) {
+            throw new IllegalStateException("The UUID index cannot hold more than " + (MAX_SLOTS / 4 * 3) + " entries");
+        }
+        ByteBuffer[] oldSegments = segments;
+        int oldSlots = mask + 1;
+        allocate(oldSlots * 2);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            ByteBuffer segment = oldSegments[slot >>> SEGMENT_BITS];
+            int offset = (slot & SEGMENT_MASK) * ENTRY_BYTES;
+            long patientId = segment.getLong(offset + 24);
+            if (patientId != 0) {
+                put(segment.getLong(offset), segment.getLong(offset + 8), patientId, segment.getLong(offset + 16));
+            }
+        }
+    }
+
+    // Direct buffers start zeroed, so every slot is empty
+    private void allocate(int slots) {
+        int segmentSlots = Math.min(slots, 1 << SEGMENT_BITS);
+        segments = new ByteBuffer[slots / segmentSlots];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect(segmentSlots * ENTRY_BYTES).order(ByteOrder.nativeOrder());
+        }
+        mask = slots - 1;
+        size = 0;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private long read(int slot, int field) {
+        return segments[slot >>> SEGMENT_BITS].getLong((slot & SEGMENT_MASK) * ENTRY_BYTES + field);
+    }
+
+    private void write(int slot, long mostSignificantBits, long leastSignificantBits, long measuredAtMicros,
+            long patientId) {
+        ByteBuffer segment = segments[slot >>> SEGMENT_BITS];
+        int offset = (slot & SEGMENT_MASK) * ENTRY_BYTES;
+        segment.putLong(offset, mostSignificantBits);
+        segment.putLong(offset + 8, leastSignificantBits);
+        segment.putLong(offset + 16, measuredAtMicros);
+        segment.putLong(offset + 24, patientId);
+    }
+
+    // Name-based UUIDs from imports are hashes too, but the halves are mixed all the same
+    private int index(long mostSignificantBits, long leastSignificantBits) {
+        long mixed = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private static int slotsFor(int expectedSize) {
+        long slots = Long.highestOneBit(Math.max(16, expectedSize * 4L / 3) - 1) << 1;
+        return (int) Math.min(slots, MAX_SLOTS);
+    }
+}
@@ -0,0 +1,23 @@
+-- Moves a measurements table created with "id SERIAL" to the pooled sequence used by
+-- the Measurement entity (allocationSize = 50, pooled-lo optimizer).
+--
+-- SERIAL already created measurements_id_seq and set it as the column default, so the
+-- sequence is kept and only widened, re-stepped and moved past the current ids.
+-- Stop the backend while this runs: ids handed out by the old step would otherwise
+-- overlap with the blocks allocated after the change.
+--
+-- The backend's batch and COPY inserts then take blocks from the sequence as well and set
+-- the ids themselves. The SERIAL default stays for hand-written inserts, where each row
+-- uses up a whole block.
+
+BEGIN;
+
+LOCK TABLE measurements IN EXCLUSIVE MODE;
+
+ALTER TABLE measurements ALTER COLUMN id TYPE BIGINT;
+
+ALTER SEQUENCE measurements_id_seq AS BIGINT INCREMENT BY 50;
+
+SELECT setval('measurements_id_seq', COALESCE((SELECT MAX(id) FROM measurements), 0) + 1, false);
+
+COMMIT;
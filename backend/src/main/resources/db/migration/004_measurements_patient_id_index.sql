@@ -0,0 +1,7 @@
+-- Adds the (patient_id, id) index behind GET /patients/{patientId}/measurements.
+--
+-- CONCURRENTLY keeps the table writable while the index builds, but cannot run inside
+-- a transaction block. If the build fails it leaves an INVALID index behind; drop it
+-- and run this again.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_measurements_patient_id_id ON measurements (patient_id, id);
@@ -0,0 +1,23 @@
+-- Creates the per-patient rollup table and fills it from the existing measurements.
+-- Run with the backend stopped, or call POST /measurements/stats/rebuild afterwards to
+-- pick up writes that raced the initial fill.
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS patient_measurement_summary (
+    patient_id BIGINT PRIMARY KEY,
+    measurement_count BIGINT NOT NULL,
+    result_sum DOUBLE PRECISION NOT NULL,
+    result_sum_of_squares DOUBLE PRECISION NOT NULL,
+    min_result DOUBLE PRECISION,
+    max_result DOUBLE PRECISION
+);
+
+INSERT INTO patient_measurement_summary
+    (patient_id, measurement_count, result_sum, result_sum_of_squares, min_result, max_result)
+SELECT patient_id, COUNT(*), SUM(result), SUM(result * result), MIN(result), MAX(result)
+FROM measurements
+GROUP BY patient_id
+ON CONFLICT (patient_id) DO NOTHING;
+
+COMMIT;
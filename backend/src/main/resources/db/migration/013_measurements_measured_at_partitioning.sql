@@ -0,0 +1,106 @@
+-- Adds measured_at to measurements and moves the table to monthly range partitions on
+-- it, as in schema-postgresql.sql. Existing rows get the time of the migration, which
+-- is the closest to their measurement time that is known. The UUID constraint has to
+-- include measured_at on the partitioned table, so measurement_uuids keeps UUIDs unique
+-- across partitions; it is filled by its trigger as the rows are copied.
+--
+-- A partitioned table cannot be created from an existing one in place, so the old table
+-- is renamed, its rows are copied into the new one and it is dropped. The id sequence is
+-- detached from the old table first so that dropping it keeps the sequence. Stop the
+-- backend while this runs.
+
+BEGIN;
+
+LOCK TABLE measurements IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE measurements RENAME TO measurements_unpartitioned;
+ALTER INDEX IF EXISTS idx_measurements_patient_id_id RENAME TO idx_measurements_unpartitioned_patient_id_id;
+ALTER SEQUENCE measurements_id_seq OWNED BY NONE;
+
+CREATE TABLE measurements (
+    id BIGINT DEFAULT nextval('measurements_id_seq') NOT NULL,
+    patient_id BIGINT NOT NULL,
+    result DOUBLE PRECISION NOT NULL,
+    uuid UUID NOT NULL,
+    measured_at TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    PRIMARY KEY (id, measured_at),
+    UNIQUE (uuid, measured_at)
+) PARTITION BY RANGE (measured_at);
+
+CREATE TABLE measurements_default PARTITION OF measurements DEFAULT;
+
+CREATE TABLE measurement_uuids (
+    uuid UUID PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION measurement_uuids_insert() RETURNS TRIGGER
+LANGUAGE plpgsql AS '
+BEGIN
+    INSERT INTO measurement_uuids (uuid) SELECT uuid FROM inserted_measurements;
+    RETURN NULL;
+END;
+';
+
+CREATE OR REPLACE FUNCTION measurement_uuids_delete() RETURNS TRIGGER
+LANGUAGE plpgsql AS '
+BEGIN
+    DELETE FROM measurement_uuids WHERE uuid IN (SELECT uuid FROM deleted_measurements);
+    RETURN NULL;
+END;
+';
+
+CREATE TRIGGER measurement_uuids_insert AFTER INSERT ON measurements
+    REFERENCING NEW TABLE AS inserted_measurements
+    FOR EACH STATEMENT EXECUTE FUNCTION measurement_uuids_insert();
+
+CREATE TRIGGER measurement_uuids_delete AFTER DELETE ON measurements
+    REFERENCING OLD TABLE AS deleted_measurements
+    FOR EACH STATEMENT EXECUTE FUNCTION measurement_uuids_delete();
+
+CREATE INDEX idx_measurements_patient_id_id ON measurements (patient_id, id);
+CREATE INDEX idx_measurements_measured_at ON measurements (measured_at);
+CREATE INDEX idx_measurements_patient_id_measured_at ON measurements (patient_id, measured_at);
+
+CREATE OR REPLACE FUNCTION create_measurement_partitions(first_month DATE, months INT) RETURNS VOID
+LANGUAGE plpgsql AS '
+DECLARE
+    month_start TIMESTAMP;
+    partition_name TEXT;
+    lower_bound TIMESTAMPTZ;
+    upper_bound TIMESTAMPTZ;
+BEGIN
+    -- Callers on several instances create the same months
+    PERFORM pg_advisory_xact_lock(hashtext(''create_measurement_partitions''));
+    FOR i IN 0 .. months - 1 LOOP
+        month_start := date_trunc(''month'', CAST(first_month AS TIMESTAMP)) + make_interval(months => i);
+        partition_name := ''measurements_'' || to_char(month_start, ''YYYY_MM'');
+        lower_bound := month_start AT TIME ZONE ''UTC'';
+        upper_bound := (month_start + interval ''1 month'') AT TIME ZONE ''UTC'';
+        CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+        IF EXISTS (SELECT 1 FROM measurements_default WHERE measured_at >= lower_bound AND measured_at < upper_bound) THEN
+            -- A partition cannot be created over rows in the default partition, so they
+            -- move into a new table first, which is then attached. Neither statement
+            -- names measurements, so the UUID triggers do not fire.
+            EXECUTE format(''CREATE TABLE %I (LIKE measurements INCLUDING DEFAULTS)'', partition_name);
+            EXECUTE format(''WITH moved AS (DELETE FROM measurements_default WHERE measured_at >= %L AND measured_at < %L RETURNING *) INSERT INTO %I SELECT * FROM moved'',
+                lower_bound, upper_bound, partition_name);
+            EXECUTE format(''ALTER TABLE measurements ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)'',
+                partition_name, lower_bound, upper_bound);
+        ELSE
+            EXECUTE format(''CREATE TABLE %I PARTITION OF measurements FOR VALUES FROM (%L) TO (%L)'',
+                partition_name, lower_bound, upper_bound);
+        END IF;
+    END LOOP;
+END;
+';
+
+-- Partitions first, so the copied rows land in the current month rather than the default
+SELECT create_measurement_partitions(CAST(now() AT TIME ZONE 'UTC' AS DATE), 3);
+
+INSERT INTO measurements (id, patient_id, result, uuid, measured_at)
+SELECT id, patient_id, result, uuid, now()
+FROM measurements_unpartitioned;
+
+DROP TABLE measurements_unpartitioned;
+
+COMMIT;
@@ -0,0 +1,16 @@
+-- Plain table: H2 has no declarative partitioning, the indexes serve the range reads.
+-- Ids are taken from the sequence in blocks, as on PostgreSQL; see schema-postgresql.sql.
+
+CREATE SEQUENCE IF NOT EXISTS measurements_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS measurements (
+    id BIGINT DEFAULT nextval('measurements_id_seq') PRIMARY KEY,
+    patient_id BIGINT NOT NULL,
+    result DOUBLE PRECISION NOT NULL,
+    uuid UUID NOT NULL UNIQUE,
+    measured_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_measurements_patient_id_id ON measurements (patient_id, id);
+CREATE INDEX IF NOT EXISTS idx_measurements_measured_at ON measurements (measured_at);
+CREATE INDEX IF NOT EXISTS idx_measurements_patient_id_measured_at ON measurements (patient_id, measured_at);
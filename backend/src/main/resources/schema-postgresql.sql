@@ -0,0 +1,105 @@
+-- Measurements are range-partitioned by month of measured_at, so a time-range read
+-- only scans the partitions it overlaps and old months can be detached or dropped
+-- whole. Unique constraints on a partitioned table must include the partition key,
+-- hence (id, measured_at) and (uuid, measured_at). Ids come from a sequence, so they
+-- stay unique on their own. UUIDs can be chosen by clients, so (uuid, measured_at) only
+-- serves lookups, and measurement_uuids, which triggers keep in step with measurements
+-- in the same transaction, makes each UUID unique across all partitions.
+--
+-- Monthly partitions are created ahead of time by create_measurement_partitions(),
+-- which the backend also calls on a schedule and before writing measurements of any
+-- other month. Rows outside every monthly partition land in measurements_default until
+-- the partition of their month is created, which moves them there.
+--
+-- measurements_id_seq hands out blocks of 50 ids: the entity and the backend's batch and
+-- COPY inserts take one value per block and number the rows of the block themselves. The
+-- column default takes a whole block per row; it only serves single-row inserts that
+-- leave the id out, those of the reactive stack and hand-written ones.
+
+CREATE SEQUENCE IF NOT EXISTS measurements_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS measurements (
+    id BIGINT DEFAULT nextval('measurements_id_seq') NOT NULL,
+    patient_id BIGINT NOT NULL,
+    result DOUBLE PRECISION NOT NULL,
+    uuid UUID NOT NULL,
+    measured_at TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    PRIMARY KEY (id, measured_at),
+    UNIQUE (uuid, measured_at)
+) PARTITION BY RANGE (measured_at);
+
+CREATE TABLE IF NOT EXISTS measurements_default PARTITION OF measurements DEFAULT;
+
+CREATE TABLE IF NOT EXISTS measurement_uuids (
+    uuid UUID PRIMARY KEY
+);
+
+-- Statement-level, so a batch or COPY inserts its UUIDs with one statement; a UUID that
+-- is taken fails the insert with a unique violation like a constraint on measurements would.
+-- Updates never change the UUID.
+CREATE OR REPLACE FUNCTION measurement_uuids_insert() RETURNS TRIGGER
+LANGUAGE plpgsql AS '
+BEGIN
+    INSERT INTO measurement_uuids (uuid) SELECT uuid FROM inserted_measurements;
+    RETURN NULL;
+END;
+';
+
+CREATE OR REPLACE FUNCTION measurement_uuids_delete() RETURNS TRIGGER
+LANGUAGE plpgsql AS '
+BEGIN
+    DELETE FROM measurement_uuids WHERE uuid IN (SELECT uuid FROM deleted_measurements);
+    RETURN NULL;
+END;
+';
+
+CREATE OR REPLACE TRIGGER measurement_uuids_insert AFTER INSERT ON measurements
+    REFERENCING NEW TABLE AS inserted_measurements
+    FOR EACH STATEMENT EXECUTE FUNCTION measurement_uuids_insert();
+
+CREATE OR REPLACE TRIGGER measurement_uuids_delete AFTER DELETE ON measurements
+    REFERENCING OLD TABLE AS deleted_measurements
+    FOR EACH STATEMENT EXECUTE FUNCTION measurement_uuids_delete();
+
+CREATE INDEX IF NOT EXISTS idx_measurements_patient_id_id ON measurements (patient_id, id);
+CREATE INDEX IF NOT EXISTS idx_measurements_measured_at ON measurements (measured_at);
+CREATE INDEX IF NOT EXISTS idx_measurements_patient_id_measured_at ON measurements (patient_id, measured_at);
+
+-- Creates the monthly partitions measurements_YYYY_MM for the given number of months,
+-- starting with the month of first_month, and skips those that exist. Month bounds are
+-- in UTC. The body is a plain string rather than dollar-quoted because Spring's script
+-- runner splits on every semicolon outside of quotes.
+CREATE OR REPLACE FUNCTION create_measurement_partitions(first_month DATE, months INT) RETURNS VOID
+LANGUAGE plpgsql AS '
+DECLARE
+    month_start TIMESTAMP;
+    partition_name TEXT;
+    lower_bound TIMESTAMPTZ;
+    upper_bound TIMESTAMPTZ;
+BEGIN
+    -- Callers on several instances create the same months
+    PERFORM pg_advisory_xact_lock(hashtext(''create_measurement_partitions''));
+    FOR i IN 0 .. months - 1 LOOP
+        month_start := date_trunc(''month'', CAST(first_month AS TIMESTAMP)) + make_interval(months => i);
+        partition_name := ''measurements_'' || to_char(month_start, ''YYYY_MM'');
+        lower_bound := month_start AT TIME ZONE ''UTC'';
+        upper_bound := (month_start + interval ''1 month'') AT TIME ZONE ''UTC'';
+        CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+        IF EXISTS (SELECT 1 FROM measurements_default WHERE measured_at >= lower_bound AND measured_at < upper_bound) THEN
+            -- A partition cannot be created over rows in the default partition, so they
+            -- move into a new table first, which is then attached. Neither statement
+            -- names measurements, so the UUID triggers do not fire.
+            EXECUTE format(''CREATE TABLE %I (LIKE measurements INCLUDING DEFAULTS)'', partition_name);
+            EXECUTE format(''WITH moved AS (DELETE FROM measurements_default WHERE measured_at >= %L AND measured_at < %L RETURNING *) INSERT INTO %I SELECT * FROM moved'',
+                lower_bound, upper_bound, partition_name);
+            EXECUTE format(''ALTER TABLE measurements ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)'',
+                partition_name, lower_bound, upper_bound);
+        ELSE
+            EXECUTE format(''CREATE TABLE %I PARTITION OF measurements FOR VALUES FROM (%L) TO (%L)'',
+                partition_name, lower_bound, upper_bound);
+        END IF;
+    END LOOP;
+END;
+';
+
+SELECT create_measurement_partitions(CAST(now() AT TIME ZONE 'UTC' AS DATE), 3);
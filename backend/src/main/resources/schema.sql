@@ -1,6 +1,11 @@
-CREATE TABLE IF NOT EXISTS measurements (
-    id SERIAL PRIMARY KEY,
-    patient_id BIGINT NOT NULL,
-    result DOUBLE PRECISION NOT NULL,
-    uuid UUID NOT NULL UNIQUE
-);
\ No newline at end of file
+-- The measurements table differs per database and lives in schema-h2.sql and
+-- schema-postgresql.sql, picked by spring.sql.init.platform.
+
+CREATE TABLE IF NOT EXISTS patient_measurement_summary (
+    patient_id BIGINT PRIMARY KEY,
+    measurement_count BIGINT NOT NULL,
+    result_sum DOUBLE PRECISION NOT NULL,
+    result_sum_of_squares DOUBLE PRECISION NOT NULL,
+    min_result DOUBLE PRECISION,
+    max_result DOUBLE PRECISION
+);
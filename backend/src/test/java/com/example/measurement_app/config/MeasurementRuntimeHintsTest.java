@@ -0,0 +1,35 @@
+package com.example.measurement_app.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementUpdate;
+import com.example.measurement_app.model.Measurement;
+
+class MeasurementRuntimeHintsTest {
+
+    /**
+     * Test that the native image can write streamed measurements and events as JSON and validate measurements.
+     */
+    @Test
+    void shouldRegisterJsonAndValidationReflection() {
+        // Arrange
+        RuntimeHints hints = new RuntimeHints();
+
+        // Act
+        new MeasurementRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        // Assert: Getters for Jackson, fields for the constraint annotations
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Measurement.class, "getPatientId")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(MeasurementEvent.class, "measuredAt")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Measurement.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(MeasurementUpdate.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("META-INF/validation.xml")).accepts(hints);
+    }
+}
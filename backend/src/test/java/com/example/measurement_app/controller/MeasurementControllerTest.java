@@ -1,39 +1,70 @@
 package com.example.measurement_app.controller;
 
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.measurement_app.dto.BatchItemResult;
+import com.example.measurement_app.dto.BatchResult;
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.dto.MeasurementUpdate;
 import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementIngestQueue;
 import com.example.measurement_app.service.MeasurementService;
+import com.example.measurement_app.service.PatientSummaryService;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 
 import jakarta.persistence.EntityNotFoundException;
 
+@DisabledInNativeImage
 class MeasurementControllerTest {
 
     private MeasurementService measurementService;
     private MeasurementController measurementController;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    private final MeasurementArrayWriter arrayWriter = new MeasurementArrayWriter(objectMapper,
+            new MappingJackson2CborHttpMessageConverter(), new MappingJackson2SmileHttpMessageConverter());
 
     @BeforeEach
     public void setUp() {
         // Mock the service and initialize the controller
         measurementService = mock(MeasurementService.class);
-        measurementController = new MeasurementController(measurementService);
+        measurementController = new MeasurementController(measurementService, mock(PatientSummaryService.class),
+                arrayWriter, Optional.empty());
     }
 
     /**
@@ -65,6 +96,80 @@ class MeasurementControllerTest {
         verify(measurementService, times(1)).saveMeasurement(measurement);
     }
 
+    /**
+     * Test that asynchronous ingest queues a measurement and answers 202, or 429 when full.
+     */
+    @Test
+    void shouldQueueMeasurementWithAsynchronousIngest() {
+        // Arrange: A controller with an ingest queue that takes one measurement
+        MeasurementIngestQueue ingestQueue = mock(MeasurementIngestQueue.class);
+        MeasurementController asyncController = new MeasurementController(measurementService,
+                mock(PatientSummaryService.class), arrayWriter, Optional.of(ingestQueue));
+        Measurement accepted = new Measurement();
+        accepted.setPatientId(123L);
+        accepted.setResult(75.0);
+        Measurement rejected = new Measurement();
+        rejected.setPatientId(123L);
+        rejected.setResult(76.0);
+        when(ingestQueue.offer(accepted)).thenReturn(true);
+        when(ingestQueue.offer(rejected)).thenReturn(false);
+
+        // Act: Save both
+        ResponseEntity<Measurement> acceptedResponse = asyncController.saveMeasurement(accepted);
+        ResponseEntity<Measurement> rejectedResponse = asyncController.saveMeasurement(rejected);
+
+        // Assert: Nothing is saved synchronously
+        assertEquals(HttpStatus.ACCEPTED, acceptedResponse.getStatusCode());
+        assertEquals(accepted, acceptedResponse.getBody());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejectedResponse.getStatusCode());
+        verify(measurementService, never()).saveMeasurement(any(Measurement.class));
+    }
+
+    /**
+     * Test that a queued measurement is found by UUID before it is written.
+     */
+    @Test
+    void shouldFindPendingMeasurementByUuid() {
+        // Arrange: A measurement waiting in the ingest queue
+        MeasurementIngestQueue ingestQueue = mock(MeasurementIngestQueue.class);
+        MeasurementController asyncController = new MeasurementController(measurementService,
+                mock(PatientSummaryService.class), arrayWriter, Optional.of(ingestQueue));
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(123L);
+        measurement.setResult(75.0);
+        when(ingestQueue.findPending(measurement.getUuid())).thenReturn(Optional.of(measurement));
+
+        // Act: Retrieve it by UUID
+        ResponseEntity<Measurement> response = asyncController.getMeasurementByUuid(measurement.getUuid());
+
+        // Assert: Answered from the queue without asking the database
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(measurement, response.getBody());
+        verify(measurementService, never()).getMeasurementByUuid(any(UUID.class));
+    }
+
+    /**
+     * Test saving a batch of measurements.
+     */
+    @Test
+    void shouldSaveMeasurementBatchSuccessfully() {
+        // Arrange: A batch of one measurement
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(123L);
+        measurement.setResult(75.0);
+        BatchResult result = BatchResult.of(List.of(BatchItemResult.created(0, measurement.getUuid())), 1);
+
+        when(measurementService.saveMeasurements(List.of(measurement))).thenReturn(result);
+
+        // Act: Save the batch
+        ResponseEntity<BatchResult> response = measurementController.saveMeasurements(List.of(measurement));
+
+        // Assert: The per-item result is returned as is
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+        verify(measurementService, times(1)).saveMeasurements(List.of(measurement));
+    }
+
     /**
      * Test retrieving a measurement by ID.
      */
@@ -147,7 +252,8 @@ class MeasurementControllerTest {
      * Test retrieving all measurements.
      */
     @Test
-    void shouldRetrieveAllMeasurementsSuccessfully() {
+    @SuppressWarnings("unchecked")
+    void shouldStreamAllMeasurementsSuccessfully() throws Exception {
         // Arrange: Create a list of measurements
         Measurement m1 = new Measurement();
         m1.setId(1L);
@@ -161,22 +267,134 @@ class MeasurementControllerTest {
         m2.setResult(85.0);
         m2.setUuid(UUID.randomUUID());
 
-        when(measurementService.getAllMeasurements()).thenReturn(List.of(m1, m2));
+        doAnswer(invocation -> {
+            Consumer<Measurement> consumer = invocation.getArgument(0);
+            consumer.accept(m1);
+            consumer.accept(m2);
+            return null;
+        }).when(measurementService).streamAllMeasurements(any(Consumer.class));
 
-        // Act: Retrieve all measurements
-        ResponseEntity<List<Measurement>> response = measurementController.getAllMeasurements();
+        // Act: Retrieve all measurements and write the streamed body
+        ResponseEntity<StreamingResponseBody> response = measurementController.getAllMeasurements(List.of(MediaType.ALL));
+        assertNotNull(response.getBody());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // Assert: Verify the response is a JSON array of both measurements
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+        assertEquals(2, body.size());
+        assertEquals(100L, body.get(0).get("patientId").asLong());
+        assertEquals(200L, body.get(1).get("patientId").asLong());
+        assertEquals(m2.getUuid().toString(), body.get(1).get("uuid").asText());
+
+        verify(measurementService, times(1)).streamAllMeasurements(any(Consumer.class));
+    }
+
+    /**
+     * Test that the streamed list is written in the binary format the client prefers.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStreamMeasurementsAsCborWhenPreferred() throws Exception {
+        // Arrange: One measurement
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(100L);
+        measurement.setResult(65.0);
+        doAnswer(invocation -> {
+            Consumer<Measurement> consumer = invocation.getArgument(0);
+            consumer.accept(measurement);
+            return null;
+        }).when(measurementService).streamAllMeasurements(any(Consumer.class));
+
+        // Act: Ask for CBOR over JSON
+        ResponseEntity<StreamingResponseBody> response = measurementController.getAllMeasurements(
+                MediaType.parseMediaTypes("application/json;q=0.5, application/cbor"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // Assert: A CBOR array with the measurement, its UUID as raw bytes
+        assertEquals(MediaType.APPLICATION_CBOR, response.getHeaders().getContentType());
+        JsonNode body = new CBORMapper().readTree(out.toByteArray());
+        assertEquals(1, body.size());
+        assertEquals(100L, body.get(0).get("patientId").asLong());
+        assertEquals(16, body.get(0).get("uuid").binaryValue().length);
+    }
+
+    /**
+     * Test retrieving the measurements of a time range.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStreamMeasurementsBetweenSuccessfully() throws Exception {
+        // Arrange: A measurement inside the range
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        Instant to = Instant.parse("2024-05-02T00:00:00Z");
+        Measurement measurement = new Measurement();
+        measurement.setId(1L);
+        measurement.setPatientId(100L);
+        measurement.setResult(65.0);
+        measurement.setMeasuredAt(Instant.parse("2024-05-01T12:00:00Z"));
+
+        doAnswer(invocation -> {
+            Consumer<Measurement> consumer = invocation.getArgument(2);
+            consumer.accept(measurement);
+            return null;
+        }).when(measurementService).streamMeasurementsBetween(any(Instant.class), any(Instant.class), any(Consumer.class));
+
+        // Act: Retrieve the range and write the streamed body
+        ResponseEntity<StreamingResponseBody> response = measurementController.getMeasurementsBetween(from, to, List.of(MediaType.ALL));
+        assertNotNull(response.getBody());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // Assert: Verify the response is a JSON array with the measurement and its time
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+        assertEquals(1, body.size());
+        assertEquals("2024-05-01T12:00:00Z", body.get(0).get("measuredAt").asText());
+
+        verify(measurementService, times(1)).streamMeasurementsBetween(any(Instant.class), any(Instant.class), any(Consumer.class));
+    }
+
+    /**
+     * Test retrieving a keyset page of measurements.
+     */
+    @Test
+    void shouldRetrieveMeasurementPageSuccessfully() {
+        // Arrange: Create a page with a cursor to the next page
+        Measurement measurement = new Measurement();
+        measurement.setId(11L);
+        measurement.setPatientId(100L);
+        measurement.setResult(65.0);
+        MeasurementPage page = new MeasurementPage(List.of(measurement), 11L);
+
+        when(measurementService.getMeasurementPage(10L, 1)).thenReturn(page);
+
+        // Act: Retrieve the page
+        ResponseEntity<MeasurementPage> response = measurementController.getMeasurementPage(10L, 1);
 
         // Assert: Verify the response
-        assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+        verify(measurementService, times(1)).getMeasurementPage(10L, 1);
+    }
 
-        List<Measurement> body = response.getBody();
-        assertNotNull(body);
-        assertEquals(2, body.size());
-        assertEquals(100L, body.get(0).getPatientId());
-        assertEquals(200L, body.get(1).getPatientId());
+    /**
+     * Test retrieving statistics over all measurements.
+     */
+    @Test
+    void shouldRetrieveStatisticsSuccessfully() {
+        // Arrange: Statistics computed by the service
+        MeasurementStats stats = new MeasurementStats(3, 55.0, 95.0, 75.0, 20.0, 75.0, 93.0, 94.6);
+        when(measurementService.getStatistics()).thenReturn(stats);
 
-        verify(measurementService, times(1)).getAllMeasurements();
+        // Act: Retrieve the statistics
+        ResponseEntity<MeasurementStats> response = measurementController.getStatistics();
+
+        // Assert: Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
     }
 
     /**
@@ -196,6 +414,78 @@ class MeasurementControllerTest {
         verify(measurementService, times(1)).deleteMeasurementByUuid(any(UUID.class));
     }
 
+    /**
+     * Test deleting a measurement that does not exist.
+     */
+    @Test
+    void shouldReturnNotFoundWhenDeletingUnknownMeasurement() {
+        // Arrange: The service reports the UUID as unknown
+        UUID uuid = UUID.randomUUID();
+        doThrow(new EntityNotFoundException("Measurement with UUID " + uuid + " not found"))
+                .when(measurementService).deleteMeasurementByUuid(uuid);
+
+        // Act: Delete it
+        ResponseEntity<Void> response = measurementController.deleteMeasurementByUuid(uuid);
+
+        // Assert: Not found instead of a server error
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    /**
+     * Test that other errors of a delete are not reported as a missing measurement.
+     */
+    @Test
+    void shouldNotReportOtherDeleteErrorsAsNotFound() {
+        // Arrange: The service fails for another reason
+        UUID uuid = UUID.randomUUID();
+        doThrow(new IllegalArgumentException("Invalid argument"))
+                .when(measurementService).deleteMeasurementByUuid(uuid);
+
+        // Act & Assert: The error reaches the exception handler
+        assertThrows(IllegalArgumentException.class, () -> measurementController.deleteMeasurementByUuid(uuid));
+    }
+
+    /**
+     * Test deleting a batch of measurements by UUID.
+     */
+    @Test
+    void shouldDeleteMeasurementBatchSuccessfully() {
+        // Arrange: One existing and one unknown UUID
+        UUID existing = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        BatchResult result = BatchResult.of(List.of(BatchItemResult.deleted(0, existing),
+                BatchItemResult.notFound(1, unknown)), 1);
+
+        when(measurementService.deleteMeasurementsByUuid(List.of(existing, unknown))).thenReturn(result);
+
+        // Act: Delete the batch
+        ResponseEntity<BatchResult> response = measurementController.deleteMeasurementsByUuid(List.of(existing, unknown));
+
+        // Assert: The per-item result is returned as is
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
+
+    /**
+     * Test updating a batch of measurements by UUID.
+     */
+    @Test
+    void shouldUpdateMeasurementBatchSuccessfully() {
+        // Arrange: A batch of one update
+        MeasurementUpdate update = new MeasurementUpdate(UUID.randomUUID(), 5L, 70.0);
+        BatchResult result = BatchResult.of(List.of(BatchItemResult.updated(0, update.uuid())), 1);
+
+        when(measurementService.updateMeasurements(List.of(update))).thenReturn(result);
+
+        // Act: Update the batch
+        ResponseEntity<BatchResult> response = measurementController.updateMeasurements(List.of(update));
+
+        // Assert: The per-item result is returned as is
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+        verify(measurementService, times(1)).updateMeasurements(List.of(update));
+    }
+
     /**
      * Test updating a measurement by UUID with a conflict (duplicate key
      * error).
@@ -0,0 +1,160 @@
+package com.example.measurement_app.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementSeries;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementService;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+@DisabledInNativeImage
+class PatientMeasurementControllerTest {
+
+    private MeasurementService measurementService;
+    private PatientMeasurementController patientMeasurementController;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+
+    @BeforeEach
+    public void setUp() {
+        measurementService = mock(MeasurementService.class);
+        patientMeasurementController = new PatientMeasurementController(measurementService, new MeasurementArrayWriter(objectMapper,
+                new MappingJackson2CborHttpMessageConverter(), new MappingJackson2SmileHttpMessageConverter()));
+    }
+
+    /**
+     * Test retrieving a page of a patient's measurements.
+     */
+    @Test
+    void shouldRetrieveMeasurementsByPatientIdSuccessfully() {
+        // Arrange: A last page with a single measurement
+        Measurement measurement = new Measurement();
+        measurement.setId(5L);
+        measurement.setPatientId(123L);
+        measurement.setResult(75.0);
+        MeasurementPage page = new MeasurementPage(List.of(measurement), null);
+
+        when(measurementService.getMeasurementPageByPatientId(123L, null, 100)).thenReturn(page);
+
+        // Act: Retrieve the page
+        ResponseEntity<MeasurementPage> response = patientMeasurementController.getMeasurementsByPatientId(123L, null, 100);
+
+        // Assert: Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+        verify(measurementService, times(1)).getMeasurementPageByPatientId(123L, null, 100);
+    }
+
+    /**
+     * Test retrieving a patient's statistics.
+     */
+    @Test
+    void shouldRetrieveStatisticsByPatientIdSuccessfully() {
+        // Arrange: Statistics of a patient with a single measurement
+        MeasurementStats stats = new MeasurementStats(1, 75.0, 75.0, 75.0, null, 75.0, 75.0, 75.0);
+        when(measurementService.getStatisticsByPatientId(123L, false)).thenReturn(stats);
+
+        // Act: Retrieve the statistics
+        ResponseEntity<MeasurementStats> response = patientMeasurementController.getStatisticsByPatientId(123L, false);
+
+        // Assert: Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
+        verify(measurementService, times(1)).getStatisticsByPatientId(123L, false);
+    }
+
+    /**
+     * Test retrieving a patient's measurements from a point in time on.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStreamMeasurementsByPatientIdBetweenSuccessfully() throws Exception {
+        // Arrange: A single measurement after the start of the range
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        Measurement measurement = new Measurement();
+        measurement.setId(5L);
+        measurement.setPatientId(123L);
+        measurement.setResult(75.0);
+        measurement.setMeasuredAt(Instant.parse("2024-05-03T08:30:00Z"));
+
+        doAnswer(invocation -> {
+            Consumer<Measurement> consumer = invocation.getArgument(3);
+            consumer.accept(measurement);
+            return null;
+        }).when(measurementService).streamMeasurementsByPatientIdBetween(eq(123L), eq(from), isNull(), any(Consumer.class));
+
+        // Act: Retrieve the open-ended range and write the streamed body
+        ResponseEntity<StreamingResponseBody> response =
+                patientMeasurementController.getMeasurementsByPatientIdBetween(123L, from, null, List.of(MediaType.ALL));
+        assertNotNull(response.getBody());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // Assert: Verify the streamed array holds the measurement
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode body = objectMapper.readTree(out.toByteArray());
+        assertEquals(1, body.size());
+        assertEquals(123L, body.get(0).get("patientId").asLong());
+        assertEquals("2024-05-03T08:30:00Z", body.get(0).get("measuredAt").asText());
+        verify(measurementService, times(1)).streamMeasurementsByPatientIdBetween(eq(123L), eq(from), isNull(), any(Consumer.class));
+    }
+
+    /**
+     * Test retrieving a patient's series, and a range the service rejects.
+     */
+    @Test
+    void shouldRetrieveSeriesByPatientId() {
+        // Arrange: One bucket for a day, and a range the service considers too long
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        Instant to = Instant.parse("2024-05-02T00:00:00Z");
+        MeasurementSeries series = new MeasurementSeries(List.of(new MeasurementBucket(from, 3, 60.0, 80.0, 70.0)), 1);
+        when(measurementService.getSeriesByPatientId(123L, from, to, Duration.ofHours(1), null)).thenReturn(series);
+        when(measurementService.getSeriesByPatientId(123L, from, to, Duration.ofSeconds(1), null))
+                .thenThrow(new IllegalArgumentException("too many buckets"));
+
+        // Act: Retrieve the series in hourly and in one-second buckets
+        ResponseEntity<MeasurementSeries> response =
+                patientMeasurementController.getSeriesByPatientId(123L, Duration.ofHours(1), from, to, null);
+        ResponseStatusException rejected = assertThrows(ResponseStatusException.class,
+                () -> patientMeasurementController.getSeriesByPatientId(123L, Duration.ofSeconds(1), from, to, null));
+
+        // Assert: The series is returned and the rejected range is a bad request with the service's reason
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(series, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+        assertEquals("too many buckets", rejected.getReason());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.measurement_app.integration;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementRepository;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "measurement.ingest.mode=async")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AsyncIngestIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeasurementRepository measurementRepository;
+
+    /**
+     * Test that an accepted measurement can be read right away and is written shortly after.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAcceptMeasurementAndWriteItBehind() throws InterruptedException {
+        // Arrange & Act: Post a measurement
+        Map<String, Object> accepted = webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", 1, "result", 75.5))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(Map.class).returnResult().getResponseBody();
+        UUID uuid = UUID.fromString(accepted.get("uuid").toString());
+
+        // Assert: Readable by UUID at once, and in the database once written
+        webTestClient.get().uri("/measurements/uuid/{uuid}", uuid).exchange().expectStatus().isOk();
+        Optional<Measurement> written = Optional.empty();
+        for (int attempt = 0; attempt < 50 && written.isEmpty(); attempt++) {
+            Thread.sleep(100);
+            written = measurementRepository.findByUuid(uuid);
+        }
+        assertThat(written).get().extracting(Measurement::getResult).isEqualTo(75.5);
+        webTestClient.get().uri("/measurements/uuid/{uuid}", uuid).exchange().expectStatus().isOk();
+    }
+
+    /**
+     * Test that an invalid measurement is still rejected before it is queued.
+     */
+    @Test
+    void shouldRejectInvalidMeasurementBeforeQueueing() {
+        webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", 1))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
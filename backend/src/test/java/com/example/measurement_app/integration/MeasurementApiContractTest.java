@@ -0,0 +1,279 @@
+package com.example.measurement_app.integration;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.example.measurement_app.dto.MeasurementStats;
+
+/**
+ * The {@code /measurements} HTTP contract. Subclasses start one of the two stacks on a
+ * random port and the same requests run against it, so the servlet and the reactive
+ * stack are held to identical behaviour.
+ */
+abstract class MeasurementApiContractTest {
+
+    // Measurement only ever writes its uuid, so responses are read into these instead
+    protected record MeasurementView(UUID uuid, Long patientId, Double result, Instant measuredAt) {
+    }
+
+    protected record PageView(List<MeasurementView> items, Long nextCursor) {
+    }
+
+    @Autowired
+    protected WebTestClient webTestClient;
+
+    /**
+     * Test saving a measurement and reading it back by UUID.
+     */
+    @Test
+    void shouldSaveAndRetrieveMeasurementByUuid() {
+        // Act: Save a measurement
+        MeasurementView saved = save(newPatientId(), 75.5);
+
+        // Assert: It can be read back with the generated UUID
+        assertThat(saved.uuid()).isNotNull();
+        MeasurementView found = webTestClient.get().uri("/measurements/uuid/{uuid}", saved.uuid())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MeasurementView.class).returnResult().getResponseBody();
+        assertThat(found.patientId()).isEqualTo(saved.patientId());
+        assertThat(found.result()).isEqualTo(75.5);
+    }
+
+    /**
+     * Test that an invalid measurement is rejected with the failing field.
+     */
+    @Test
+    void shouldRejectInvalidMeasurement() {
+        // Act & Assert: A result below the allowed range
+        webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", 1, "result", 10.0))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.result").isEqualTo("Result must be at least 50.0");
+    }
+
+    /**
+     * Test that a measurement time in the future is only accepted within the clock skew tolerance.
+     */
+    @Test
+    void shouldRejectMeasurementFromTheFuture() {
+        // Act & Assert: A minute ahead is clock skew, a day ahead is rejected
+        save(newPatientId(), 75.0, Instant.now().plus(Duration.ofMinutes(1)));
+        webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", 1, "result", 75.0,
+                        "measuredAt", Instant.now().plus(Duration.ofDays(1)).toString()))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.measuredAt").isEqualTo("Measurement time must not be in the future.");
+    }
+
+    /**
+     * Test looking up an unknown UUID.
+     */
+    @Test
+    void shouldReturnNotFoundForUnknownUuid() {
+        webTestClient.get().uri("/measurements/uuid/{uuid}", UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Test keyset pagination with the returned cursor.
+     */
+    @Test
+    void shouldPageMeasurementsWithCursor() {
+        // Arrange: At least two measurements
+        save(newPatientId(), 60.0);
+        save(newPatientId(), 61.0);
+
+        // Act: Fetch the first two pages of one measurement each
+        PageView first = page("/measurements?limit=1");
+        PageView second = page("/measurements?limit=1&after=" + first.nextCursor());
+
+        // Assert: Each page holds one measurement and the second follows the first
+        assertThat(first.items()).hasSize(1);
+        assertThat(first.nextCursor()).isNotNull();
+        assertThat(second.items()).hasSize(1);
+        assertThat(second.items().get(0).uuid()).isNotEqualTo(first.items().get(0).uuid());
+    }
+
+    /**
+     * Test that page sizes outside the allowed range are rejected.
+     */
+    @Test
+    void shouldRejectPageSizeOutOfRange() {
+        webTestClient.get().uri("/measurements?limit=0").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri("/measurements?limit=100000").exchange().expectStatus().isBadRequest();
+    }
+
+    /**
+     * Test streaming all measurements as a JSON array.
+     */
+    @Test
+    void shouldStreamAllMeasurementsAsJsonArray() {
+        // Arrange: A measurement to look for
+        MeasurementView saved = save(newPatientId(), 88.0);
+
+        // Act: Read the whole collection
+        List<MeasurementView> all = webTestClient.get().uri("/measurements")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<MeasurementView>>() { })
+                .returnResult().getResponseBody();
+
+        // Assert: The saved measurement is part of it
+        assertThat(all).extracting(MeasurementView::uuid).contains(saved.uuid());
+    }
+
+    /**
+     * Test streaming the measurements of a time range in time order.
+     */
+    @Test
+    void shouldStreamMeasurementsBetween() {
+        // Arrange: Measurements at the start, inside and at the end of a range of its own
+        Instant from = Instant.parse("2001-01-01T00:00:00Z")
+                .plus(Duration.ofMinutes(ThreadLocalRandom.current().nextInt(500_000)));
+        Instant to = from.plus(Duration.ofHours(1));
+        MeasurementView later = save(newPatientId(), 70.0, from.plus(Duration.ofMinutes(30)));
+        MeasurementView first = save(newPatientId(), 60.0, from);
+        save(newPatientId(), 80.0, to);
+
+        // Act: Read the range
+        List<MeasurementView> range = webTestClient.get().uri("/measurements?from={from}&to={to}", from, to)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<MeasurementView>>() { })
+                .returnResult().getResponseBody();
+
+        // Assert: From is inclusive, to is exclusive and the measurements come in time order
+        assertThat(range).extracting(MeasurementView::uuid).containsExactly(first.uuid(), later.uuid());
+        assertThat(range.get(0).measuredAt()).isEqualTo(from);
+    }
+
+    /**
+     * Test that a range needs a start and a valid timestamp.
+     */
+    @Test
+    void shouldRejectInvalidRange() {
+        webTestClient.get().uri("/measurements?to=2024-05-01T00:00:00Z").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri("/measurements?from=yesterday").exchange().expectStatus().isBadRequest();
+    }
+
+    /**
+     * Test the statistics computed in the database.
+     */
+    @Test
+    void shouldComputeStatistics() {
+        // Arrange: At least one measurement
+        save(newPatientId(), 70.0);
+
+        // Act: Fetch the statistics
+        MeasurementStats stats = webTestClient.get().uri("/measurements/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MeasurementStats.class).returnResult().getResponseBody();
+
+        // Assert: Every aggregate is present
+        assertThat(stats.count()).isPositive();
+        assertThat(stats.min()).isNotNull();
+        assertThat(stats.p99()).isNotNull();
+    }
+
+    /**
+     * Test updating a measurement by UUID.
+     */
+    @Test
+    void shouldUpdateMeasurementByUuid() {
+        // Arrange: A saved measurement
+        MeasurementView saved = save(newPatientId(), 55.0);
+        long newPatientId = newPatientId();
+
+        // Act: Update it
+        MeasurementView updated = webTestClient.put().uri("/measurements/uuid/{uuid}", saved.uuid())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", newPatientId, "result", 99.0))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MeasurementView.class).returnResult().getResponseBody();
+
+        // Assert: The response and a fresh read carry the new values
+        assertThat(updated.uuid()).isEqualTo(saved.uuid());
+        assertThat(updated.result()).isEqualTo(99.0);
+        webTestClient.get().uri("/measurements/uuid/{uuid}", saved.uuid())
+                .exchange()
+                .expectBody().jsonPath("$.patientId").isEqualTo(newPatientId);
+    }
+
+    /**
+     * Test updating a measurement that does not exist.
+     */
+    @Test
+    void shouldReturnNotFoundWhenUpdatingUnknownUuid() {
+        webTestClient.put().uri("/measurements/uuid/{uuid}", UUID.randomUUID())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", 1, "result", 70.0))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Test deleting a measurement by UUID, twice.
+     */
+    @Test
+    void shouldDeleteMeasurementByUuid() {
+        // Arrange: A saved measurement
+        MeasurementView saved = save(newPatientId(), 65.0);
+
+        // Act & Assert: The first delete succeeds, after which the UUID is unknown
+        webTestClient.delete().uri("/measurements/uuid/{uuid}", saved.uuid())
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.get().uri("/measurements/uuid/{uuid}", saved.uuid())
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.delete().uri("/measurements/uuid/{uuid}", saved.uuid())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    protected MeasurementView save(long patientId, double result) {
+        return save(patientId, result, Instant.now());
+    }
+
+    protected MeasurementView save(long patientId, double result, Instant measuredAt) {
+        return webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", patientId, "result", result, "measuredAt", measuredAt.toString()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MeasurementView.class).returnResult().getResponseBody();
+    }
+
+    // Tests share the database, so each one works on patients of its own
+    protected static long newPatientId() {
+        return ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / 2);
+    }
+
+    private PageView page(String uri) {
+        return webTestClient.get().uri(uri)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(PageView.class).returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.measurement_app.integration;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@AutoConfigureObservability
+class MetricsIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    /**
+     * Test that a request shows up in every layer's metrics on the Prometheus endpoint.
+     */
+    @Test
+    void shouldExposeRequestMetricsForPrometheus() {
+        // Arrange: Save a measurement and read it back by id
+        String uuid = webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("patientId", 1, "result", 75.5))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class).returnResult().getResponseBody()
+                .get("uuid").toString();
+        webTestClient.get().uri("/measurements/uuid/{uuid}", uuid).exchange().expectStatus().isOk();
+
+        // Act: Scrape the Prometheus endpoint
+        String scrape = webTestClient.get().uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // Assert: Endpoint, service, repository, pool, Hibernate and JSON metrics are all there
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("measurement_service_seconds_bucket{")
+                .contains("method=\"saveMeasurement\"")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("hikaricp_connections_acquire_seconds_bucket{")
+                .contains("hibernate_statements_per_request_statements_count{")
+                .contains("http_json_seconds_count{")
+                .containsPattern("hibernate_statements_per_request_statements_sum\\{method=\"POST\",uri=\"/measurements\"\\} [1-9]");
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.measurement_app.integration;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+import com.example.measurement_app.service.MeasurementService;
+
+// Runs the PostgreSQL schema with its partitions and triggers, which H2 cannot; skipped without Docker
+@SpringBootTest(properties = "measurement.import.directory=target/imports")
+@Testcontainers(disabledWithoutDocker = true)
+class PostgresMeasurementIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MeasurementService measurementService;
+
+    @Autowired
+    private MeasurementJdbcRepository measurementJdbcRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Test that a UUID is unique across partitions, whichever way the measurement is inserted.
+     */
+    @Test
+    void shouldRejectATakenUuidAtAnotherTime() {
+        // Arrange: A measurement saved now
+        Measurement first = newMeasurement(UUID.randomUUID(), Instant.now());
+        measurementService.saveMeasurement(first);
+
+        // Act: Retry it a second later, through the entity, a batch and COPY
+        Measurement retried = newMeasurement(first.getUuid(), Instant.now().plusSeconds(1));
+
+        // Assert: Every retry fails and only the first row exists
+        assertThrows(DataIntegrityViolationException.class, () -> measurementService.saveMeasurement(retried));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> measurementJdbcRepository.batchInsert(List.of(retried)));
+        assertThrows(DataIntegrityViolationException.class, () -> measurementJdbcRepository.copyIn(List.of(retried)));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM measurements WHERE uuid = ?", Long.class,
+                first.getUuid())).isEqualTo(1L);
+    }
+
+    /**
+     * Test that deleting a measurement frees its UUID.
+     */
+    @Test
+    void shouldFreeTheUuidOfADeletedMeasurement() {
+        // Arrange: A measurement that is deleted again
+        Measurement first = newMeasurement(UUID.randomUUID(), Instant.now());
+        measurementService.saveMeasurement(first);
+        measurementService.deleteMeasurementByUuid(first.getUuid());
+
+        // Act: Save a new measurement with the same UUID
+        measurementService.saveMeasurement(newMeasurement(first.getUuid(), Instant.now()));
+
+        // Assert: The UUID is taken once again
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM measurement_uuids WHERE uuid = ?", Long.class,
+                first.getUuid())).isEqualTo(1L);
+    }
+
+    /**
+     * Test that a measurement of a month without a partition creates it, moving in that month's rows.
+     */
+    @Test
+    void shouldCreateThePartitionOfAPastMonth() {
+        // Arrange: A row of March 2001 that was written to the default partition
+        UUID early = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO measurements (patient_id, result, uuid, measured_at) VALUES (1, 75.0, ?, ?)",
+                early, OffsetDateTime.parse("2001-03-10T12:00:00Z"));
+        assertThat(partitionOf(early)).isEqualTo("measurements_default");
+
+        // Act: Save another measurement of that month
+        Measurement later = newMeasurement(UUID.randomUUID(), Instant.parse("2001-03-20T12:00:00Z"));
+        measurementService.saveMeasurement(later);
+
+        // Assert: Both are in the new partition of the month
+        assertThat(partitionOf(early)).isEqualTo("measurements_2001_03");
+        assertThat(partitionOf(later.getUuid())).isEqualTo("measurements_2001_03");
+    }
+
+    private String partitionOf(UUID uuid) {
+        return jdbcTemplate.queryForObject("SELECT CAST(tableoid AS regclass)::text FROM measurements WHERE uuid = ?",
+                String.class, uuid);
+    }
+
+    private static Measurement newMeasurement(UUID uuid, Instant measuredAt) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(1L);
+        measurement.setResult(75.0);
+        measurement.setUuid(uuid);
+        measurement.setMeasuredAt(measuredAt.truncatedTo(ChronoUnit.MICROS));
+        return measurement;
+    }
+}
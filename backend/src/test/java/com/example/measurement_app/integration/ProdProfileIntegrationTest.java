@@ -0,0 +1,54 @@
+package com.example.measurement_app.integration;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springdoc.webmvc.api.OpenApiWebMvcResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.example.measurement_app.config.SwaggerConfig;
+
+import io.swagger.v3.oas.models.OpenAPI;
+
+// The test profile comes last, so its H2 settings replace the PostgreSQL ones of prod
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.jpa.properties.jakarta.persistence.database-product-name=H2",
+    "spring.jpa.properties.jakarta.persistence.database-major-version=2",
+    "spring.jpa.properties.jakarta.persistence.database-minor-version=3"
+})
+@ActiveProfiles({ "prod", "test" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProdProfileIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    /**
+     * Test that the prod profile starts only the measurement endpoints eagerly and no API docs.
+     */
+    @Test
+    void shouldStartMeasurementEndpointsEagerlyAndWithoutApiDocs() {
+        // Arrange: Which beans exist before the first request
+        boolean controllerCreated = context.getBeanFactory().containsSingleton("measurementController");
+        boolean exportCreated = context.getBeanFactory().containsSingleton("measurementExportService");
+
+        // Act: Look up an unknown measurement
+        webTestClient.get().uri("/measurements/uuid/{uuid}", UUID.randomUUID()).exchange().expectStatus().isNotFound();
+
+        // Assert: Exports wait for their first use and neither Swagger nor springdoc is configured
+        assertThat(controllerCreated).isTrue();
+        assertThat(exportCreated).isFalse();
+        assertThat(context.getBeanNamesForType(SwaggerConfig.class)).isEmpty();
+        assertThat(context.getBeanNamesForType(OpenAPI.class)).isEmpty();
+        assertThat(context.getBeanNamesForType(OpenApiWebMvcResource.class)).isEmpty();
+    }
+}
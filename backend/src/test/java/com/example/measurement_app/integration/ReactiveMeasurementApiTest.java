@@ -0,0 +1,45 @@
+package com.example.measurement_app.integration;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The measurement API contract against WebFlux and R2DBC on an embedded H2 database,
+ * plus the streaming formats only the reactive stack offers.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.r2dbc.url=r2dbc:h2:mem:///reactivetestdb",
+    "spring.r2dbc.username=sa",
+    "spring.r2dbc.password="
+})
+@ActiveProfiles({ "test", "reactive" })
+class ReactiveMeasurementApiTest extends MeasurementApiContractTest {
+
+    /**
+     * Test streaming all measurements as newline-delimited JSON.
+     */
+    @Test
+    void shouldStreamAllMeasurementsAsNdjson() {
+        // Arrange: A measurement to look for
+        MeasurementView saved = save(newPatientId(), 77.0);
+
+        // Act: Read the collection one document per line
+        List<MeasurementView> all = webTestClient.get().uri("/measurements")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MeasurementView.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // Assert: The saved measurement is part of it
+        assertThat(all).extracting(MeasurementView::uuid).contains(saved.uuid());
+    }
+}
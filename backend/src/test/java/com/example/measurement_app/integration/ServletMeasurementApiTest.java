@@ -0,0 +1,240 @@
+package com.example.measurement_app.integration;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementImport;
+import com.example.measurement_app.dto.MeasurementSeries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The measurement API contract against Spring MVC, JPA and JDBC on H2, plus the patient
+ * endpoints only the servlet stack serves.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ServletMeasurementApiTest extends MeasurementApiContractTest {
+
+    /**
+     * Test a patient's series with a bucket given in the short duration format.
+     */
+    @Test
+    void shouldAggregatePatientSeriesIntoBuckets() {
+        // Arrange: Two measurements in one hour and one in the next
+        long patientId = newPatientId();
+        Instant from = Instant.parse("2001-06-01T00:00:00Z");
+        save(patientId, 60.0, from.plus(Duration.ofMinutes(10)));
+        save(patientId, 80.0, from.plus(Duration.ofMinutes(50)));
+        save(patientId, 90.0, from.plus(Duration.ofMinutes(70)));
+
+        // Act: Aggregate into hourly buckets
+        MeasurementSeries series = webTestClient.get()
+                .uri("/patients/{id}/measurements/series?bucket=1h&from={from}&to={to}", patientId, from,
+                        from.plus(Duration.ofDays(1)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MeasurementSeries.class).returnResult().getResponseBody();
+
+        // Assert: One bucket per hour with its aggregates
+        assertThat(series.bucketCount()).isEqualTo(2);
+        assertThat(series.buckets().get(0).start()).isEqualTo(from);
+        assertThat(series.buckets().get(0).avg()).isEqualTo(70.0);
+        assertThat(series.buckets().get(1).count()).isEqualTo(1);
+    }
+
+    /**
+     * Test that invalid series parameters are rejected.
+     */
+    @Test
+    void shouldRejectInvalidSeriesRequest() {
+        String uri = "/patients/1/measurements/series?from=2001-01-01T00:00:00Z&to=2021-01-01T00:00:00Z";
+        webTestClient.get().uri(uri + "&bucket=0s").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri(uri + "&bucket=1d&points=2").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri(uri + "&bucket=1m").exchange().expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.message").value(message -> assertThat((String) message).contains("buckets"));
+        webTestClient.get().uri(uri + "&bucket=1d&points=100").exchange().expectStatus().isOk();
+    }
+
+    /**
+     * Test that a patient's event stream carries its creates and deletes, and only those.
+     */
+    @Test
+    void shouldStreamPatientMeasurementEvents() {
+        // Arrange: Subscribe to one patient's changes
+        long patientId = newPatientId();
+        Flux<ServerSentEvent<MeasurementEvent>> stream = webTestClient.get()
+                .uri("/measurements/stream?patientId={id}", patientId)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MeasurementEvent>>() { })
+                .getResponseBody();
+
+        // Act: Change a measurement of another patient, then create and delete one of this patient
+        save(newPatientId(), 70.0);
+        MeasurementView saved = save(patientId, 75.0);
+        webTestClient.delete().uri("/measurements/uuid/{uuid}", saved.uuid()).exchange().expectStatus().isNoContent();
+
+        // Assert: Exactly this patient's two changes arrive, in order
+        List<MeasurementEvent> events = stream
+                .mapNotNull(ServerSentEvent::data)
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        assertThat(events).extracting(MeasurementEvent::type)
+                .containsExactly(MeasurementEvent.Type.CREATED, MeasurementEvent.Type.DELETED);
+        assertThat(events).extracting(MeasurementEvent::uuid).containsOnly(saved.uuid());
+        assertThat(events.get(0).result()).isEqualTo(75.0);
+    }
+
+    /**
+     * Test that a measurement can be saved and read back in CBOR and streamed in Smile.
+     */
+    @Test
+    void shouldNegotiateBinaryFormats() throws Exception {
+        // Arrange: A CBOR request body
+        long patientId = newPatientId();
+        Instant measuredAt = Instant.parse("2001-03-04T05:06:07.123456Z");
+        CBORMapper cbor = new CBORMapper();
+        byte[] request = cbor.writeValueAsBytes(Map.of("patientId", patientId, "result", 75.5,
+                "measuredAt", measuredAt.toString()));
+
+        // Act: Save it in CBOR, read it back in CBOR and stream the patient's range in Smile
+        byte[] saved = webTestClient.post().uri("/measurements")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        UUID uuid = uuidOf(cbor.readTree(saved).get("uuid").binaryValue());
+        byte[] found = webTestClient.get().uri("/measurements/uuid/{uuid}", uuid)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        byte[] streamed = webTestClient.get()
+                .uri("/patients/{id}/measurements?from={from}", patientId, measuredAt)
+                .accept(MediaType.valueOf("application/x-jackson-smile"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        // Assert: The same measurement, with its time to the microsecond, in both formats
+        assertThat(cbor.readTree(found).get("result").asDouble()).isEqualTo(75.5);
+        JsonNode array = new SmileMapper().readTree(streamed);
+        assertThat(array.size()).isEqualTo(1);
+        assertThat(array.get(0).get("patientId").asLong()).isEqualTo(patientId);
+        assertThat(array.get(0).get("measuredAt").decimalValue()).isEqualByComparingTo("983682367.123456");
+        webTestClient.get().uri("/measurements/uuid/{uuid}", uuid).accept(MediaType.APPLICATION_XML)
+                .exchange()
+                .expectStatus().isEqualTo(406);
+    }
+
+    /**
+     * Test exporting a patient's measurements as CSV and rejecting unknown formats.
+     */
+    @Test
+    void shouldExportPatientMeasurementsAsCsv() {
+        // Arrange: Two measurements of a new patient
+        long patientId = newPatientId();
+        Instant measuredAt = Instant.parse("2001-03-04T05:06:07.123456Z");
+        for (double result : new double[] { 60.0, 75.5 }) {
+            webTestClient.post().uri("/measurements")
+                    .bodyValue(Map.of("patientId", patientId, "result", result, "measuredAt", measuredAt.toString()))
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+
+        // Act: Export the patient's measurements
+        String csv = webTestClient.get().uri("/measurements/export?format=csv&patientId={id}", patientId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.valueOf("text/csv"))
+                .expectHeader().valueEquals("Content-Disposition", "attachment; filename=\"measurements.csv\"")
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // Assert: A header and both rows with the time to the microsecond
+        assertThat(csv.lines()).hasSize(3).first().isEqualTo("id,patient_id,result,uuid,measured_at");
+        assertThat(csv.lines().skip(1)).allMatch(line -> line.contains("," + patientId + ",")
+                && line.endsWith(",2001-03-04T05:06:07.123456Z"));
+        assertThat(csv).contains(",75.5,");
+        webTestClient.get().uri("/measurements/export?format=xlsx")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    /**
+     * Test importing an NDJSON file in the background and reading the imported measurements.
+     */
+    @Test
+    void shouldImportNdjsonFile() throws InterruptedException {
+        // Arrange: Two valid lines of a new patient and one out of range
+        long patientId = newPatientId();
+        String ndjson = """
+                {"patientId":%1$d,"result":61.5,"measuredAt":"2001-03-04T05:06:07Z"}
+                {"patientId":%1$d,"result":101}
+                {"patientId":%1$d,"result":62.5}
+                """.formatted(patientId);
+
+        // Act: Upload it and poll the import until it is done
+        MeasurementImport started = webTestClient.post().uri("/measurements/imports?format=ndjson")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .bodyValue(ndjson)
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectHeader().exists("Location")
+                .expectBody(MeasurementImport.class).returnResult().getResponseBody();
+        MeasurementImport finished = started;
+        for (int i = 0; i < 100 && (finished.status() == MeasurementImport.Status.QUEUED
+                || finished.status() == MeasurementImport.Status.RUNNING); i++) {
+            Thread.sleep(50);
+            finished = webTestClient.get().uri("/measurements/imports/{id}", started.id())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(MeasurementImport.class).returnResult().getResponseBody();
+        }
+
+        // Assert: Both valid lines are stored and counted in the statistics, the other is listed as rejected
+        assertThat(finished.status()).isEqualTo(MeasurementImport.Status.COMPLETED);
+        assertThat(finished.imported()).isEqualTo(2);
+        assertThat(finished.rejected()).isEqualTo(1);
+        webTestClient.get().uri("/patients/{id}/measurements/stats", patientId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.count").isEqualTo(2);
+        webTestClient.get().uri("/measurements/imports/{id}/rejected", started.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(body -> assertThat(body).contains("\"line\":2"));
+        webTestClient.post().uri("/measurements/imports/{id}/resume", UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private static UUID uuidOf(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
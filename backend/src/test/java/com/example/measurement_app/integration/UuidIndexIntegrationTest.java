@@ -0,0 +1,57 @@
+package com.example.measurement_app.integration;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.measurement_app.config.CacheConfig;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementService;
+import com.example.measurement_app.service.MeasurementUuidIndex;
+
+@SpringBootTest(properties = "measurement.uuid-index.enabled=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UuidIndexIntegrationTest {
+
+    @Autowired
+    private MeasurementService measurementService;
+
+    @Autowired
+    private MeasurementUuidIndex uuidIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Test that a measurement taken at a time with nanoseconds is found through the UUID index.
+     */
+    @Test
+    void shouldFindMeasurementTakenAtNanosecondTime() throws InterruptedException {
+        // Arrange: The index has loaded, then a measurement with a time the database would round is saved
+        for (int attempt = 0; attempt < 50 && !uuidIndex.isReady(); attempt++) {
+            Thread.sleep(100);
+        }
+        assertThat(uuidIndex.isReady()).isTrue();
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(1L);
+        measurement.setResult(75.0);
+        measurement.setMeasuredAt(Instant.parse("2024-05-01T08:30:00.123456789Z"));
+        measurementService.saveMeasurement(measurement);
+        cacheManager.getCache(CacheConfig.MEASUREMENTS_BY_UUID).clear();
+
+        // Act: Look it up by UUID, which goes to its time in the database
+        Optional<Measurement> found = measurementService.getMeasurementByUuid(measurement.getUuid());
+
+        // Assert: Found, with the time as it is stored
+        assertThat(found).get().extracting(Measurement::getMeasuredAt)
+                .isEqualTo(Instant.parse("2024-05-01T08:30:00.123456Z"));
+    }
+}
@@ -19,6 +19,7 @@ class MeasurementTest {
 
         // Assert: Verify the default values
         assertNotNull(measurement.getUuid(), "UUID should not be null");
+        assertNotNull(measurement.getMeasuredAt(), "Measurement time should default to now");
         assertNull(measurement.getId(), "ID should be null by default");
         assertNull(measurement.getPatientId(), "Patient ID should be null by default");
         assertNull(measurement.getResult(), "Result should be null by default");
@@ -0,0 +1,418 @@
+package com.example.measurement_app.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MeasurementJdbcRepository.class)
+class MeasurementJdbcRepositoryTest {
+
+    @Autowired
+    private MeasurementRepository measurementRepository;
+
+    @Autowired
+    private MeasurementJdbcRepository measurementJdbcRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    /**
+     * Test streaming every measurement in id order.
+     */
+    @Test
+    void shouldStreamAllMeasurementsInIdOrder() {
+        // Arrange: Save measurements and flush them so plain JDBC can see them
+        Measurement first = newMeasurement(10L, 55.0);
+        Measurement second = newMeasurement(20L, 95.0);
+        measurementRepository.saveAllAndFlush(List.of(first, second));
+
+        // Act: Stream the table
+        List<Measurement> streamed = new ArrayList<>();
+        measurementJdbcRepository.streamAll(streamed::add);
+
+        // Assert: Every row is mapped with all of its columns
+        assertEquals(2, streamed.size());
+        assertEquals(first.getId(), streamed.get(0).getId());
+        assertEquals(first.getUuid(), streamed.get(0).getUuid());
+        assertEquals(10L, streamed.get(0).getPatientId());
+        assertEquals(95.0, streamed.get(1).getResult());
+    }
+
+    /**
+     * Test streaming a patient's measurements as column batches that are reused.
+     */
+    @Test
+    void shouldStreamColumnsInFullBatchesAndTheRest() {
+        // Arrange: Three measurements of one patient and one of another, batches of two
+        Instant measuredAt = Instant.parse("2024-05-01T08:30:00.123456Z");
+        Measurement first = measuredAt(newMeasurement(1L, 60.0), measuredAt);
+        measurementRepository.saveAllAndFlush(List.of(first, newMeasurement(1L, 70.0),
+                newMeasurement(1L, 80.0), newMeasurement(2L, 90.0)));
+        MeasurementColumns batch = new MeasurementColumns(2);
+
+        // Act: Stream the patient's rows, copying what each batch holds
+        List<Integer> sizes = new ArrayList<>();
+        Set<Double> results = new HashSet<>();
+        List<UUID> uuids = new ArrayList<>();
+        List<Long> micros = new ArrayList<>();
+        measurementJdbcRepository.streamColumns(1L, batch, columns -> {
+            sizes.add(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                assertEquals(1L, columns.patientIds()[i]);
+                results.add(columns.results()[i]);
+                uuids.add(new UUID(columns.uuidMostSignificantBits()[i], columns.uuidLeastSignificantBits()[i]));
+                micros.add(columns.measuredAtMicros()[i]);
+            }
+        });
+
+        // Assert: One full batch, then the rest, with every column of the patient's rows
+        assertEquals(List.of(2, 1), sizes);
+        assertEquals(Set.of(60.0, 70.0, 80.0), results);
+        int index = uuids.indexOf(first.getUuid());
+        assertTrue(index >= 0);
+        assertEquals(measuredAt.getEpochSecond() * 1_000_000 + 123_456, micros.get(index));
+        assertEquals(0, batch.size());
+    }
+
+    /**
+     * Test that copying out as CSV is left to the caller on H2.
+     */
+    @Test
+    void shouldNotCopyCsvWithoutPostgres() {
+        // Arrange: Somewhere to copy to
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act: Try to copy
+        boolean copied = measurementJdbcRepository.copyCsv(null, out);
+
+        // Assert: Nothing was written
+        assertFalse(copied);
+        assertEquals(0, out.size());
+    }
+
+    /**
+     * Test streaming the measurements of a time range in time order.
+     */
+    @Test
+    void shouldStreamRangeInTimeOrder() {
+        // Arrange: Measurements before, inside and at the end of the range, one of another patient
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        Instant to = Instant.parse("2024-05-02T00:00:00Z");
+        Measurement before = measuredAt(newMeasurement(10L, 50.0), from.minusSeconds(1));
+        Measurement late = measuredAt(newMeasurement(10L, 60.0), to.minusSeconds(1));
+        Measurement early = measuredAt(newMeasurement(10L, 70.0), from);
+        Measurement otherPatient = measuredAt(newMeasurement(20L, 80.0), from.plusSeconds(60));
+        Measurement atEnd = measuredAt(newMeasurement(10L, 90.0), to);
+        measurementRepository.saveAllAndFlush(List.of(before, late, early, otherPatient, atEnd));
+
+        // Act: Stream the range for everyone, for one patient and open-ended
+        List<Measurement> all = new ArrayList<>();
+        measurementJdbcRepository.streamRange(null, from, to, all::add);
+        List<Measurement> patient = new ArrayList<>();
+        measurementJdbcRepository.streamRange(10L, from, to, patient::add);
+        List<Measurement> openEnded = new ArrayList<>();
+        measurementJdbcRepository.streamRange(null, from, null, openEnded::add);
+
+        // Assert: From is inclusive, to is exclusive and rows come in time order
+        assertEquals(List.of(early.getUuid(), otherPatient.getUuid(), late.getUuid()),
+                all.stream().map(Measurement::getUuid).toList());
+        assertEquals(from, all.get(0).getMeasuredAt());
+        assertEquals(List.of(early.getUuid(), late.getUuid()),
+                patient.stream().map(Measurement::getUuid).toList());
+        assertEquals(4, openEnded.size());
+    }
+
+    /**
+     * Test aggregating a patient's measurements into time buckets.
+     */
+    @Test
+    void shouldAggregatePatientMeasurementsIntoBuckets() {
+        // Arrange: Two measurements in the first hour, one in the third and one of another patient
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        measurementRepository.saveAllAndFlush(List.of(
+                measuredAt(newMeasurement(10L, 60.0), from.plusSeconds(60)),
+                measuredAt(newMeasurement(10L, 80.0), from.plusSeconds(3599)),
+                measuredAt(newMeasurement(10L, 90.0), from.plusSeconds(7200)),
+                measuredAt(newMeasurement(20L, 99.0), from.plusSeconds(120))));
+
+        // Act: Aggregate three hours into hourly buckets
+        List<MeasurementBucket> buckets = measurementJdbcRepository.findBuckets(10L, from, from.plusSeconds(3 * 3600), 3600);
+
+        // Assert: Only the non-empty buckets, each with its own aggregates
+        assertEquals(2, buckets.size());
+        assertEquals(new MeasurementBucket(from, 2, 60.0, 80.0, 70.0), buckets.get(0));
+        assertEquals(new MeasurementBucket(from.plusSeconds(7200), 1, 90.0, 90.0, 90.0), buckets.get(1));
+    }
+
+    /**
+     * Test inserting measurements as JDBC batches.
+     */
+    @Test
+    void shouldBatchInsertMeasurements() {
+        // Arrange: More measurements than fit in one batch
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            measurements.add(newMeasurement(1L + i % 7, 50.0 + i % 50));
+        }
+
+        // Act: Insert them
+        measurementJdbcRepository.batchInsert(measurements);
+
+        // Assert: Every row landed and is readable by UUID
+        assertEquals(1200, measurementRepository.count());
+        assertTrue(measurementRepository.findByUuid(measurements.get(1199).getUuid()).isPresent());
+    }
+
+    /**
+     * Test that batch inserts number their rows in order from pooled id blocks, next to entity saves.
+     */
+    @Test
+    void shouldAssignBatchIdsFromPooledBlocks() {
+        // Arrange: 120 measurements, which need three blocks of 50 ids
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            measurements.add(newMeasurement(1L, 60.0));
+        }
+
+        // Act: Insert them in a batch, then save one through the entity
+        measurementJdbcRepository.batchInsert(measurements);
+        Measurement saved = measurementRepository.saveAndFlush(newMeasurement(2L, 70.0));
+
+        // Assert: The batch ids follow the list order, 120 ids spread over at most three blocks
+        List<Long> ids = measurements.stream()
+                .map(measurement -> measurementRepository.findByUuid(measurement.getUuid()).orElseThrow().getId())
+                .toList();
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i) > ids.get(i - 1));
+        }
+        assertTrue(ids.get(119) - ids.get(0) < 150);
+        assertFalse(ids.contains(saved.getId()));
+        assertEquals(121, measurementRepository.count());
+    }
+
+    /**
+     * Test computing statistics in the database, for all patients and for one.
+     */
+    @Test
+    void shouldComputeStatsForAllAndForOnePatient() {
+        // Arrange: Results 51..100 for patient 1 and a single result for patient 2
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 51; i <= 100; i++) {
+            measurements.add(newMeasurement(1L, (double) i));
+        }
+        measurements.add(newMeasurement(2L, 50.0));
+        measurementRepository.saveAllAndFlush(measurements);
+
+        // Act: Compute both aggregates
+        MeasurementStats all = measurementJdbcRepository.computeStats(null);
+        MeasurementStats patient = measurementJdbcRepository.computeStats(1L);
+
+        // Assert: Counts, extremes, mean and percentiles match the data
+        assertEquals(51, all.count());
+        assertEquals(50.0, all.min());
+        assertEquals(100.0, all.max());
+        assertEquals(50, patient.count());
+        assertEquals(75.5, patient.mean(), 1e-9);
+        assertEquals(75.5, patient.p50(), 1e-9);
+        assertEquals(97.55, patient.p95(), 1e-9);
+        assertEquals(14.577379737113251, patient.stddev(), 1e-9);
+    }
+
+    /**
+     * Test statistics of a patient without measurements.
+     */
+    @Test
+    void shouldReturnEmptyStatsForUnknownPatient() {
+        // Act: Compute stats for a patient with no rows
+        MeasurementStats stats = measurementJdbcRepository.computeStats(404L);
+
+        // Assert: Only the count is set
+        assertEquals(0, stats.count());
+        assertNull(stats.min());
+        assertNull(stats.mean());
+        assertNull(stats.p99());
+    }
+
+    /**
+     * Test deleting by UUID in one statement that returns the deleted row.
+     */
+    @Test
+    void shouldDeleteByUuidAndReturnDeletedRow() {
+        // Arrange: One saved measurement
+        Measurement measurement = measurementRepository.saveAndFlush(newMeasurement(3L, 66.0));
+
+        // Act: Delete it, then try again
+        Optional<Measurement> deleted = measurementJdbcRepository.deleteByUuid(measurement.getUuid());
+        Optional<Measurement> again = measurementJdbcRepository.deleteByUuid(measurement.getUuid());
+
+        // Assert: The first call returns the row, the second finds nothing
+        assertTrue(deleted.isPresent());
+        assertEquals(measurement.getId(), deleted.get().getId());
+        assertEquals(3L, deleted.get().getPatientId());
+        assertEquals(66.0, deleted.get().getResult());
+        assertTrue(again.isEmpty());
+        assertEquals(0, measurementRepository.count());
+    }
+
+    /**
+     * Test finding which of a list of UUIDs exist.
+     */
+    @Test
+    void shouldFindOnlyExistingUuids() {
+        // Arrange: One saved measurement
+        Measurement saved = newMeasurement(1L, 60.0);
+        measurementRepository.saveAndFlush(saved);
+
+        // Act: Look it up along with an unknown UUID
+        Set<UUID> existing = measurementJdbcRepository.findExistingUuids(List.of(saved.getUuid(), UUID.randomUUID()));
+
+        // Assert: Only the saved one exists
+        assertEquals(Set.of(saved.getUuid()), existing);
+    }
+
+    /**
+     * Test streaming an id range and finding a measurement by UUID and time.
+     */
+    @Test
+    void shouldStreamIdRangeAndFindByUuidAndTime() {
+        // Arrange: Three measurements with consecutive ids
+        Instant measuredAt = Instant.parse("2024-05-01T08:30:00.123456Z");
+        Measurement first = measuredAt(newMeasurement(1L, 60.0), measuredAt);
+        Measurement second = newMeasurement(1L, 70.0);
+        Measurement third = newMeasurement(2L, 80.0);
+        measurementRepository.saveAllAndFlush(List.of(first, second, third));
+
+        // Act: Stream the ids of the first two and look the first one up
+        List<Long> ids = new ArrayList<>();
+        measurementJdbcRepository.streamColumns(first.getId(), third.getId(), new MeasurementColumns(10), columns -> {
+            for (int i = 0; i < columns.size(); i++) {
+                ids.add(columns.ids()[i]);
+            }
+        });
+        Optional<Measurement> found = measurementJdbcRepository.findByUuid(first.getUuid(), measuredAt);
+        Optional<Measurement> elsewhen = measurementJdbcRepository.findByUuid(first.getUuid(), measuredAt.plusSeconds(1));
+
+        // Assert: The range excludes its end, and the lookup needs the exact time
+        assertEquals(Set.of(first.getId(), second.getId()), new HashSet<>(ids));
+        assertEquals(third.getId(), measurementJdbcRepository.findMaxId());
+        assertEquals(60.0, found.orElseThrow().getResult());
+        assertTrue(elsewhen.isEmpty());
+    }
+
+    /**
+     * Test deleting a list of UUIDs in one statement.
+     */
+    @Test
+    void shouldDeleteByUuidsAndReturnOnlyExistingRows() {
+        // Arrange: Three saved measurements, two of which are deleted along with an unknown UUID
+        Measurement first = newMeasurement(1L, 60.0);
+        Measurement second = newMeasurement(2L, 70.0);
+        Measurement kept = newMeasurement(3L, 80.0);
+        measurementRepository.saveAllAndFlush(List.of(first, second, kept));
+
+        // Act: Delete them
+        List<Measurement> deleted = measurementJdbcRepository.deleteByUuids(
+                List.of(first.getUuid(), second.getUuid(), UUID.randomUUID()));
+
+        // Assert: Only the existing rows come back and the third one is untouched
+        assertEquals(Set.of(first.getUuid(), second.getUuid()),
+                deleted.stream().map(Measurement::getUuid).collect(Collectors.toSet()));
+        assertEquals(1, measurementRepository.count());
+        assertTrue(measurementRepository.findByUuid(kept.getUuid()).isPresent());
+    }
+
+    /**
+     * Test updating by UUID in one statement that returns the previous values.
+     */
+    @Test
+    void shouldUpdateByUuidAndReturnPreviousValues() {
+        // Arrange: One saved measurement
+        Measurement measurement = measurementRepository.saveAndFlush(newMeasurement(1L, 75.0));
+
+        // Act: Update it and an unknown UUID
+        Optional<Measurement> previous = measurementJdbcRepository.updateByUuid(measurement.getUuid(), 2L, 80.0);
+        Optional<Measurement> unknown = measurementJdbcRepository.updateByUuid(UUID.randomUUID(), 2L, 80.0);
+
+        // Assert: The old values come back and the new ones are stored
+        assertTrue(previous.isPresent());
+        assertEquals(1L, previous.get().getPatientId());
+        assertEquals(75.0, previous.get().getResult());
+        assertTrue(unknown.isEmpty());
+        entityManager.clear();
+        Measurement stored = measurementRepository.findByUuid(measurement.getUuid()).orElseThrow();
+        assertEquals(2L, stored.getPatientId());
+        assertEquals(80.0, stored.getResult());
+    }
+
+    /**
+     * Test updating several measurements by UUID in one statement.
+     */
+    @Test
+    void shouldUpdateAllAndReturnPreviousValuesOfExistingRows() {
+        // Arrange: Two saved measurements and new values for them plus an unknown UUID
+        Measurement first = newMeasurement(1L, 60.0);
+        Measurement second = newMeasurement(2L, 70.0);
+        measurementRepository.saveAllAndFlush(List.of(first, second));
+        List<Measurement> updates = List.of(
+                withValues(first.getUuid(), 5L, 65.0),
+                withValues(second.getUuid(), 6L, 75.0),
+                withValues(UUID.randomUUID(), 7L, 85.0));
+
+        // Act: Apply them
+        List<Measurement> previous = measurementJdbcRepository.updateAll(updates);
+
+        // Assert: Old values of the two existing rows, new values in the table
+        assertEquals(2, previous.size());
+        Measurement previousFirst = previous.stream()
+                .filter(measurement -> measurement.getUuid().equals(first.getUuid())).findFirst().orElseThrow();
+        assertEquals(1L, previousFirst.getPatientId());
+        assertEquals(60.0, previousFirst.getResult());
+        entityManager.clear();
+        assertEquals(6L, measurementRepository.findByUuid(second.getUuid()).orElseThrow().getPatientId());
+        assertEquals(65.0, measurementRepository.findByUuid(first.getUuid()).orElseThrow().getResult());
+        assertEquals(2, measurementRepository.count());
+    }
+
+    private Measurement withValues(UUID uuid, Long patientId, Double result) {
+        Measurement measurement = newMeasurement(patientId, result);
+        measurement.setUuid(uuid);
+        return measurement;
+    }
+
+    private Measurement measuredAt(Measurement measurement, Instant measuredAt) {
+        measurement.setMeasuredAt(measuredAt);
+        return measurement;
+    }
+
+    private Measurement newMeasurement(Long patientId, Double result) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(result);
+        return measurement;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.measurement_app.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import com.example.measurement_app.model.Measurement;
@@ -64,7 +66,44 @@ class MeasurementRepositoryTest {
         assertEquals(savedMeasurement.getUuid(), foundMeasurement.get().getUuid());
     }
 
-  
+
+    /**
+     * Test reading measurements page by page after a given id.
+     */
+    @Test
+    void shouldFindMeasurementsAfterIdInIdOrder() {
+        // Arrange: Save three measurements
+        Measurement first = measurementRepository.save(newMeasurement(1L, 60.0));
+        Measurement second = measurementRepository.save(newMeasurement(2L, 70.0));
+        Measurement third = measurementRepository.save(newMeasurement(3L, 80.0));
+
+        // Act: Read a page of two after the first measurement
+        List<Measurement> page = measurementRepository.findByIdGreaterThanOrderByIdAsc(first.getId(), Limit.of(2));
+
+        // Assert: The page holds the next two measurements in id order
+        assertEquals(List.of(second.getId(), third.getId()), page.stream().map(Measurement::getId).toList());
+    }
+
+    /**
+     * Test reading one patient's measurements page by page.
+     */
+    @Test
+    void shouldFindOnlyThePatientsMeasurementsAfterId() {
+        // Arrange: Interleave measurements of two patients
+        Measurement first = measurementRepository.save(newMeasurement(7L, 60.0));
+        measurementRepository.save(newMeasurement(8L, 65.0));
+        Measurement second = measurementRepository.save(newMeasurement(7L, 70.0));
+        Measurement third = measurementRepository.save(newMeasurement(7L, 80.0));
+
+        // Act: Read the first page and the page after it
+        List<Measurement> firstPage = measurementRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(7L, 0L, Limit.of(2));
+        List<Measurement> nextPage = measurementRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(
+                7L, firstPage.get(1).getId(), Limit.of(2));
+
+        // Assert: Only patient 7 is returned, in id order
+        assertEquals(List.of(first.getId(), second.getId()), firstPage.stream().map(Measurement::getId).toList());
+        assertEquals(List.of(third.getId()), nextPage.stream().map(Measurement::getId).toList());
+    }
 
     /**
      * Test saving an invalid measurement and expecting a validation exception.
@@ -98,4 +137,11 @@ class MeasurementRepositoryTest {
         // Assert: Verify that no measurement is found
         assertFalse(foundMeasurement.isPresent());
     }
+
+    private Measurement newMeasurement(Long patientId, Double result) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(result);
+        return measurement;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.example.measurement_app.repository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.model.PatientMeasurementSummary;
+
+import jakarta.persistence.EntityManager;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PatientMeasurementSummaryRepositoryTest {
+
+    @Autowired
+    private PatientMeasurementSummaryRepository summaryRepository;
+
+    @Autowired
+    private MeasurementRepository measurementRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Test that adding results creates the summary and then accumulates into it.
+     */
+    @Test
+    void shouldCreateAndAccumulateSummary() {
+        // Act: Add a first result, then a batch of two
+        summaryRepository.addResults(5L, 1, 70.0, 4900.0, 70.0, 70.0);
+        summaryRepository.addResults(5L, 2, 140.0, 10000.0, 60.0, 80.0);
+
+        // Assert: Counts and sums add up and the bounds widen
+        PatientMeasurementSummary summary = reload(5L);
+        assertEquals(3, summary.getMeasurementCount());
+        assertEquals(210.0, summary.getResultSum());
+        assertEquals(14900.0, summary.getResultSumOfSquares());
+        assertEquals(60.0, summary.getMinResult());
+        assertEquals(80.0, summary.getMaxResult());
+    }
+
+    /**
+     * Test that removing the minimum recomputes it from the measurements table.
+     */
+    @Test
+    void shouldRecomputeMinimumWhenItIsRemoved() {
+        // Arrange: Two measurements, the lower of which is then deleted
+        Measurement low = measurementRepository.save(newMeasurement(6L, 55.0));
+        measurementRepository.save(newMeasurement(6L, 90.0));
+        summaryRepository.addResults(6L, 2, 145.0, 55.0 * 55.0 + 90.0 * 90.0, 55.0, 90.0);
+        measurementRepository.delete(low);
+        measurementRepository.flush();
+
+        // Act: Take the deleted result out of the summary
+        summaryRepository.removeResult(6L, 55.0);
+
+        // Assert: Only the remaining measurement is accounted for
+        PatientMeasurementSummary summary = reload(6L);
+        assertEquals(1, summary.getMeasurementCount());
+        assertEquals(90.0, summary.getResultSum());
+        assertEquals(90.0, summary.getMinResult());
+        assertEquals(90.0, summary.getMaxResult());
+    }
+
+    /**
+     * Test removing several results of a patient at once.
+     */
+    @Test
+    void shouldRemoveSeveralResultsAtOnce() {
+        // Arrange: Three measurements, the two highest of which are deleted
+        measurementRepository.save(newMeasurement(8L, 60.0));
+        Measurement mid = measurementRepository.save(newMeasurement(8L, 70.0));
+        Measurement high = measurementRepository.save(newMeasurement(8L, 90.0));
+        summaryRepository.addResults(8L, 3, 220.0, 3600.0 + 4900.0 + 8100.0, 60.0, 90.0);
+        measurementRepository.deleteAll(List.of(mid, high));
+        measurementRepository.flush();
+
+        // Act: Take both deleted results out of the summary
+        summaryRepository.removeResults(8L, 2, 160.0, 4900.0 + 8100.0, 70.0, 90.0);
+
+        // Assert: Only the remaining measurement is accounted for
+        PatientMeasurementSummary summary = reload(8L);
+        assertEquals(1, summary.getMeasurementCount());
+        assertEquals(60.0, summary.getResultSum(), 1e-9);
+        assertEquals(60.0, summary.getMinResult());
+        assertEquals(60.0, summary.getMaxResult());
+    }
+
+    /**
+     * Test that removing a patient's last result drops the summary row.
+     */
+    @Test
+    void shouldDeleteSummaryWithLastResult() {
+        // Arrange: A single result
+        summaryRepository.addResults(7L, 1, 70.0, 4900.0, 70.0, 70.0);
+
+        // Act: Remove it again
+        summaryRepository.removeResult(7L, 70.0);
+
+        // Assert: The row is gone
+        entityManager.clear();
+        assertFalse(summaryRepository.findById(7L).isPresent());
+    }
+
+    /**
+     * Test rebuilding a patient id range from the measurements table.
+     */
+    @Test
+    void shouldRebuildRangeFromMeasurements() {
+        // Arrange: Measurements for two patients and a stale summary for a third
+        measurementRepository.saveAllAndFlush(List.of(
+                newMeasurement(10L, 60.0), newMeasurement(10L, 80.0), newMeasurement(11L, 75.0)));
+        summaryRepository.addResults(12L, 1, 70.0, 4900.0, 70.0, 70.0);
+
+        // Act: Rebuild the whole range
+        int written = summaryRepository.rebuildRange(10L, 12L);
+
+        // Assert: Summaries match the table and the stale one is removed
+        assertEquals(2, written);
+        PatientMeasurementSummary summary = reload(10L);
+        assertEquals(2, summary.getMeasurementCount());
+        assertEquals(140.0, summary.getResultSum());
+        assertEquals(60.0, summary.getMinResult());
+        assertTrue(summaryRepository.findById(11L).isPresent());
+        assertFalse(summaryRepository.findById(12L).isPresent());
+    }
+
+    private PatientMeasurementSummary reload(Long patientId) {
+        entityManager.clear();
+        return summaryRepository.findById(patientId).orElseThrow();
+    }
+
+    private Measurement newMeasurement(Long patientId, Double result) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(result);
+        return measurement;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.measurement_app.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class DropOldestBufferTest {
+
+    /**
+     * Test that a full buffer drops its oldest elements and reports them first.
+     */
+    @Test
+    void shouldDropOldestAndReportDroppedCount() {
+        // Arrange: A buffer of three
+        AtomicInteger drops = new AtomicInteger();
+        DropOldestBuffer<String> buffer = new DropOldestBuffer<>(3, dropped -> "dropped " + dropped, drops::incrementAndGet);
+
+        // Act: Offer five elements before draining
+        boolean firstStartsDrain = buffer.offer("a");
+        boolean laterStartDrain = buffer.offer("b") | buffer.offer("c") | buffer.offer("d") | buffer.offer("e");
+
+        // Assert: Only the first offer starts a drain, which sees the notice and the newest three
+        assertTrue(firstStartsDrain);
+        assertFalse(laterStartDrain);
+        assertEquals(2, drops.get());
+        assertEquals("dropped 2", buffer.next());
+        assertEquals("c", buffer.next());
+        assertEquals("d", buffer.next());
+        assertEquals("e", buffer.next());
+        assertNull(buffer.next());
+    }
+
+    /**
+     * Test that an emptied buffer needs a new drain and a closed one takes nothing.
+     */
+    @Test
+    void shouldRestartDrainAfterEmptyAndRejectAfterClose() {
+        // Arrange: A buffer drained to empty
+        DropOldestBuffer<String> buffer = new DropOldestBuffer<>(2, dropped -> "dropped", () -> { });
+        buffer.offer("a");
+        buffer.next();
+        buffer.next();
+
+        // Act & Assert: The next offer starts a drain again; after closing offers are ignored
+        assertTrue(buffer.isIdle());
+        assertTrue(buffer.offer("b"));
+        buffer.close();
+        assertFalse(buffer.offer("c"));
+        assertNull(buffer.next());
+        assertFalse(buffer.isIdle());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.measurement_app.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+
+class LargestTriangleThreeBucketsTest {
+
+    /**
+     * Test that a series no longer than the threshold is returned as is.
+     */
+    @Test
+    void shouldKeepShortSeries() {
+        // Arrange: Three buckets
+        List<MeasurementBucket> series = series(70.0, 80.0, 75.0);
+
+        // Act: Downsample to more points than there are
+        List<MeasurementBucket> sampled = LargestTriangleThreeBuckets.downsample(series, 5);
+
+        // Assert: Nothing is dropped
+        assertSame(series, sampled);
+    }
+
+    /**
+     * Test that downsampling keeps the ends and a single peak.
+     */
+    @Test
+    void shouldKeepEndsAndPeak() {
+        // Arrange: A flat series of 1000 buckets with one spike
+        double[] values = new double[1000];
+        Arrays.fill(values, 70.0);
+        values[637] = 99.0;
+        List<MeasurementBucket> series = series(values);
+
+        // Act: Downsample to 50 points
+        List<MeasurementBucket> sampled = LargestTriangleThreeBuckets.downsample(series, 50);
+
+        // Assert: First, last and the spike survive, in time order
+        assertEquals(50, sampled.size());
+        assertEquals(series.get(0), sampled.get(0));
+        assertEquals(series.get(999), sampled.get(49));
+        assertTrue(sampled.contains(series.get(637)));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i).start().isAfter(sampled.get(i - 1).start()));
+        }
+    }
+
+    private static List<MeasurementBucket> series(double... averages) {
+        List<MeasurementBucket> series = new ArrayList<>(averages.length);
+        for (int i = 0; i < averages.length; i++) {
+            series.add(new MeasurementBucket(Instant.ofEpochSecond(3600L * i), 1, averages[i], averages[i], averages[i]));
+        }
+        return series;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.measurement_app.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.flatbuf.Schema;
+import org.apache.arrow.flatbuf.Type;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.measurement_app.repository.MeasurementColumns;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+@DisabledInNativeImage
+class MeasurementExportServiceTest {
+
+    private static final UUID FIRST_UUID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    private static final long MEASURED_AT_MICROS =
+            Instant.parse("2024-05-01T08:30:00Z").getEpochSecond() * 1_000_000 + 5;
+
+    private MeasurementJdbcRepository measurementJdbcRepository;
+    private MeasurementExportService exportService;
+
+    @BeforeEach
+    public void setUp() {
+        measurementJdbcRepository = mock(MeasurementJdbcRepository.class);
+        exportService = new MeasurementExportService(measurementJdbcRepository, 2);
+        // Three rows for patient 7, handed over in batches of two like the repository does
+        doAnswer(invocation -> {
+            MeasurementColumns batch = invocation.getArgument(1);
+            Consumer<MeasurementColumns> consumer = invocation.getArgument(2);
+            batch.add(1L, 7L, 60.0, FIRST_UUID, MEASURED_AT_MICROS);
+            batch.add(2L, 7L, 72.5, UUID.randomUUID(), MEASURED_AT_MICROS);
+            consumer.accept(batch);
+            batch.clear();
+            batch.add(3L, 7L, 80.0, UUID.randomUUID(), MEASURED_AT_MICROS);
+            consumer.accept(batch);
+            batch.clear();
+            return null;
+        }).when(measurementJdbcRepository).streamColumns(eq(7L), any(), any());
+    }
+
+    /**
+     * Test formatting CSV when the database cannot copy it out itself.
+     */
+    @Test
+    void shouldFormatCsvWhenTheDatabaseCannotCopy() throws Exception {
+        // Arrange: No COPY support
+        when(measurementJdbcRepository.copyCsv(eq(7L), any())).thenReturn(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act: Export the patient's measurements
+        exportService.exportCsv(7L, out);
+
+        // Assert: Header and rows formatted the way PostgreSQL would
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertEquals(MeasurementExportService.CSV_HEADER, lines[0]);
+        assertEquals("1,7,60," + FIRST_UUID + ",2024-05-01T08:30:00.000005Z", lines[1]);
+        assertEquals("2,7,72.5,", lines[2].substring(0, 9));
+    }
+
+    /**
+     * Test that the Arrow stream has the schema, a record batch per column batch and the end marker.
+     */
+    @Test
+    void shouldWriteArrowStreamWithOneRecordBatchPerBatch() throws Exception {
+        // Arrange: Somewhere to write to
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act: Export the patient's measurements
+        exportService.exportArrow(7L, out);
+
+        // Assert: Schema, two record batches whose buffers hold the values, end of stream
+        ByteBuffer stream = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        Message schemaMessage = nextMessage(stream);
+        assertEquals(MessageHeader.Schema, schemaMessage.headerType());
+        Schema schema = (Schema) schemaMessage.header(new Schema());
+        assertEquals(5, schema.fieldsLength());
+        assertEquals("uuid", schema.fields(3).name());
+        assertEquals(Type.Timestamp, schema.fields(4).typeType());
+
+        Message first = nextMessage(stream);
+        RecordBatch firstBatch = (RecordBatch) first.header(new RecordBatch());
+        ByteBuffer body = stream.slice(stream.position(), (int) first.bodyLength()).order(ByteOrder.LITTLE_ENDIAN);
+        stream.position(stream.position() + (int) first.bodyLength());
+        assertEquals(2, firstBatch.length());
+        assertEquals(10, firstBatch.buffersLength());
+        assertEquals(2L, body.getLong((int) firstBatch.buffers(1).offset() + 8));
+        assertEquals(72.5, body.getDouble((int) firstBatch.buffers(5).offset() + 8));
+        ByteBuffer uuid = body.duplicate().order(ByteOrder.BIG_ENDIAN);
+        assertEquals(FIRST_UUID.getMostSignificantBits(), uuid.getLong((int) firstBatch.buffers(7).offset()));
+        assertEquals(FIRST_UUID.getLeastSignificantBits(), uuid.getLong((int) firstBatch.buffers(7).offset() + 8));
+        assertEquals(MEASURED_AT_MICROS, body.getLong((int) firstBatch.buffers(9).offset()));
+
+        Message second = nextMessage(stream);
+        assertEquals(1, ((RecordBatch) second.header(new RecordBatch())).length());
+        stream.position(stream.position() + (int) second.bodyLength());
+        assertEquals(0xFFFFFFFF, stream.getInt());
+        assertEquals(0, stream.getInt());
+        assertEquals(0, stream.remaining());
+    }
+
+    private static Message nextMessage(ByteBuffer stream) {
+        assertEquals(0xFFFFFFFF, stream.getInt());
+        int length = stream.getInt();
+        assertEquals(0, (8 + length) % 8);
+        Message message = Message.getRootAsMessage(stream.slice(stream.position(), length));
+        stream.position(stream.position() + length);
+        return message;
+    }
+}
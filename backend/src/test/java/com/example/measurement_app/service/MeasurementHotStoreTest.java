@@ -0,0 +1,243 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementColumns;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisabledInNativeImage
+class MeasurementHotStoreTest {
+
+    private final MeasurementJdbcRepository measurementJdbcRepository = mock(MeasurementJdbcRepository.class);
+    private final List<Measurement> database = new ArrayList<>();
+
+    /**
+     * Test that loaded and later created measurements answer a patient's reads like the database.
+     */
+    @Test
+    void shouldAnswerPatientReadsFromLoadedAndCreatedRows() {
+        // Arrange: Two loaded measurements of patient 1, one of patient 2, then one created out of order
+        Instant hour = Instant.now().minus(Duration.ofHours(3)).truncatedTo(ChronoUnit.HOURS);
+        database.add(measurement(1L, 60.0, hour.plusSeconds(60)));
+        database.add(measurement(2L, 99.0, hour.plusSeconds(90)));
+        database.add(measurement(1L, 90.0, hour.plusSeconds(7200)));
+        MeasurementHotStore store = store(Duration.ofDays(1), 100);
+        store.reload();
+        Measurement late = measurement(1L, 80.0, hour.plusSeconds(120));
+        store.apply(List.of(MeasurementEvent.created(late)));
+
+        // Act: Stream, aggregate and summarize patient 1
+        List<Measurement> streamed = new ArrayList<>();
+        store.streamRange(1L, hour, null, streamed::add);
+        List<MeasurementBucket> buckets = store.findBuckets(1L, hour, hour.plusSeconds(3 * 3600), 3600);
+        MeasurementStats stats = store.computeStats(1L);
+
+        // Assert: Time order, hourly buckets and the statistics PostgreSQL would compute
+        assertEquals(List.of(60.0, 80.0, 90.0), streamed.stream().map(Measurement::getResult).toList());
+        assertEquals(late.getUuid(), streamed.get(1).getUuid());
+        assertEquals(List.of(new MeasurementBucket(hour, 2, 60.0, 80.0, 70.0),
+                new MeasurementBucket(hour.plusSeconds(7200), 1, 90.0, 90.0, 90.0)), buckets);
+        assertEquals(3, stats.count());
+        assertEquals(76.66666666666667, stats.mean(), 1e-9);
+        assertEquals(15.275252316519467, stats.stddev(), 1e-9);
+        assertEquals(80.0, stats.p50());
+        assertEquals(89.0, stats.p95(), 1e-9);
+        assertTrue(store.holdsAll(1L, 3));
+        assertFalse(store.holdsAll(1L, 4));
+        assertTrue(store.covers(hour));
+        assertFalse(store.covers(Instant.now().minus(Duration.ofDays(2))));
+        assertNull(store.computeStats(3L).mean());
+    }
+
+    /**
+     * Test that updates move rows between patients, deletes free them and old rows are evicted.
+     */
+    @Test
+    void shouldFollowUpdatesDeletesAndEviction() throws InterruptedException {
+        // Arrange: A two-second window holding an older and a newer measurement of patient 1
+        MeasurementHotStore store = store(Duration.ofSeconds(2), 100);
+        store.reload();
+        Instant now = Instant.now();
+        Measurement older = measurement(1L, 60.0, now.minusMillis(1500));
+        Measurement newer = measurement(1L, 70.0, now);
+        store.apply(List.of(MeasurementEvent.created(older), MeasurementEvent.created(newer)));
+
+        // Act: Move the newer one to patient 2, delete nothing that exists, then let the older one expire
+        Measurement moved = measurement(2L, 75.0, now);
+        moved.setUuid(newer.getUuid());
+        store.apply(List.of(MeasurementEvent.updated(newer, moved),
+                MeasurementEvent.deleted(measurement(1L, 50.0, now))));
+        boolean heldBoth = store.holdsAll(1L, 1) && store.holdsAll(2L, 1);
+        Thread.sleep(1000);
+        store.maintain();
+
+        // Assert: Patient 2 has the moved measurement with its new result, patient 1 nothing left
+        assertTrue(heldBoth);
+        assertTrue(store.holdsAll(1L, 0));
+        assertEquals(1, store.size());
+        assertEquals(75.0, store.computeStats(2L).max());
+    }
+
+    /**
+     * Test that a full store stops answering until the next maintenance reloads it.
+     */
+    @Test
+    void shouldStopAnsweringWhenFullUntilReloaded() {
+        // Arrange: Many patients in the database and room for one more measurement
+        for (long patientId = 1; patientId <= 3000; patientId++) {
+            database.add(measurement(patientId, 60.0, Instant.now().minusSeconds(60)));
+        }
+        MeasurementHotStore store = store(Duration.ofDays(1), 3001);
+        store.reload();
+        boolean heldAllPatients = store.holdsAll(1L, 1) && store.holdsAll(2999L, 1) && store.holdsAll(3000L, 1);
+
+        // Act: Create two more measurements than there is room for, then maintain
+        store.apply(List.of(MeasurementEvent.created(measurement(1L, 61.0, Instant.now())),
+                MeasurementEvent.created(measurement(1L, 62.0, Instant.now()))));
+        boolean answeredWhenFull = store.covers(Instant.now().minusSeconds(1));
+        database.remove(0);
+        store.maintain();
+
+        // Assert: Not answering while full, complete again after the reload
+        assertTrue(heldAllPatients);
+        assertFalse(answeredWhenFull);
+        assertTrue(store.covers(Instant.now().minusSeconds(1)));
+        assertEquals(2999, store.size());
+        assertTrue(store.holdsAll(1L, 0));
+    }
+
+    /**
+     * Test that a window over capacity is not loaded again and again, only once eviction has made room.
+     */
+    @Test
+    void shouldBackOffWhileTheWindowExceedsCapacity() {
+        // Arrange: Five measurements in the window and room for three
+        for (long patientId = 1; patientId <= 5; patientId++) {
+            database.add(measurement(patientId, 60.0, Instant.now().minusSeconds(60)));
+        }
+        when(measurementJdbcRepository.countMeasuredSince(any())).thenReturn(5L);
+        MeasurementHotStore store = store(Duration.ofDays(1), 3);
+        store.reload();
+
+        // Act: Maintain three times while the window is too large, then four times after it shrank
+        for (int i = 0; i < 3; i++) {
+            store.maintain();
+        }
+        boolean answeredWhileTooLarge = store.covers(Instant.now().minusSeconds(1));
+        database.subList(0, 2).clear();
+        when(measurementJdbcRepository.countMeasuredSince(any())).thenReturn(3L);
+        for (int i = 0; i < 4; i++) {
+            store.maintain();
+        }
+
+        // Assert: Only the counts ran while too large, with a run skipped in between, then one reload
+        assertFalse(answeredWhileTooLarge);
+        verify(measurementJdbcRepository, times(3)).countMeasuredSince(any());
+        verify(measurementJdbcRepository, times(2)).streamRange(isNull(), any(), isNull(), any());
+        assertTrue(store.covers(Instant.now().minusSeconds(1)));
+        assertEquals(3, store.size());
+    }
+
+    /**
+     * Test that a restart reads the rows back from the snapshot and only what changed since from the database.
+     */
+    @Test
+    void shouldRestoreFromSnapshotAndCatchUp(@TempDir Path directory) throws IOException {
+        // Arrange: A snapshot at id 100 of three measurements, then an update, a delete and a new measurement
+        Instant now = Instant.now();
+        Measurement kept = measurement(1L, 60.0, now.minusSeconds(30));
+        Measurement updated = measurement(1L, 70.0, now.minusSeconds(20));
+        Measurement deleted = measurement(2L, 80.0, now.minusSeconds(10));
+        database.addAll(List.of(kept, updated, deleted));
+        when(measurementJdbcRepository.findMaxId()).thenReturn(100L);
+        MeasurementSnapshotStore snapshots = new MeasurementSnapshotStore(measurementJdbcRepository, directory, 10);
+        MeasurementHotStore before = store(Duration.ofDays(1), 100, Optional.of(snapshots));
+        before.reload();
+        before.writeSnapshot();
+        Measurement moved = measurement(3L, 75.0, updated.getMeasuredAt());
+        moved.setUuid(updated.getUuid());
+        before.apply(List.of(MeasurementEvent.updated(updated, moved), MeasurementEvent.deleted(deleted)));
+        Measurement created = measurement(2L, 90.0, now);
+        when(measurementJdbcRepository.findByUuids(any())).thenReturn(List.of(moved));
+        doAnswer(invocation -> {
+            MeasurementColumns batch = invocation.getArgument(2);
+            Consumer<MeasurementColumns> consumer = invocation.getArgument(3);
+            batch.add(101L, 2L, 90.0, created.getUuid(), toMicros(now));
+            consumer.accept(batch);
+            return null;
+        }).when(measurementJdbcRepository).streamColumns(eq(90L), eq(Long.MAX_VALUE), any(), any());
+
+        // Act: Restore a second store from the snapshot
+        MeasurementHotStore after = store(Duration.ofDays(1), 100, Optional.of(snapshots));
+        boolean restored = after.restore();
+
+        // Assert: The window was not read again, and the changes are there
+        assertTrue(restored);
+        verify(measurementJdbcRepository, times(1)).streamRange(isNull(), any(), isNull(), any());
+        assertTrue(after.covers(now.minusSeconds(60)));
+        assertTrue(after.holdsAll(1L, 1));
+        assertEquals(60.0, after.computeStats(1L).max());
+        assertEquals(75.0, after.computeStats(3L).max());
+        assertTrue(after.holdsAll(2L, 1));
+        assertEquals(90.0, after.computeStats(2L).max());
+    }
+
+    private MeasurementHotStore store(Duration window, int capacity) {
+        return store(window, capacity, Optional.empty());
+    }
+
+    private MeasurementHotStore store(Duration window, int capacity, Optional<MeasurementSnapshotStore> snapshots) {
+        doAnswer(invocation -> {
+            Consumer<Measurement> consumer = invocation.getArgument(3);
+            database.forEach(consumer);
+            return null;
+        }).when(measurementJdbcRepository).streamRange(isNull(), any(), isNull(), any());
+        return new MeasurementHotStore(measurementJdbcRepository, snapshots,
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), window, capacity);
+    }
+
+    private static Measurement measurement(Long patientId, double result, Instant measuredAt) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(result);
+        measurement.setUuid(UUID.randomUUID());
+        measurement.setMeasuredAt(measuredAt);
+        return measurement;
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+}
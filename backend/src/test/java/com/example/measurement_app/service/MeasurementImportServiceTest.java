@@ -0,0 +1,155 @@
+package com.example.measurement_app.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.measurement_app.dto.MeasurementImport;
+import com.example.measurement_app.dto.MeasurementImport.Status;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+import com.example.measurement_app.service.MeasurementImportService.Format;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import jakarta.validation.Validation;
+
+@DisabledInNativeImage
+class MeasurementImportServiceTest {
+
+    private static final UUID EXISTING = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    @TempDir
+    private Path directory;
+
+    private MeasurementJdbcRepository measurementJdbcRepository;
+    private MeasurementPartitionService partitionService;
+    private MeasurementImportService importService;
+    private final List<Measurement> inserted = new ArrayList<>();
+    private final List<Integer> chunks = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        measurementJdbcRepository = mock(MeasurementJdbcRepository.class);
+        when(measurementJdbcRepository.findExistingUuids(any())).thenReturn(Set.of(EXISTING));
+        doAnswer(invocation -> {
+            List<Measurement> chunk = invocation.getArgument(0);
+            chunks.add(chunk.size());
+            inserted.addAll(chunk);
+            return null;
+        }).when(measurementJdbcRepository).copyIn(anyList());
+        partitionService = mock(MeasurementPartitionService.class);
+        importService = new MeasurementImportService(measurementJdbcRepository, mock(PatientSummaryService.class),
+                partitionService, Optional.empty(), Optional.empty(),
+                Validation.buildDefaultValidatorFactory().getValidator(), JsonMapper.builder().findAndAddModules().build(),
+                mock(PlatformTransactionManager.class), directory, 2);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        importService.shutdown();
+    }
+
+    /**
+     * Test importing a CSV file in chunks, skipping duplicates and listing rejected rows.
+     */
+    @Test
+    void shouldImportValidRowsInChunksAndRejectTheRest() throws Exception {
+        // Arrange: An export-style file with a row out of range, an unparsable one and an existing UUID
+        String csv = """
+                id,patient_id,result,uuid,measured_at
+                1,7,60,,2024-05-01T08:30:00.000000Z
+                2,7,120,,2024-05-01T08:31:00.000000Z
+                3,7,abc,,
+                4,8,70,%s,2024-05-01T08:32:00Z
+                5,8,80,,
+                """.formatted(EXISTING);
+
+        // Act: Import it and wait for the end
+        MeasurementImport started = importService.start(Format.CSV, stream(csv), 0);
+        MeasurementImport finished = await(started.id());
+
+        // Assert: Two rows imported in separate chunks, one duplicate, two rejected with their reasons
+        assertEquals(Status.COMPLETED, finished.status());
+        assertEquals(6, finished.linesProcessed());
+        assertEquals(2, finished.imported());
+        assertEquals(1, finished.duplicates());
+        assertEquals(2, finished.rejected());
+        assertEquals(List.of(1, 1), chunks);
+        InOrder inOrder = inOrder(partitionService, measurementJdbcRepository);
+        inOrder.verify(partitionService).ensurePartitions(List.of(Instant.parse("2024-05-01T08:30:00Z")));
+        inOrder.verify(measurementJdbcRepository).copyIn(anyList());
+        assertEquals(60.0, inserted.get(0).getResult());
+        assertEquals("2024-05-01T08:30:00Z", inserted.get(0).getMeasuredAt().toString());
+        List<String> rejected = Files.readAllLines(importService.findRejected(started.id()).orElseThrow());
+        assertEquals(2, rejected.size());
+        assertTrue(rejected.get(0).contains("\"line\":3"));
+        assertTrue(rejected.get(0).contains("Result must not exceed 100.0"));
+        assertTrue(rejected.get(1).contains("\"line\":4"));
+    }
+
+    /**
+     * Test that resuming an NDJSON import from a line gives the rows the same UUIDs again.
+     */
+    @Test
+    void shouldResumeFromLineWithTheSameUuids() throws Exception {
+        // Arrange: A completed import of three lines
+        String ndjson = """
+                {"patientId":5,"result":60.0,"measuredAt":"2024-05-01T08:30:00Z"}
+                {"patientId":5,"result":70.0}
+                {"patientId":5,"result":80.0,"uuid":"%s"}
+                """.formatted(UUID.randomUUID());
+        MeasurementImport first = importService.start(Format.NDJSON, stream(ndjson), 0);
+        await(first.id());
+        UUID secondLine = inserted.get(1).getUuid();
+        inserted.clear();
+
+        // Act: Run it again after its first line
+        importService.resume(first.id(), 1L);
+        MeasurementImport resumed = await(first.id());
+
+        // Assert: The last two lines again, with the UUIDs they had before
+        assertEquals(Status.COMPLETED, resumed.status());
+        assertEquals(2, inserted.size());
+        assertEquals(secondLine, inserted.get(0).getUuid());
+        assertEquals(5, resumed.imported());
+    }
+
+    private MeasurementImport await(UUID id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            MeasurementImport current = importService.find(id).orElseThrow();
+            if (current.status() != Status.QUEUED && current.status() != Status.RUNNING) {
+                return current;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Import " + id + " did not finish");
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
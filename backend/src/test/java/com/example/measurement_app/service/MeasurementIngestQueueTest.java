@@ -0,0 +1,241 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.util.unit.DataSize;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementWriteAheadLog.FsyncPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisabledInNativeImage
+class MeasurementIngestQueueTest {
+
+    private final MeasurementService measurementService = mock(MeasurementService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Test that a full queue rejects and that queued measurements stay findable until written.
+     */
+    @Test
+    void shouldRejectWhenFullAndKeepPendingFindable() throws InterruptedException {
+        // Arrange: A writer stuck on its first batch, and room for two more measurements
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Measurement>> batches = new ArrayList<>();
+        doAnswer(invocation -> {
+            batches.add(List.copyOf(invocation.getArgument(0)));
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(measurementService).saveMeasurements(anyList());
+        MeasurementIngestQueue queue = new MeasurementIngestQueue(measurementService, Optional.empty(), meterRegistry, 2, 10, 1,
+                Duration.ZERO);
+        Measurement first = measurement(60.0);
+        assertTrue(queue.offer(first));
+        writing.await();
+
+        // Act: Fill the queue behind the stuck batch
+        Measurement second = measurement(61.0);
+        Measurement third = measurement(62.0);
+        Measurement fourth = measurement(63.0);
+        boolean secondAccepted = queue.offer(second);
+        boolean thirdAccepted = queue.offer(third);
+        boolean fourthAccepted = queue.offer(fourth);
+
+        // Assert: The overflow is rejected and the rest is findable; then all are written in two batches
+        assertTrue(secondAccepted && thirdAccepted);
+        assertFalse(fourthAccepted);
+        assertTrue(queue.findPending(first.getUuid()).isPresent());
+        assertTrue(queue.findPending(third.getUuid()).isPresent());
+        assertFalse(queue.findPending(fourth.getUuid()).isPresent());
+        assertEquals(1.0, meterRegistry.counter("measurement.ingest.rejected").count());
+        release.countDown();
+        queue.shutdown();
+        assertEquals(List.of(List.of(first), List.of(second, third)), batches);
+        assertFalse(queue.findPending(third.getUuid()).isPresent());
+    }
+
+    /**
+     * Test that shutting down writes everything still queued and then rejects new measurements.
+     */
+    @Test
+    void shouldFlushQueueOnShutdown() throws InterruptedException {
+        // Arrange: A writer that takes a while per batch
+        List<Measurement> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            Thread.sleep(20);
+            written.addAll(invocation.getArgument(0));
+            return null;
+        }).when(measurementService).saveMeasurements(anyList());
+        MeasurementIngestQueue queue = new MeasurementIngestQueue(measurementService, Optional.empty(), meterRegistry, 1000, 10, 1,
+                Duration.ZERO);
+        for (int i = 0; i < 100; i++) {
+            queue.offer(measurement(60.0));
+        }
+
+        // Act: Shut down right away
+        queue.shutdown();
+
+        // Assert: Nothing was lost and nothing more is accepted
+        assertEquals(100, written.size());
+        assertFalse(queue.offer(measurement(60.0)));
+    }
+
+    /**
+     * Test that a batch with a conflicting measurement is written one by one so only that one is lost.
+     */
+    @Test
+    void shouldWriteMeasurementsOneByOneAfterConstraintViolation() throws InterruptedException {
+        // Arrange: Batches fail on a duplicate, and so does saving the duplicate alone
+        Measurement duplicate = measurement(60.0);
+        Measurement other = measurement(61.0);
+        doThrow(new DataIntegrityViolationException("duplicate uuid")).when(measurementService).saveMeasurements(anyList());
+        doThrow(new DataIntegrityViolationException("duplicate uuid")).when(measurementService).saveMeasurement(duplicate);
+        MeasurementIngestQueue queue = new MeasurementIngestQueue(measurementService, Optional.empty(), meterRegistry, 10, 10, 5,
+                Duration.ZERO);
+
+        // Act: Queue both and let the writer finish
+        queue.offer(duplicate);
+        queue.offer(other);
+        queue.shutdown();
+
+        // Assert: Every measurement was retried alone and only the duplicate counts as failed
+        verify(measurementService, times(2)).saveMeasurement(any(Measurement.class));
+        verify(measurementService).saveMeasurement(other);
+        assertEquals(1.0, meterRegistry.counter("measurement.ingest.failed").count());
+    }
+
+    /**
+     * Test that logged measurements are replayed on startup, skipping those already written.
+     */
+    @Test
+    void shouldReplayWriteAheadLogOnStartup(@TempDir Path directory) throws Exception {
+        // Arrange: A log with two accepted measurements, one of which reached the database
+        MeasurementWriteAheadLog wal = writeAheadLog(directory);
+        Measurement written = measurement(60.0);
+        Measurement lost = measurement(61.0);
+        wal.append(written);
+        wal.append(lost);
+        wal.close();
+        when(measurementService.findExistingUuids(List.of(written.getUuid(), lost.getUuid())))
+                .thenReturn(Set.of(written.getUuid()));
+
+        // Act: Start a queue on the reopened log
+        MeasurementWriteAheadLog reopened = writeAheadLog(directory);
+        MeasurementIngestQueue queue = new MeasurementIngestQueue(measurementService, Optional.of(reopened),
+                meterRegistry, 10, 10, 1, Duration.ZERO);
+        queue.shutdown();
+
+        // Assert: Only the missing one is written and the log has nothing left
+        verify(measurementService).saveMeasurements(argThat(batch -> batch.size() == 1
+                && batch.get(0).getUuid().equals(lost.getUuid())));
+        assertEquals(0, reopened.uncommittedCount());
+        reopened.close();
+    }
+
+    /**
+     * Test that a failing database during the replay is retried instead of stopping the writer.
+     */
+    @Test
+    void shouldRetryReplayWhileDatabaseIsDown(@TempDir Path directory) throws Exception {
+        // Arrange: A logged measurement, and a database that fails the first existence check
+        MeasurementWriteAheadLog wal = writeAheadLog(directory);
+        Measurement logged = measurement(60.0);
+        wal.append(logged);
+        wal.close();
+        CountDownLatch retried = new CountDownLatch(1);
+        when(measurementService.findExistingUuids(List.of(logged.getUuid())))
+                .thenThrow(new CannotGetJdbcConnectionException("Database is down"))
+                .thenAnswer(invocation -> {
+                    retried.countDown();
+                    return Set.of();
+                });
+        MeasurementWriteAheadLog reopened = writeAheadLog(directory);
+        MeasurementIngestQueue queue = new MeasurementIngestQueue(measurementService, Optional.of(reopened),
+                meterRegistry, 10, 10, 1, Duration.ZERO);
+
+        // Act: Accept another measurement once the check was retried
+        retried.await();
+        Measurement accepted = measurement(61.0);
+        assertTrue(queue.offer(accepted));
+        queue.shutdown();
+
+        // Assert: Both were written and the log has nothing left
+        verify(measurementService).saveMeasurements(argThat(batch -> batch.size() == 1
+                && batch.get(0).getUuid().equals(logged.getUuid())));
+        verify(measurementService, times(2)).saveMeasurements(anyList());
+        assertFalse(queue.findPending(accepted.getUuid()).isPresent());
+        assertEquals(0, reopened.uncommittedCount());
+        reopened.close();
+    }
+
+    /**
+     * Test that with a write-ahead log only a constraint violation drops a measurement written on its own.
+     */
+    @Test
+    void shouldRetryTransientFailuresOneByOneWithWriteAheadLog(@TempDir Path directory) throws Exception {
+        // Arrange: The batch fails on a duplicate, and the other measurement fails once on its own
+        Measurement duplicate = measurement(60.0);
+        Measurement other = measurement(61.0);
+        doThrow(new DataIntegrityViolationException("duplicate uuid")).when(measurementService).saveMeasurements(anyList());
+        doThrow(new DataIntegrityViolationException("duplicate uuid")).when(measurementService).saveMeasurement(duplicate);
+        CountDownLatch written = new CountDownLatch(1);
+        doThrow(new CannotGetJdbcConnectionException("Database is down")).doAnswer(invocation -> {
+            written.countDown();
+            return other;
+        }).when(measurementService).saveMeasurement(other);
+        MeasurementWriteAheadLog wal = writeAheadLog(directory);
+        MeasurementIngestQueue queue = new MeasurementIngestQueue(measurementService, Optional.of(wal), meterRegistry,
+                10, 10, 1, Duration.ZERO);
+
+        // Act: Queue both, the other one after the duplicate
+        queue.offer(duplicate);
+        queue.offer(other);
+        written.await();
+        queue.shutdown();
+
+        // Assert: The other one was written on the second attempt and only the duplicate counts as failed
+        verify(measurementService, times(2)).saveMeasurement(other);
+        assertEquals(1.0, meterRegistry.counter("measurement.ingest.failed").count());
+        assertEquals(0, wal.uncommittedCount());
+        wal.close();
+    }
+
+    private static MeasurementWriteAheadLog writeAheadLog(Path directory) throws IOException {
+        return new MeasurementWriteAheadLog(new SimpleMeterRegistry(), directory, DataSize.ofKilobytes(64),
+                FsyncPolicy.RECORD, Duration.ofMillis(10));
+    }
+
+    private static Measurement measurement(double result) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(1L);
+        measurement.setResult(result);
+        return measurement;
+    }
+}
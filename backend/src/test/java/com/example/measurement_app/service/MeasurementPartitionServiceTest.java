@@ -0,0 +1,59 @@
+package com.example.measurement_app.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+
+@DisabledInNativeImage
+class MeasurementPartitionServiceTest {
+
+    private final MeasurementJdbcRepository measurementJdbcRepository = mock(MeasurementJdbcRepository.class);
+
+    /**
+     * Test that a partition is created once for each month a measurement falls into.
+     */
+    @Test
+    void shouldCreateEachMissingMonthOnce() {
+        // Arrange: Two measurements in May 2001 and one in June 2001
+        MeasurementPartitionService service = new MeasurementPartitionService(measurementJdbcRepository, 3);
+        List<Instant> measuredAt = List.of(Instant.parse("2001-05-01T00:00:00Z"),
+                Instant.parse("2001-05-31T23:59:59Z"), Instant.parse("2001-06-01T00:00:00Z"));
+
+        // Act: Ensure their partitions twice
+        service.ensurePartitions(measuredAt);
+        service.ensurePartitions(measuredAt);
+
+        // Assert: Only the first call reached the database, once per month
+        verify(measurementJdbcRepository, times(1)).createPartitions(LocalDate.of(2001, 5, 1), 1);
+        verify(measurementJdbcRepository, times(1)).createPartitions(LocalDate.of(2001, 6, 1), 1);
+    }
+
+    /**
+     * Test that the months created ahead of time need no further call.
+     */
+    @Test
+    void shouldKnowTheUpcomingMonths() {
+        // Arrange: The upcoming partitions were created
+        MeasurementPartitionService service = new MeasurementPartitionService(measurementJdbcRepository, 3);
+        service.createUpcomingPartitions();
+
+        // Act: Ensure partitions for now and the last month created ahead
+        YearMonth lastMonth = YearMonth.now(ZoneOffset.UTC).plusMonths(3);
+        service.ensurePartitions(List.of(Instant.now(), lastMonth.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC)));
+
+        // Assert: Only the scheduled creation reached the database
+        verify(measurementJdbcRepository, times(1)).createPartitions(any(), anyInt());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.measurement_app.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.example.measurement_app.config.CacheConfig;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+import com.example.measurement_app.repository.MeasurementRepository;
+
+@SpringBootTest(classes = { MeasurementService.class, CacheConfig.class })
+@ImportAutoConfiguration({ CacheAutoConfiguration.class, ValidationAutoConfiguration.class })
+@DisabledInAotMode
+class MeasurementServiceCachingTest {
+
+    @MockitoBean
+    private MeasurementRepository measurementRepository;
+
+    @MockitoBean
+    private MeasurementJdbcRepository measurementJdbcRepository;
+
+    @MockitoBean
+    private PatientSummaryService patientSummaryService;
+
+    @MockitoBean
+    private MeasurementPartitionService partitionService;
+
+    @MockitoBean
+    private MeasurementEventBroadcaster eventBroadcaster;
+
+    @Autowired
+    private MeasurementService measurementService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(CacheConfig.MEASUREMENTS_BY_UUID).clear();
+        reset(measurementRepository);
+    }
+
+    /**
+     * Test that repeated lookups of the same UUID hit the database once.
+     */
+    @Test
+    void shouldServeRepeatedLookupsFromCache() {
+        // Arrange: A measurement in the database
+        Measurement measurement = newMeasurement();
+        when(measurementRepository.findByUuid(measurement.getUuid())).thenReturn(Optional.of(measurement));
+
+        // Act: Look it up three times
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Optional.of(measurement), measurementService.getMeasurementByUuid(measurement.getUuid()));
+        }
+
+        // Assert: Only the first lookup reached the repository
+        verify(measurementRepository, times(1)).findByUuid(measurement.getUuid());
+    }
+
+    /**
+     * Test that misses are not cached.
+     */
+    @Test
+    void shouldNotCacheMissingMeasurements() {
+        // Arrange: An unknown UUID
+        UUID uuid = UUID.randomUUID();
+        when(measurementRepository.findByUuid(uuid)).thenReturn(Optional.empty());
+
+        // Act: Look it up twice
+        assertTrue(measurementService.getMeasurementByUuid(uuid).isEmpty());
+        assertTrue(measurementService.getMeasurementByUuid(uuid).isEmpty());
+
+        // Assert: Both lookups reached the repository
+        verify(measurementRepository, times(2)).findByUuid(uuid);
+    }
+
+    /**
+     * Test that deleting a measurement evicts it from the cache.
+     */
+    @Test
+    void shouldEvictMeasurementOnDelete() {
+        // Arrange: A cached measurement
+        Measurement measurement = newMeasurement();
+        when(measurementRepository.findByUuid(measurement.getUuid())).thenReturn(Optional.of(measurement));
+        measurementService.getMeasurementByUuid(measurement.getUuid());
+
+        when(measurementJdbcRepository.deleteByUuid(measurement.getUuid())).thenReturn(Optional.of(measurement));
+
+        // Act: Delete it, after which it is gone from the database
+        measurementService.deleteMeasurementByUuid(measurement.getUuid());
+        when(measurementRepository.findByUuid(measurement.getUuid())).thenReturn(Optional.empty());
+
+        // Assert: The next lookup goes to the database and finds nothing
+        assertTrue(measurementService.getMeasurementByUuid(measurement.getUuid()).isEmpty());
+    }
+
+    /**
+     * Test that a bulk delete evicts the deleted measurements from the cache.
+     */
+    @Test
+    void shouldEvictMeasurementsOnBulkDelete() {
+        // Arrange: A cached measurement
+        Measurement measurement = newMeasurement();
+        when(measurementRepository.findByUuid(measurement.getUuid())).thenReturn(Optional.of(measurement));
+        measurementService.getMeasurementByUuid(measurement.getUuid());
+        when(measurementJdbcRepository.deleteByUuids(Set.of(measurement.getUuid()))).thenReturn(List.of(measurement));
+
+        // Act: Delete it as part of a batch
+        measurementService.deleteMeasurementsByUuid(List.of(measurement.getUuid()));
+        when(measurementRepository.findByUuid(measurement.getUuid())).thenReturn(Optional.empty());
+
+        // Assert: The next lookup goes to the database and finds nothing
+        assertTrue(measurementService.getMeasurementByUuid(measurement.getUuid()).isEmpty());
+    }
+
+    private Measurement newMeasurement() {
+        Measurement measurement = new Measurement();
+        measurement.setId(1L);
+        measurement.setPatientId(123L);
+        measurement.setResult(75.0);
+        return measurement;
+    }
+}
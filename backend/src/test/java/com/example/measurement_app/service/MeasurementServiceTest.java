@@ -1,32 +1,68 @@
 package com.example.measurement_app.service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import static org.mockito.Mockito.doNothing;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Limit;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import com.example.measurement_app.dto.BatchItemResult;
+import com.example.measurement_app.dto.BatchResult;
+import com.example.measurement_app.dto.MeasurementBucket;
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.dto.MeasurementPage;
+import com.example.measurement_app.dto.MeasurementSeries;
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.dto.MeasurementUpdate;
 import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
 import com.example.measurement_app.repository.MeasurementRepository;
 
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.Validation;
+
+@DisabledInNativeImage
 class MeasurementServiceTest {
 
     private MeasurementRepository measurementRepository;
+    private MeasurementJdbcRepository measurementJdbcRepository;
+    private PatientSummaryService patientSummaryService;
+    private MeasurementPartitionService partitionService;
+    private MeasurementEventBroadcaster eventBroadcaster;
     private MeasurementService measurementService;
 
     @BeforeEach
     public void setUp() {
         measurementRepository = mock(MeasurementRepository.class);
-        measurementService = new MeasurementService(measurementRepository);
+        measurementJdbcRepository = mock(MeasurementJdbcRepository.class);
+        patientSummaryService = mock(PatientSummaryService.class);
+        partitionService = mock(MeasurementPartitionService.class);
+        eventBroadcaster = mock(MeasurementEventBroadcaster.class);
+        measurementService = new MeasurementService(measurementRepository, measurementJdbcRepository,
+                patientSummaryService, partitionService, Validation.buildDefaultValidatorFactory().getValidator(),
+                new ConcurrentMapCacheManager(), eventBroadcaster, Optional.empty(), Optional.empty());
     }
 
     /**
@@ -48,6 +84,202 @@ class MeasurementServiceTest {
         assertNotNull(savedMeasurement);
         assertEquals(123L, savedMeasurement.getPatientId());
         verify(measurementRepository, times(1)).save(measurement);
+        verify(patientSummaryService, times(1)).recordAdded(123L, 75.0);
+    }
+
+    /**
+     * Test retrieving a page of one patient's measurements.
+     */
+    @Test
+    void shouldRetrieveMeasurementPageByPatientId() {
+        // Arrange: The patient has exactly one more measurement than the page size
+        Measurement m1 = new Measurement();
+        m1.setId(3L);
+        Measurement m2 = new Measurement();
+        m2.setId(8L);
+
+        when(measurementRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(42L, 0L, Limit.of(2)))
+                .thenReturn(List.of(m1, m2));
+
+        // Act: Request a page of one
+        MeasurementPage page = measurementService.getMeasurementPageByPatientId(42L, null, 1);
+
+        // Assert: The page continues after the returned measurement
+        assertEquals(List.of(m1), page.items());
+        assertEquals(3L, page.nextCursor());
+    }
+
+    /**
+     * Test that patient statistics with percentiles are computed by the database.
+     */
+    @Test
+    void shouldRetrieveStatisticsWithPercentilesByPatientId() {
+        // Arrange: The repository aggregates the patient's results
+        MeasurementStats stats = new MeasurementStats(2, 60.0, 80.0, 70.0, 14.1, 70.0, 79.0, 79.8);
+        when(measurementJdbcRepository.computeStats(42L)).thenReturn(stats);
+
+        // Act: Retrieve the statistics including percentiles
+        MeasurementStats result = measurementService.getStatisticsByPatientId(42L, true);
+
+        // Assert: The aggregate is returned unchanged
+        assertEquals(stats, result);
+        verify(measurementJdbcRepository, times(1)).computeStats(42L);
+    }
+
+    /**
+     * Test that the hot store answers recent patient reads and is kept current by changes.
+     */
+    @Test
+    void shouldAnswerFromHotStoreWhenItHoldsThePatient() {
+        // Arrange: A service with a hot store holding the patient's only measurement
+        MeasurementHotStore hotStore = mock(MeasurementHotStore.class);
+        MeasurementService service = new MeasurementService(measurementRepository, measurementJdbcRepository,
+                patientSummaryService, partitionService, Validation.buildDefaultValidatorFactory().getValidator(),
+                new ConcurrentMapCacheManager(), eventBroadcaster, Optional.of(hotStore), Optional.empty());
+        MeasurementStats stats = new MeasurementStats(1, 60.0, 60.0, 60.0, null, 60.0, 60.0, 60.0);
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        when(patientSummaryService.getStatistics(42L))
+                .thenReturn(new MeasurementStats(1, 60.0, 60.0, 60.0, null, null, null, null));
+        when(hotStore.holdsAll(42L, 1)).thenReturn(true);
+        when(hotStore.computeStats(42L)).thenReturn(stats);
+        when(hotStore.covers(from)).thenReturn(true);
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(42L);
+        measurement.setResult(60.0);
+        when(measurementRepository.save(measurement)).thenReturn(measurement);
+
+        // Act: Read statistics and a range, then save a measurement
+        MeasurementStats result = service.getStatisticsByPatientId(42L, true);
+        service.streamMeasurementsByPatientIdBetween(42L, from, null, m -> { });
+        service.saveMeasurement(measurement);
+
+        // Assert: Neither read queries the measurements, and the store gets the change
+        assertEquals(stats, result);
+        verify(measurementJdbcRepository, times(0)).computeStats(42L);
+        verify(hotStore).streamRange(eq(42L), eq(from), isNull(), any());
+        verifyNoInteractions(measurementJdbcRepository);
+        verify(hotStore).apply(List.of(MeasurementEvent.created(measurement)));
+    }
+
+    /**
+     * Test that the UUID index answers unknown UUIDs itself and points known ones to their partition.
+     */
+    @Test
+    void shouldLookUpUuidsThroughTheIndex() {
+        // Arrange: A service with a loaded UUID index knowing one measurement
+        MeasurementUuidIndex uuidIndex = mock(MeasurementUuidIndex.class);
+        MeasurementService service = new MeasurementService(measurementRepository, measurementJdbcRepository,
+                patientSummaryService, partitionService, Validation.buildDefaultValidatorFactory().getValidator(),
+                new ConcurrentMapCacheManager(), eventBroadcaster, Optional.empty(), Optional.of(uuidIndex));
+        UUID known = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        Instant measuredAt = Instant.parse("2024-05-01T08:30:00Z");
+        Measurement measurement = new Measurement();
+        measurement.setUuid(known);
+        when(uuidIndex.isReady()).thenReturn(true);
+        when(uuidIndex.find(known)).thenReturn(Optional.of(new MeasurementUuidIndex.Location(3L, measuredAt)));
+        when(uuidIndex.find(unknown)).thenReturn(Optional.empty());
+        when(uuidIndex.findExisting(List.of(known, unknown))).thenReturn(Set.of(known));
+        when(measurementJdbcRepository.findByUuid(known, measuredAt)).thenReturn(Optional.of(measurement));
+
+        // Act: Look up both UUIDs and check which exist
+        Optional<Measurement> found = service.getMeasurementByUuid(known);
+        Optional<Measurement> missing = service.getMeasurementByUuid(unknown);
+        Set<UUID> existing = service.findExistingUuids(List.of(known, unknown));
+
+        // Assert: One query with the partition key, none for the unknown UUID or the existence check
+        assertEquals(Optional.of(measurement), found);
+        assertTrue(missing.isEmpty());
+        assertEquals(Set.of(known), existing);
+        verify(measurementJdbcRepository, times(1)).findByUuid(known, measuredAt);
+        verify(measurementJdbcRepository, times(0)).findExistingUuids(anyList());
+        verifyNoInteractions(measurementRepository);
+    }
+
+    /**
+     * Test that patient statistics without percentiles come from the summary table.
+     */
+    @Test
+    void shouldRetrieveStatisticsByPatientIdFromSummary() {
+        // Arrange: The summary holds the patient's running aggregates
+        MeasurementStats stats = new MeasurementStats(2, 60.0, 80.0, 70.0, 14.1, null, null, null);
+        when(patientSummaryService.getStatistics(42L)).thenReturn(stats);
+
+        // Act: Retrieve the statistics without percentiles
+        MeasurementStats result = measurementService.getStatisticsByPatientId(42L, false);
+
+        // Assert: The measurements table is not aggregated
+        assertEquals(stats, result);
+        verify(measurementJdbcRepository, times(0)).computeStats(42L);
+    }
+
+    /**
+     * Test that a series with more buckets than requested points is downsampled.
+     */
+    @Test
+    void shouldDownsampleSeriesToRequestedPoints() {
+        // Arrange: Ten hourly buckets from the repository
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        Instant to = from.plus(Duration.ofHours(10));
+        List<MeasurementBucket> buckets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            buckets.add(new MeasurementBucket(from.plus(Duration.ofHours(i)), 2, 60.0 + i, 70.0 + i, 65.0 + i));
+        }
+        when(measurementJdbcRepository.findBuckets(42L, from, to, 3600)).thenReturn(buckets);
+
+        // Act: Ask for the series with and without a point limit
+        MeasurementSeries sampled = measurementService.getSeriesByPatientId(42L, from, to, Duration.ofHours(1), 4);
+        MeasurementSeries full = measurementService.getSeriesByPatientId(42L, from, to, Duration.ofHours(1), null);
+
+        // Assert: The limit is applied and the original bucket count is reported
+        assertEquals(4, sampled.buckets().size());
+        assertEquals(10, sampled.bucketCount());
+        assertEquals(buckets.get(0), sampled.buckets().get(0));
+        assertEquals(buckets.get(9), sampled.buckets().get(3));
+        assertEquals(buckets, full.buckets());
+    }
+
+    /**
+     * Test that a range spanning too many buckets is rejected before querying.
+     */
+    @Test
+    void shouldRejectSeriesWithTooManyBuckets() {
+        // Arrange: Ten years in one-minute buckets
+        Instant from = Instant.parse("2014-01-01T00:00:00Z");
+        Instant to = Instant.parse("2024-01-01T00:00:00Z");
+
+        // Act & Assert: The request fails and the database is not asked
+        assertThrows(IllegalArgumentException.class,
+                () -> measurementService.getSeriesByPatientId(42L, from, to, Duration.ofMinutes(1), 500));
+        verifyNoInteractions(measurementJdbcRepository);
+    }
+
+    /**
+     * Test saving a batch where some measurements are invalid.
+     */
+    @Test
+    void shouldInsertValidMeasurementsAndReportInvalidOnes() {
+        // Arrange: One valid and one out-of-range measurement
+        Measurement valid = new Measurement();
+        valid.setPatientId(1L);
+        valid.setResult(75.0);
+        Measurement invalid = new Measurement();
+        invalid.setPatientId(2L);
+        invalid.setResult(120.0);
+
+        // Act: Save the batch
+        BatchResult result = measurementService.saveMeasurements(List.of(valid, invalid));
+
+        // Assert: Only the valid measurement is inserted and each item has its status
+        assertEquals(1, result.succeeded());
+        assertEquals(1, result.failed());
+        assertEquals(BatchItemResult.Status.CREATED, result.items().get(0).status());
+        assertEquals(valid.getUuid(), result.items().get(0).uuid());
+        assertEquals(BatchItemResult.Status.INVALID, result.items().get(1).status());
+        assertTrue(result.items().get(1).errors().containsKey("result"));
+        verify(partitionService, times(1)).ensurePartitions(List.of(valid.getMeasuredAt()));
+        verify(measurementJdbcRepository, times(1)).batchInsert(List.of(valid));
+        verify(patientSummaryService, times(1)).recordAdded(List.of(valid));
     }
 
     /**
@@ -89,25 +321,110 @@ class MeasurementServiceTest {
         verify(measurementRepository, times(1)).findAll();
     }
 
+    /**
+     * Test that a full keyset page returns the id of its last item as the cursor.
+     */
+    @Test
+    void shouldReturnNextCursorWhenMoreMeasurementsExist() {
+        // Arrange: The repository returns one row more than requested
+        Measurement m1 = new Measurement();
+        m1.setId(5L);
+        Measurement m2 = new Measurement();
+        m2.setId(7L);
+        Measurement m3 = new Measurement();
+        m3.setId(9L);
+
+        when(measurementRepository.findByIdGreaterThanOrderByIdAsc(4L, Limit.of(3))).thenReturn(List.of(m1, m2, m3));
+
+        // Act: Request a page of two
+        MeasurementPage page = measurementService.getMeasurementPage(4L, 2);
+
+        // Assert: Only the requested rows are returned and the cursor points at the last one
+        assertEquals(List.of(m1, m2), page.items());
+        assertEquals(7L, page.nextCursor());
+    }
+
+    /**
+     * Test that the last keyset page has no cursor.
+     */
+    @Test
+    void shouldReturnNoCursorOnLastPage() {
+        // Arrange: Fewer rows than requested remain
+        Measurement m1 = new Measurement();
+        m1.setId(5L);
+
+        when(measurementRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(3))).thenReturn(List.of(m1));
+
+        // Act: Request the first page
+        MeasurementPage page = measurementService.getMeasurementPage(null, 2);
+
+        // Assert: The page is complete and there is no next page
+        assertEquals(List.of(m1), page.items());
+        assertNull(page.nextCursor());
+    }
+
     /**
      * Test deleting a measurement by UUID.
      */
     @Test
     void shouldDeleteMeasurementByUuidSuccessfully() {
-        // Arrange: Mock the repository behavior
+        // Arrange: The delete statement hands back the removed row
         UUID uuid = UUID.randomUUID();
         Measurement measurement = new Measurement();
         measurement.setUuid(uuid);
+        measurement.setPatientId(3L);
+        measurement.setResult(66.0);
 
-        when(measurementRepository.findByUuid(uuid)).thenReturn(Optional.of(measurement));
-        doNothing().when(measurementRepository).deleteByUuid(uuid);
+        when(measurementJdbcRepository.deleteByUuid(uuid)).thenReturn(Optional.of(measurement));
 
         // Act: Call the service method
         measurementService.deleteMeasurementByUuid(uuid);
 
-        // Assert: Verify interactions with the repository
-        verify(measurementRepository, times(1)).findByUuid(uuid);
-        verify(measurementRepository, times(1)).deleteByUuid(uuid);
+        // Assert: One statement, the summary loses the deleted result and subscribers hear of it
+        verify(measurementJdbcRepository, times(1)).deleteByUuid(uuid);
+        verifyNoInteractions(measurementRepository);
+        verify(patientSummaryService, times(1)).recordRemoved(3L, 66.0);
+        verify(eventBroadcaster, times(1)).publish(MeasurementEvent.deleted(measurement));
+    }
+
+    /**
+     * Test deleting a measurement that does not exist.
+     */
+    @Test
+    void shouldFailToDeleteUnknownMeasurement() {
+        // Arrange: Nothing is deleted
+        UUID uuid = UUID.randomUUID();
+        when(measurementJdbcRepository.deleteByUuid(uuid)).thenReturn(Optional.empty());
+
+        // Act & Assert: The delete is rejected and the summary is left alone
+        assertThrows(EntityNotFoundException.class, () -> measurementService.deleteMeasurementByUuid(uuid));
+        verifyNoInteractions(patientSummaryService);
+    }
+
+    /**
+     * Test deleting a batch of measurements by UUID.
+     */
+    @Test
+    void shouldDeleteMeasurementBatchAndReportUnknownUuids() {
+        // Arrange: Two UUIDs of which only the first exists
+        UUID existing = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        Measurement deleted = new Measurement();
+        deleted.setUuid(existing);
+        deleted.setPatientId(4L);
+        deleted.setResult(60.0);
+
+        when(measurementJdbcRepository.deleteByUuids(Set.of(existing, unknown))).thenReturn(List.of(deleted));
+
+        // Act: Delete both
+        BatchResult result = measurementService.deleteMeasurementsByUuid(List.of(existing, unknown));
+
+        // Assert: Per-item statuses and the summary update for the deleted row
+        assertEquals(1, result.succeeded());
+        assertEquals(1, result.failed());
+        assertEquals(BatchItemResult.Status.DELETED, result.items().get(0).status());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, result.items().get(1).status());
+        verify(patientSummaryService, times(1)).recordRemoved(List.of(deleted));
     }
 
     /**
@@ -116,24 +433,82 @@ class MeasurementServiceTest {
     @Test
     void shouldUpdateMeasurementByUuidSuccessfully() {
         UUID uuid = UUID.randomUUID();
-        Measurement existingMeasurement = new Measurement();
-        existingMeasurement.setUuid(uuid);
-        existingMeasurement.setPatientId(1L);
-        existingMeasurement.setResult(75.0);
+        Measurement previous = new Measurement();
+        previous.setId(9L);
+        previous.setUuid(uuid);
+        previous.setPatientId(1L);
+        previous.setResult(75.0);
 
         Measurement updatedMeasurement = new Measurement();
         updatedMeasurement.setPatientId(1L);
         updatedMeasurement.setResult(80.0);
 
-        when(measurementRepository.findByUuid(uuid)).thenReturn(Optional.of(existingMeasurement));
-        when(measurementRepository.save(existingMeasurement)).thenReturn(existingMeasurement);
+        when(measurementJdbcRepository.updateByUuid(uuid, 1L, 80.0)).thenReturn(Optional.of(previous));
 
         Measurement result = measurementService.updateMeasurementByUuid(uuid, updatedMeasurement);
 
         assertNotNull(result);
         assertEquals(80.0, result.getResult());
-        verify(measurementRepository, times(1)).findByUuid(uuid);
-        verify(measurementRepository, times(1)).save(existingMeasurement);
+        assertEquals(9L, result.getId());
+        assertEquals(uuid, result.getUuid());
+        verify(measurementJdbcRepository, times(1)).updateByUuid(uuid, 1L, 80.0);
+        verifyNoInteractions(measurementRepository);
+        verify(patientSummaryService, times(1)).recordReplaced(List.of(previous), List.of(updatedMeasurement));
+        verify(eventBroadcaster, times(1)).publish(MeasurementEvent.updated(previous, result));
+    }
+
+    /**
+     * Test updating a measurement that does not exist.
+     */
+    @Test
+    void shouldFailToUpdateUnknownMeasurement() {
+        // Arrange: No row matches the UUID
+        UUID uuid = UUID.randomUUID();
+        Measurement updatedMeasurement = new Measurement();
+        updatedMeasurement.setPatientId(1L);
+        updatedMeasurement.setResult(80.0);
+        when(measurementJdbcRepository.updateByUuid(uuid, 1L, 80.0)).thenReturn(Optional.empty());
+
+        // Act & Assert: The update is rejected and the summary is left alone
+        assertThrows(EntityNotFoundException.class,
+                () -> measurementService.updateMeasurementByUuid(uuid, updatedMeasurement));
+        verifyNoInteractions(patientSummaryService);
+        verifyNoInteractions(eventBroadcaster);
+    }
+
+    /**
+     * Test updating a batch of measurements by UUID.
+     */
+    @Test
+    void shouldUpdateMeasurementBatchAndReportRejectedItems() {
+        // Arrange: A valid update, an unknown UUID, an invalid result and a repeated UUID
+        UUID existing = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        List<MeasurementUpdate> updates = List.of(
+                new MeasurementUpdate(existing, 2L, 70.0),
+                new MeasurementUpdate(unknown, 2L, 70.0),
+                new MeasurementUpdate(UUID.randomUUID(), 2L, 10.0),
+                new MeasurementUpdate(existing, 3L, 80.0));
+        Measurement previous = new Measurement();
+        previous.setUuid(existing);
+        previous.setPatientId(1L);
+        previous.setResult(60.0);
+
+        when(measurementJdbcRepository.updateAll(anyList())).thenReturn(List.of(previous));
+
+        // Act: Apply the batch
+        BatchResult result = measurementService.updateMeasurements(updates);
+
+        // Assert: Per-item statuses, and only the found row reaches the summary
+        assertEquals(1, result.succeeded());
+        assertEquals(3, result.failed());
+        assertEquals(BatchItemResult.Status.UPDATED, result.items().get(0).status());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, result.items().get(1).status());
+        assertEquals(BatchItemResult.Status.INVALID, result.items().get(2).status());
+        assertTrue(result.items().get(2).errors().containsKey("result"));
+        assertEquals(BatchItemResult.Status.INVALID, result.items().get(3).status());
+        assertTrue(result.items().get(3).errors().containsKey("uuid"));
+        verify(patientSummaryService, times(1)).recordReplaced(eq(List.of(previous)), anyList());
     }
 
 }
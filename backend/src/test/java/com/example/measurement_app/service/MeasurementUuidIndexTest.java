@@ -0,0 +1,252 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.measurement_app.dto.MeasurementEvent;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.repository.MeasurementColumns;
+import com.example.measurement_app.repository.MeasurementJdbcRepository;
+import com.example.measurement_app.service.MeasurementUuidIndex.Location;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisabledInNativeImage
+class MeasurementUuidIndexTest {
+
+    private static final Instant MEASURED_AT = Instant.parse("2024-05-01T08:30:00.123456Z");
+
+    private final MeasurementJdbcRepository measurementJdbcRepository = mock(MeasurementJdbcRepository.class);
+
+    /**
+     * Test that the index is loaded in id ranges, grows past its expected size and follows changes.
+     */
+    @Test
+    void shouldLoadInRangesAndFollowChanges() {
+        // Arrange: 1000 measurements with ids 1 to 1000, loaded by three threads into room for 16
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        when(measurementJdbcRepository.findMaxId()).thenReturn(1000L);
+        doAnswer(invocation -> {
+            long fromId = invocation.getArgument(0);
+            long toId = invocation.getArgument(1);
+            MeasurementColumns batch = invocation.getArgument(2);
+            Consumer<MeasurementColumns> consumer = invocation.getArgument(3);
+            for (long id = Math.max(1, fromId); id < Math.min(1001, toId); id++) {
+                batch.add(id, id % 7 + 1, 60.0, uuids.get((int) id - 1), 1_714_552_200_123_456L);
+                if (batch.isFull()) {
+                    consumer.accept(batch);
+                    batch.clear();
+                }
+            }
+            consumer.accept(batch);
+            batch.clear();
+            return null;
+        }).when(measurementJdbcRepository).streamColumns(anyLong(), anyLong(), any(), any());
+        MeasurementUuidIndex index = new MeasurementUuidIndex(measurementJdbcRepository, Optional.empty(),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 3);
+
+        // Act: Load, then move one measurement to patient 9, delete every other one and add one
+        boolean readyBefore = index.isReady();
+        index.reload();
+        Measurement moved = measurement(9L, uuids.get(1));
+        index.apply(List.of(MeasurementEvent.updated(measurement(3L, uuids.get(1)), moved)));
+        List<MeasurementEvent> deletes = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 2) {
+            deletes.add(MeasurementEvent.deleted(measurement(1L, uuids.get(i))));
+        }
+        index.apply(deletes);
+        Measurement created = measurement(4L, UUID.randomUUID());
+        index.apply(List.of(MeasurementEvent.created(created)));
+
+        // Assert: Every remaining UUID is found where it lives and no deleted one is
+        assertFalse(readyBefore);
+        assertTrue(index.isReady());
+        assertEquals(501, index.size());
+        assertEquals(Optional.of(new Location(9L, MEASURED_AT)), index.find(uuids.get(1)));
+        assertEquals(Optional.of(new Location(4L, MEASURED_AT)), index.find(created.getUuid()));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, index.find(uuids.get(i)).isPresent());
+        }
+        assertEquals(Set.of(uuids.get(3)), index.findExisting(List.of(uuids.get(2), uuids.get(3))));
+    }
+
+    /**
+     * Test that a failed load leaves the index not ready and ignoring changes.
+     */
+    @Test
+    void shouldStayNotReadyWhenLoadingFails() {
+        // Arrange: A database that fails while streaming
+        when(measurementJdbcRepository.findMaxId()).thenReturn(10L);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("Connection lost");
+        }).when(measurementJdbcRepository).streamColumns(anyLong(), anyLong(), any(), any());
+        MeasurementUuidIndex index = new MeasurementUuidIndex(measurementJdbcRepository, Optional.empty(),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 2);
+
+        // Act: Load and apply a change
+        index.reload();
+        index.apply(List.of(MeasurementEvent.created(measurement(1L, UUID.randomUUID()))));
+
+        // Assert: Lookups must go to the database
+        assertFalse(index.isReady());
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Test that a failed load is retried, less often after each further failure, until it succeeds.
+     */
+    @Test
+    void shouldRetryFailedLoadsWithBackoff() {
+        // Arrange: A database that fails while streaming twice, then holds one measurement
+        UUID uuid = UUID.randomUUID();
+        when(measurementJdbcRepository.findMaxId()).thenReturn(10L);
+        int[] calls = new int[1];
+        doAnswer(invocation -> {
+            if (++calls[0] <= 2) {
+                throw new IllegalStateException("Connection lost");
+            }
+            MeasurementColumns batch = invocation.getArgument(2);
+            Consumer<MeasurementColumns> consumer = invocation.getArgument(3);
+            batch.add(1L, 1L, 60.0, uuid, 1_714_552_200_123_456L);
+            consumer.accept(batch);
+            batch.clear();
+            return null;
+        }).when(measurementJdbcRepository).streamColumns(anyLong(), anyLong(), any(), any());
+        MeasurementUuidIndex index = new MeasurementUuidIndex(measurementJdbcRepository, Optional.empty(),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 1);
+
+        // Act: Load, then retry three times
+        index.reload();
+        index.retryLoad();
+        boolean readyAfterSecondFailure = index.isReady();
+        index.retryLoad();
+        boolean readyWhileBackingOff = index.isReady();
+        index.retryLoad();
+
+        // Assert: The second retry was skipped and the third one loaded the index
+        assertFalse(readyAfterSecondFailure);
+        assertFalse(readyWhileBackingOff);
+        verify(measurementJdbcRepository, times(3)).streamColumns(anyLong(), anyLong(), any(), any());
+        assertTrue(index.isReady());
+        assertEquals(Optional.of(new Location(1L, MEASURED_AT)), index.find(uuid));
+    }
+
+    /**
+     * Test that a restart maps the snapshot back in and only reads what changed since from the database.
+     */
+    @Test
+    void shouldRestoreFromSnapshotAndCatchUp(@TempDir Path directory) throws IOException {
+        // Arrange: A snapshot at id 50 of 50 measurements, then one deleted and one moved to patient 9
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        when(measurementJdbcRepository.findMaxId()).thenReturn(50L);
+        doAnswer(invocation -> {
+            MeasurementColumns batch = invocation.getArgument(2);
+            Consumer<MeasurementColumns> consumer = invocation.getArgument(3);
+            long fromId = invocation.getArgument(0);
+            long toId = invocation.getArgument(1);
+            for (long id = Math.max(1, fromId); id < Math.min(51, toId); id++) {
+                batch.add(id, 1L, 60.0, uuids.get((int) id - 1), 1_714_552_200_123_456L);
+            }
+            consumer.accept(batch);
+            batch.clear();
+            return null;
+        }).when(measurementJdbcRepository).streamColumns(anyLong(), anyLong(), any(), any());
+        MeasurementSnapshotStore snapshots = new MeasurementSnapshotStore(measurementJdbcRepository, directory, 5);
+        MeasurementUuidIndex before = new MeasurementUuidIndex(measurementJdbcRepository, Optional.of(snapshots),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 2);
+        before.reload();
+        before.writeSnapshot();
+        before.apply(List.of(MeasurementEvent.deleted(measurement(1L, uuids.get(0))),
+                MeasurementEvent.updated(measurement(1L, uuids.get(1)), measurement(9L, uuids.get(1)))));
+        when(measurementJdbcRepository.findByUuids(any())).thenReturn(List.of(measurement(9L, uuids.get(1))));
+        UUID created = UUID.randomUUID();
+        doAnswer(invocation -> {
+            MeasurementColumns batch = invocation.getArgument(2);
+            Consumer<MeasurementColumns> consumer = invocation.getArgument(3);
+            batch.add(51L, 4L, 60.0, created, 1_714_552_200_123_456L);
+            consumer.accept(batch);
+            return null;
+        }).when(measurementJdbcRepository).streamColumns(eq(45L), eq(Long.MAX_VALUE), any(), any());
+
+        // Act: Restore a second index from the snapshot
+        MeasurementUuidIndex after = new MeasurementUuidIndex(measurementJdbcRepository, Optional.of(snapshots),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 2);
+        boolean restored = after.restore();
+
+        // Assert: Only the catch-up read the table again, and the changes are there
+        assertTrue(restored);
+        assertTrue(after.isReady());
+        verify(measurementJdbcRepository, times(3)).streamColumns(anyLong(), anyLong(), any(), any());
+        verify(measurementJdbcRepository, times(1)).streamColumns(eq(45L), eq(Long.MAX_VALUE), any(), any());
+        assertEquals(50, after.size());
+        assertTrue(after.find(uuids.get(0)).isEmpty());
+        assertEquals(Optional.of(new Location(9L, MEASURED_AT)), after.find(uuids.get(1)));
+        assertEquals(Optional.of(new Location(1L, MEASURED_AT)), after.find(uuids.get(49)));
+        assertEquals(Optional.of(new Location(4L, MEASURED_AT)), after.find(created));
+    }
+
+    /**
+     * Test that a create committed after the snapshot is restored even if its id is below the catch-up id.
+     */
+    @Test
+    void shouldRestoreLateCreateBelowTheCatchUpId(@TempDir Path directory) throws IOException {
+        // Arrange: A snapshot up to id 50, then a create whose id 10 was handed out long before
+        when(measurementJdbcRepository.findMaxId()).thenReturn(50L);
+        MeasurementSnapshotStore snapshots = new MeasurementSnapshotStore(measurementJdbcRepository, directory, 5);
+        MeasurementUuidIndex before = new MeasurementUuidIndex(measurementJdbcRepository, Optional.of(snapshots),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 2);
+        before.reload();
+        before.writeSnapshot();
+        Measurement late = measurement(4L, UUID.randomUUID());
+        before.apply(List.of(MeasurementEvent.created(late)));
+        when(measurementJdbcRepository.findByUuids(List.of(late.getUuid()))).thenReturn(List.of(late));
+
+        // Act: Restore a second index, whose catch-up from id 45 does not reach the create
+        MeasurementUuidIndex after = new MeasurementUuidIndex(measurementJdbcRepository, Optional.of(snapshots),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 10, 2);
+        boolean restored = after.restore();
+
+        // Assert: The journal brought the create back
+        assertTrue(restored);
+        verify(measurementJdbcRepository, times(1)).streamColumns(eq(45L), eq(Long.MAX_VALUE), any(), any());
+        assertEquals(Optional.of(new Location(4L, MEASURED_AT)), after.find(late.getUuid()));
+    }
+
+    private static Measurement measurement(Long patientId, UUID uuid) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(70.0);
+        measurement.setUuid(uuid);
+        measurement.setMeasuredAt(MEASURED_AT);
+        return measurement;
+    }
+}
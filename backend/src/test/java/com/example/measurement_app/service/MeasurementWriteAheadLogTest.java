@@ -0,0 +1,130 @@
+package com.example.measurement_app.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.service.MeasurementWriteAheadLog.FsyncPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MeasurementWriteAheadLogTest {
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test that uncommitted records come back unchanged after a restart, across segments.
+     */
+    @Test
+    void shouldRecoverUncommittedRecordsAfterRestart() throws IOException {
+        // Arrange: Five records in segments of two, the first two committed
+        MeasurementWriteAheadLog wal = open(FsyncPolicy.RECORD);
+        List<Measurement> measurements = Stream.of(60.0, 61.0, 62.0, 63.0, 64.0).map(this::measurement).toList();
+        measurements.forEach(wal::append);
+        wal.commit(2);
+        wal.close();
+
+        // Act: Reopen the log
+        MeasurementWriteAheadLog reopened = open(FsyncPolicy.RECORD);
+
+        // Assert: The last three come back in order with every field, and appending continues after them
+        List<Measurement> recovered = reopened.uncommitted();
+        assertEquals(3, recovered.size());
+        for (int i = 0; i < 3; i++) {
+            Measurement expected = measurements.get(i + 2);
+            assertEquals(expected.getUuid(), recovered.get(i).getUuid());
+            assertEquals(expected.getPatientId(), recovered.get(i).getPatientId());
+            assertEquals(expected.getResult(), recovered.get(i).getResult());
+            assertEquals(expected.getMeasuredAt(), recovered.get(i).getMeasuredAt());
+        }
+        assertEquals(5, reopened.append(measurement(65.0)));
+        reopened.close();
+    }
+
+    /**
+     * Test that a torn record ends the log and that committed segments are deleted.
+     */
+    @Test
+    void shouldStopAtTornRecordAndDeleteCommittedSegments() throws IOException {
+        // Arrange: Three records, the last of which is torn
+        MeasurementWriteAheadLog wal = open(FsyncPolicy.INTERVAL);
+        wal.append(measurement(60.0));
+        wal.append(measurement(61.0));
+        wal.append(measurement(62.0));
+        wal.close();
+        Path lastSegment = directory.resolve("%020d.wal".formatted(2));
+        try (FileChannel channel = FileChannel.open(lastSegment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Flipped rather than set, so the byte changes whatever the record held there
+            ByteBuffer torn = ByteBuffer.allocate(1);
+            channel.read(torn, 20);
+            channel.write(torn.put(0, (byte) ~torn.get(0)).flip(), 20);
+        }
+
+        // Act: Reopen and commit what was recovered
+        MeasurementWriteAheadLog reopened = open(FsyncPolicy.BATCH);
+        List<Measurement> recovered = reopened.uncommitted();
+        reopened.commit(recovered.size());
+
+        // Assert: The torn record is gone, and only the segment still being written remains
+        assertEquals(2, recovered.size());
+        assertEquals(0, reopened.uncommittedCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("%020d.wal".formatted(2), "checkpoint"),
+                    files.map(path -> path.getFileName().toString()).sorted().toList());
+        }
+        reopened.close();
+    }
+
+    /**
+     * Test that concurrent appends with the batch policy all become durable.
+     */
+    @Test
+    void shouldMakeConcurrentBatchAppendsDurable() throws Exception {
+        // Arrange: A log forcing in batches
+        MeasurementWriteAheadLog wal = open(FsyncPolicy.BATCH);
+
+        // Act: Append and wait from several threads
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 25; i++) {
+                    wal.awaitDurable(wal.append(measurement(70.0)));
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        wal.close();
+
+        // Assert: Every record is there after a restart
+        assertEquals(200, open(FsyncPolicy.BATCH).uncommitted().size());
+    }
+
+    private MeasurementWriteAheadLog open(FsyncPolicy fsyncPolicy) throws IOException {
+        return new MeasurementWriteAheadLog(new SimpleMeterRegistry(), directory,
+                DataSize.ofBytes(2L * MeasurementWriteAheadLog.RECORD_SIZE), fsyncPolicy, Duration.ofMillis(10));
+    }
+
+    private Measurement measurement(double result) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(7L);
+        measurement.setResult(result);
+        measurement.setMeasuredAt(Instant.parse("2024-05-01T10:15:30.123456789Z"));
+        return measurement;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.measurement_app.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.measurement_app.dto.MeasurementStats;
+import com.example.measurement_app.dto.SummaryRebuildResult;
+import com.example.measurement_app.model.Measurement;
+import com.example.measurement_app.model.PatientMeasurementSummary;
+import com.example.measurement_app.repository.PatientMeasurementSummaryRepository;
+
+@DisabledInNativeImage
+class PatientSummaryServiceTest {
+
+    private PatientMeasurementSummaryRepository summaryRepository;
+    private PatientSummaryService patientSummaryService;
+
+    @BeforeEach
+    public void setUp() {
+        summaryRepository = mock(PatientMeasurementSummaryRepository.class);
+        patientSummaryService = new PatientSummaryService(summaryRepository, mock(JdbcTemplate.class),
+                mock(PlatformTransactionManager.class), 1000, 2);
+    }
+
+    /**
+     * Test that a batch is applied as one upsert per patient, in patient id order.
+     */
+    @Test
+    void shouldAggregateBatchPerPatient() {
+        // Arrange: Three measurements of two patients, out of order
+        List<Measurement> batch = List.of(newMeasurement(9L, 60.0), newMeasurement(2L, 70.0), newMeasurement(9L, 80.0));
+
+        // Act: Record the batch
+        patientSummaryService.recordAdded(batch);
+
+        // Assert: Each patient gets a single combined delta, lowest id first
+        InOrder order = inOrder(summaryRepository);
+        order.verify(summaryRepository).addResults(2L, 1, 70.0, 4900.0, 70.0, 70.0);
+        order.verify(summaryRepository).addResults(9L, 2, 140.0, 10000.0, 60.0, 80.0);
+    }
+
+    /**
+     * Test that updates take out and add results patient by patient, in patient id order.
+     */
+    @Test
+    void shouldReplaceResultsInPatientIdOrder() {
+        // Arrange: One measurement moved from patient 9 to patient 2, another changed on patient 5
+        List<Measurement> previous = List.of(newMeasurement(9L, 60.0), newMeasurement(5L, 70.0));
+        List<Measurement> current = List.of(newMeasurement(2L, 60.0), newMeasurement(5L, 75.0));
+
+        // Act: Record the update
+        patientSummaryService.recordReplaced(previous, current);
+
+        // Assert: Each summary row is changed once its turn comes, lowest patient id first
+        InOrder order = inOrder(summaryRepository);
+        order.verify(summaryRepository).addResults(2L, 1, 60.0, 3600.0, 60.0, 60.0);
+        order.verify(summaryRepository).removeResults(5L, 1, 70.0, 4900.0, 70.0, 70.0);
+        order.verify(summaryRepository).addResults(5L, 1, 75.0, 5625.0, 75.0, 75.0);
+        order.verify(summaryRepository).removeResults(9L, 1, 60.0, 3600.0, 60.0, 60.0);
+    }
+
+    /**
+     * Test deriving mean and standard deviation from the running sums.
+     */
+    @Test
+    void shouldDeriveStatisticsFromSummary() {
+        // Arrange: Summary of the results 60, 70 and 80
+        PatientMeasurementSummary summary = new PatientMeasurementSummary();
+        summary.setPatientId(4L);
+        summary.setMeasurementCount(3);
+        summary.setResultSum(210.0);
+        summary.setResultSumOfSquares(14900.0);
+        summary.setMinResult(60.0);
+        summary.setMaxResult(80.0);
+        when(summaryRepository.findById(4L)).thenReturn(Optional.of(summary));
+
+        // Act: Read the statistics
+        MeasurementStats stats = patientSummaryService.getStatistics(4L);
+
+        // Assert: Sample statistics match and percentiles are not available
+        assertEquals(3, stats.count());
+        assertEquals(70.0, stats.mean(), 1e-9);
+        assertEquals(10.0, stats.stddev(), 1e-9);
+        assertEquals(60.0, stats.min());
+        assertNull(stats.p50());
+    }
+
+    /**
+     * Test statistics of a patient without a summary.
+     */
+    @Test
+    void shouldReturnEmptyStatisticsWithoutSummary() {
+        when(summaryRepository.findById(4L)).thenReturn(Optional.empty());
+
+        MeasurementStats stats = patientSummaryService.getStatistics(4L);
+
+        assertEquals(0, stats.count());
+        assertNull(stats.mean());
+    }
+
+    /**
+     * Test that a rebuild pages through sparse patient ids and rebuilds one range per page.
+     */
+    @Test
+    void shouldRebuildOneRangePerPageOfPatientIds() {
+        // Arrange: Three patient ids far apart, in pages of two
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        PatientSummaryService service = new PatientSummaryService(summaryRepository, jdbcTemplate,
+                mock(PlatformTransactionManager.class), 2, 2);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(Long.MIN_VALUE), eq(2L), eq(Long.MIN_VALUE),
+                eq(2L), eq(2L))).thenReturn(List.of(5L, 1_000_000_000L));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(1_000_000_000L), eq(2L), eq(1_000_000_000L),
+                eq(2L), eq(2L))).thenReturn(List.of(Long.MAX_VALUE));
+        when(summaryRepository.rebuildRange(5L, 1_000_000_000L)).thenReturn(2);
+        when(summaryRepository.rebuildRange(Long.MAX_VALUE, Long.MAX_VALUE)).thenReturn(1);
+
+        // Act: Rebuild every summary
+        SummaryRebuildResult result = service.rebuildAll();
+
+        // Assert: Two ranges were rebuilt and the short page ended the paging
+        assertEquals(2, result.chunks());
+        assertEquals(3, result.patients());
+        verify(summaryRepository, times(1)).rebuildRange(5L, 1_000_000_000L);
+        verify(summaryRepository, times(1)).rebuildRange(Long.MAX_VALUE, Long.MAX_VALUE);
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(Long.class), any(Object[].class));
+    }
+
+    private Measurement newMeasurement(Long patientId, Double result) {
+        Measurement measurement = new Measurement();
+        measurement.setPatientId(patientId);
+        measurement.setResult(result);
+        return measurement;
+    }
+}
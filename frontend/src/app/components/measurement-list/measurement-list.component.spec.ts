@@ -1,7 +1,7 @@
 import { TestBed, ComponentFixture } from '@angular/core/testing'
 import { MeasurementListComponent } from './measurement-list.component'
 import { MeasurementService } from '../../services/measurement.service'
-import { of, throwError } from 'rxjs'
+import { NEVER, of, throwError } from 'rxjs'
 import { ReactiveFormsModule, FormBuilder } from '@angular/forms'
 import { MatSnackBarModule } from '@angular/material/snack-bar'
 import { HttpClientTestingModule } from '@angular/common/http/testing'
@@ -21,9 +21,13 @@ describe('MeasurementListComponent', () => {
             'updateMeasurement',
             'deleteMeasurementByUuid',
             'getMeasurementByUuid', // Added spy for getMeasurementByUuid
+            'getAllMeasurementsByPatientId',
+            'streamMeasurementEvents',
             'handleServiceResponse'
         ])
 
+        mockMeasurementService.streamMeasurementEvents.and.returnValue(NEVER)
+
         mockMeasurementService.handleServiceResponse.and.callFake((observable, successMessage, onSuccess) => {
             return observable.pipe(
                 tap(response => {
@@ -70,6 +74,23 @@ describe('MeasurementListComponent', () => {
         expect(component.measurements$.getValue()).toEqual(mockMeasurements)
     })
 
+    it('should apply streamed changes to the loaded measurements', async () => {
+        mockMeasurementService.getAllMeasurements.and.returnValue(of([
+            { uuid: '1', patientId: 101, result: 98.6 },
+            { uuid: '2', patientId: 102, result: 99.1 }
+        ]))
+        mockMeasurementService.streamMeasurementEvents.and.returnValue(of(
+            { type: 'UPDATED' as const, uuid: '1', patientId: 101, result: 70.0 },
+            { type: 'DELETED' as const, uuid: '2', patientId: 102 },
+            { type: 'CREATED' as const, uuid: '3', patientId: 103, result: 80.0 }
+        ))
+
+        await component.fetchAllMeasurements()
+
+        expect(mockMeasurementService.getAllMeasurements).toHaveBeenCalledTimes(1)
+        expect(component.measurements$.getValue().map(m => [m.uuid, m.result])).toEqual([['1', 70.0], ['3', 80.0]])
+    })
+
     it('should handle errors when fetching measurements fails', async () => {
         mockMeasurementService.getAllMeasurements.and.returnValue(throwError(() => new Error('Fetch error')))
 
@@ -98,6 +119,26 @@ describe('MeasurementListComponent', () => {
         expect(component.measurements$.getValue()).toContain(newMeasurement)
     })
 
+    it('should not add a measurement twice when its streamed event comes first', async () => {
+        const newMeasurement = { uuid: '3', patientId: 103, result: 97.5 }
+        mockMeasurementService.getAllMeasurements.and.returnValue(of([
+            { uuid: '1', patientId: 101, result: 98.6 }
+        ]))
+        mockMeasurementService.streamMeasurementEvents.and.returnValue(of(
+            { type: 'CREATED' as const, ...newMeasurement }
+        ))
+        await component.fetchAllMeasurements()
+        component.measurementForm.setValue({
+            patientId: newMeasurement.patientId,
+            result: newMeasurement.result
+        })
+        mockMeasurementService.addMeasurement.and.returnValue(of(newMeasurement))
+
+        component.onSubmit()
+
+        expect(component.measurements$.getValue().map(m => m.uuid)).toEqual(['1', '3'])
+    })
+
     it('should handle errors when adding a new measurement fails', () => {
         const newMeasurement = { uuid: '3', patientId: 103, result: 97.5 }
         component.measurementForm.setValue({
@@ -195,4 +236,22 @@ describe('MeasurementListComponent', () => {
 
         expect(console.error).toHaveBeenCalledWith(jasmine.any(String), jasmine.any(Error))
     })
-})
\ No newline at end of file
+
+    it('should search measurements by patient ID on the server', (done) => {
+        const mockMeasurements = [{ uuid: '1', patientId: 101, result: 98.6 }]
+        mockMeasurementService.getAllMeasurementsByPatientId.and.returnValue(of(mockMeasurements))
+
+        component.searchId = '101'
+        component.searchById()
+
+        const emitted: unknown[] = []
+        component.filteredMeasurements$.subscribe({
+            next: data => emitted.push(data),
+            complete: () => {
+                expect(mockMeasurementService.getAllMeasurementsByPatientId).toHaveBeenCalledWith(101)
+                expect(emitted[emitted.length - 1]).toEqual(mockMeasurements)
+                done()
+            }
+        })
+    })
+})
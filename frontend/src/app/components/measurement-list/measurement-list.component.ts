@@ -1,4 +1,4 @@
-import { Component, NgZone, ViewEncapsulation } from '@angular/core'
+import { Component, NgZone, OnDestroy, ViewEncapsulation } from '@angular/core'
 import { CommonModule } from '@angular/common'
 import { FormsModule, ReactiveFormsModule, FormBuilder, FormGroup } from '@angular/forms'
 import { MatTableModule } from '@angular/material/table'
@@ -7,9 +7,9 @@ import { MatFormFieldModule } from '@angular/material/form-field'
 import { MatInputModule } from '@angular/material/input'
 import { MatIconModule } from '@angular/material/icon'
 import { MeasurementService } from '../../services/measurement.service'
-import { Observable, BehaviorSubject } from 'rxjs'
+import { Observable, BehaviorSubject, Subscription, of } from 'rxjs'
 import { map, startWith, filter, defaultIfEmpty, catchError, tap } from 'rxjs/operators'
-import { Measurement } from '../../services/measurement.service'
+import { Measurement, MeasurementStreamEvent } from '../../services/measurement.service'
 import { PATIENT_ID_VALIDATORS, RESULT_VALIDATORS } from '../../validators/measurement-validators'
 import { MatSnackBar, MatSnackBarHorizontalPosition, MatSnackBarVerticalPosition } from '@angular/material/snack-bar'
 import { SNACKBAR_MESSAGES } from '../../utils/snackbar-messages'
@@ -31,7 +31,7 @@ import { SNACKBAR_MESSAGES } from '../../utils/snackbar-messages'
     templateUrl: './measurement-list.component.html',
     styleUrls: ['./measurement-list.component.scss']
 })
-export class MeasurementListComponent {
+export class MeasurementListComponent implements OnDestroy {
     measurements$ = new BehaviorSubject<Measurement[]>([])
     filteredMeasurements$: Observable<Measurement[]>
     searchId = ''
@@ -41,6 +41,7 @@ export class MeasurementListComponent {
     showAddMeasurement = false
     successMessage: string | null = null
     isErrorMessage: boolean = false
+    private events?: Subscription
 
     // Lifecycle Hooks
     constructor(
@@ -62,6 +63,10 @@ export class MeasurementListComponent {
         })
     }
 
+    ngOnDestroy(): void {
+        this.events?.unsubscribe()
+    }
+
     // Public Methods
     async fetchAllMeasurements(): Promise<void> {
         try {
@@ -71,6 +76,7 @@ export class MeasurementListComponent {
                 this.initializeEditForms(data)
                 this.showAddMeasurement = false
                 this.editableRow = null
+                this.listenForChanges()
             }
         } catch (error) {
             this.handleError(SNACKBAR_MESSAGES.FETCH_ERROR, error)
@@ -160,7 +166,9 @@ export class MeasurementListComponent {
             SNACKBAR_MESSAGES.ADD_SUCCESS,
             (addedMeasurement) => {
                 if (addedMeasurement.uuid) {
+                    // The streamed CREATED event may have added the row before the response came
                     const currentMeasurements = this.measurements$.getValue()
+                        .filter(m => m.uuid !== addedMeasurement.uuid)
                     this.measurements$.next([...currentMeasurements, addedMeasurement])
 
                     this.editForms[addedMeasurement.uuid] = this.createEditForm(addedMeasurement)
@@ -183,10 +191,18 @@ export class MeasurementListComponent {
     }
 
     searchById(): void {
-        this.filteredMeasurements$ = this.measurements$.pipe(
-            map(measurements => measurements.filter(measurement =>
-                this.searchId ? measurement.patientId.toString().includes(this.searchId) : true
-            )),
+        const patientId = Number(this.searchId)
+        if (!this.searchId || !Number.isInteger(patientId) || patientId <= 0) {
+            this.filteredMeasurements$ = this.measurements$.pipe(startWith([]))
+            return
+        }
+
+        // Ask the backend for all of this patient's measurements instead of filtering the full list
+        this.filteredMeasurements$ = this.measurementService.getAllMeasurementsByPatientId(patientId).pipe(
+            catchError(error => {
+                this.handleError(SNACKBAR_MESSAGES.FETCH_ERROR, error)
+                return of([])
+            }),
             startWith([])
         )
     }
@@ -197,6 +213,49 @@ export class MeasurementListComponent {
     }
 
     // Private Methods
+    // Keeps the loaded list current with the changes of every client instead of re-fetching it
+    private listenForChanges(): void {
+        if (this.events) {
+            return
+        }
+        this.events = this.measurementService.streamMeasurementEvents().subscribe({
+            next: event => this.applyEvent(event),
+            error: error => console.error('Measurement stream error:', error)
+        })
+    }
+
+    private applyEvent(event: MeasurementStreamEvent): void {
+        if (event.type === 'RESYNC') {
+            this.fetchAllMeasurements()
+            return
+        }
+        const measurements = this.measurements$.getValue()
+        const index = measurements.findIndex(m => m.uuid === event.uuid)
+        if (event.type === 'DELETED') {
+            if (index !== -1) {
+                this.measurements$.next(measurements.filter(m => m.uuid !== event.uuid))
+                delete this.editForms[event.uuid]
+            }
+            return
+        }
+        const measurement: Measurement = {
+            uuid: event.uuid,
+            patientId: event.patientId,
+            result: event.result!,
+            measuredAt: event.measuredAt
+        }
+        if (index === -1) {
+            this.measurements$.next([...measurements, measurement])
+        } else {
+            measurements[index] = measurement
+            this.measurements$.next([...measurements])
+        }
+        // Leave the row being edited alone
+        if (this.editableRow !== event.uuid) {
+            this.editForms[event.uuid] = this.createEditForm(measurement)
+        }
+    }
+
     private initializeEditForms(data: Measurement[]): void {
         this.editForms = {}
         data.forEach(measurement => {
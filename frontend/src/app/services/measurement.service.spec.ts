@@ -1,6 +1,6 @@
 import { TestBed } from '@angular/core/testing'
 import { HttpClientTestingModule, HttpTestingController } from '@angular/common/http/testing'
-import { MeasurementService, Measurement } from './measurement.service'
+import { MeasurementService, Measurement, MeasurementPage } from './measurement.service'
 import { MatSnackBarModule } from '@angular/material/snack-bar'
 import { BrowserAnimationsModule } from '@angular/platform-browser/animations'
 
@@ -45,6 +45,43 @@ describe('MeasurementService', () => {
         req.flush(mockMeasurements)
     })
 
+    it('should fetch a page of measurements for a patient', () => {
+        const mockPage: MeasurementPage = {
+            items: [{ uuid: '1', patientId: 101, result: 98.6 }],
+            nextCursor: 17,
+        }
+
+        service.getMeasurementsByPatientId(101, 5, 50).subscribe((page) => {
+            expect(page).toEqual(mockPage)
+        })
+
+        const req = httpMock.expectOne('http://localhost:8080/patients/101/measurements?after=5&limit=50')
+        expect(req.request.method).toBe('GET')
+        req.flush(mockPage)
+    })
+
+    it('should follow the cursor through all pages of a patient', () => {
+        let measurements: Measurement[] | undefined
+
+        service.getAllMeasurementsByPatientId(101).subscribe((all) => {
+            measurements = all
+        })
+
+        httpMock.expectOne('http://localhost:8080/patients/101/measurements?limit=1000').flush({
+            items: [{ uuid: '1', patientId: 101, result: 98.6 }],
+            nextCursor: 17,
+        })
+        expect(measurements).toBeUndefined()
+        httpMock.expectOne('http://localhost:8080/patients/101/measurements?after=17&limit=1000').flush({
+            items: [{ uuid: '2', patientId: 101, result: 97.5 }],
+            nextCursor: null,
+        })
+        expect(measurements).toEqual([
+            { uuid: '1', patientId: 101, result: 98.6 },
+            { uuid: '2', patientId: 101, result: 97.5 },
+        ])
+    })
+
     it('should save a measurement', () => {
         const newMeasurement: Measurement = { uuid: '3', patientId: 103, result: 97.5 }
 
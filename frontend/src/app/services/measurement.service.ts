@@ -1,13 +1,47 @@
 import { Injectable } from '@angular/core'
-import { HttpClient } from '@angular/common/http'
-import { Observable, firstValueFrom } from 'rxjs'
-import { catchError, tap } from 'rxjs/operators'
+import { HttpClient, HttpParams } from '@angular/common/http'
+import { EMPTY, Observable, firstValueFrom } from 'rxjs'
+import { catchError, expand, reduce, tap } from 'rxjs/operators'
 import { MatSnackBar } from '@angular/material/snack-bar'
 
+// The largest limit GET /patients/{id}/measurements accepts
+const MAX_PAGE_SIZE = 1000
+
 export interface Measurement {
     uuid?: string
     patientId: number
     result: number
+    measuredAt?: string
+}
+
+export interface MeasurementPage {
+    items: Measurement[]
+    nextCursor: number | null
+}
+
+export interface MeasurementEvent {
+    type: 'CREATED' | 'UPDATED' | 'DELETED'
+    uuid: string
+    patientId: number
+    result?: number
+    measuredAt?: string
+    previousPatientId?: number
+}
+
+// RESYNC: events were missed (the server dropped some or the connection was lost), reload
+export type MeasurementStreamEvent = MeasurementEvent | { type: 'RESYNC' }
+
+export interface MeasurementBucket {
+    start: string
+    count: number
+    min: number
+    max: number
+    avg: number
+}
+
+export interface MeasurementSeries {
+    buckets: MeasurementBucket[]
+    bucketCount: number
 }
 
 @Injectable({
@@ -15,6 +49,7 @@ export interface Measurement {
 })
 export class MeasurementService {
     private baseUrl = 'http://localhost:8080/measurements';
+    private patientsUrl = 'http://localhost:8080/patients';
 
     constructor(private http: HttpClient, private snackBar: MatSnackBar) { }
 
@@ -22,6 +57,58 @@ export class MeasurementService {
         return this.http.get<Measurement[]>(`${this.baseUrl}`)
     }
 
+    streamMeasurementEvents(patientId?: number): Observable<MeasurementStreamEvent> {
+        const url = patientId !== undefined
+            ? `${this.baseUrl}/stream?patientId=${patientId}`
+            : `${this.baseUrl}/stream`
+        return new Observable<MeasurementStreamEvent>(subscriber => {
+            const source = new EventSource(url)
+            let opened = false
+            source.onopen = () => {
+                // EventSource reconnects on its own, but does not replay what it missed
+                if (opened) {
+                    subscriber.next({ type: 'RESYNC' })
+                }
+                opened = true
+            }
+            source.onmessage = message => subscriber.next(JSON.parse(message.data))
+            source.addEventListener('dropped', () => subscriber.next({ type: 'RESYNC' }))
+            return () => source.close()
+        })
+    }
+
+    getMeasurementsByPatientId(patientId: number, after?: number, limit?: number): Observable<MeasurementPage> {
+        let params = new HttpParams()
+        if (after !== undefined) {
+            params = params.set('after', after)
+        }
+        if (limit !== undefined) {
+            params = params.set('limit', limit)
+        }
+        return this.http.get<MeasurementPage>(`${this.patientsUrl}/${patientId}/measurements`, { params })
+    }
+
+    // Follows nextCursor page by page, at the largest page size the server allows, and emits every measurement once done
+    getAllMeasurementsByPatientId(patientId: number): Observable<Measurement[]> {
+        return this.getMeasurementsByPatientId(patientId, undefined, MAX_PAGE_SIZE).pipe(
+            expand(page => page.nextCursor !== null
+                ? this.getMeasurementsByPatientId(patientId, page.nextCursor, MAX_PAGE_SIZE)
+                : EMPTY),
+            reduce((all, page) => all.concat(page.items), [] as Measurement[])
+        )
+    }
+
+    getSeriesByPatientId(patientId: number, bucket: string, from: string, to: string, points?: number): Observable<MeasurementSeries> {
+        let params = new HttpParams()
+            .set('bucket', bucket)
+            .set('from', from)
+            .set('to', to)
+        if (points !== undefined) {
+            params = params.set('points', points)
+        }
+        return this.http.get<MeasurementSeries>(`${this.patientsUrl}/${patientId}/measurements/series`, { params })
+    }
+
     saveMeasurement(measurement: Measurement): Observable<Measurement> {
         return this.http.post<Measurement>(`${this.baseUrl}`, measurement)
     }